@@ -29,6 +29,14 @@ android {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
     }
+    testOptions {
+        // Local tests run against android.jar stubs; let Log and friends return defaults
+        unitTests.isReturnDefaultValues = true
+        // Microbenchmarks under src/test are skipped unless run with -Pbenchmarks
+        unitTests.all {
+            it.systemProperty("benchmarks", project.hasProperty("benchmarks"))
+        }
+    }
 }
 
 dependencies {
@@ -37,7 +45,10 @@ dependencies {
     implementation(libs.material)
     implementation(libs.activity)
     implementation(libs.constraintlayout)
+    implementation(libs.recyclerview)
     testImplementation(libs.junit)
+    // android.jar only has stubs of org.json; local tests need the real one
+    testImplementation(libs.json)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 }
\ No newline at end of file
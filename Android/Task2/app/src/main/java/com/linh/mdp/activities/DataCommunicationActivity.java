@@ -9,7 +9,6 @@ import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewParent;
 import android.widget.Button;
-import android.widget.GridView;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -25,10 +24,10 @@ import com.linh.mdp.controllers.ObstacleController;
 import com.linh.mdp.controllers.RobotController;
 import com.linh.mdp.managers.DataCommunicationManager;
 import com.linh.mdp.parsers.MessageParser;
+import com.linh.mdp.parsers.MessagePipeline;
+import com.linh.mdp.ui.ArenaView;
 import com.linh.mdp.utils.BluetoothConstants;
 
-import java.util.Arrays;
-
 public class DataCommunicationActivity extends AppCompatActivity implements
     BluetoothConnectionListener,
     FabMenuController.OnFabMenuListener,
@@ -43,7 +42,7 @@ public class DataCommunicationActivity extends AppCompatActivity implements
 
     // UI Components
     private TextView gridTableHeaderText;
-    private GridView gridView;
+    private ArenaView arenaView;
     private GridTableAdapter gridAdapter;
 
     // Controllers and Managers
@@ -52,6 +51,7 @@ public class DataCommunicationActivity extends AppCompatActivity implements
     private RobotController robotController;
     private ObstacleController obstacleController;
     private MessageParser messageParser;
+    private MessagePipeline messagePipeline;
 
     // Current device name
     private String connectedDeviceName = "Unknown Device";
@@ -101,7 +101,7 @@ public class DataCommunicationActivity extends AppCompatActivity implements
 
     private void initializeViews() {
         gridTableHeaderText = findViewById(R.id.gridTableHeaderText);
-        gridView = findViewById(R.id.gridView);
+        arenaView = findViewById(R.id.arenaView);
 
         Button disconnectButton = findViewById(R.id.disconnectButton);
         disconnectButton.setOnClickListener(v -> disconnect());
@@ -111,8 +111,10 @@ public class DataCommunicationActivity extends AppCompatActivity implements
         // Setup Data Communication Manager
         dataCommunicationManager.setUIComponents(
             findViewById(R.id.connectionStatusText),
-            findViewById(R.id.receivedDataText),
-            findViewById(R.id.sentDataText),
+            findViewById(R.id.receivedDataList),
+            findViewById(R.id.receivedDataEmptyText),
+            findViewById(R.id.sentDataList),
+            findViewById(R.id.sentDataEmptyText),
             findViewById(R.id.messageCountText),
             findViewById(R.id.messageInput),
             findViewById(R.id.sendButton),
@@ -181,18 +183,21 @@ public class DataCommunicationActivity extends AppCompatActivity implements
 
     private void setupGridTable() {
         // Initialize the 21x21 grid adapter
-        gridAdapter = new GridTableAdapter(this);
-        gridView.setAdapter(gridAdapter);
+        gridAdapter = new GridTableAdapter();
+        arenaView.setAdapter(gridAdapter);
 
         // Initialize controllers that depend on gridAdapter
         robotController.initialize(gridAdapter, bluetoothHelper);
         messageParser = new MessageParser(gridAdapter, this);
 
-        // Set up grid item click listener
-        gridView.setOnItemClickListener((parent, view, position, id) -> {
-            int row = position / gridAdapter.getGridSize();
-            int col = position % gridAdapter.getGridSize();
+        // Parse inbound messages off the UI thread; only typed grid mutations reach the main thread
+        messagePipeline = new MessagePipeline(messageParser, gridAdapter.getFrameScheduler());
+        if (bluetoothHelper != null) {
+            bluetoothHelper.setBackgroundMessageListener(messagePipeline::submit);
+        }
 
+        // Set up grid cell click listener
+        arenaView.setOnCellClickListener((row, col) -> {
             // Only allow editing data cells (col 1-20, row 0-19)
             if (col > 0 && row >= 0 && row < gridAdapter.getGridSize() - 1) {
                 // Handle robot placement first
@@ -206,7 +211,7 @@ public class DataCommunicationActivity extends AppCompatActivity implements
         });
 
         // Set up touch listener for dragging
-        gridView.setOnTouchListener(this::handleGridTouch);
+        arenaView.setOnTouchListener(this::handleGridTouch);
 
         Log.d(TAG, "21x21 Grid table initialized successfully");
     }
@@ -216,12 +221,12 @@ public class DataCommunicationActivity extends AppCompatActivity implements
         if (robotController.isPlacingRobotMode()) {
             int x = (int) event.getX();
             int y = (int) event.getY();
-            int position = gridView.pointToPosition(x, y);
+            int position = arenaView.pointToPosition(x, y);
             switch (event.getActionMasked()) {
                 case MotionEvent.ACTION_DOWN:
                 case MotionEvent.ACTION_MOVE:
                     preventParentIntercept(v, true);
-                    if (position != GridView.INVALID_POSITION) {
+                    if (position != ArenaView.INVALID_POSITION) {
                         int row = position / gridAdapter.getGridSize();
                         int col = position % gridAdapter.getGridSize();
                         if (col > 0 && row >= 0 && row < gridAdapter.getGridSize() - 1) {
@@ -238,10 +243,10 @@ public class DataCommunicationActivity extends AppCompatActivity implements
             return true;
         }
 
-        // Compute touched position within GridView
+        // Compute touched position within the arena
         int x = (int) event.getX();
         int y = (int) event.getY();
-        int position = gridView.pointToPosition(x, y);
+        int position = arenaView.pointToPosition(x, y);
 
         // Handle dragging logic
         return handleDragLogic(v, event, position);
@@ -269,12 +274,12 @@ public class DataCommunicationActivity extends AppCompatActivity implements
                 float x = event.getX();
                 float y = event.getY();
                 if (isPointerOutsideGrid(x, y)) {
-                    // Only remove when actually outside the GridView bounds
+                    // Only remove when actually outside the arena bounds
                     obstacleController.removeTemporaryObstacleFromGrid();
                     return true;
                 }
-                // Inside GridView bounds: ignore transient invalid positions
-                if (position == GridView.INVALID_POSITION) {
+                // Inside arena bounds: ignore transient invalid positions
+                if (position == ArenaView.INVALID_POSITION) {
                     return true;
                 }
                 int row = position / gridAdapter.getGridSize();
@@ -301,12 +306,12 @@ public class DataCommunicationActivity extends AppCompatActivity implements
         return false;
     }
 
-    // Determine if pointer is outside the GridView's visual bounds
+    // Determine if pointer is outside the arena's visual bounds
     private boolean isPointerOutsideGrid(float x, float y) {
-        int left = gridView.getPaddingLeft();
-        int top = gridView.getPaddingTop();
-        int right = gridView.getWidth() - gridView.getPaddingRight();
-        int bottom = gridView.getHeight() - gridView.getPaddingBottom();
+        int left = arenaView.getPaddingLeft();
+        int top = arenaView.getPaddingTop();
+        int right = arenaView.getWidth() - arenaView.getPaddingRight();
+        int bottom = arenaView.getHeight() - arenaView.getPaddingBottom();
         return (x < left || x >= right || y < top || y >= bottom);
     }
 
@@ -363,6 +368,8 @@ public class DataCommunicationActivity extends AppCompatActivity implements
     // BluetoothConnectionListener implementation
     @Override
     public void onDeviceConnected(BluetoothDevice device) {
+        // The RPi may have restarted; don't send obstacle deltas against what it had before
+        obstacleController.resetObstacleUploadBaseline();
         // Cancel any pending delayed finish if we were waiting for reconnection
         if (isWaitingForReconnect) {
             isWaitingForReconnect = false;
@@ -380,6 +387,8 @@ public class DataCommunicationActivity extends AppCompatActivity implements
         if (manualDisconnectInProgress) return;
 
         runOnUiThread(() -> {
+            // Queued uploads were discarded with the connection
+            obstacleController.resetObstacleUploadBaseline();
             // Start a 60-second grace period to allow auto-reconnect
             if (!isWaitingForReconnect) {
                 isWaitingForReconnect = true;
@@ -401,31 +410,10 @@ public class DataCommunicationActivity extends AppCompatActivity implements
 
     @Override
     public void onDataReceived(String data) {
-        runOnUiThread(() -> {
-            // Notify data communication manager
-            dataCommunicationManager.onDataReceived();
-
-            // Parse and handle different types of messages
-            if (messageParser != null) {
-                String[] parts = Arrays.stream(data.split("\\n"))
-                        .map(String::trim)
-                        .filter(str -> !str.isEmpty())
-                        .toArray(String[]::new);
-                for (String part : parts) {
-                    messageParser.parseAndHandleRobotCommands(part);
-                    messageParser.parseAndHandleTargetMessages(part);
-                    messageParser.parseAndHandleRobotMessages(part);
-
-                    // Only display selective/important messages in the UI
-                    if (messageParser.shouldDisplayMessage(part)) {
-                        dataCommunicationManager.addImportantMessage(part);
-                    } else {
-                        // Log filtered out messages for debugging
-                        Log.d(TAG, "Filtered out message: " + part);
-                    }
-                }
-            }
-        });
+        // Normally bypassed by the background listener; route through the pipeline regardless
+        if (messagePipeline != null) {
+            messagePipeline.submit(data);
+        }
     }
 
     @Override
@@ -510,13 +498,18 @@ public class DataCommunicationActivity extends AppCompatActivity implements
     }
 
     @Override
-    public void showToast(String message) {
-        Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
+    public void onMessagesReceived(int count) {
+        dataCommunicationManager.onDataReceived(count);
     }
 
     @Override
-    public String getCurrentTimestamp() {
-        return dataCommunicationManager.getCurrentTimestamp();
+    public void onImportantMessage(String message) {
+        dataCommunicationManager.addImportantMessage(message);
+    }
+
+    @Override
+    public void showToast(String message) {
+        Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
     }
 
     @Override
@@ -525,8 +518,8 @@ public class DataCommunicationActivity extends AppCompatActivity implements
     }
 
     @Override
-    public void appendToSentData(String message) {
-        dataCommunicationManager.appendToSentData(message);
+    public void logSentMessage(String message) {
+        dataCommunicationManager.logSentMessage(message);
     }
 
     @Override
@@ -581,6 +574,16 @@ public class DataCommunicationActivity extends AppCompatActivity implements
             disconnectHandler.removeCallbacks(delayedFinishRunnable);
             delayedFinishRunnable = null;
         }
+        // Stop the reader thread feeding the pipeline before shutting the pipeline down
+        if (bluetoothHelper != null) {
+            bluetoothHelper.setBackgroundMessageListener(null);
+        }
+        if (gridAdapter != null) {
+            gridAdapter.getFrameScheduler().cancel();
+        }
+        if (messagePipeline != null) {
+            messagePipeline.shutdown();
+        }
         if (bluetoothHelper != null) {
             bluetoothHelper.cleanup();
             // Clear the shared instance when activity is destroyed
@@ -1,29 +1,31 @@
 package com.linh.mdp.adapters;
 
-import android.content.Context;
-import android.graphics.Color;
-import android.os.Handler;
-import android.os.Looper;
-import android.view.LayoutInflater;
-import android.view.View;
-import android.view.ViewGroup;
-import android.widget.BaseAdapter;
-
-import com.linh.mdp.R;
+import com.linh.mdp.adapters.grid.DirtyCellTracker;
 import com.linh.mdp.adapters.grid.GridCell;
 import com.linh.mdp.adapters.grid.GridConstants;
 import com.linh.mdp.adapters.grid.GridDataManager;
+import com.linh.mdp.adapters.grid.GridFrameScheduler;
+import com.linh.mdp.adapters.grid.GridStore;
 import com.linh.mdp.adapters.grid.HighlightManager;
 import com.linh.mdp.adapters.grid.ObstacleManager;
+import com.linh.mdp.adapters.grid.OccupancyBoard;
 import com.linh.mdp.adapters.grid.RobotManager;
-import com.linh.mdp.ui.BorderableCell;
+import com.linh.mdp.adapters.grid.RobotPosePredictor;
 
 /**
  * Refactored GridTableAdapter - now uses composition pattern with specialized managers
- * This adapter is now focused only on the Android adapter responsibilities
+ * Owns the grid model and tells the view ({@link com.linh.mdp.ui.ArenaView}) what to redraw
  */
-public class GridTableAdapter extends BaseAdapter {
-    private final LayoutInflater inflater;
+public class GridTableAdapter {
+
+    /**
+     * Receives redraw requests; which cells changed is recorded in {@link #getDirtyCells()}
+     */
+    public interface OnGridChangedListener {
+        void onGridChanged();
+    }
+
+    private OnGridChangedListener gridChangedListener;
 
     // Managers for different responsibilities
     private final GridDataManager dataManager;
@@ -31,149 +33,84 @@ public class GridTableAdapter extends BaseAdapter {
     private final ObstacleManager obstacleManager;
     private final HighlightManager highlightManager;
 
-    // Batching for smoother dragging
-    private boolean notificationsEnabled = true;
-
-    // Low-latency continuous drag support
-    private boolean inContinuousDrag = false;
-    private final Handler frameHandler = new Handler(Looper.getMainLooper());
-    private final Runnable frameRunnable = new Runnable() {
-        @Override
-        public void run() {
-            if (inContinuousDrag) {
-                // Temporarily allow notification for this frame
-                boolean prev = notificationsEnabled;
-                notificationsEnabled = true;
-                notifyDataSetChanged();
-                notificationsEnabled = prev; // usually false during drag
-                // Schedule next frame ~60fps
-                frameHandler.postDelayed(this, 16); // ~16ms
-            }
+    // Coalesces every mutation within a vsync interval into one render
+    private final GridFrameScheduler frameScheduler;
+
+    // Smooth robot motion between authoritative poses; keeps frames coming while it moves
+    private final RobotPosePredictor posePredictor = new RobotPosePredictor();
+    private boolean robotAnimating = false;
+    private final GridFrameScheduler.FrameTask robotAnimationTask = frameTimeNanos -> {
+        boolean animating = posePredictor.isAnimating(frameTimeNanos);
+        // One more render after motion stops, to draw the resting pose
+        if (animating || robotAnimating) {
+            frameScheduler.requestRender();
+            if (animating) frameScheduler.requestFrame();
         }
+        robotAnimating = animating;
     };
 
-    public GridTableAdapter(Context context) {
-        this.inflater = LayoutInflater.from(context);
+    /**
+     * Must be constructed on the main thread; rendering is driven by its Choreographer
+     */
+    public GridTableAdapter() {
         this.dataManager = new GridDataManager();
-        this.robotManager = new RobotManager();
-        this.obstacleManager = new ObstacleManager();
-        this.highlightManager = new HighlightManager();
-    }
-
-    // Helper: notify only when enabled
-    private void notifyChangedIfEnabled() {
-        if (notificationsEnabled) notifyDataSetChanged();
-    }
-
-    // Public batching API
-    public void beginBatchUpdates() { notificationsEnabled = false; }
-    public void endBatchUpdates() {
-        // Restore notifications only if not in continuous drag; otherwise keep suppressed
-        notificationsEnabled = !inContinuousDrag;
-        if (!inContinuousDrag) {
-            notifyDataSetChanged();
-        }
-    }
-
-    // Continuous drag APIs
-    public void beginContinuousDrag() {
-        if (inContinuousDrag) return;
-        inContinuousDrag = true;
-        notificationsEnabled = false; // suppress per-cell notifies
-        frameHandler.post(frameRunnable); // start frame loop immediately
-    }
-
-    public void endContinuousDrag() {
-        if (!inContinuousDrag) return;
-        inContinuousDrag = false;
-        frameHandler.removeCallbacks(frameRunnable);
-        notificationsEnabled = true;
-        notifyDataSetChanged(); // final refresh with all accumulated changes
+        this.robotManager = new RobotManager(dataManager.getDirtyCells());
+        this.obstacleManager = new ObstacleManager(dataManager.getDirtyCells());
+        this.highlightManager = new HighlightManager(dataManager.getDirtyCells());
+        this.frameScheduler = new GridFrameScheduler(dataManager.getDirtyCells());
+        this.frameScheduler.setRenderer(this::notifyGridChanged);
+        this.frameScheduler.addFrameTask(robotAnimationTask);
     }
 
-    public boolean isInContinuousDrag() { return inContinuousDrag; }
-
-    @Override
-    public int getCount() {
-        return GridConstants.TOTAL_CELLS;
+    public void setOnGridChangedListener(OnGridChangedListener listener) {
+        this.gridChangedListener = listener;
     }
 
-    @Override
-    public Object getItem(int position) {
-        return dataManager.getCell(position);
+    /**
+     * Request a redraw of the cells marked dirty since the last one
+     */
+    public void notifyGridChanged() {
+        if (gridChangedListener != null) gridChangedListener.onGridChanged();
     }
 
-    @Override
-    public long getItemId(int position) {
-        return position;
+    // Helper: mutations never render directly, they ask for the next frame
+    private void requestFrame() {
+        frameScheduler.requestFrame();
     }
 
-    @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        BorderableCell cellView = getCellView(convertView, parent);
-        GridCell cell = dataManager.getCell(position);
-
-        if (cell != null) {
-            configureCellView(cellView, cell);
-        }
-
-        return cellView;
+    /**
+     * The per-frame scheduler; frame tasks registered here run before the grid renders
+     */
+    public GridFrameScheduler getFrameScheduler() {
+        return frameScheduler;
     }
 
     /**
-     * Get or create cell view
+     * The cell model as views, row-major, {@link GridConstants#GRID_SIZE} cells per row
      */
-    private BorderableCell getCellView(View convertView, ViewGroup parent) {
-        if (convertView == null) {
-            return (BorderableCell) inflater.inflate(R.layout.grid_cell_item, parent, false);
-        }
-        return (BorderableCell) convertView;
+    public GridCell[] getCells() {
+        return dataManager.getAllCells();
     }
 
     /**
-     * Configure cell view based on cell data
+     * The packed cell model backing {@link #getCells()}; preferred for full-grid reads
      */
-    private void configureCellView(BorderableCell cellView, GridCell cell) {
-        // Set basic cell properties
-        cellView.setText(cell.getData());
-        cellView.setBackgroundColor(cell.getColor());
-
-        // Set text color and styling
-        configureTextAppearance(cellView, cell);
-
-        // Set borders
-        configureBorders(cellView, cell);
+    public GridStore getStore() {
+        return dataManager.getStore();
     }
 
     /**
-     * Configure text appearance based on cell type
+     * Obstacle and robot bitboard, kept in sync with every mutation; use it for footprint checks
      */
-    private void configureTextAppearance(BorderableCell cellView, GridCell cell) {
-        if (cell.isObstacle() && !cell.isRobot()) {
-            cellView.setTextColor(Color.WHITE);
-        } else {
-            cellView.setTextColor(Color.BLACK);
-        }
-
-        if (cell.isTarget()) {
-            cellView.setTypeface(cellView.getTypeface(), android.graphics.Typeface.BOLD);
-            cellView.setTextSize(android.util.TypedValue.COMPLEX_UNIT_SP, GridConstants.TARGET_TEXT_SIZE);
-        } else {
-            cellView.setTypeface(cellView.getTypeface(), android.graphics.Typeface.NORMAL);
-            cellView.setTextSize(android.util.TypedValue.COMPLEX_UNIT_SP, GridConstants.NORMAL_TEXT_SIZE);
-        }
+    public OccupancyBoard getOccupancy() {
+        return dataManager.getStore().getOccupancy();
     }
 
     /**
-     * Configure cell borders
+     * Positions changed since the view last repainted; the view clears it after repainting
      */
-    private void configureBorders(BorderableCell cellView, GridCell cell) {
-        if (cell.hasBorder()) {
-            cellView.setBorderColor(cell.getBorderColor());
-            cellView.setBorderDirection(cell.getBorderDirection());
-        } else {
-            cellView.clearBorders();
-        }
+    public DirtyCellTracker getDirtyCells() {
+        return dataManager.getDirtyCells();
     }
 
     // ============================================================================
@@ -182,7 +119,8 @@ public class GridTableAdapter extends BaseAdapter {
 
     public void updateCell(int row, int col, String data, int color) {
         dataManager.updateCell(row, col, data, color);
-        notifyChangedIfEnabled();
+        obstacleManager.onCellChanged(row, col, dataManager.getStore());
+        requestFrame();
     }
 
     public int getGridSize() {
@@ -202,43 +140,81 @@ public class GridTableAdapter extends BaseAdapter {
         return robotManager.getRobotPosition();
     }
 
+    /**
+     * Predicted robot pose for drawing between authoritative updates
+     */
+    public RobotPosePredictor getPosePredictor() {
+        return posePredictor;
+    }
+
     public void turnRobotLeft() {
-        robotManager.turnLeft(dataManager.getAllCells());
-        notifyChangedIfEnabled();
+        robotManager.turnLeft(dataManager.getStore());
+        posePredictor.onOrientationChanged(System.nanoTime(), robotManager.getOrientation());
+        requestFrame();
     }
 
     public void turnRobotRight() {
-        robotManager.turnRight(dataManager.getAllCells());
-        notifyChangedIfEnabled();
+        robotManager.turnRight(dataManager.getStore());
+        posePredictor.onOrientationChanged(System.nanoTime(), robotManager.getOrientation());
+        requestFrame();
     }
 
     public boolean moveRobot(int dRow, int dCol) {
-        boolean result = robotManager.moveRobot(dRow, dCol, dataManager.getAllCells());
-        if (result) notifyChangedIfEnabled();
+        boolean result = robotManager.moveRobot(dRow, dCol, dataManager.getStore());
+        if (result) {
+            recordAuthoritativePose();
+            requestFrame();
+        }
         return result;
     }
 
+    /**
+     * Move up to {@code steps} cells along (dRow, dCol), stopping before the first obstacle
+     * @return number of cells actually moved
+     */
+    public int moveRobotSteps(int dRow, int dCol, int steps) {
+        int moved = robotManager.moveRobotSteps(dRow, dCol, steps, dataManager.getStore());
+        if (moved > 0) {
+            recordAuthoritativePose();
+            requestFrame();
+        }
+        return moved;
+    }
+
     public boolean updateRobotPosition(int x, int y, String direction) {
-        boolean result = robotManager.updatePosition(x, y, direction, dataManager.getAllCells());
-        if (result) notifyChangedIfEnabled();
+        boolean result = robotManager.updatePosition(x, y, direction, dataManager.getStore());
+        if (result) {
+            recordAuthoritativePose();
+            requestFrame();
+        }
         return result;
     }
 
+    private void recordAuthoritativePose() {
+        posePredictor.onAuthoritativePose(System.nanoTime(), robotManager.getCenterRow(),
+                robotManager.getCenterCol(), robotManager.getOrientation());
+    }
+
     // Robot preview methods
     public boolean showTemporaryRobotAtCenter(int centerRow, int centerCol) {
-        boolean result = robotManager.showTemporaryRobotAtCenter(centerRow, centerCol, dataManager.getAllCells());
-        if (result) notifyChangedIfEnabled();
+        boolean result = robotManager.showTemporaryRobotAtCenter(centerRow, centerCol, dataManager.getStore());
+        if (result) requestFrame();
         return result;
     }
 
     public void clearTemporaryRobotPreview() {
-        robotManager.clearTemporaryRobotPreview(dataManager.getAllCells());
-        notifyChangedIfEnabled();
+        robotManager.clearTemporaryRobotPreview(dataManager.getStore());
+        requestFrame();
     }
 
     public boolean confirmTemporaryRobotPlacement() {
-        boolean result = robotManager.confirmTemporaryRobotPlacement(dataManager.getAllCells());
-        if (result) notifyChangedIfEnabled();
+        boolean result = robotManager.confirmTemporaryRobotPlacement(dataManager.getStore());
+        if (result) {
+            // Placed by hand: no motion to carry over
+            posePredictor.snapTo(System.nanoTime(), robotManager.getCenterRow(),
+                    robotManager.getCenterCol(), robotManager.getOrientation());
+            requestFrame();
+        }
         return result;
     }
 
@@ -249,16 +225,16 @@ public class GridTableAdapter extends BaseAdapter {
     // Obstacle operations
     public void setObstacle(int row, int col, boolean isObstacleCell) {
         if (isObstacleCell) {
-            obstacleManager.setObstacle(row, col, dataManager.getAllCells());
+            obstacleManager.setObstacle(row, col, dataManager.getStore());
         } else {
-            obstacleManager.removeObstacle(row, col, dataManager.getAllCells());
+            obstacleManager.removeObstacle(row, col, dataManager.getStore());
         }
-        notifyChangedIfEnabled();
+        requestFrame();
     }
 
     public void clearObstacles() {
-        obstacleManager.clearAllObstacles(dataManager.getAllCells());
-        notifyChangedIfEnabled();
+        obstacleManager.clearAllObstacles(dataManager.getStore());
+        requestFrame();
     }
 
     public void clearAllObstacles() {
@@ -266,45 +242,68 @@ public class GridTableAdapter extends BaseAdapter {
     }
 
     public void clearTemporaryObstacle(int row, int col) {
-        obstacleManager.clearTemporaryObstacle(row, col, dataManager.getAllCells());
-        notifyChangedIfEnabled();
+        obstacleManager.clearTemporaryObstacle(row, col, dataManager.getStore());
+        requestFrame();
     }
 
     public void highlightSelectedObstacle(int row, int col) {
-        obstacleManager.highlightSelectedObstacle(row, col, dataManager.getAllCells());
-        notifyChangedIfEnabled();
+        obstacleManager.highlightSelectedObstacle(row, col, dataManager.getStore());
+        requestFrame();
     }
 
     public void clearSelectedObstacleHighlight(int row, int col) {
-        obstacleManager.clearSelectedObstacleHighlight(row, col, dataManager.getAllCells());
-        notifyChangedIfEnabled();
+        obstacleManager.clearSelectedObstacleHighlight(row, col, dataManager.getStore());
+        requestFrame();
     }
 
     // Target operations
     public boolean setObstacleAsTarget(int obstacleNumber, String targetId) {
-        boolean result = obstacleManager.setObstacleAsTarget(obstacleNumber, targetId, dataManager.getAllCells());
-        if (result) notifyChangedIfEnabled();
+        boolean result = obstacleManager.setObstacleAsTarget(obstacleNumber, targetId, dataManager.getStore());
+        if (result) requestFrame();
         return result;
     }
 
+    /**
+     * Receive add/remove/direction changes of numbered obstacles
+     */
+    public void setOnObstacleChangeListener(ObstacleManager.OnObstacleChangeListener listener) {
+        obstacleManager.setOnObstacleChangeListener(listener);
+    }
+
+    /**
+     * Positions (row * grid size + col) of all numbered obstacles, ordered by obstacle number
+     */
+    public int[] getObstaclePositions() {
+        return obstacleManager.getObstaclePositions(dataManager.getStore());
+    }
+
+    /**
+     * Positions of all numbered obstacles that carry a target id, ordered by obstacle number
+     */
+    public int[] getTargetPositions() {
+        return obstacleManager.getTargetPositions(dataManager.getStore());
+    }
+
     public void highlightCellBorder(int row, int col, int borderColor, String direction) {
-        highlightManager.highlightCellBorder(row, col, borderColor, direction, dataManager.getAllCells());
-        notifyChangedIfEnabled();
+        highlightManager.highlightCellBorder(row, col, borderColor, direction, dataManager.getStore());
+        obstacleManager.onCellChanged(row, col, dataManager.getStore());
+        requestFrame();
     }
 
     public void clearCellBorder(int row, int col) {
-        highlightManager.clearCellBorder(row, col, dataManager.getAllCells());
-        notifyChangedIfEnabled();
+        highlightManager.clearCellBorder(row, col, dataManager.getStore());
+        obstacleManager.onCellChanged(row, col, dataManager.getStore());
+        requestFrame();
     }
 
     public void applyTempRowColHighlight(int tempRow, int tempCol) {
-        highlightManager.applyTempRowColHighlight(tempRow, tempCol, dataManager.getAllCells());
-        notifyChangedIfEnabled();
+        highlightManager.applyTempRowColHighlight(tempRow, tempCol, dataManager.getStore());
+        requestFrame();
     }
 
     public void clearTempRowColHighlight() {
-        highlightManager.clearTempRowColHighlight(dataManager.getAllCells());
-        notifyChangedIfEnabled();
+        highlightManager.clearTempRowColHighlight(dataManager.getStore());
+        requestFrame();
     }
 
     // Query methods - delegate to data manager
@@ -0,0 +1,81 @@
+package com.linh.mdp.adapters;
+
+import android.util.TypedValue;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.linh.mdp.R;
+import com.linh.mdp.managers.MessageLog;
+import com.linh.mdp.utils.TimestampFormatter;
+
+/**
+ * Append-only RecyclerView adapter over a {@link MessageLog}.
+ * Only visible rows are bound, so each new line costs the same regardless of history size;
+ * timestamps are formatted when a row is bound, not when the line is logged.
+ */
+public class MessageLogAdapter extends RecyclerView.Adapter<MessageLogAdapter.ViewHolder> {
+    private final MessageLog log;
+    private final TimestampFormatter timestampFormatter;
+    private final float textSizeSp;
+    private final StringBuilder lineBuilder = new StringBuilder(128);
+
+    public MessageLogAdapter(MessageLog log, TimestampFormatter timestampFormatter, float textSizeSp) {
+        this.log = log;
+        this.timestampFormatter = timestampFormatter;
+        this.textSizeSp = textSizeSp;
+    }
+
+    /**
+     * Append a line, evicting the oldest one if the log is full
+     * @param timestampNanos {@link TimestampFormatter#now()} at which the line was logged
+     */
+    public void append(long timestampNanos, String line) {
+        if (log.add(timestampNanos, line)) {
+            notifyItemRemoved(0);
+        }
+        notifyItemInserted(log.size() - 1);
+    }
+
+    public void clear() {
+        int removed = log.size();
+        log.clear();
+        if (removed > 0) notifyItemRangeRemoved(0, removed);
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        TextView view = (TextView) LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.message_log_item, parent, false);
+        view.setTextSize(TypedValue.COMPLEX_UNIT_SP, textSizeSp);
+        return new ViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        lineBuilder.setLength(0);
+        lineBuilder.append('[');
+        timestampFormatter.formatTo(log.getTimestamp(position), lineBuilder);
+        lineBuilder.append("] ").append(log.getText(position));
+        holder.text.setText(lineBuilder.toString());
+    }
+
+    @Override
+    public int getItemCount() {
+        return log.size();
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        final TextView text;
+
+        ViewHolder(@NonNull View itemView) {
+            super(itemView);
+            this.text = (TextView) itemView;
+        }
+    }
+}
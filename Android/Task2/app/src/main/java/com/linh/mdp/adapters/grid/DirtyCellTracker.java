@@ -0,0 +1,73 @@
+package com.linh.mdp.adapters.grid;
+
+import java.util.BitSet;
+
+/**
+ * Tracks which grid positions changed since the view last repainted them.
+ * Managers mark cells as they mutate them; the view drains the set once per frame.
+ */
+public class DirtyCellTracker {
+    private final BitSet dirty = new BitSet(GridConstants.TOTAL_CELLS);
+
+    // Counters, for confirming how much repainting is saved
+    private long markCount = 0;
+    private long drainCount = 0;
+    private long drainedCellCount = 0;
+    private int lastDrainedCellCount = 0;
+    private int maxDrainedCellCount = 0;
+
+    public void mark(int position) {
+        dirty.set(position);
+        markCount++;
+    }
+
+    public void mark(int row, int col) {
+        mark(row * GridConstants.GRID_SIZE + col);
+    }
+
+    public void markAll() {
+        dirty.set(0, GridConstants.TOTAL_CELLS);
+        markCount++;
+    }
+
+    public boolean isEmpty() {
+        return dirty.isEmpty();
+    }
+
+    public boolean isDirty(int position) {
+        return dirty.get(position);
+    }
+
+    /**
+     * @return the next dirty position at or after {@code from}, or -1
+     */
+    public int nextDirty(int from) {
+        return dirty.nextSetBit(from);
+    }
+
+    /**
+     * Forget all dirty positions after they have been repainted and record the batch size
+     */
+    public void clear() {
+        int count = dirty.cardinality();
+        dirty.clear();
+        drainCount++;
+        drainedCellCount += count;
+        lastDrainedCellCount = count;
+        if (count > maxDrainedCellCount) maxDrainedCellCount = count;
+    }
+
+    public long getMarkCount() { return markCount; }
+    public long getDrainCount() { return drainCount; }
+    public long getDrainedCellCount() { return drainedCellCount; }
+    public int getLastDrainedCellCount() { return lastDrainedCellCount; }
+    public int getMaxDrainedCellCount() { return maxDrainedCellCount; }
+
+    public void resetStats() {
+        markCount = 0;
+        drainCount = 0;
+        drainedCellCount = 0;
+        lastDrainedCellCount = 0;
+        maxDrainedCellCount = 0;
+    }
+}
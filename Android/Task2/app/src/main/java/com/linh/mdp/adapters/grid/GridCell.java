@@ -1,73 +1,57 @@
 package com.linh.mdp.adapters.grid;
 
 /**
- * Represents a cell in the grid with its properties
+ * View of one cell in the {@link GridStore}; holds no state of its own
  */
 public class GridCell {
-    private String data;
-    private int color;
-    private boolean isObstacle;
-    private boolean isTemporaryObstacle;
-    private boolean isRobot;
-    private boolean isTarget;
-    private int obstacleNumber;
-    private String borderDirection;
-    private int borderColor;
-    private boolean isTempHighlight;
-    private boolean isTempRobot;
+    private final GridStore store;
+    private final int position;
 
-    public GridCell() {
-        this.data = "";
-        this.color = GridConstants.DEFAULT_CELL_COLOR;
-        this.isObstacle = false;
-        this.isTemporaryObstacle = false;
-        this.isRobot = false;
-        this.isTarget = false;
-        this.obstacleNumber = 0;
-        this.borderDirection = null;
-        this.borderColor = 0;
-        this.isTempHighlight = false;
-        this.isTempRobot = false;
+    public GridCell(GridStore store, int position) {
+        this.store = store;
+        this.position = position;
     }
 
+    public int getPosition() { return position; }
+
     // Getters and setters
-    public String getData() { return data; }
-    public void setData(String data) { this.data = data; }
+    public String getData() { return store.getLabel(position); }
+    public void setData(String data) { store.setLabel(position, data); }
 
-    public int getColor() { return color; }
-    public void setColor(int color) { this.color = color; }
+    public int getColor() { return store.getColor(position); }
+    public void setColor(int color) { store.setColor(position, color); }
 
-    public boolean isObstacle() { return isObstacle; }
-    public void setObstacle(boolean obstacle) { this.isObstacle = obstacle; }
+    public boolean isObstacle() { return store.has(position, GridStore.OBSTACLE); }
+    public void setObstacle(boolean obstacle) { store.setFlag(position, GridStore.OBSTACLE, obstacle); }
 
-    public boolean isTemporaryObstacle() { return isTemporaryObstacle; }
-    public void setTemporaryObstacle(boolean temporaryObstacle) { this.isTemporaryObstacle = temporaryObstacle; }
+    public boolean isTemporaryObstacle() { return store.has(position, GridStore.TEMP_OBSTACLE); }
+    public void setTemporaryObstacle(boolean temporaryObstacle) { store.setFlag(position, GridStore.TEMP_OBSTACLE, temporaryObstacle); }
 
-    public boolean isRobot() { return isRobot; }
-    public void setRobot(boolean robot) { this.isRobot = robot; }
+    public boolean isRobot() { return store.has(position, GridStore.ROBOT); }
+    public void setRobot(boolean robot) { store.setFlag(position, GridStore.ROBOT, robot); }
 
-    public boolean isTarget() { return isTarget; }
-    public void setTarget(boolean target) { this.isTarget = target; }
-    public int getObstacleNumber() { return obstacleNumber; }
-    public void setObstacleNumber(int obstacleNumber) { this.obstacleNumber = obstacleNumber; }
+    public boolean isTarget() { return store.has(position, GridStore.TARGET); }
+    public void setTarget(boolean target) { store.setFlag(position, GridStore.TARGET, target); }
+    public int getObstacleNumber() { return store.getObstacleNumber(position); }
+    public void setObstacleNumber(int obstacleNumber) { store.setObstacleNumber(position, obstacleNumber); }
 
-    public String getBorderDirection() { return borderDirection; }
-    public void setBorderDirection(String borderDirection) { this.borderDirection = borderDirection; }
+    public String getBorderDirection() { return store.getBorderDirection(position); }
+    public void setBorderDirection(String borderDirection) { store.setBorderDirection(position, borderDirection); }
 
-    public int getBorderColor() { return borderColor; }
-    public void setBorderColor(int borderColor) { this.borderColor = borderColor; }
+    public int getBorderColor() { return store.getBorderColor(position); }
+    public void setBorderColor(int borderColor) { store.setBorderColor(position, borderColor); }
 
-    public boolean isTempHighlight() { return isTempHighlight; }
-    public void setTempHighlight(boolean tempHighlight) { this.isTempHighlight = tempHighlight; }
+    public boolean isTempHighlight() { return store.has(position, GridStore.TEMP_HIGHLIGHT); }
+    public void setTempHighlight(boolean tempHighlight) { store.setFlag(position, GridStore.TEMP_HIGHLIGHT, tempHighlight); }
 
-    public boolean isTempRobot() { return isTempRobot; }
-    public void setTempRobot(boolean tempRobot) { this.isTempRobot = tempRobot; }
+    public boolean isTempRobot() { return store.has(position, GridStore.TEMP_ROBOT); }
+    public void setTempRobot(boolean tempRobot) { store.setFlag(position, GridStore.TEMP_ROBOT, tempRobot); }
 
     /**
      * Check if cell has any border
      */
     public boolean hasBorder() {
-        return borderDirection != null && borderColor != 0;
+        return store.hasBorder(position);
     }
 
 }
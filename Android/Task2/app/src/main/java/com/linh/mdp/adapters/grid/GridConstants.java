@@ -1,7 +1,5 @@
 package com.linh.mdp.adapters.grid;
 
-import android.graphics.Color;
-
 /**
  * Constants for the grid system
  */
@@ -10,15 +8,15 @@ public class GridConstants {
     public static final int TOTAL_CELLS = GRID_SIZE * GRID_SIZE;
     public static final int DATA_SIZE = GRID_SIZE - 1; // 0-19 data rows/cols
 
-    // Colors
-    public static final int HEADER_COLOR = Color.parseColor("#2196F3");
-    public static final int DEFAULT_CELL_COLOR = Color.parseColor("#E0E0E0");
-    public static final int OBSTACLE_COLOR = Color.parseColor("#FF5722");
-    public static final int ROBOT_COLOR = Color.parseColor("#03A9F4");
-    public static final int ROBOT_FRONT_COLOR = Color.parseColor("#FFEB3B");
-    public static final int SELECTED_COLOR = Color.parseColor("#FFEB3B");
-    public static final int HIGHLIGHT_COLOR = Color.parseColor("#B2EBF2");
-    public static final int TEMP_ROBOT_COLOR = Color.parseColor("#B3E5FC");
+    // Colors (ARGB, opaque)
+    public static final int HEADER_COLOR = 0xFF2196F3;
+    public static final int DEFAULT_CELL_COLOR = 0xFFE0E0E0;
+    public static final int OBSTACLE_COLOR = 0xFFFF5722;
+    public static final int ROBOT_COLOR = 0xFF03A9F4;
+    public static final int ROBOT_FRONT_COLOR = 0xFFFFEB3B;
+    public static final int SELECTED_COLOR = 0xFFFFEB3B;
+    public static final int HIGHLIGHT_COLOR = 0xFFB2EBF2;
+    public static final int TEMP_ROBOT_COLOR = 0xFFB3E5FC;
 
     // Robot orientations
     public static final int ORIENTATION_NORTH = 0;
@@ -4,40 +4,63 @@ package com.linh.mdp.adapters.grid;
  * Manages the core grid data and operations
  */
 public class GridDataManager {
+    private final GridStore store = new GridStore();
     private final GridCell[] cells;
+    private final DirtyCellTracker dirtyCells = new DirtyCellTracker();
+
+    // Labels that imply obstacle state in updateCell, interned once
+    private final int labelObstacle = store.intern("X");
+    private final int labelTemporary = store.intern("?");
+    private final int labelRobot = store.intern("R");
 
     public GridDataManager() {
         this.cells = new GridCell[GridConstants.TOTAL_CELLS];
+        for (int i = 0; i < GridConstants.TOTAL_CELLS; i++) {
+            cells[i] = new GridCell(store, i);
+        }
         initializeGrid();
     }
 
+    /**
+     * Positions changed since the last repaint; shared with the other managers
+     */
+    public DirtyCellTracker getDirtyCells() {
+        return dirtyCells;
+    }
+
+    /**
+     * The packed cell state; shared with the other managers
+     */
+    public GridStore getStore() {
+        return store;
+    }
+
     /**
      * Initialize the grid with headers and empty data cells
      */
     private void initializeGrid() {
         for (int i = 0; i < GridConstants.TOTAL_CELLS; i++) {
-            cells[i] = new GridCell();
-
             int row = i / GridConstants.GRID_SIZE;
             int col = i % GridConstants.GRID_SIZE;
 
             if (col == 0 && row < GridConstants.DATA_SIZE) {
                 // Row headers: 19-0 (reversed)
-                cells[i].setData(String.valueOf((GridConstants.DATA_SIZE - 1) - row));
-                cells[i].setColor(GridConstants.HEADER_COLOR);
+                store.setLabelId(i, store.numberLabel((GridConstants.DATA_SIZE - 1) - row));
+                store.setColor(i, GridConstants.HEADER_COLOR);
             } else if (row == GridConstants.DATA_SIZE) {
                 // Bottom row: headers and bottom-left corner
                 if (col == 0) {
                     // Bottom-left corner: empty
-                    cells[i].setData("");
+                    store.setLabelId(i, GridStore.LABEL_EMPTY);
                 } else {
                     // Bottom column headers: 0-19
-                    cells[i].setData(String.valueOf(col - 1));
+                    store.setLabelId(i, store.numberLabel(col - 1));
                 }
-                cells[i].setColor(GridConstants.HEADER_COLOR);
+                store.setColor(i, GridConstants.HEADER_COLOR);
             }
             // Data cells are left with defaults
         }
+        dirtyCells.markAll();
     }
 
     /**
@@ -47,12 +70,14 @@ public class GridDataManager {
         if (isValidDataCell(row, col)) return;
 
         int position = row * GridConstants.GRID_SIZE + col;
-        GridCell cell = cells[position];
-
-        cell.setData(data);
-        cell.setColor(color);
-        cell.setObstacle("X".equals(data) || "?".equals(data) || "R".equals(data));
-        cell.setTemporaryObstacle("?".equals(data));
+        int label = store.intern(data);
+
+        store.setLabelId(position, label);
+        store.setColor(position, color);
+        store.setFlag(position, GridStore.OBSTACLE,
+                label == labelObstacle || label == labelTemporary || label == labelRobot);
+        store.setFlag(position, GridStore.TEMP_OBSTACLE, label == labelTemporary);
+        dirtyCells.mark(position);
     }
 
     /**
@@ -76,7 +101,7 @@ public class GridDataManager {
     }
 
     /**
-     * Get all cells
+     * Get all cells, as views over the store
      */
     public GridCell[] getAllCells() {
         return cells;
@@ -94,7 +119,7 @@ public class GridDataManager {
      */
     public boolean isCellObstacle(int row, int col) {
         if (isValidDataCell(row, col)) return false;
-        return getCell(row, col).isObstacle();
+        return store.has(row * GridConstants.GRID_SIZE + col, GridStore.OBSTACLE);
     }
 
     /**
@@ -102,8 +127,8 @@ public class GridDataManager {
      */
     public boolean isCellPermanentObstacle(int row, int col) {
         if (isValidDataCell(row, col)) return false;
-        GridCell cell = getCell(row, col);
-        return cell.isObstacle() && !cell.isTemporaryObstacle();
+        int flags = store.getFlags(row * GridConstants.GRID_SIZE + col);
+        return (flags & (GridStore.OBSTACLE | GridStore.TEMP_OBSTACLE)) == GridStore.OBSTACLE;
     }
 
     /**
@@ -111,7 +136,7 @@ public class GridDataManager {
      */
     public boolean isCellTemporaryObstacle(int row, int col) {
         if (isValidDataCell(row, col)) return false;
-        return getCell(row, col).isTemporaryObstacle();
+        return store.has(row * GridConstants.GRID_SIZE + col, GridStore.TEMP_OBSTACLE);
     }
 
     /**
@@ -119,7 +144,7 @@ public class GridDataManager {
      */
     public boolean isCellRobot(int row, int col) {
         if (isValidDataCell(row, col)) return false;
-        return getCell(row, col).isRobot();
+        return store.has(row * GridConstants.GRID_SIZE + col, GridStore.ROBOT);
     }
 
     /**
@@ -127,7 +152,7 @@ public class GridDataManager {
      */
     public int getObstacleNumberAt(int row, int col) {
         if (isValidDataCell(row, col)) return 0;
-        return getCell(row, col).getObstacleNumber();
+        return store.getObstacleNumber(row * GridConstants.GRID_SIZE + col);
     }
 
 }
@@ -0,0 +1,134 @@
+package com.linh.mdp.adapters.grid;
+
+import android.view.Choreographer;
+
+import com.linh.mdp.utils.FrameTimeHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Vsync-aligned frame scheduling for the grid.
+ *
+ * Mutations only mark cells dirty and request a frame; at most one Choreographer callback is
+ * outstanding. When it fires, frame tasks run first (e.g. applying parsed Bluetooth messages),
+ * then a single render is issued if any cell is dirty. Everything that changes the grid within
+ * one vsync interval - taps, drags, robot moves - therefore costs one repaint.
+ *
+ * Must be constructed on the main thread so callbacks are delivered there.
+ */
+public class GridFrameScheduler implements Choreographer.FrameCallback {
+
+    /**
+     * Work that must run at the start of a frame, before the dirty check
+     */
+    public interface FrameTask {
+        void doFrameWork(long frameTimeNanos);
+    }
+
+    /**
+     * Issues the render, e.g. invalidating the view; called at most once per frame
+     */
+    public interface Renderer {
+        void render();
+    }
+
+    private final Choreographer choreographer;
+    private final DirtyCellTracker dirtyCells;
+    private final AtomicBoolean frameScheduled = new AtomicBoolean(false);
+    private final AtomicLong requestCount = new AtomicLong();
+    private Renderer renderer;
+    private boolean renderRequested = false;
+
+    // Main thread only
+    private final List<FrameTask> frameTasks = new ArrayList<>();
+    private final FrameTimeHistogram frameWorkHistogram = new FrameTimeHistogram();
+    private long frameCount = 0;
+    private long renderCount = 0;
+
+    public GridFrameScheduler(DirtyCellTracker dirtyCells) {
+        this.choreographer = Choreographer.getInstance();
+        this.dirtyCells = dirtyCells;
+    }
+
+    public void setRenderer(Renderer renderer) {
+        this.renderer = renderer;
+    }
+
+    public void addFrameTask(FrameTask task) {
+        if (!frameTasks.contains(task)) frameTasks.add(task);
+    }
+
+    public void removeFrameTask(FrameTask task) {
+        frameTasks.remove(task);
+    }
+
+    /**
+     * Schedule a frame if none is pending. Safe to call from any thread; repeated calls before
+     * the frame runs are coalesced.
+     */
+    public void requestFrame() {
+        requestCount.incrementAndGet();
+        if (frameScheduled.compareAndSet(false, true)) {
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Render in the current frame even if no cell is dirty, e.g. for an animated overlay.
+     * Main thread only; intended for frame tasks.
+     */
+    public void requestRender() {
+        renderRequested = true;
+    }
+
+    /**
+     * Drop any pending frame, e.g. when the screen is torn down
+     */
+    public void cancel() {
+        choreographer.removeFrameCallback(this);
+        frameScheduled.set(false);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        // Clear first so mutations made by frame tasks or listeners can request the next frame
+        frameScheduled.set(false);
+        long start = System.nanoTime();
+        frameCount++;
+
+        for (int i = 0; i < frameTasks.size(); i++) {
+            frameTasks.get(i).doFrameWork(frameTimeNanos);
+        }
+
+        // Nothing changed since the last render: skip it
+        if ((renderRequested || !dirtyCells.isEmpty()) && renderer != null) {
+            renderer.render();
+            renderCount++;
+        }
+        renderRequested = false;
+
+        frameWorkHistogram.record(System.nanoTime() - start);
+    }
+
+    // ============================================================================
+    // STATISTICS
+    // ============================================================================
+
+    /**
+     * Time spent per frame applying frame tasks and issuing the render
+     */
+    public FrameTimeHistogram getFrameWorkHistogram() { return frameWorkHistogram; }
+    public long getRequestCount() { return requestCount.get(); }
+    public long getFrameCount() { return frameCount; }
+    public long getRenderCount() { return renderCount; }
+
+    public void resetStats() {
+        frameWorkHistogram.reset();
+        requestCount.set(0);
+        frameCount = 0;
+        renderCount = 0;
+    }
+}
@@ -0,0 +1,224 @@
+package com.linh.mdp.adapters.grid;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Packed struct-of-arrays grid model.
+ *
+ * Each cell is one flags word plus parallel primitive arrays for color, border color, obstacle
+ * number and label id. Labels are interned: a cell stores an index into a shared table instead of
+ * its own String. Full-grid sweeps in the managers walk these arrays directly; {@link GridCell}
+ * is a view over one position for code that prefers an object. Writes that may change the
+ * OBSTACLE or ROBOT flag go through {@link #writeFlags} so the {@link OccupancyBoard} stays in sync.
+ *
+ * Main thread only.
+ */
+public class GridStore {
+    // Cell state flags
+    public static final int OBSTACLE = 1;
+    public static final int TEMP_OBSTACLE = 1 << 1;
+    public static final int ROBOT = 1 << 2;
+    public static final int TARGET = 1 << 3;
+    public static final int TEMP_HIGHLIGHT = 1 << 4;
+    public static final int TEMP_ROBOT = 1 << 5;
+
+    // Border sides, any combination
+    public static final int BORDER_N = 1 << 8;
+    public static final int BORDER_S = 1 << 9;
+    public static final int BORDER_E = 1 << 10;
+    public static final int BORDER_W = 1 << 11;
+    public static final int BORDER_MASK = BORDER_N | BORDER_S | BORDER_E | BORDER_W;
+    private static final int BORDER_SHIFT = 8;
+
+    // Canonical direction string for each border bit combination (index = bits >> BORDER_SHIFT)
+    private static final String[] BORDER_NAMES = new String[16];
+    static {
+        for (int bits = 1; bits < 16; bits++) {
+            StringBuilder sb = new StringBuilder(4);
+            if ((bits & (BORDER_N >> BORDER_SHIFT)) != 0) sb.append('N');
+            if ((bits & (BORDER_S >> BORDER_SHIFT)) != 0) sb.append('S');
+            if ((bits & (BORDER_E >> BORDER_SHIFT)) != 0) sb.append('E');
+            if ((bits & (BORDER_W >> BORDER_SHIFT)) != 0) sb.append('W');
+            BORDER_NAMES[bits] = sb.toString();
+        }
+        BORDER_NAMES[15] = "ALL";
+    }
+
+    public static final int LABEL_EMPTY = 0;
+    // Numeric labels (headers, obstacle numbers) below this are pre-interned
+    private static final int NUMBER_LABEL_CACHE = 100;
+
+    final int[] flags = new int[GridConstants.TOTAL_CELLS];
+    final int[] colors = new int[GridConstants.TOTAL_CELLS];
+    final int[] borderColors = new int[GridConstants.TOTAL_CELLS];
+    final int[] obstacleNumbers = new int[GridConstants.TOTAL_CELLS];
+    final int[] labels = new int[GridConstants.TOTAL_CELLS];
+    private final OccupancyBoard occupancy = new OccupancyBoard();
+
+    // Label intern table; ids are stable for the lifetime of the store
+    private String[] labelTable = new String[128];
+    private int labelCount = 0;
+    private final Map<String, Integer> labelIds = new HashMap<>();
+    private final int[] numberLabelIds = new int[NUMBER_LABEL_CACHE];
+
+    public GridStore() {
+        intern(""); // LABEL_EMPTY
+        for (int n = 0; n < NUMBER_LABEL_CACHE; n++) {
+            numberLabelIds[n] = intern(String.valueOf(n));
+        }
+        Arrays.fill(colors, GridConstants.DEFAULT_CELL_COLOR);
+    }
+
+    /**
+     * @return true for positions inside the 20x20 arena (not a header row/column)
+     */
+    public static boolean isDataPosition(int position) {
+        return position >= 0
+                && position < GridConstants.DATA_SIZE * GridConstants.GRID_SIZE
+                && position % GridConstants.GRID_SIZE != 0;
+    }
+
+    // ============================================================================
+    // FLAGS
+    // ============================================================================
+
+    public int getFlags(int position) { return flags[position]; }
+
+    public boolean has(int position, int flag) {
+        return (flags[position] & flag) != 0;
+    }
+
+    public void setFlag(int position, int flag, boolean on) {
+        writeFlags(position, on ? flags[position] | flag : flags[position] & ~flag);
+    }
+
+    /**
+     * Replace a cell's flags, updating the occupancy board if OBSTACLE or ROBOT changed
+     */
+    void writeFlags(int position, int value) {
+        int old = flags[position];
+        flags[position] = value;
+        if (((old ^ value) & (OBSTACLE | ROBOT)) != 0) occupancy.update(position, value);
+    }
+
+    /**
+     * Obstacle and robot bitboard for footprint checks
+     */
+    public OccupancyBoard getOccupancy() { return occupancy; }
+
+    /**
+     * @return true if the cell is an obstacle that is not part of the robot
+     */
+    public boolean isPlainObstacle(int position) {
+        return (flags[position] & (OBSTACLE | ROBOT)) == OBSTACLE;
+    }
+
+    // ============================================================================
+    // COLORS AND NUMBERS
+    // ============================================================================
+
+    public int getColor(int position) { return colors[position]; }
+    public void setColor(int position, int color) { colors[position] = color; }
+
+    public int getObstacleNumber(int position) { return obstacleNumbers[position]; }
+    public void setObstacleNumber(int position, int number) { obstacleNumbers[position] = number; }
+
+    // ============================================================================
+    // BORDERS
+    // ============================================================================
+
+    public int getBorderColor(int position) { return borderColors[position]; }
+    public void setBorderColor(int position, int color) { borderColors[position] = color; }
+
+    /**
+     * @return the border sides as BORDER_* bits
+     */
+    public int getBorderBits(int position) {
+        return flags[position] & BORDER_MASK;
+    }
+
+    /**
+     * @return the border direction ("N", "SE", "ALL", ...) or null when no side is set
+     */
+    public String getBorderDirection(int position) {
+        return BORDER_NAMES[(flags[position] & BORDER_MASK) >> BORDER_SHIFT];
+    }
+
+    /**
+     * Set the border sides from a direction string; "ALL" selects every side, otherwise each of
+     * the letters N/S/E/W present selects that side. Null clears the border sides.
+     */
+    public void setBorderDirection(int position, String direction) {
+        flags[position] = (flags[position] & ~BORDER_MASK) | parseBorderBits(direction);
+    }
+
+    public boolean hasBorder(int position) {
+        return (flags[position] & BORDER_MASK) != 0 && borderColors[position] != 0;
+    }
+
+    public void clearBorder(int position) {
+        flags[position] &= ~BORDER_MASK;
+        borderColors[position] = 0;
+    }
+
+    public static int parseBorderBits(String direction) {
+        if (direction == null) return 0;
+        if ("ALL".equalsIgnoreCase(direction)) return BORDER_MASK;
+        int bits = 0;
+        for (int i = 0; i < direction.length(); i++) {
+            switch (Character.toUpperCase(direction.charAt(i))) {
+                case 'N': bits |= BORDER_N; break;
+                case 'S': bits |= BORDER_S; break;
+                case 'E': bits |= BORDER_E; break;
+                case 'W': bits |= BORDER_W; break;
+            }
+        }
+        return bits;
+    }
+
+    // ============================================================================
+    // LABELS
+    // ============================================================================
+
+    public String getLabel(int position) {
+        return labelTable[labels[position]];
+    }
+
+    public void setLabel(int position, String label) {
+        labels[position] = intern(label);
+    }
+
+    public int getLabelId(int position) { return labels[position]; }
+    public void setLabelId(int position, int labelId) { labels[position] = labelId; }
+
+    /**
+     * @return the id of the label, adding it to the table on first use; null maps to the empty label
+     */
+    public int intern(String label) {
+        if (label == null) return LABEL_EMPTY;
+        Integer id = labelIds.get(label);
+        if (id != null) return id;
+        if (labelCount == labelTable.length) {
+            labelTable = Arrays.copyOf(labelTable, labelCount * 2);
+        }
+        labelTable[labelCount] = label;
+        labelIds.put(label, labelCount);
+        return labelCount++;
+    }
+
+    /**
+     * @return the label id for a number, without formatting it for common values
+     */
+    public int numberLabel(int number) {
+        if (number >= 0 && number < NUMBER_LABEL_CACHE) return numberLabelIds[number];
+        return intern(String.valueOf(number));
+    }
+
+    public String labelText(int labelId) {
+        return labelTable[labelId];
+    }
+
+    public int getLabelCount() { return labelCount; }
+}
@@ -4,80 +4,78 @@ package com.linh.mdp.adapters.grid;
  * Manages highlighting, borders, and visual effects in the grid
  */
 public class HighlightManager {
+    private final DirtyCellTracker dirtyCells;
+
+    public HighlightManager(DirtyCellTracker dirtyCells) {
+        this.dirtyCells = dirtyCells;
+    }
 
     /**
      * Highlight specific cell border with given direction
      */
-    public void highlightCellBorder(int row, int col, int borderColor, String direction, GridCell[] cells) {
+    public void highlightCellBorder(int row, int col, int borderColor, String direction, GridStore store) {
         if (!isValidDataCell(row, col)) return;
 
         int position = row * GridConstants.GRID_SIZE + col;
-        GridCell cell = cells[position];
-        cell.setBorderDirection(direction.toUpperCase());
-        cell.setBorderColor(borderColor);
+        store.setBorderDirection(position, direction);
+        store.borderColors[position] = borderColor;
+        dirtyCells.mark(position);
     }
 
     /**
      * Clear border from specific cell
      */
-    public void clearCellBorder(int row, int col, GridCell[] cells) {
+    public void clearCellBorder(int row, int col, GridStore store) {
         if (!isValidDataCell(row, col)) return;
 
         int position = row * GridConstants.GRID_SIZE + col;
-        GridCell cell = cells[position];
-        cell.setBorderDirection(null);
-        cell.setBorderColor(0);
+        store.clearBorder(position);
+        dirtyCells.mark(position);
     }
 
     /**
      * Apply temporary row/column highlight
      */
-    public void applyTempRowColHighlight(int tempRow, int tempCol, GridCell[] cells) {
-        clearTempRowColHighlight(cells);
+    public void applyTempRowColHighlight(int tempRow, int tempCol, GridStore store) {
+        clearTempRowColHighlight(store);
 
         // Highlight row
         if (tempRow >= 0 && tempRow < GridConstants.DATA_SIZE) {
             for (int c = 1; c < GridConstants.GRID_SIZE; c++) {
-                int pos = tempRow * GridConstants.GRID_SIZE + c;
-                GridCell cell = cells[pos];
                 if (c == tempCol) continue; // skip the temporary obstacle cell
-                if (!cell.isObstacle() && !cell.isRobot()) {
-                    cell.setColor(GridConstants.HIGHLIGHT_COLOR);
-                    cell.setTempHighlight(true);
-                }
+                highlight(store, tempRow * GridConstants.GRID_SIZE + c);
             }
         }
 
         // Highlight column
         if (tempCol > 0 && tempCol < GridConstants.GRID_SIZE) {
             for (int r = 0; r < GridConstants.DATA_SIZE; r++) {
-                int pos = r * GridConstants.GRID_SIZE + tempCol;
-                GridCell cell = cells[pos];
                 if (r == tempRow) continue; // skip the temporary obstacle cell
-                if (!cell.isObstacle() && !cell.isRobot()) {
-                    cell.setColor(GridConstants.HIGHLIGHT_COLOR);
-                    cell.setTempHighlight(true);
-                }
+                highlight(store, r * GridConstants.GRID_SIZE + tempCol);
             }
         }
     }
 
+    private void highlight(GridStore store, int position) {
+        if ((store.flags[position] & (GridStore.OBSTACLE | GridStore.ROBOT)) != 0) return;
+        store.colors[position] = GridConstants.HIGHLIGHT_COLOR;
+        store.flags[position] |= GridStore.TEMP_HIGHLIGHT;
+        dirtyCells.mark(position);
+    }
+
     /**
      * Clear temporary row/column highlight
      */
-    public void clearTempRowColHighlight(GridCell[] cells) {
+    public void clearTempRowColHighlight(GridStore store) {
+        int[] flags = store.flags;
         for (int i = 0; i < GridConstants.TOTAL_CELLS; i++) {
-            GridCell cell = cells[i];
-            if (cell.isTempHighlight()) {
-                int row = i / GridConstants.GRID_SIZE;
-                int col = i % GridConstants.GRID_SIZE;
-                if (isValidDataCell(row, col)) {
-                    if (!cell.isObstacle() && !cell.isRobot()) {
-                        cell.setColor(GridConstants.DEFAULT_CELL_COLOR);
-                    }
-                }
-                cell.setTempHighlight(false);
+            int f = flags[i];
+            if ((f & GridStore.TEMP_HIGHLIGHT) == 0) continue;
+            if ((f & (GridStore.OBSTACLE | GridStore.ROBOT)) == 0 && GridStore.isDataPosition(i)) {
+                store.colors[i] = GridConstants.DEFAULT_CELL_COLOR;
             }
+            flags[i] = f & ~GridStore.TEMP_HIGHLIGHT;
+            dirtyCells.mark(i);
         }
     }
 
@@ -1,132 +1,226 @@
 package com.linh.mdp.adapters.grid;
 
+import java.util.Arrays;
+
 /**
  * Manages obstacles and targets in the grid
  */
 public class ObstacleManager {
+
+    /**
+     * Notified when a numbered obstacle appears, moves, changes direction or goes away
+     */
+    public interface OnObstacleChangeListener {
+        void onObstacleChanged(int number, int position, int borderBits);
+        void onObstacleRemoved(int number);
+    }
+
+    // Flags cleared when an obstacle is removed
+    private static final int OBSTACLE_STATE = GridStore.OBSTACLE | GridStore.TEMP_OBSTACLE
+            | GridStore.TARGET | GridStore.BORDER_MASK;
+
+    private final DirtyCellTracker dirtyCells;
+    private final ObstacleRegistry registry = new ObstacleRegistry();
     private int nextObstacleNumber = 1;
+    private OnObstacleChangeListener changeListener;
+
+    public ObstacleManager(DirtyCellTracker dirtyCells) {
+        this.dirtyCells = dirtyCells;
+    }
+
+    public void setOnObstacleChangeListener(OnObstacleChangeListener listener) {
+        this.changeListener = listener;
+    }
 
     /**
      * Set a cell as an obstacle
      */
-    public void setObstacle(int row, int col, GridCell[] cells) {
+    public void setObstacle(int row, int col, GridStore store) {
         if (!isValidDataCell(row, col)) return;
 
         int position = row * GridConstants.GRID_SIZE + col;
-        GridCell cell = cells[position];
-
-        cell.setObstacle(true);
-        cell.setTemporaryObstacle(false);
-        cell.setObstacleNumber(nextObstacleNumber++);
-        cell.setData(String.valueOf(cell.getObstacleNumber()));
-        cell.setColor(GridConstants.OBSTACLE_COLOR);
-        cell.setRobot(false);
+        int number = nextObstacleNumber++;
+
+        // Re-placing an obstacle renumbers it; drop the old number from the index
+        unregister(store.obstacleNumbers[position], position);
+        registry.register(number, position);
+        store.writeFlags(position, (store.flags[position] | GridStore.OBSTACLE)
+                & ~(GridStore.TEMP_OBSTACLE | GridStore.ROBOT));
+        store.obstacleNumbers[position] = number;
+        store.labels[position] = store.numberLabel(number);
+        store.colors[position] = GridConstants.OBSTACLE_COLOR;
+        dirtyCells.mark(position);
+        if (changeListener != null) changeListener.onObstacleChanged(number, position, store.getBorderBits(position));
     }
 
     /**
      * Remove an obstacle
      */
-    public void removeObstacle(int row, int col, GridCell[] cells) {
+    public void removeObstacle(int row, int col, GridStore store) {
         if (!isValidDataCell(row, col)) return;
 
         int position = row * GridConstants.GRID_SIZE + col;
-        GridCell cell = cells[position];
-
-        if (!cell.isObstacle() || cell.isRobot()) return;
-
-        cell.setObstacle(false);
-        cell.setTemporaryObstacle(false);
-        cell.setObstacleNumber(0);
-        cell.setBorderDirection(null);
-        cell.setBorderColor(0);
-        cell.setData("");
-        cell.setColor(GridConstants.DEFAULT_CELL_COLOR);
-        cell.setTarget(false);
+        if (!store.isPlainObstacle(position)) return;
 
+        unregister(store.obstacleNumbers[position], position);
+        resetObstacle(store, position);
+        dirtyCells.mark(position);
     }
 
     /**
      * Clear all obstacles (except robot)
      */
-    public void clearAllObstacles(GridCell[] cells) {
+    public void clearAllObstacles(GridStore store) {
+        int[] flags = store.flags;
         for (int i = 0; i < GridConstants.TOTAL_CELLS; i++) {
-            int row = i / GridConstants.GRID_SIZE;
-            int col = i % GridConstants.GRID_SIZE;
-
-            if (isValidDataCell(row, col)) {
-                GridCell cell = cells[i];
-                if (cell.isObstacle() && !cell.isRobot()) {
-                    cell.setObstacle(false);
-                    cell.setTemporaryObstacle(false);
-                    cell.setObstacleNumber(0);
-                    cell.setBorderDirection(null);
-                    cell.setBorderColor(0);
-                    cell.setData("");
-                    cell.setColor(GridConstants.DEFAULT_CELL_COLOR);
-                    cell.setTarget(false);
+            if ((flags[i] & (GridStore.OBSTACLE | GridStore.ROBOT)) != GridStore.OBSTACLE) continue;
+            if (!GridStore.isDataPosition(i)) continue;
+            resetObstacle(store, i);
+            dirtyCells.mark(i);
+        }
+        if (changeListener != null) {
+            for (int number = 1, max = registry.getMaxNumber(); number <= max; number++) {
+                if (registry.positionOf(number) != ObstacleRegistry.NO_POSITION) {
+                    changeListener.onObstacleRemoved(number);
                 }
             }
         }
+        registry.clear();
         nextObstacleNumber = 1;
     }
 
+    private void unregister(int number, int position) {
+        if (number <= 0 || registry.positionOf(number) != position) return;
+        registry.unregister(number, position);
+        if (changeListener != null) changeListener.onObstacleRemoved(number);
+    }
+
+    /**
+     * Re-check a registered obstacle after another manager changed its cell: a new border
+     * direction is reported as a change, an overwritten cell drops out of the registry
+     */
+    public void onCellChanged(int row, int col, GridStore store) {
+        if (!isValidDataCell(row, col)) return;
+
+        int position = row * GridConstants.GRID_SIZE + col;
+        int number = store.obstacleNumbers[position];
+        if (number <= 0 || registry.positionOf(number) != position) return;
+
+        int flags = store.flags[position];
+        if ((flags & (GridStore.OBSTACLE | GridStore.TEMP_OBSTACLE | GridStore.ROBOT)) != GridStore.OBSTACLE) {
+            unregister(number, position);
+        } else if (changeListener != null) {
+            changeListener.onObstacleChanged(number, position, flags & GridStore.BORDER_MASK);
+        }
+    }
+
+    private void resetObstacle(GridStore store, int position) {
+        store.writeFlags(position, store.flags[position] & ~OBSTACLE_STATE);
+        store.obstacleNumbers[position] = 0;
+        store.borderColors[position] = 0;
+        store.labels[position] = GridStore.LABEL_EMPTY;
+        store.colors[position] = GridConstants.DEFAULT_CELL_COLOR;
+    }
+
     /**
      * Clear temporary obstacle from a cell
      */
-    public void clearTemporaryObstacle(int row, int col, GridCell[] cells) {
+    public void clearTemporaryObstacle(int row, int col, GridStore store) {
         if (!isValidDataCell(row, col)) return;
 
         int position = row * GridConstants.GRID_SIZE + col;
-        GridCell cell = cells[position];
 
-        if (cell.isTemporaryObstacle()) {
-            cell.setData("");
-            cell.setColor(GridConstants.DEFAULT_CELL_COLOR);
-            cell.setObstacle(false);
-            cell.setTemporaryObstacle(false);
+        if (store.has(position, GridStore.TEMP_OBSTACLE)) {
+            store.labels[position] = GridStore.LABEL_EMPTY;
+            store.colors[position] = GridConstants.DEFAULT_CELL_COLOR;
+            store.writeFlags(position, store.flags[position] & ~(GridStore.OBSTACLE | GridStore.TEMP_OBSTACLE));
+            dirtyCells.mark(position);
         }
     }
 
     /**
      * Set obstacle as target
      */
-    public boolean setObstacleAsTarget(int obstacleNumber, String targetId, GridCell[] cells) {
-        for (int i = 0; i < GridConstants.TOTAL_CELLS; i++) {
-            GridCell cell = cells[i];
-            if (cell.getObstacleNumber() == obstacleNumber && cell.isObstacle() && !cell.isRobot()) {
-                cell.setTarget(true);
-                cell.setData(targetId);
-                return true;
-            }
+    public boolean setObstacleAsTarget(int obstacleNumber, String targetId, GridStore store) {
+        int position = findObstacle(obstacleNumber, store);
+        if (position == ObstacleRegistry.NO_POSITION) return false;
+
+        store.flags[position] |= GridStore.TARGET;
+        store.setLabel(position, targetId);
+        dirtyCells.mark(position);
+        return true;
+    }
+
+    /**
+     * @return the position of the obstacle with this number, or -1 if it is no longer on the grid
+     */
+    public int findObstacle(int obstacleNumber, GridStore store) {
+        int position = registry.positionOf(obstacleNumber);
+        if (position == ObstacleRegistry.NO_POSITION) return ObstacleRegistry.NO_POSITION;
+        if (store.obstacleNumbers[position] != obstacleNumber || !store.isPlainObstacle(position)) {
+            return ObstacleRegistry.NO_POSITION;
+        }
+        return position;
+    }
+
+    // ============================================================================
+    // BULK QUERIES - ordered by obstacle number
+    // ============================================================================
+
+    /**
+     * @return positions of all numbered, non-temporary obstacles
+     */
+    public int[] getObstaclePositions(GridStore store) {
+        return collect(store, false);
+    }
+
+    /**
+     * @return positions of all numbered obstacles that have been identified as a target
+     */
+    public int[] getTargetPositions(GridStore store) {
+        return collect(store, true);
+    }
+
+    private int[] collect(GridStore store, boolean targetsOnly) {
+        int[] out = new int[registry.size()];
+        int n = 0;
+        int required = GridStore.OBSTACLE | (targetsOnly ? GridStore.TARGET : 0);
+        int mask = required | GridStore.TEMP_OBSTACLE | GridStore.ROBOT;
+        for (int number = 1, max = registry.getMaxNumber(); number <= max && n < out.length; number++) {
+            int position = registry.positionOf(number);
+            if (position == ObstacleRegistry.NO_POSITION) continue;
+            if (store.obstacleNumbers[position] != number) continue;
+            if ((store.flags[position] & mask) != required) continue;
+            out[n++] = position;
         }
-        return false;
+        return n == out.length ? out : Arrays.copyOf(out, n);
     }
 
     /**
      * Highlight selected obstacle
      */
-    public void highlightSelectedObstacle(int row, int col, GridCell[] cells) {
+    public void highlightSelectedObstacle(int row, int col, GridStore store) {
         if (!isValidDataCell(row, col)) return;
 
         int position = row * GridConstants.GRID_SIZE + col;
-        GridCell cell = cells[position];
 
-        if (cell.isObstacle() && !cell.isRobot()) {
-            cell.setColor(GridConstants.SELECTED_COLOR);
+        if (store.isPlainObstacle(position)) {
+            store.colors[position] = GridConstants.SELECTED_COLOR;
+            dirtyCells.mark(position);
         }
     }
 
     /**
      * Clear selected obstacle highlight
      */
-    public void clearSelectedObstacleHighlight(int row, int col, GridCell[] cells) {
+    public void clearSelectedObstacleHighlight(int row, int col, GridStore store) {
         if (!isValidDataCell(row, col)) return;
 
         int position = row * GridConstants.GRID_SIZE + col;
-        GridCell cell = cells[position];
 
-        if (cell.isObstacle() && !cell.isRobot()) {
-            cell.setColor(GridConstants.OBSTACLE_COLOR);
+        if (store.isPlainObstacle(position)) {
+            store.colors[position] = GridConstants.OBSTACLE_COLOR;
+            dirtyCells.mark(position);
         }
     }
 
@@ -0,0 +1,64 @@
+package com.linh.mdp.adapters.grid;
+
+import java.util.Arrays;
+
+/**
+ * Index from obstacle number to grid position.
+ *
+ * Obstacle numbers are handed out sequentially, so the index is a flat array addressed by
+ * number. The reverse direction (position to number) is the obstacle number column of
+ * {@link GridStore}; together they let lookups and bulk queries skip the full-grid scan.
+ * Entries are validated against the store on read, so a cell overwritten by another path
+ * simply stops matching.
+ */
+class ObstacleRegistry {
+    static final int NO_POSITION = -1;
+
+    private int[] positionByNumber = new int[64];
+    private int maxNumber = 0;
+    private int count = 0;
+
+    ObstacleRegistry() {
+        Arrays.fill(positionByNumber, NO_POSITION);
+    }
+
+    void register(int number, int position) {
+        if (number <= 0) return;
+        if (number >= positionByNumber.length) {
+            int oldLength = positionByNumber.length;
+            positionByNumber = Arrays.copyOf(positionByNumber, Math.max(number + 1, oldLength * 2));
+            Arrays.fill(positionByNumber, oldLength, positionByNumber.length, NO_POSITION);
+        }
+        if (positionByNumber[number] == NO_POSITION) count++;
+        positionByNumber[number] = position;
+        if (number > maxNumber) maxNumber = number;
+    }
+
+    /**
+     * Drop the number if it is still registered at this position
+     */
+    void unregister(int number, int position) {
+        if (number <= 0 || number > maxNumber) return;
+        if (positionByNumber[number] == position) {
+            positionByNumber[number] = NO_POSITION;
+            count--;
+        }
+    }
+
+    void clear() {
+        Arrays.fill(positionByNumber, 0, maxNumber + 1, NO_POSITION);
+        maxNumber = 0;
+        count = 0;
+    }
+
+    /**
+     * @return the registered position of the obstacle, or {@link #NO_POSITION}
+     */
+    int positionOf(int number) {
+        if (number <= 0 || number > maxNumber) return NO_POSITION;
+        return positionByNumber[number];
+    }
+
+    int getMaxNumber() { return maxNumber; }
+    int size() { return count; }
+}
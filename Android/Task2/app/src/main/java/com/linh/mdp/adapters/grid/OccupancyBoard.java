@@ -0,0 +1,123 @@
+package com.linh.mdp.adapters.grid;
+
+/**
+ * Bitboard of the OBSTACLE and ROBOT flags: one long per grid row, bit n = column n.
+ *
+ * Kept in sync by {@link GridStore} whenever either flag changes, so a 3x3 footprint check is
+ * three ORs and a mask instead of nine cell reads. The set of centres where the robot fits is
+ * derived from it with row-wise shifts and cached until the next change.
+ *
+ * Main thread only.
+ */
+public class OccupancyBoard {
+    private static final int SIZE = GridConstants.GRID_SIZE;
+    private static final long FOOTPRINT_MASK = 0b111L;
+    // Columns a robot centre may take: 2 .. GRID_SIZE - 2
+    private static final long CENTER_COLUMNS = ((1L << (SIZE - 1)) - 1) & ~0b11L;
+
+    private final long[] obstacleRows = new long[SIZE];
+    private final long[] robotRows = new long[SIZE];
+
+    private final long[] validCenterRows = new long[SIZE];
+    private boolean validCentersStale = true;
+    private int validCenterCount = 0;
+
+    /**
+     * Record the OBSTACLE and ROBOT bits of a cell's new flags
+     */
+    void update(int position, int flags) {
+        int row = position / SIZE;
+        long bit = 1L << (position % SIZE);
+        obstacleRows[row] = (flags & GridStore.OBSTACLE) != 0 ? obstacleRows[row] | bit : obstacleRows[row] & ~bit;
+        robotRows[row] = (flags & GridStore.ROBOT) != 0 ? robotRows[row] | bit : robotRows[row] & ~bit;
+        validCentersStale = true;
+    }
+
+    /**
+     * The 3x3 footprint around this center lies inside the data area
+     */
+    public static boolean isValidCenter(int centerRow, int centerCol) {
+        // Must have one-cell margin in all directions
+        if (centerRow - 1 < 0 || centerRow + 1 > GridConstants.DATA_SIZE - 1) return false;
+        return centerCol - 1 >= 1 && centerCol + 1 <= SIZE - 1;
+    }
+
+    // Obstacles that are not part of the robot
+    private long blockedRow(int row) {
+        return obstacleRows[row] & ~robotRows[row];
+    }
+
+    /**
+     * @return true if the cell is an obstacle that is not part of the robot
+     */
+    public boolean isBlocked(int row, int col) {
+        return ((blockedRow(row) >>> col) & 1L) != 0;
+    }
+
+    /**
+     * @return true if the cell is any obstacle, including robot cells
+     */
+    public boolean isOccupied(int row, int col) {
+        return ((obstacleRows[row] >>> col) & 1L) != 0;
+    }
+
+    /**
+     * @return true if a plain obstacle lies in the 3x3 footprint; the center must be valid
+     */
+    public boolean isFootprintBlocked(int centerRow, int centerCol) {
+        long rows = blockedRow(centerRow - 1) | blockedRow(centerRow) | blockedRow(centerRow + 1);
+        return (rows & (FOOTPRINT_MASK << (centerCol - 1))) != 0;
+    }
+
+    /**
+     * @return true if any obstacle or robot cell lies in the 3x3 footprint; the center must be valid
+     */
+    public boolean isFootprintOccupied(int centerRow, int centerCol) {
+        long rows = obstacleRows[centerRow - 1] | obstacleRows[centerRow] | obstacleRows[centerRow + 1];
+        return (rows & (FOOTPRINT_MASK << (centerCol - 1))) != 0;
+    }
+
+    // ============================================================================
+    // VALID ROBOT CENTRES - precomputed for placement previews
+    // ============================================================================
+
+    /**
+     * @return true if the robot fits at this center without touching a plain obstacle
+     */
+    public boolean isValidRobotCenter(int centerRow, int centerCol) {
+        if (centerRow < 0 || centerRow >= SIZE || centerCol < 0 || centerCol >= SIZE) return false;
+        ensureValidCenters();
+        return ((validCenterRows[centerRow] >>> centerCol) & 1L) != 0;
+    }
+
+    /**
+     * @return the valid robot centres of one row as column bits
+     */
+    public long getValidCenterColumns(int row) {
+        ensureValidCenters();
+        return validCenterRows[row];
+    }
+
+    public int getValidCenterCount() {
+        ensureValidCenters();
+        return validCenterCount;
+    }
+
+    private void ensureValidCenters() {
+        if (!validCentersStale) return;
+        int count = 0;
+        for (int row = 0; row < SIZE; row++) {
+            long valid = 0;
+            if (row >= 1 && row <= GridConstants.DATA_SIZE - 2) {
+                long blocked = blockedRow(row - 1) | blockedRow(row) | blockedRow(row + 1);
+                // A centre is out if its own column or either neighbour is blocked
+                long spread = blocked | (blocked << 1) | (blocked >>> 1);
+                valid = ~spread & CENTER_COLUMNS;
+            }
+            validCenterRows[row] = valid;
+            count += Long.bitCount(valid);
+        }
+        validCenterCount = count;
+        validCentersStale = false;
+    }
+}
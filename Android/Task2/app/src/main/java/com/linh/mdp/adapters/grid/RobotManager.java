@@ -4,12 +4,24 @@ package com.linh.mdp.adapters.grid;
  * Manages robot state and operations in the grid
  */
 public class RobotManager {
+    private final DirtyCellTracker dirtyCells;
     private int centerRow = -1;
     private int centerCol = -1;
     private int orientation = GridConstants.ORIENTATION_NORTH;
     private int tempCenterRow = -1;
     private int tempCenterCol = -1;
 
+    // Scratch buffers for delta moves
+    private final int[] entering = new int[9];
+    private final int[] leaving = new int[9];
+    // Leaving + entering cells plus the old front cell
+    private final int[] lastMoveChanged = new int[19];
+    private int lastMoveChangedCount = 0;
+
+    public RobotManager(DirtyCellTracker dirtyCells) {
+        this.dirtyCells = dirtyCells;
+    }
+
     /**
      * Check if robot is placed on the grid
      */
@@ -27,74 +39,49 @@ public class RobotManager {
 
     /**
      * Check if a 3x3 robot can be placed at the given center
+     * @return true if it can NOT be placed (out of bounds or blocked by a permanent obstacle)
      */
-    public boolean canPlaceAtCenter(int centerRow, int centerCol, GridCell[] cells) {
-        // Ensure within data area
-        if (!(centerCol > 0 && centerRow >= 0 && centerRow < GridConstants.DATA_SIZE)) return true;
-        // Must have one-cell margin in all directions
-        if (centerRow - 1 < 0 || centerRow + 1 > GridConstants.DATA_SIZE - 1) return true;
-        if (centerCol - 1 < 1 || centerCol + 1 > GridConstants.GRID_SIZE - 1) return true;
-
-        // Check collisions with permanent obstacles
-        for (int r = centerRow - 1; r <= centerRow + 1; r++) {
-            for (int c = centerCol - 1; c <= centerCol + 1; c++) {
-                int pos = r * GridConstants.GRID_SIZE + c;
-                GridCell cell = cells[pos];
-                // Block if there is a permanent obstacle (excluding current robot position)
-                if (cell.isObstacle() && !cell.isRobot()) return true;
-            }
-        }
-        return false;
+    public boolean canPlaceAtCenter(int centerRow, int centerCol, GridStore store) {
+        return !store.getOccupancy().isValidRobotCenter(centerRow, centerCol);
     }
 
     /**
      * Place robot at center position
      */
-    public boolean placeAtCenter(int centerRow, int centerCol, GridCell[] cells) {
-        if (canPlaceAtCenter(centerRow, centerCol, cells)) return false;
+    public boolean placeAtCenter(int centerRow, int centerCol, GridStore store) {
+        if (canPlaceAtCenter(centerRow, centerCol, store)) return false;
 
         // Clear existing robot
-        clearRobot(cells);
+        clearRobot(store);
 
         // Mark new 3x3 as robot cells
+        int robotLabel = store.intern("R");
         for (int r = centerRow - 1; r <= centerRow + 1; r++) {
             for (int c = centerCol - 1; c <= centerCol + 1; c++) {
                 int pos = r * GridConstants.GRID_SIZE + c;
-                GridCell cell = cells[pos];
-                cell.setRobot(true);
-                cell.setObstacle(true);
-                cell.setTemporaryObstacle(false);
-                cell.setData("R");
-                cell.setColor(GridConstants.ROBOT_COLOR);
-                cell.setBorderDirection(null);
-                cell.setBorderColor(0);
+                setRobotCell(store, pos, robotLabel);
+                dirtyCells.mark(pos);
             }
         }
 
         this.centerRow = centerRow;
         this.centerCol = centerCol;
-        applyFrontMarker(cells);
+        applyFrontMarker(store);
         return true;
     }
 
     /**
      * Clear robot from grid
      */
-    public void clearRobot(GridCell[] cells) {
+    public void clearRobot(GridStore store) {
         if (!hasRobot()) return;
 
         for (int r = centerRow - 1; r <= centerRow + 1; r++) {
             for (int c = centerCol - 1; c <= centerCol + 1; c++) {
                 int pos = r * GridConstants.GRID_SIZE + c;
-                GridCell cell = cells[pos];
-                if (cell.isRobot()) {
-                    cell.setRobot(false);
-                    cell.setObstacle(false);
-                    cell.setTemporaryObstacle(false);
-                    cell.setData("");
-                    cell.setColor(GridConstants.DEFAULT_CELL_COLOR);
-                    cell.setBorderDirection(null);
-                    cell.setBorderColor(0);
+                if (store.has(pos, GridStore.ROBOT)) {
+                    clearRobotCell(store, pos);
+                    dirtyCells.mark(pos);
                 }
             }
         }
@@ -102,68 +89,179 @@ public class RobotManager {
         centerCol = -1;
     }
 
+    private static void setRobotCell(GridStore store, int pos, int robotLabel) {
+        store.writeFlags(pos, (store.flags[pos] | GridStore.ROBOT | GridStore.OBSTACLE)
+                & ~(GridStore.TEMP_OBSTACLE | GridStore.BORDER_MASK));
+        store.labels[pos] = robotLabel;
+        store.colors[pos] = GridConstants.ROBOT_COLOR;
+        store.borderColors[pos] = 0;
+    }
+
+    private static void clearRobotCell(GridStore store, int pos) {
+        store.writeFlags(pos, store.flags[pos] & ~(GridStore.ROBOT | GridStore.OBSTACLE
+                | GridStore.TEMP_OBSTACLE | GridStore.BORDER_MASK));
+        store.labels[pos] = GridStore.LABEL_EMPTY;
+        store.colors[pos] = GridConstants.DEFAULT_CELL_COLOR;
+        store.borderColors[pos] = 0;
+    }
+
     /**
      * Turn robot left
      */
-    public void turnLeft(GridCell[] cells) {
+    public void turnLeft(GridStore store) {
         if (!hasRobot()) return;
         orientation = (orientation + 3) % 4; // -1 mod 4
-        applyFrontMarker(cells);
+        applyFrontMarker(store);
     }
 
     /**
      * Turn robot right
      */
-    public void turnRight(GridCell[] cells) {
+    public void turnRight(GridStore store) {
         if (!hasRobot()) return;
         orientation = (orientation + 1) % 4;
-        applyFrontMarker(cells);
+        applyFrontMarker(store);
     }
 
+    // ============================================================================
+    // DELTA MOVES - only the cells leaving and entering the footprint are touched
+    // ============================================================================
+
     /**
-     * Move robot by delta
+     * Move robot by delta. The destination is checked on the occupancy board, where the robot's
+     * own cells never block; only cells that leave or enter the footprint, plus the old and
+     * new front cells, are rewritten and marked dirty.
      */
-    public boolean moveRobot(int dRow, int dCol, GridCell[] cells) {
+    public boolean moveRobot(int dRow, int dCol, GridStore store) {
         if (!hasRobot()) return false;
         int newCenterRow = centerRow + dRow;
         int newCenterCol = centerCol + dCol;
-        if (canPlaceAtCenter(newCenterRow, newCenterCol, cells)) return false;
+        if (canPlaceAtCenter(newCenterRow, newCenterCol, store)) return false;
 
-        // Check collisions excluding current robot footprint
-        for (int r = newCenterRow - 1; r <= newCenterRow + 1; r++) {
-            for (int c = newCenterCol - 1; c <= newCenterCol + 1; c++) {
-                int pos = r * GridConstants.GRID_SIZE + c;
-                boolean inCurrentRobot = (r >= centerRow - 1 && r <= centerRow + 1 &&
-                                        c >= centerCol - 1 && c <= centerCol + 1);
-                if (!inCurrentRobot && cells[pos].isObstacle() && !cells[pos].isRobot()) {
-                    return false;
-                }
-            }
+        applyDeltaMove(newCenterRow, newCenterCol, store);
+        return true;
+    }
+
+    /**
+     * Move up to {@code steps} times by (stepRow, stepCol) in one call, e.g. for "FW30".
+     * Each intermediate footprint is checked and the robot stops in front of the first blocked
+     * step; the grid is then updated once, from the start to the end pose.
+     * @return number of steps actually taken
+     */
+    public int moveRobotSteps(int stepRow, int stepCol, int steps, GridStore store) {
+        if (!hasRobot() || steps <= 0) return 0;
+
+        int row = centerRow;
+        int col = centerCol;
+        int taken = 0;
+        while (taken < steps) {
+            int nextRow = row + stepRow;
+            int nextCol = col + stepCol;
+            if (canPlaceAtCenter(nextRow, nextCol, store)) break;
+            row = nextRow;
+            col = nextCol;
+            taken++;
+        }
+
+        if (taken > 0) applyDeltaMove(row, col, store);
+        return taken;
+    }
+
+    /**
+     * Positions rewritten by the last successful move; they are also marked in the dirty tracker
+     */
+    public int getLastMoveChangedCount() { return lastMoveChangedCount; }
+    public int getLastMoveChangedCell(int index) { return lastMoveChanged[index]; }
+
+    private void applyDeltaMove(int newCenterRow, int newCenterCol, GridStore store) {
+        int oldFront = getFrontPos();
+        int enteringCount = footprintDifference(centerRow, centerCol, newCenterRow, newCenterCol, entering);
+        int leavingCount = footprintDifference(newCenterRow, newCenterCol, centerRow, centerCol, leaving);
+        lastMoveChangedCount = 0;
+
+        // Trailing edge
+        for (int i = 0; i < leavingCount; i++) {
+            int pos = leaving[i];
+            if (store.has(pos, GridStore.ROBOT)) clearRobotCell(store, pos);
+            recordChanged(pos);
         }
 
-        clearRobot(cells);
-        return placeAtCenter(newCenterRow, newCenterCol, cells);
+        // Leading edge
+        int robotLabel = store.intern("R");
+        for (int i = 0; i < enteringCount; i++) {
+            setRobotCell(store, entering[i], robotLabel);
+            recordChanged(entering[i]);
+        }
+
+        // The old front cell may still be part of the robot
+        if (isInFootprint(oldFront, newCenterRow, newCenterCol)) {
+            store.colors[oldFront] = GridConstants.ROBOT_COLOR;
+            recordChanged(oldFront);
+        }
+
+        centerRow = newCenterRow;
+        centerCol = newCenterCol;
+        int newFront = getFrontPos();
+        store.colors[newFront] = GridConstants.ROBOT_FRONT_COLOR;
+        if (newFront != oldFront && !isEntering(newFront, enteringCount)) recordChanged(newFront);
+    }
+
+    private void recordChanged(int pos) {
+        lastMoveChanged[lastMoveChangedCount++] = pos;
+        dirtyCells.mark(pos);
+    }
+
+    private boolean isEntering(int pos, int enteringCount) {
+        for (int i = 0; i < enteringCount; i++) {
+            if (entering[i] == pos) return true;
+        }
+        return false;
+    }
+
+    private static boolean isInFootprint(int pos, int centerRow, int centerCol) {
+        int r = pos / GridConstants.GRID_SIZE;
+        int c = pos % GridConstants.GRID_SIZE;
+        return Math.abs(r - centerRow) <= 1 && Math.abs(c - centerCol) <= 1;
+    }
+
+    /**
+     * Collect the cells of the footprint at (toRow, toCol) that are not in the one at
+     * (fromRow, fromCol); three for a one-cell translation, all nine for a jump
+     * @return number of positions written to out
+     */
+    private static int footprintDifference(int fromRow, int fromCol, int toRow, int toCol, int[] out) {
+        int n = 0;
+        for (int r = toRow - 1; r <= toRow + 1; r++) {
+            boolean sharedRow = Math.abs(r - fromRow) <= 1;
+            for (int c = toCol - 1; c <= toCol + 1; c++) {
+                if (sharedRow && Math.abs(c - fromCol) <= 1) continue;
+                out[n++] = r * GridConstants.GRID_SIZE + c;
+            }
+        }
+        return n;
     }
 
     /**
      * Apply front marker color based on orientation
      */
-    private void applyFrontMarker(GridCell[] cells) {
+    private void applyFrontMarker(GridStore store) {
         if (!hasRobot()) return;
 
         // Repaint all robot cells to default robot color
         for (int r = centerRow - 1; r <= centerRow + 1; r++) {
             for (int c = centerCol - 1; c <= centerCol + 1; c++) {
                 int pos = r * GridConstants.GRID_SIZE + c;
-                if (cells[pos].isRobot()) {
-                    cells[pos].setColor(GridConstants.ROBOT_COLOR);
+                if (store.has(pos, GridStore.ROBOT)) {
+                    store.colors[pos] = GridConstants.ROBOT_COLOR;
+                    dirtyCells.mark(pos);
                 }
             }
         }
 
         // Determine front cell based on orientation
         int frontPos = getFrontPos();
-        cells[frontPos].setColor(GridConstants.ROBOT_FRONT_COLOR);
+        store.colors[frontPos] = GridConstants.ROBOT_FRONT_COLOR;
+        dirtyCells.mark(frontPos);
     }
 
     private int getFrontPos() {
@@ -190,7 +288,7 @@ public class RobotManager {
     /**
      * Update robot position from external coordinates
      */
-    public boolean updatePosition(int x, int y, String direction, GridCell[] cells) {
+    public boolean updatePosition(int x, int y, String direction, GridStore store) {
         // Convert display coordinates (0-19, origin at bottom-left) to grid coordinates
         int gridCol = x + 1; // shift because col 0 is non-data margin
         // Correct off-by-one: y=0 (bottom) should map to last data row (DATA_SIZE-1)
@@ -200,9 +298,9 @@ public class RobotManager {
         int newOrientation = parseDirection(direction);
         if (newOrientation == -1) return false;
 
-        if (placeAtCenter(gridRow, gridCol, cells)) {
+        if (placeAtCenter(gridRow, gridCol, store)) {
             orientation = newOrientation;
-            applyFrontMarker(cells);
+            applyFrontMarker(store);
             return true;
         }
         return false;
@@ -223,21 +321,23 @@ public class RobotManager {
     }
 
     public int getOrientation() { return orientation; }
+    public int getCenterRow() { return centerRow; }
+    public int getCenterCol() { return centerCol; }
     public int getTempCenterRow() { return tempCenterRow; }
 
     // Temporary robot preview methods
-    public boolean showTemporaryRobotAtCenter(int centerRow, int centerCol, GridCell[] cells) {
-        if (canPlaceAtCenter(centerRow, centerCol, cells)) return false;
-        clearTemporaryRobotPreview(cells);
+    public boolean showTemporaryRobotAtCenter(int centerRow, int centerCol, GridStore store) {
+        if (canPlaceAtCenter(centerRow, centerCol, store)) return false;
+        clearTemporaryRobotPreview(store);
 
         for (int r = centerRow - 1; r <= centerRow + 1; r++) {
             for (int c = centerCol - 1; c <= centerCol + 1; c++) {
                 int pos = r * GridConstants.GRID_SIZE + c;
-                GridCell cell = cells[pos];
-                if (!cell.isObstacle() && !cell.isRobot()) {
-                    cell.setColor(GridConstants.TEMP_ROBOT_COLOR);
+                if ((store.flags[pos] & (GridStore.OBSTACLE | GridStore.ROBOT)) == 0) {
+                    store.colors[pos] = GridConstants.TEMP_ROBOT_COLOR;
+                    dirtyCells.mark(pos);
                 }
-                cell.setTempRobot(true);
+                store.flags[pos] |= GridStore.TEMP_ROBOT;
             }
         }
         tempCenterRow = centerRow;
@@ -245,19 +345,18 @@ public class RobotManager {
         return true;
     }
 
-    public void clearTemporaryRobotPreview(GridCell[] cells) {
+    public void clearTemporaryRobotPreview(GridStore store) {
         if (tempCenterRow == -1 || tempCenterCol == -1) {
             // Fallback: clear scattered flags
+            int[] flags = store.flags;
             for (int i = 0; i < GridConstants.TOTAL_CELLS; i++) {
-                GridCell cell = cells[i];
-                if (cell.isTempRobot()) {
-                    int row = i / GridConstants.GRID_SIZE;
-                    int col = i % GridConstants.GRID_SIZE;
-                    if (col > 0 && row < GridConstants.DATA_SIZE && !cell.isObstacle() && !cell.isRobot()) {
-                        cell.setColor(GridConstants.DEFAULT_CELL_COLOR);
-                    }
-                    cell.setTempRobot(false);
+                int f = flags[i];
+                if ((f & GridStore.TEMP_ROBOT) == 0) continue;
+                if ((f & (GridStore.OBSTACLE | GridStore.ROBOT)) == 0 && GridStore.isDataPosition(i)) {
+                    store.colors[i] = GridConstants.DEFAULT_CELL_COLOR;
+                    dirtyCells.mark(i);
                 }
+                flags[i] = f & ~GridStore.TEMP_ROBOT;
             }
             return;
         }
@@ -266,11 +365,11 @@ public class RobotManager {
             for (int c = tempCenterCol - 1; c <= tempCenterCol + 1; c++) {
                 int pos = r * GridConstants.GRID_SIZE + c;
                 if (pos >= 0 && pos < GridConstants.TOTAL_CELLS) {
-                    GridCell cell = cells[pos];
-                    if (!cell.isObstacle() && !cell.isRobot()) {
-                        cell.setColor(GridConstants.DEFAULT_CELL_COLOR);
+                    if ((store.flags[pos] & (GridStore.OBSTACLE | GridStore.ROBOT)) == 0) {
+                        store.colors[pos] = GridConstants.DEFAULT_CELL_COLOR;
+                        dirtyCells.mark(pos);
                     }
-                    cell.setTempRobot(false);
+                    store.flags[pos] &= ~GridStore.TEMP_ROBOT;
                 }
             }
         }
@@ -278,10 +377,10 @@ public class RobotManager {
         tempCenterCol = -1;
     }
 
-    public boolean confirmTemporaryRobotPlacement(GridCell[] cells) {
+    public boolean confirmTemporaryRobotPlacement(GridStore store) {
         if (tempCenterRow == -1 || tempCenterCol == -1) return false;
         int r = tempCenterRow, c = tempCenterCol;
-        clearTemporaryRobotPreview(cells);
-        return placeAtCenter(r, c, cells);
+        clearTemporaryRobotPreview(store);
+        return placeAtCenter(r, c, store);
     }
 }
@@ -0,0 +1,197 @@
+package com.linh.mdp.adapters.grid;
+
+/**
+ * Dead-reckons the robot centre between authoritative pose updates.
+ *
+ * Each update is time-stamped; velocity (cells per second) is estimated from consecutive
+ * updates and used to extrapolate for a bounded time, so the map keeps moving smoothly even
+ * when the RPi reports location less often. When the next update arrives, the gap between
+ * what was displayed and the new pose is blended out over a short window instead of snapping.
+ *
+ * Times are {@link System#nanoTime()} values. Main thread only.
+ */
+public class RobotPosePredictor {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    // Stop extrapolating after this long without an update
+    private static final long MAX_EXTRAPOLATION_NS = NANOS_PER_SECOND;
+    // Updates further apart than this, or further than MAX_STEP_CELLS, are treated as jumps
+    private static final long MAX_UPDATE_GAP_NS = 2 * NANOS_PER_SECOND;
+    private static final float MAX_STEP_CELLS = 2f;
+    // Time to blend out the error after an update
+    private static final long CORRECTION_NS = 120_000_000L;
+    // Weight of the newest sample in the velocity and interval averages
+    private static final float SMOOTHING = 0.5f;
+
+    private boolean hasPose = false;
+    private long lastUpdateNanos;
+    private float lastRow, lastCol;
+    private int orientation;
+    private float velRow, velCol; // cells per second
+    private long averageIntervalNanos = 0;
+
+    // Display offset at the moment of the last update; decays to zero over CORRECTION_NS
+    private float correctionRow, correctionCol;
+
+    // Counters
+    private long updateCount = 0;
+    private long jumpCount = 0;
+    private float lastErrorCells = 0;
+    private float maxErrorCells = 0;
+
+    /**
+     * Record an authoritative pose from a location report or move command
+     */
+    public void onAuthoritativePose(long nanos, int row, int col, int orientation) {
+        updateCount++;
+        if (!hasPose) {
+            snapTo(nanos, row, col, orientation);
+            return;
+        }
+
+        // Where the robot was being drawn just before this update
+        float shownRow = displayRow(nanos);
+        float shownCol = displayCol(nanos);
+
+        long dt = nanos - lastUpdateNanos;
+        float dRow = row - lastRow;
+        float dCol = col - lastCol;
+        boolean jump = dt <= 0 || dt > MAX_UPDATE_GAP_NS
+                || Math.abs(dRow) > MAX_STEP_CELLS || Math.abs(dCol) > MAX_STEP_CELLS;
+
+        if (jump || orientation != this.orientation) {
+            // Teleports and turns do not carry straight-line velocity
+            if (jump) jumpCount++;
+            velRow = 0;
+            velCol = 0;
+        } else {
+            float seconds = dt / (float) NANOS_PER_SECOND;
+            velRow += SMOOTHING * (dRow / seconds - velRow);
+            velCol += SMOOTHING * (dCol / seconds - velCol);
+            averageIntervalNanos = averageIntervalNanos == 0
+                    ? dt
+                    : averageIntervalNanos + (long) (SMOOTHING * (dt - averageIntervalNanos));
+        }
+
+        lastUpdateNanos = nanos;
+        lastRow = row;
+        lastCol = col;
+        this.orientation = orientation;
+
+        float errorRow = shownRow - row;
+        float errorCol = shownCol - col;
+        lastErrorCells = (float) Math.sqrt(errorRow * errorRow + errorCol * errorCol);
+        if (lastErrorCells > maxErrorCells) maxErrorCells = lastErrorCells;
+        if (jump) {
+            correctionRow = 0;
+            correctionCol = 0;
+        } else {
+            correctionRow = errorRow;
+            correctionCol = errorCol;
+        }
+    }
+
+    /**
+     * Place the robot without any motion, e.g. after manual placement
+     */
+    public void snapTo(long nanos, int row, int col, int orientation) {
+        hasPose = true;
+        lastUpdateNanos = nanos;
+        lastRow = row;
+        lastCol = col;
+        this.orientation = orientation;
+        velRow = 0;
+        velCol = 0;
+        correctionRow = 0;
+        correctionCol = 0;
+    }
+
+    /**
+     * Update the heading only; turning in place stops extrapolation
+     */
+    public void onOrientationChanged(long nanos, int orientation) {
+        if (!hasPose) return;
+        lastRow = displayRow(nanos);
+        lastCol = displayCol(nanos);
+        lastUpdateNanos = nanos;
+        this.orientation = orientation;
+        velRow = 0;
+        velCol = 0;
+        correctionRow = 0;
+        correctionCol = 0;
+    }
+
+    public void reset() {
+        hasPose = false;
+        velRow = 0;
+        velCol = 0;
+        averageIntervalNanos = 0;
+        correctionRow = 0;
+        correctionCol = 0;
+    }
+
+    public boolean hasPose() { return hasPose; }
+    public int getOrientation() { return orientation; }
+
+    /**
+     * @return predicted centre row, including any correction still being blended out
+     */
+    public float displayRow(long nanos) {
+        float row = lastRow + velRow * extrapolationSeconds(nanos) + correctionRow * correctionWeight(nanos);
+        return clamp(row, 1, GridConstants.DATA_SIZE - 2);
+    }
+
+    /**
+     * @return predicted centre column, including any correction still being blended out
+     */
+    public float displayCol(long nanos) {
+        float col = lastCol + velCol * extrapolationSeconds(nanos) + correctionCol * correctionWeight(nanos);
+        return clamp(col, 2, GridConstants.GRID_SIZE - 2);
+    }
+
+    /**
+     * @return true while the displayed pose is still changing and frames should keep coming
+     */
+    public boolean isAnimating(long nanos) {
+        if (!hasPose) return false;
+        long dt = nanos - lastUpdateNanos;
+        boolean moving = (velRow != 0 || velCol != 0) && dt < horizonNanos();
+        boolean correcting = (correctionRow != 0 || correctionCol != 0) && dt < CORRECTION_NS;
+        return moving || correcting;
+    }
+
+    private float extrapolationSeconds(long nanos) {
+        long dt = Math.min(Math.max(0, nanos - lastUpdateNanos), horizonNanos());
+        return dt / (float) NANOS_PER_SECOND;
+    }
+
+    // Coast for about one and a half report intervals at most
+    private long horizonNanos() {
+        if (averageIntervalNanos == 0) return MAX_EXTRAPOLATION_NS;
+        return Math.min(MAX_EXTRAPOLATION_NS, averageIntervalNanos + averageIntervalNanos / 2);
+    }
+
+    private float correctionWeight(long nanos) {
+        long dt = nanos - lastUpdateNanos;
+        if (dt <= 0) return 1f;
+        if (dt >= CORRECTION_NS) return 0f;
+        return 1f - dt / (float) CORRECTION_NS;
+    }
+
+    private static float clamp(float value, float min, float max) {
+        return value < min ? min : (value > max ? max : value);
+    }
+
+    // ============================================================================
+    // STATISTICS
+    // ============================================================================
+
+    public long getUpdateCount() { return updateCount; }
+    public long getJumpCount() { return jumpCount; }
+    public long getAverageIntervalNanos() { return averageIntervalNanos; }
+
+    /**
+     * Distance in cells between the displayed and the authoritative pose at the last update
+     */
+    public float getLastErrorCells() { return lastErrorCells; }
+    public float getMaxErrorCells() { return maxErrorCells; }
+}
@@ -8,6 +8,7 @@ import android.bluetooth.BluetoothDevice;
 public interface BluetoothConnectionListener {
     void onDeviceConnected(BluetoothDevice device);
     void onDeviceDisconnected();
+    // Called once per complete message, without the frame delimiter
     void onDataReceived(String data);
     void onConnectionFailed(String error);
     void onDeviceDiscovered(BluetoothDevice device);
@@ -25,13 +25,26 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class BluetoothHelper {
     private static final String TAG = "BluetoothHelper";
 
+    /**
+     * Receives complete inbound messages directly on the reader thread, skipping the main-thread hop
+     */
+    public interface OnMessageReceivedListener {
+        void onMessageReceived(String message);
+    }
+
     private final BluetoothAdapter bluetoothAdapter;
     private final Activity activity;
     private BluetoothSocket bluetoothSocket;
@@ -40,10 +53,32 @@ public class BluetoothHelper {
     private OutputStream outputStream;
     private final List<BluetoothDevice> discoveredDevices;
     private BluetoothConnectionListener connectionListener;
+    private volatile OnMessageReceivedListener backgroundMessageListener;
     private boolean isReceiverRegistered = false;
     private boolean isListeningForConnection = false;
     private Thread serverThread;
 
+    // Message framing on the RFCOMM stream (RPi sends newline-delimited JSON)
+    private FrameDecoder.Mode framingMode = FrameDecoder.Mode.NEWLINE;
+    private FrameEncoder frameEncoder = new FrameEncoder(framingMode);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Single writer thread draining a bounded send queue; sendData is called from the UI
+    // thread, so the default policy never waits for queue space
+    private final BluetoothWriter writer = new BluetoothWriter(
+        BluetoothConstants.SEND_QUEUE_CAPACITY,
+        BluetoothWriter.OverflowPolicy.COALESCE,
+        BluetoothConstants.SEND_BLOCK_TIMEOUT_MS);
+
+    // Orders the socket strategies per device and enforces per-attempt timeouts
+    private final ConnectionPlanner connectionPlanner;
+    private ScheduledExecutorService connectWatchdog;
+
+    // Per-attempt state, claimed by CAS so connect() and the watchdog cannot both win
+    private static final int CONNECT_PENDING = 0;
+    private static final int CONNECT_CONNECTED = 1;
+    private static final int CONNECT_TIMED_OUT = 2;
+
     // Auto-reconnection fields
     private BluetoothDevice lastConnectedDevice;
     private final boolean autoReconnectEnabled = true;
@@ -119,12 +154,59 @@ public class BluetoothHelper {
         this.bluetoothAdapter = bluetoothManager.getAdapter();
 
         this.discoveredDevices = new ArrayList<>();
+        this.connectionPlanner = new ConnectionPlanner(activity);
     }
 
     public void setConnectionListener(BluetoothConnectionListener listener) {
         this.connectionListener = listener;
     }
 
+    /**
+     * Route inbound messages to a background consumer instead of
+     * {@link BluetoothConnectionListener#onDataReceived} on the main thread. Pass null to restore.
+     */
+    public void setBackgroundMessageListener(OnMessageReceivedListener listener) {
+        this.backgroundMessageListener = listener;
+    }
+
+    /**
+     * Select the wire format used for both directions. Takes effect for reads on the next connection.
+     */
+    public void setFramingMode(FrameDecoder.Mode mode) {
+        this.framingMode = mode;
+        this.frameEncoder = new FrameEncoder(mode);
+    }
+
+    public FrameDecoder.Mode getFramingMode() {
+        return framingMode;
+    }
+
+    public void setSendOverflowPolicy(BluetoothWriter.OverflowPolicy policy) {
+        writer.setOverflowPolicy(policy);
+    }
+
+    /**
+     * Opt-in Nagle-style batching: hold outgoing messages for up to windowMs and send them
+     * as one newline-delimited write. 0 disables. The receiver must split on newlines.
+     */
+    public void setWriteBatchWindowMs(long windowMs) {
+        writer.setBatchWindowMs(windowMs);
+    }
+
+    /**
+     * Access the outbound writer, e.g. for latency and drop statistics
+     */
+    public BluetoothWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * Access the connection planner, e.g. for time-to-connect statistics per strategy
+     */
+    public ConnectionPlanner getConnectionPlanner() {
+        return connectionPlanner;
+    }
+
     public boolean isBluetoothSupported() {
         return bluetoothAdapter != null;
     }
@@ -309,6 +391,7 @@ public class BluetoothHelper {
 
                     inputStream = bluetoothSocket.getInputStream();
                     outputStream = bluetoothSocket.getOutputStream();
+                    writer.attach(outputStream);
 
                     Log.i(TAG, "Bluetooth connection established successfully with streams ready");
 
@@ -391,76 +474,89 @@ public class BluetoothHelper {
     }
 
     private BluetoothSocket attemptConnection(BluetoothDevice device) throws IOException {
-        Log.d(TAG, "Attempting optimized connection methods");
-        BluetoothSocket socket = null;
-        IOException lastException;
-
-        // First try: Standard UUID connection (fastest method)
-        try {
-            Log.d(TAG, "Trying standard UUID connection");
-            socket = device.createRfcommSocketToServiceRecord(BluetoothConstants.MY_UUID);
-            // Set socket timeout for faster failure detection
-            socket.connect();
-            Log.i(TAG, "Standard UUID connection successful");
-            return socket;
-        } catch (Exception e) {
-            Log.w(TAG, "Standard UUID connection failed: " + e.getMessage());
-            closeSocketSafely(socket);
-            socket = null;
-        }
-
-        // Second try: Insecure connection (for compatibility)
-        try {
-            Log.d(TAG, "Trying insecure UUID connection");
-            socket = device.createInsecureRfcommSocketToServiceRecord(BluetoothConstants.MY_UUID);
-            socket.connect();
-            Log.i(TAG, "Insecure UUID connection successful");
-            return socket;
-        } catch (Exception e) {
-            lastException = e instanceof IOException ? (IOException) e : new IOException("Insecure UUID error", e);
-            Log.w(TAG, "Insecure UUID connection failed: " + e.getMessage());
-            closeSocketSafely(socket);
-            socket = null;
-        }
-
-        // Third try: Reflection-based connection with optimized channel order
-        // Start with most common channels first
-        int[] channels = {1, 2, 3, 4, 5};
-
-        for (int channel : channels) {
+        String address = device.getAddress();
+        List<ConnectionPlanner.Step> plan = connectionPlanner.plan(address);
+        Log.d(TAG, "Connection plan for " + address + ": " + plan);
+        IOException lastException = null;
+        long startNanos = System.nanoTime();
+
+        for (ConnectionPlanner.Step step : plan) {
+            ConnectionPlanner.Attempt attempt = step.attempt;
+            BluetoothSocket socket = null;
+            AtomicInteger connectState = new AtomicInteger(CONNECT_PENDING);
+            ScheduledFuture<?> watchdog = null;
+            long attemptStartNanos = System.nanoTime();
             try {
-                Log.d(TAG, "Trying reflection-based connection with channel: " + channel);
-                Method method = device.getClass().getMethod("createRfcommSocket", int.class);
-                socket = (BluetoothSocket) method.invoke(device, channel);
+                Log.d(TAG, "Trying " + attempt + " connection (timeout " + step.timeoutMs + " ms)");
+                socket = createSocket(device, attempt);
+                watchdog = armConnectWatchdog(socket, step.timeoutMs, connectState);
                 socket.connect();
-                Log.i(TAG, "Reflection-based connection successful with channel: " + channel);
+                // Whoever leaves PENDING first wins; if the watchdog did, it has closed (or is closing) the socket
+                if (!connectState.compareAndSet(CONNECT_PENDING, CONNECT_CONNECTED)) {
+                    throw new IOException("Connection timed out");
+                }
+                watchdog.cancel(false);
+
+                long elapsedNanos = System.nanoTime() - attemptStartNanos;
+                connectionPlanner.record(address, attempt, ConnectionPlanner.Outcome.CONNECTED, elapsedNanos);
+                Log.i(TAG, attempt + " connection successful in " + elapsedNanos / 1_000_000L + " ms ("
+                    + (System.nanoTime() - startNanos) / 1_000_000L + " ms overall)");
                 return socket;
             } catch (Exception e) {
-                lastException = e instanceof IOException ? (IOException) e : new IOException("Reflection error", e);
-                Log.w(TAG, "Reflection connection failed with channel " + channel + ": " + e.getMessage());
+                if (watchdog != null) watchdog.cancel(false);
+                boolean timedOut = connectState.get() == CONNECT_TIMED_OUT;
+                ConnectionPlanner.Outcome outcome = timedOut
+                    ? ConnectionPlanner.Outcome.TIMED_OUT : ConnectionPlanner.Outcome.FAILED;
+                connectionPlanner.record(address, attempt, outcome, System.nanoTime() - attemptStartNanos);
+                lastException = e instanceof IOException ? (IOException) e : new IOException(attempt + " error", e);
+                Log.w(TAG, attempt + " connection " + (timedOut ? "timed out" : "failed") + ": " + e.getMessage());
                 closeSocketSafely(socket);
-                socket = null;
             }
         }
 
-        // Fourth try: Insecure reflection connections as last resort
-        for (int channel : channels) {
-            try {
-                Log.d(TAG, "Trying insecure reflection-based connection with channel: " + channel);
+        throw lastException != null ? lastException : new IOException("No connection attempts planned");
+    }
+
+    private BluetoothSocket createSocket(BluetoothDevice device, ConnectionPlanner.Attempt attempt) throws Exception {
+        switch (attempt.strategy) {
+            case SECURE_UUID:
+                return device.createRfcommSocketToServiceRecord(BluetoothConstants.MY_UUID);
+            case INSECURE_UUID:
+                return device.createInsecureRfcommSocketToServiceRecord(BluetoothConstants.MY_UUID);
+            case SECURE_CHANNEL: {
+                Method method = device.getClass().getMethod("createRfcommSocket", int.class);
+                return (BluetoothSocket) method.invoke(device, attempt.channel);
+            }
+            case INSECURE_CHANNEL: {
                 Method method = device.getClass().getMethod("createInsecureRfcommSocket", int.class);
-                socket = (BluetoothSocket) method.invoke(device, channel);
-                socket.connect();
-                Log.i(TAG, "Insecure reflection-based connection successful with channel: " + channel);
-                return socket;
-            } catch (Exception e) {
-                lastException = e instanceof IOException ? (IOException) e : new IOException("Reflection error", e);
-                Log.w(TAG, "Insecure reflection connection failed with channel " + channel + ": " + e.getMessage());
-                closeSocketSafely(socket);
-                socket = null;
+                return (BluetoothSocket) method.invoke(device, attempt.channel);
             }
+            default:
+                throw new IOException("Unknown strategy " + attempt.strategy);
         }
+    }
 
-        throw lastException;
+    /**
+     * connect() has no timeout of its own; closing the socket from the watchdog makes it throw.
+     * The socket is only closed if the watchdog moves the attempt out of PENDING before connect() does.
+     */
+    private ScheduledFuture<?> armConnectWatchdog(BluetoothSocket socket, long timeoutMs, AtomicInteger connectState) {
+        return getConnectWatchdog().schedule(() -> {
+            if (connectState.compareAndSet(CONNECT_PENDING, CONNECT_TIMED_OUT)) {
+                closeSocketSafely(socket);
+            }
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized ScheduledExecutorService getConnectWatchdog() {
+        if (connectWatchdog == null || connectWatchdog.isShutdown()) {
+            connectWatchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "BluetoothConnectWatchdog");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return connectWatchdog;
     }
 
     private void closeSocketSafely(BluetoothSocket socket) {
@@ -550,6 +646,7 @@ public class BluetoothHelper {
 
                         inputStream = bluetoothSocket.getInputStream();
                         outputStream = bluetoothSocket.getOutputStream();
+                        writer.attach(outputStream);
 
                         // Record the connected device and cancel any pending delayed disconnect notifier
                         lastConnectedDevice = targetDevice;
@@ -647,6 +744,21 @@ public class BluetoothHelper {
         new Thread(() -> {
             byte[] buffer = new byte[1024];
             int bytes;
+            FrameDecoder decoder = new FrameDecoder(framingMode);
+            FrameDecoder.FrameListener frameListener = (payload, length) -> {
+                // One String per complete message, decoded straight from the reused payload array
+                String message = new String(payload, 0, length, StandardCharsets.UTF_8);
+                OnMessageReceivedListener background = backgroundMessageListener;
+                if (background != null) {
+                    background.onMessageReceived(message);
+                    return;
+                }
+                mainHandler.post(() -> {
+                    if (connectionListener != null) {
+                        connectionListener.onDataReceived(message);
+                    }
+                });
+            };
 
             while (bluetoothSocket != null && bluetoothSocket.isConnected()) {
                 try {
@@ -656,24 +768,21 @@ public class BluetoothHelper {
                         handleConnectionLost("Remote closed stream");
                         break;
                     }
-                    String receivedData = new String(buffer, 0, bytes);
-
-                    new Handler(Looper.getMainLooper()).post(() -> {
-                        if (connectionListener != null) {
-                            connectionListener.onDataReceived(receivedData);
-                        }
-                    });
+                    decoder.feed(buffer, 0, bytes, frameListener);
                 } catch (IOException e) {
                     Log.e(TAG, "Error reading data", e);
                     handleConnectionLost(e.getMessage());
                     break;
                 }
             }
+            Log.d(TAG, "Reader stopped: " + decoder.getFramesDecoded() + " frames decoded, "
+                + decoder.getFramesDropped() + " dropped");
         }).start();
     }
 
     private synchronized void handleConnectionLost(String reason) {
         Log.w(TAG, "Connection lost: " + reason);
+        writer.detach();
 
         // Close streams and socket safely
         try {
@@ -720,21 +829,50 @@ public class BluetoothHelper {
     }
 
     public void sendData(String data) {
-        if (outputStream != null) {
-            new Thread(() -> {
-                try {
-                    outputStream.write(data.getBytes());
-                    outputStream.flush();
-                } catch (IOException e) {
-                    Log.e(TAG, "Error sending data", e);
-                }
-            }).start();
-        }
+        sendData(data, null);
+    }
+
+    /**
+     * Queue a message for the writer thread
+     * @param coalesceKey messages sharing a key may replace each other when the queue
+     *                    overflows under the COALESCE policy (e.g. "obstacles"), may be null
+     */
+    public boolean sendData(String data, String coalesceKey) {
+        if (outputStream == null) return false;
+        return writer.enqueue(frameEncoder.encode(data), coalesceKey);
+    }
+
+    /**
+     * Queue an already UTF-8 encoded message, e.g. a cached payload
+     */
+    public boolean sendData(byte[] payload, String coalesceKey) {
+        return sendData(payload, coalesceKey, null);
+    }
+
+    /**
+     * Queue an already UTF-8 encoded message and be told on the writer thread whether it was
+     * written; the listener is only called when this returns true
+     */
+    public boolean sendData(byte[] payload, String coalesceKey, BluetoothWriter.OnWriteCompleteListener listener) {
+        if (outputStream == null) return false;
+        return writer.enqueue(frameEncoder.encode(payload, 0, payload.length), coalesceKey, listener);
+    }
+
+    /**
+     * Block until everything queued so far is on the wire
+     */
+    public boolean flush() {
+        return writer.flush();
+    }
+
+    public boolean awaitDrained(long timeoutMs) {
+        return writer.awaitDrained(timeoutMs);
     }
 
     public void disconnect() {
         Log.d(TAG, "disconnect() called");
         cancelContinuousReconnect();
+        writer.detach();
         try {
             stopDiscovery();
             stopListening();
@@ -829,8 +967,16 @@ public class BluetoothHelper {
             stopDiscovery();
             stopListening();
             disconnect();
+            writer.shutdown();
+            synchronized (this) {
+                if (connectWatchdog != null) {
+                    connectWatchdog.shutdownNow();
+                    connectWatchdog = null;
+                }
+            }
 
             connectionListener = null;
+            backgroundMessageListener = null;
 
             Log.d(TAG, "Cleanup completed successfully");
 
@@ -0,0 +1,485 @@
+package com.linh.mdp.bluetooth;
+
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single persistent writer thread draining a bounded send queue onto the RFCOMM output stream.
+ * Messages are written strictly in enqueue order; the stream is flushed once each time the
+ * queue runs empty.
+ *
+ * With a batch window set, the writer holds the first message for up to that long, then merges
+ * everything queued meanwhile into one buffer with a single write and flush. Frames are
+ * self-delimiting, so the peer must split on frame boundaries rather than on read boundaries.
+ */
+public class BluetoothWriter {
+    private static final String TAG = "BluetoothWriter";
+
+    /**
+     * What to do when the send queue is full
+     */
+    public enum OverflowPolicy {
+        // Wait up to the block timeout for space, then drop the new message. Never waits on
+        // the main thread: there the new message is dropped straight away
+        BLOCK,
+        // Drop the oldest pending message to make room
+        DROP_OLDEST,
+        // Replace a pending message with the same key, otherwise drop the oldest
+        COALESCE
+    }
+
+    /**
+     * Told whether an accepted message made it onto the stream: true once its bytes were
+     * written and flushed, false if it was dropped, replaced by a coalesced message or the
+     * write failed. Runs on the writer thread, or on the enqueuing thread for overflow drops.
+     */
+    public interface OnWriteCompleteListener {
+        void onWriteComplete(boolean written);
+    }
+
+    private static final long POLL_INTERVAL_MS = 250;
+    public static final long MAX_BATCH_WINDOW_MS = 50;
+
+    private static final class OutgoingMessage {
+        final String key;
+        final long enqueuedAtNanos;
+        byte[] payload;
+        OnWriteCompleteListener listener;
+        boolean taken;
+
+        OutgoingMessage(byte[] payload, String key, OnWriteCompleteListener listener) {
+            this.payload = payload;
+            this.key = key;
+            this.listener = listener;
+            this.enqueuedAtNanos = System.nanoTime();
+        }
+    }
+
+    private final BlockingQueue<OutgoingMessage> queue;
+    private final long blockTimeoutMs;
+    private volatile OverflowPolicy overflowPolicy;
+    private volatile OutputStream outputStream;
+    private volatile long batchWindowNanos = 0;
+    private byte[] mergeBuffer = new byte[1024]; // writer thread only
+    private volatile boolean running = false;
+    private Thread writerThread;
+
+    // Drain tracking: every accepted message eventually counts as completed (written or dropped)
+    private final Object drainLock = new Object();
+    private long acceptedCount = 0;
+    private long completedCount = 0;
+
+    // Statistics
+    private long sentCount = 0;
+    private long droppedCount = 0;
+    private long coalescedCount = 0;
+    private long flushCount = 0;
+    private long writeCallCount = 0;
+    private long totalLatencyNanos = 0;
+    private long maxLatencyNanos = 0;
+    private long lastLatencyNanos = 0;
+
+    public BluetoothWriter(int capacity, OverflowPolicy overflowPolicy, long blockTimeoutMs) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeoutMs = blockTimeoutMs;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy policy) { this.overflowPolicy = policy; }
+    public OverflowPolicy getOverflowPolicy() { return overflowPolicy; }
+
+    /**
+     * Enable write batching: hold writes for up to this window and send them as one write.
+     * 0 disables batching. Clamped to {@link #MAX_BATCH_WINDOW_MS}.
+     */
+    public void setBatchWindowMs(long windowMs) {
+        long clamped = Math.max(0, Math.min(windowMs, MAX_BATCH_WINDOW_MS));
+        this.batchWindowNanos = TimeUnit.MILLISECONDS.toNanos(clamped);
+    }
+
+    public long getBatchWindowMs() {
+        return TimeUnit.NANOSECONDS.toMillis(batchWindowNanos);
+    }
+
+    /**
+     * Start writing to the given stream; starts the writer thread on first use
+     */
+    public synchronized void attach(OutputStream stream) {
+        this.outputStream = stream;
+        if (!running) {
+            running = true;
+            writerThread = new Thread(this::writeLoop, TAG);
+            writerThread.start();
+        }
+    }
+
+    /**
+     * Stop writing to the current stream and drop anything still pending
+     */
+    public void detach() {
+        outputStream = null;
+        discardPending();
+    }
+
+    /**
+     * Stop the writer thread permanently
+     */
+    public synchronized void shutdown() {
+        detach();
+        running = false;
+        if (writerThread != null) {
+            writerThread.interrupt();
+            writerThread = null;
+        }
+    }
+
+    public boolean isAttached() {
+        return outputStream != null;
+    }
+
+    /**
+     * Queue an already-framed payload for sending
+     * @param coalesceKey messages with equal keys may replace each other under COALESCE, may be null
+     * @return false if the message was dropped
+     */
+    public boolean enqueue(byte[] payload, String coalesceKey) {
+        return enqueue(payload, coalesceKey, null);
+    }
+
+    /**
+     * Queue an already-framed payload and be told once it is written
+     * @param listener called exactly once if this returns true, may be null
+     * @return false if the message was dropped; the listener is then not called
+     */
+    public boolean enqueue(byte[] payload, String coalesceKey, OnWriteCompleteListener listener) {
+        if (outputStream == null) return false;
+
+        if (overflowPolicy == OverflowPolicy.COALESCE && coalesceKey != null
+            && queue.remainingCapacity() == 0 && coalesceInto(payload, coalesceKey, listener)) {
+            return true;
+        }
+
+        OutgoingMessage message = new OutgoingMessage(payload, coalesceKey, listener);
+        synchronized (drainLock) {
+            acceptedCount++;
+        }
+
+        if (queue.offer(message)) return true;
+
+        switch (overflowPolicy) {
+            case BLOCK:
+                if (isMainThread()) {
+                    Log.w(TAG, "Send queue full, dropping message rather than blocking the main thread");
+                    markDropped(1);
+                    return false;
+                }
+                try {
+                    if (queue.offer(message, blockTimeoutMs, TimeUnit.MILLISECONDS)) return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                Log.w(TAG, "Send queue full for " + blockTimeoutMs + "ms, dropping message");
+                markDropped(1);
+                return false;
+
+            case DROP_OLDEST:
+            case COALESCE:
+            default:
+                while (!queue.offer(message)) {
+                    OutgoingMessage oldest = queue.poll();
+                    if (oldest != null) {
+                        Log.w(TAG, "Send queue full, dropping oldest message");
+                        take(oldest);
+                        notifyComplete(oldest, false);
+                        markDropped(1);
+                    }
+                }
+                return true;
+        }
+    }
+
+    private static boolean isMainThread() {
+        Looper mainLooper = Looper.getMainLooper();
+        return mainLooper != null && mainLooper.getThread() == Thread.currentThread();
+    }
+
+    private boolean coalesceInto(byte[] payload, String key, OnWriteCompleteListener listener) {
+        for (OutgoingMessage pending : queue) {
+            if (key.equals(pending.key)) {
+                OnWriteCompleteListener replaced;
+                synchronized (pending) {
+                    if (pending.taken) continue;
+                    replaced = pending.listener;
+                    pending.payload = payload;
+                    pending.listener = listener;
+                }
+                synchronized (drainLock) {
+                    coalescedCount++;
+                }
+                if (replaced != null) notifyListener(replaced, false);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Block until every message accepted so far has been written and flushed (or dropped) and its
+     * listener has been called
+     * @return false on timeout
+     */
+    public boolean awaitDrained(long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (drainLock) {
+            long target = acceptedCount;
+            while (completedCount < target) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) return false;
+                try {
+                    drainLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Push everything queued so far onto the wire
+     * @return false if the queue did not drain within the block timeout
+     */
+    public boolean flush() {
+        return awaitDrained(blockTimeoutMs);
+    }
+
+    private void writeLoop() {
+        List<OutgoingMessage> batch = new ArrayList<>();
+        while (running) {
+            try {
+                OutgoingMessage first = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+
+                batch.add(first);
+                long window = batchWindowNanos;
+                if (window > 0) {
+                    collectWithinWindow(batch, first.enqueuedAtNanos + window);
+                    writeMerged(batch);
+                } else {
+                    queue.drainTo(batch);
+                    writeBatch(batch);
+                }
+            } catch (InterruptedException e) {
+                if (!running) break;
+            } finally {
+                batch.clear();
+            }
+        }
+        Log.d(TAG, "Writer thread stopped");
+    }
+
+    private void collectWithinWindow(List<OutgoingMessage> batch, long deadlineNanos) throws InterruptedException {
+        while (true) {
+            queue.drainTo(batch);
+            long remaining = deadlineNanos - System.nanoTime();
+            if (remaining <= 0) return;
+            OutgoingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) return;
+            batch.add(next);
+        }
+    }
+
+    private void writeBatch(List<OutgoingMessage> batch) {
+        OutputStream stream = outputStream;
+        if (stream == null) {
+            dropBatch(batch);
+            return;
+        }
+        try {
+            for (OutgoingMessage message : batch) {
+                stream.write(take(message));
+            }
+            stream.flush();
+        } catch (IOException e) {
+            Log.e(TAG, "Error sending data", e);
+            // Messages already written are not confirmed on the wire without a flush
+            for (OutgoingMessage message : batch) take(message);
+            for (OutgoingMessage message : batch) notifyComplete(message, false);
+            markDropped(batch.size());
+            return;
+        }
+        for (OutgoingMessage message : batch) notifyComplete(message, true);
+        recordSent(batch, batch.size());
+    }
+
+    private void writeMerged(List<OutgoingMessage> batch) {
+        OutputStream stream = outputStream;
+        if (stream == null) {
+            dropBatch(batch);
+            return;
+        }
+        int length = 0;
+        for (OutgoingMessage message : batch) {
+            byte[] payload = take(message);
+            ensureMergeCapacity(length + payload.length);
+            System.arraycopy(payload, 0, mergeBuffer, length, payload.length);
+            length += payload.length;
+        }
+        try {
+            stream.write(mergeBuffer, 0, length);
+            stream.flush();
+        } catch (IOException e) {
+            Log.e(TAG, "Error sending batched data", e);
+            for (OutgoingMessage message : batch) notifyComplete(message, false);
+            markDropped(batch.size());
+            return;
+        }
+        for (OutgoingMessage message : batch) notifyComplete(message, true);
+        recordSent(batch, 1);
+    }
+
+    private void dropBatch(List<OutgoingMessage> batch) {
+        for (OutgoingMessage message : batch) take(message);
+        for (OutgoingMessage message : batch) notifyComplete(message, false);
+        markDropped(batch.size());
+    }
+
+    private byte[] take(OutgoingMessage message) {
+        synchronized (message) {
+            message.taken = true;
+            return message.payload;
+        }
+    }
+
+    // Only after take(): a taken message's listener can no longer be replaced. Called before the
+    // message counts as completed, so awaitDrained returns only once every listener has run
+    private static void notifyComplete(OutgoingMessage message, boolean written) {
+        OnWriteCompleteListener listener = message.listener;
+        if (listener != null) notifyListener(listener, written);
+    }
+
+    private static void notifyListener(OnWriteCompleteListener listener, boolean written) {
+        try {
+            listener.onWriteComplete(written);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Write completion listener failed", e);
+        }
+    }
+
+    private void ensureMergeCapacity(int needed) {
+        if (needed > mergeBuffer.length) {
+            mergeBuffer = Arrays.copyOf(mergeBuffer, Math.max(needed, mergeBuffer.length * 2));
+        }
+    }
+
+    // The whole batch went out in writeCalls stream writes and one flush
+    private void recordSent(List<OutgoingMessage> batch, int writeCalls) {
+        long now = System.nanoTime();
+        synchronized (drainLock) {
+            for (OutgoingMessage message : batch) {
+                long latency = now - message.enqueuedAtNanos;
+                totalLatencyNanos += latency;
+                if (latency > maxLatencyNanos) maxLatencyNanos = latency;
+                lastLatencyNanos = latency;
+            }
+            sentCount += batch.size();
+            writeCallCount += writeCalls;
+            flushCount++;
+            completedCount += batch.size();
+            drainLock.notifyAll();
+        }
+    }
+
+    private void markDropped(int count) {
+        if (count <= 0) return;
+        synchronized (drainLock) {
+            droppedCount += count;
+            completedCount += count;
+            drainLock.notifyAll();
+        }
+    }
+
+    private void discardPending() {
+        List<OutgoingMessage> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        dropBatch(pending);
+    }
+
+    // Statistics getters
+
+    public int getPendingCount() { return queue.size(); }
+
+    public long getSentCount() {
+        synchronized (drainLock) { return sentCount; }
+    }
+
+    public long getDroppedCount() {
+        synchronized (drainLock) { return droppedCount; }
+    }
+
+    public long getCoalescedCount() {
+        synchronized (drainLock) { return coalescedCount; }
+    }
+
+    public long getFlushCount() {
+        synchronized (drainLock) { return flushCount; }
+    }
+
+    public long getWriteCallCount() {
+        synchronized (drainLock) { return writeCallCount; }
+    }
+
+    /**
+     * Stream writes avoided compared to one write per message
+     */
+    public long getSavedWriteCount() {
+        synchronized (drainLock) { return sentCount - writeCallCount; }
+    }
+
+    /**
+     * Stream flushes avoided compared to one flush per message
+     */
+    public long getSavedFlushCount() {
+        synchronized (drainLock) { return sentCount - flushCount; }
+    }
+
+    /**
+     * Average enqueue-to-wire latency in milliseconds
+     */
+    public double getAverageLatencyMs() {
+        synchronized (drainLock) {
+            return sentCount == 0 ? 0 : totalLatencyNanos / 1e6 / sentCount;
+        }
+    }
+
+    public double getMaxLatencyMs() {
+        synchronized (drainLock) { return maxLatencyNanos / 1e6; }
+    }
+
+    public double getLastLatencyMs() {
+        synchronized (drainLock) { return lastLatencyNanos / 1e6; }
+    }
+
+    public void resetStats() {
+        synchronized (drainLock) {
+            sentCount = 0;
+            droppedCount = 0;
+            coalescedCount = 0;
+            flushCount = 0;
+            writeCallCount = 0;
+            totalLatencyNanos = 0;
+            maxLatencyNanos = 0;
+            lastLatencyNanos = 0;
+        }
+    }
+}
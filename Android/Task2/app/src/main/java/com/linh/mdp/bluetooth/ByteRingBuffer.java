@@ -0,0 +1,95 @@
+package com.linh.mdp.bluetooth;
+
+/**
+ * Fixed-capacity circular byte buffer used by the framing layer to accumulate
+ * partial reads from the RFCOMM stream without re-allocating per read
+ */
+public class ByteRingBuffer {
+    private final byte[] data;
+    private final int mask;
+    private int head = 0; // next byte to read
+    private int size = 0;
+
+    /**
+     * @param minCapacity requested capacity, rounded up to the next power of two
+     */
+    public ByteRingBuffer(int minCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(16, minCapacity - 1)) << 1;
+        this.data = new byte[capacity];
+        this.mask = capacity - 1;
+    }
+
+    public int capacity() { return data.length; }
+    public int size() { return size; }
+    public int remaining() { return data.length - size; }
+    public boolean isEmpty() { return size == 0; }
+
+    /**
+     * Append bytes to the tail of the buffer
+     * @return number of bytes actually written (less than len when full)
+     */
+    public int write(byte[] src, int off, int len) {
+        int n = Math.min(len, remaining());
+        int tail = (head + size) & mask;
+        int first = Math.min(n, data.length - tail);
+        System.arraycopy(src, off, data, tail, first);
+        if (n > first) {
+            System.arraycopy(src, off + first, data, 0, n - first);
+        }
+        size += n;
+        return n;
+    }
+
+    /**
+     * Read the byte at the given offset from the head without consuming it
+     */
+    public byte peek(int index) {
+        return data[(head + index) & mask];
+    }
+
+    /**
+     * Find the first occurrence of a byte at or after the given offset from the head
+     * @return offset from the head, or -1 if not present
+     */
+    public int indexOf(byte value, int fromIndex) {
+        for (int i = fromIndex; i < size; i++) {
+            if (data[(head + i) & mask] == value) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Copy bytes starting at the given offset from the head without consuming them
+     */
+    public void copyTo(int index, byte[] dst, int dstOff, int len) {
+        int start = (head + index) & mask;
+        int first = Math.min(len, data.length - start);
+        System.arraycopy(data, start, dst, dstOff, first);
+        if (len > first) {
+            System.arraycopy(data, 0, dst, dstOff + first, len - first);
+        }
+    }
+
+    /**
+     * Consume and copy bytes from the head
+     */
+    public void read(byte[] dst, int dstOff, int len) {
+        copyTo(0, dst, dstOff, len);
+        skip(len);
+    }
+
+    /**
+     * Discard bytes from the head
+     */
+    public void skip(int len) {
+        int n = Math.min(len, size);
+        head = (head + n) & mask;
+        size -= n;
+        if (size == 0) head = 0;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+}
@@ -0,0 +1,268 @@
+package com.linh.mdp.bluetooth;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.linh.mdp.utils.BluetoothConstants;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Decides the order and timeouts of the socket strategies {@link BluetoothHelper} tries when
+ * connecting to a device.
+ *
+ * The attempt that last connected to a device address is persisted and tried first, with the
+ * full connection timeout. The remaining attempts follow in order of their success rate so far
+ * (default order on ties), each with a timeout derived from its strategy's observed connect
+ * times. The caller enforces the timeouts with a watchdog and reports every outcome back.
+ *
+ * Time-to-connect, failures and timeouts are kept per strategy for diagnostics.
+ */
+public class ConnectionPlanner {
+    private static final String TAG = "ConnectionPlanner";
+    private static final String PREFS_NAME = "bluetooth_connection_plans";
+
+    // RFCOMM channels tried by the reflection strategies
+    private static final int MAX_CHANNEL = 5;
+
+    // Per-attempt timeouts; fallbacks get a few times their strategy's average connect time
+    private static final long DEFAULT_ATTEMPT_TIMEOUT_MS = 4000;
+    private static final long MIN_ATTEMPT_TIMEOUT_MS = 1500;
+    private static final int TIMEOUT_TO_AVERAGE_RATIO = 3;
+
+    public enum Strategy {
+        SECURE_UUID,
+        INSECURE_UUID,
+        SECURE_CHANNEL,
+        INSECURE_CHANNEL
+    }
+
+    public enum Outcome {
+        CONNECTED,
+        FAILED,
+        TIMED_OUT
+    }
+
+    /**
+     * One way of opening a socket: a strategy and, for the reflection strategies, a channel
+     */
+    public static final class Attempt {
+        public final Strategy strategy;
+        // RFCOMM channel, 0 for the UUID strategies
+        public final int channel;
+        private final int defaultRank;
+        // Guarded by the planner
+        private int successes = 0;
+        private int failures = 0;
+
+        Attempt(Strategy strategy, int channel, int defaultRank) {
+            this.strategy = strategy;
+            this.channel = channel;
+            this.defaultRank = defaultRank;
+        }
+
+        String key() {
+            return channel == 0 ? strategy.name() : strategy.name() + ":" + channel;
+        }
+
+        @Override
+        public String toString() {
+            return key();
+        }
+    }
+
+    /**
+     * An attempt scheduled in a plan, with the timeout to enforce on it
+     */
+    public static final class Step {
+        public final Attempt attempt;
+        public final long timeoutMs;
+
+        Step(Attempt attempt, long timeoutMs) {
+            this.attempt = attempt;
+            this.timeoutMs = timeoutMs;
+        }
+
+        @Override
+        public String toString() {
+            return attempt + "/" + timeoutMs + "ms";
+        }
+    }
+
+    /**
+     * Snapshot of one strategy's outcomes and time-to-connect
+     */
+    public static final class StrategyStats {
+        private int attempts;
+        private int successes;
+        private int failures;
+        private int timeouts;
+        private long totalConnectNanos;
+        private long minConnectNanos = Long.MAX_VALUE;
+        private long maxConnectNanos;
+
+        private StrategyStats copy() {
+            StrategyStats copy = new StrategyStats();
+            copy.attempts = attempts;
+            copy.successes = successes;
+            copy.failures = failures;
+            copy.timeouts = timeouts;
+            copy.totalConnectNanos = totalConnectNanos;
+            copy.minConnectNanos = minConnectNanos;
+            copy.maxConnectNanos = maxConnectNanos;
+            return copy;
+        }
+
+        public int getAttempts() { return attempts; }
+        public int getSuccesses() { return successes; }
+        public int getFailures() { return failures; }
+        public int getTimeouts() { return timeouts; }
+
+        public double getAverageConnectMs() {
+            return successes == 0 ? 0 : totalConnectNanos / 1e6 / successes;
+        }
+
+        public double getMinConnectMs() {
+            return successes == 0 ? 0 : minConnectNanos / 1e6;
+        }
+
+        public double getMaxConnectMs() {
+            return maxConnectNanos / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                "%d/%d connected (%d timed out), avg %.0f ms, min %.0f ms, max %.0f ms",
+                successes, attempts, timeouts, getAverageConnectMs(), getMinConnectMs(), getMaxConnectMs());
+        }
+    }
+
+    private final SharedPreferences preferences;
+    private final List<Attempt> attempts = new ArrayList<>();
+    private final Map<Strategy, StrategyStats> stats = new EnumMap<>(Strategy.class);
+
+    public ConnectionPlanner(Context context) {
+        this(context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE));
+    }
+
+    ConnectionPlanner(SharedPreferences preferences) {
+        this.preferences = preferences;
+
+        // Default order: UUID lookups first, then the reflection channels, secure before insecure
+        attempts.add(new Attempt(Strategy.SECURE_UUID, 0, attempts.size()));
+        attempts.add(new Attempt(Strategy.INSECURE_UUID, 0, attempts.size()));
+        for (int channel = 1; channel <= MAX_CHANNEL; channel++) {
+            attempts.add(new Attempt(Strategy.SECURE_CHANNEL, channel, attempts.size()));
+        }
+        for (int channel = 1; channel <= MAX_CHANNEL; channel++) {
+            attempts.add(new Attempt(Strategy.INSECURE_CHANNEL, channel, attempts.size()));
+        }
+        for (Strategy strategy : Strategy.values()) {
+            stats.put(strategy, new StrategyStats());
+        }
+    }
+
+    /**
+     * @return every attempt in the order to try them for this device address
+     */
+    public synchronized List<Step> plan(String address) {
+        Attempt preferred = findAttempt(preferences.getString(address, null));
+
+        List<Attempt> fallbacks = new ArrayList<>(attempts);
+        fallbacks.remove(preferred);
+        // Laplace-smoothed success rate, so untried attempts sit between good and bad ones
+        Collections.sort(fallbacks, (a, b) -> {
+            int bySuccess = Long.compare(
+                (long) (b.successes + 1) * (a.successes + a.failures + 2),
+                (long) (a.successes + 1) * (b.successes + b.failures + 2));
+            return bySuccess != 0 ? bySuccess : Integer.compare(a.defaultRank, b.defaultRank);
+        });
+
+        List<Step> plan = new ArrayList<>(attempts.size());
+        if (preferred != null) {
+            plan.add(new Step(preferred, BluetoothConstants.CONNECTION_TIMEOUT_MS));
+        }
+        for (Attempt attempt : fallbacks) {
+            plan.add(new Step(attempt, fallbackTimeoutMs(attempt.strategy)));
+        }
+        return plan;
+    }
+
+    private long fallbackTimeoutMs(Strategy strategy) {
+        StrategyStats strategyStats = stats.get(strategy);
+        if (strategyStats.successes == 0) {
+            return DEFAULT_ATTEMPT_TIMEOUT_MS;
+        }
+        long averageMs = strategyStats.totalConnectNanos / 1_000_000L / strategyStats.successes;
+        return Math.max(MIN_ATTEMPT_TIMEOUT_MS,
+            Math.min(BluetoothConstants.CONNECTION_TIMEOUT_MS, averageMs * TIMEOUT_TO_AVERAGE_RATIO));
+    }
+
+    private Attempt findAttempt(String key) {
+        if (key == null) return null;
+        for (Attempt attempt : attempts) {
+            if (attempt.key().equals(key)) return attempt;
+        }
+        return null;
+    }
+
+    /**
+     * Record how an attempt went; a connection makes it the first choice for this address
+     */
+    public synchronized void record(String address, Attempt attempt, Outcome outcome, long elapsedNanos) {
+        StrategyStats strategyStats = stats.get(attempt.strategy);
+        strategyStats.attempts++;
+        switch (outcome) {
+            case CONNECTED:
+                attempt.successes++;
+                strategyStats.successes++;
+                strategyStats.totalConnectNanos += elapsedNanos;
+                strategyStats.minConnectNanos = Math.min(strategyStats.minConnectNanos, elapsedNanos);
+                strategyStats.maxConnectNanos = Math.max(strategyStats.maxConnectNanos, elapsedNanos);
+                if (!attempt.key().equals(preferences.getString(address, null))) {
+                    preferences.edit().putString(address, attempt.key()).apply();
+                }
+                Log.d(TAG, attempt.strategy + ": " + strategyStats);
+                break;
+            case TIMED_OUT:
+                strategyStats.timeouts++;
+                // fall through
+            case FAILED:
+                attempt.failures++;
+                strategyStats.failures++;
+                break;
+        }
+    }
+
+    /**
+     * @return the attempt that last connected to this address, or null
+     */
+    public synchronized Attempt getPreferredAttempt(String address) {
+        return findAttempt(preferences.getString(address, null));
+    }
+
+    public synchronized void forgetDevice(String address) {
+        preferences.edit().remove(address).apply();
+    }
+
+    public synchronized StrategyStats getStats(Strategy strategy) {
+        return stats.get(strategy).copy();
+    }
+
+    public synchronized void resetStats() {
+        for (Strategy strategy : Strategy.values()) {
+            stats.put(strategy, new StrategyStats());
+        }
+        for (Attempt attempt : attempts) {
+            attempt.successes = 0;
+            attempt.failures = 0;
+        }
+    }
+}
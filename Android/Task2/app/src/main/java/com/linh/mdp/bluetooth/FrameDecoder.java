@@ -0,0 +1,187 @@
+package com.linh.mdp.bluetooth;
+
+import android.util.Log;
+
+/**
+ * Reassembles complete messages from the raw RFCOMM byte stream.
+ *
+ * Two wire formats are supported:
+ * - NEWLINE: messages terminated by '\n' (what the RPi currently sends); a trailing '\r' is dropped
+ *   and a line longer than {@link #MAX_PAYLOAD_SIZE} is discarded up to its delimiter
+ * - LENGTH_PREFIXED: [0xA5][len hi][len lo][payload][crc16 hi][crc16 lo], CRC-16/CCITT over the payload
+ *
+ * Bytes from each read are staged in a reused ring buffer and every complete message is
+ * delivered exactly once through {@link FrameListener}, using a reused payload array.
+ * Not thread-safe: feed from the single reader thread only.
+ */
+public class FrameDecoder {
+    private static final String TAG = "FrameDecoder";
+
+    public enum Mode { NEWLINE, LENGTH_PREFIXED }
+
+    public static final byte FRAME_MAGIC = (byte) 0xA5;
+    public static final int HEADER_SIZE = 3;
+    public static final int TRAILER_SIZE = 2;
+    public static final int MAX_PAYLOAD_SIZE = 4096;
+
+    /**
+     * Receives one complete message. The array is reused by the decoder and is only valid
+     * for the duration of the call.
+     */
+    public interface FrameListener {
+        void onFrame(byte[] payload, int length);
+    }
+
+    private final Mode mode;
+    private final ByteRingBuffer ring;
+    private final byte[] payload = new byte[MAX_PAYLOAD_SIZE];
+    private int scanFrom = 0; // NEWLINE mode: bytes already searched for a delimiter
+    private boolean discarding = false; // NEWLINE mode: dropping an overlong line up to its delimiter
+
+    private long framesDecoded = 0;
+    private long framesDropped = 0;
+
+    public FrameDecoder(Mode mode) {
+        this.mode = mode;
+        this.ring = new ByteRingBuffer(MAX_PAYLOAD_SIZE * 2);
+    }
+
+    public Mode getMode() { return mode; }
+    public long getFramesDecoded() { return framesDecoded; }
+    public long getFramesDropped() { return framesDropped; }
+
+    /**
+     * Feed bytes from a single read and emit every complete frame they finish
+     */
+    public void feed(byte[] src, int off, int len, FrameListener listener) {
+        while (len > 0) {
+            int written = ring.write(src, off, len);
+            off += written;
+            len -= written;
+            drain(listener);
+            if (written == 0) {
+                // Ring is full of undecodable bytes: discard them to make progress
+                Log.w(TAG, "Frame buffer overflow, discarding " + ring.size() + " bytes");
+                framesDropped++;
+                ring.clear();
+                scanFrom = 0;
+                discarding = mode == Mode.NEWLINE;
+            }
+        }
+    }
+
+    /**
+     * Drop any partially received frame, e.g. when the connection is re-established
+     */
+    public void reset() {
+        ring.clear();
+        scanFrom = 0;
+        discarding = false;
+    }
+
+    private void drain(FrameListener listener) {
+        if (mode == Mode.NEWLINE) {
+            drainNewline(listener);
+        } else {
+            drainLengthPrefixed(listener);
+        }
+    }
+
+    private void drainNewline(FrameListener listener) {
+        while (true) {
+            int delimiter = ring.indexOf((byte) '\n', scanFrom);
+            if (delimiter < 0) {
+                scanFrom = ring.size();
+                if (discarding) {
+                    // Still inside a dropped line
+                    ring.clear();
+                    scanFrom = 0;
+                } else if (scanFrom > MAX_PAYLOAD_SIZE) {
+                    Log.w(TAG, "Line exceeds " + MAX_PAYLOAD_SIZE + " bytes without delimiter, dropping");
+                    framesDropped++;
+                    ring.clear();
+                    scanFrom = 0;
+                    // The rest of the line is not a message of its own
+                    discarding = true;
+                }
+                return;
+            }
+            if (discarding) {
+                ring.skip(delimiter + 1);
+                scanFrom = 0;
+                discarding = false;
+                continue;
+            }
+
+            int length = delimiter;
+            if (length > 0 && ring.peek(length - 1) == '\r') length--;
+            if (length > MAX_PAYLOAD_SIZE) {
+                framesDropped++;
+            } else if (length > 0) {
+                ring.copyTo(0, payload, 0, length);
+                emit(listener, length);
+            }
+            ring.skip(delimiter + 1);
+            scanFrom = 0;
+        }
+    }
+
+    private void drainLengthPrefixed(FrameListener listener) {
+        while (true) {
+            // Resynchronise on the magic byte
+            int magic = ring.indexOf(FRAME_MAGIC, 0);
+            if (magic < 0) {
+                ring.clear();
+                return;
+            }
+            if (magic > 0) {
+                ring.skip(magic);
+                framesDropped++;
+            }
+            if (ring.size() < HEADER_SIZE) return;
+
+            int length = ((ring.peek(1) & 0xFF) << 8) | (ring.peek(2) & 0xFF);
+            if (length > MAX_PAYLOAD_SIZE) {
+                Log.w(TAG, "Invalid frame length " + length + ", resyncing");
+                framesDropped++;
+                ring.skip(1);
+                continue;
+            }
+            int total = HEADER_SIZE + length + TRAILER_SIZE;
+            if (ring.size() < total) return;
+
+            ring.copyTo(HEADER_SIZE, payload, 0, length);
+            int expected = ((ring.peek(HEADER_SIZE + length) & 0xFF) << 8)
+                | (ring.peek(HEADER_SIZE + length + 1) & 0xFF);
+            if (crc16(payload, 0, length) != expected) {
+                Log.w(TAG, "CRC mismatch on " + length + "-byte frame, resyncing");
+                framesDropped++;
+                ring.skip(1);
+                continue;
+            }
+            ring.skip(total);
+            emit(listener, length);
+        }
+    }
+
+    private void emit(FrameListener listener, int length) {
+        framesDecoded++;
+        if (listener != null) {
+            listener.onFrame(payload, length);
+        }
+    }
+
+    /**
+     * CRC-16/CCITT-FALSE (poly 0x1021, init 0xFFFF)
+     */
+    public static int crc16(byte[] data, int off, int len) {
+        int crc = 0xFFFF;
+        for (int i = off; i < off + len; i++) {
+            crc ^= (data[i] & 0xFF) << 8;
+            for (int b = 0; b < 8; b++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+        }
+        return crc & 0xFFFF;
+    }
+}
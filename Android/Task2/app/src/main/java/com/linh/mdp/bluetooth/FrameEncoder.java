@@ -0,0 +1,48 @@
+package com.linh.mdp.bluetooth;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Wraps outgoing messages in the wire format understood by {@link FrameDecoder}
+ */
+public class FrameEncoder {
+
+    private final FrameDecoder.Mode mode;
+
+    public FrameEncoder(FrameDecoder.Mode mode) {
+        this.mode = mode;
+    }
+
+    public FrameDecoder.Mode getMode() { return mode; }
+
+    /**
+     * Encode a message into a single frame ready to be written to the socket
+     */
+    public byte[] encode(String message) {
+        byte[] payload = message.getBytes(StandardCharsets.UTF_8);
+        return encode(payload, 0, payload.length);
+    }
+
+    public byte[] encode(byte[] payload, int off, int len) {
+        if (mode == FrameDecoder.Mode.NEWLINE) {
+            boolean terminated = len > 0 && payload[off + len - 1] == '\n';
+            byte[] frame = new byte[terminated ? len : len + 1];
+            System.arraycopy(payload, off, frame, 0, len);
+            frame[frame.length - 1] = '\n';
+            return frame;
+        }
+
+        if (len > FrameDecoder.MAX_PAYLOAD_SIZE) {
+            throw new IllegalArgumentException("Payload exceeds " + FrameDecoder.MAX_PAYLOAD_SIZE + " bytes: " + len);
+        }
+        byte[] frame = new byte[FrameDecoder.HEADER_SIZE + len + FrameDecoder.TRAILER_SIZE];
+        frame[0] = FrameDecoder.FRAME_MAGIC;
+        frame[1] = (byte) (len >>> 8);
+        frame[2] = (byte) len;
+        System.arraycopy(payload, off, frame, FrameDecoder.HEADER_SIZE, len);
+        int crc = FrameDecoder.crc16(payload, off, len);
+        frame[FrameDecoder.HEADER_SIZE + len] = (byte) (crc >>> 8);
+        frame[FrameDecoder.HEADER_SIZE + len + 1] = (byte) crc;
+        return frame;
+    }
+}
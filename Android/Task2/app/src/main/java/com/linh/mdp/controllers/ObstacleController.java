@@ -2,6 +2,8 @@ package com.linh.mdp.controllers;
 
 import android.content.Context;
 import android.graphics.Color;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
@@ -11,10 +13,7 @@ import android.widget.Toast;
 
 import com.linh.mdp.adapters.GridTableAdapter;
 import com.linh.mdp.bluetooth.BluetoothHelper;
-
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import com.linh.mdp.managers.ObstacleSetSerializer;
 
 /**
  * Controller class to handle obstacle-related operations
@@ -56,12 +55,15 @@ public class ObstacleController {
     private boolean hasPreviewBorder = false;
     private OnObstacleModeChangeListener obstacleListener;
 
+    // Upload state; deltas need an RPi that understands "delta"/"removed", so they are opt-in
+    private final ObstacleSetSerializer obstacleSerializer = new ObstacleSetSerializer();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private boolean deltaUploadsEnabled = false;
+
     public interface OnObstacleModeChangeListener {
         void onObstacleModeChanged(boolean enabled);
         void updateGridTableHeader();
-        String getCurrentTimestamp();
-        void appendToReceivedData(String message);
-        void appendToSentData(String message);
+        void logSentMessage(String message);
     }
 
     public ObstacleController(Context context) {
@@ -72,6 +74,22 @@ public class ObstacleController {
         this.gridAdapter = gridAdapter;
         this.bluetoothHelper = bluetoothHelper;
         this.obstacleListener = listener;
+        gridAdapter.setOnObstacleChangeListener(obstacleSerializer);
+        obstacleSerializer.resync(gridAdapter);
+    }
+
+    /**
+     * Send only obstacles changed since the last upload instead of the full set
+     */
+    public void setDeltaUploadsEnabled(boolean enabled) {
+        this.deltaUploadsEnabled = enabled;
+    }
+
+    /**
+     * The RPi no longer has our obstacle set (e.g. after reconnecting); next upload is full
+     */
+    public void resetObstacleUploadBaseline() {
+        obstacleSerializer.resetBaseline();
     }
 
     public void setUIComponents(Button clearAllObstaclesButton,
@@ -138,10 +156,6 @@ public class ObstacleController {
     }
 
     public void setCurrentObstacleAction(String action) {
-        // If leaving add drag mode, end continuous drag
-        if (!"add".equals(action)) {
-            endContinuousDragIfActive();
-        }
         currentObstacleAction = action;
 
         // Clear any temporary obstacle when switching actions
@@ -250,15 +264,10 @@ public class ObstacleController {
 
             // Clear previous temporary obstacle properly
             if (previousTemporaryRow != -1 && previousTemporaryCol != -1) {
-                gridAdapter.beginBatchUpdates();
-                try {
-                    if (gridAdapter.isCellPermanentObstacle(previousTemporaryRow, previousTemporaryCol)) {
-                        gridAdapter.setObstacle(previousTemporaryRow, previousTemporaryCol, true);
-                    } else {
-                        gridAdapter.updateCell(previousTemporaryRow, previousTemporaryCol, "", Color.parseColor("#E0E0E0"));
-                    }
-                } finally {
-                    gridAdapter.endBatchUpdates();
+                if (gridAdapter.isCellPermanentObstacle(previousTemporaryRow, previousTemporaryCol)) {
+                    gridAdapter.setObstacle(previousTemporaryRow, previousTemporaryCol, true);
+                } else {
+                    gridAdapter.updateCell(previousTemporaryRow, previousTemporaryCol, "", Color.parseColor("#E0E0E0"));
                 }
             }
 
@@ -267,13 +276,8 @@ public class ObstacleController {
             temporaryObstacleCol = col;
             previousTemporaryRow = row;
             previousTemporaryCol = col;
-            gridAdapter.beginBatchUpdates();
-            try {
-                gridAdapter.updateCell(row, col, "?", Color.parseColor("#FF9800"));
-                gridAdapter.applyTempRowColHighlight(row, col);
-            } finally {
-                gridAdapter.endBatchUpdates();
-            }
+            gridAdapter.updateCell(row, col, "?", Color.parseColor("#FF9800"));
+            gridAdapter.applyTempRowColHighlight(row, col);
             updateObstacleCoordinate();
 
             if (obstacleListener != null) {
@@ -294,16 +298,8 @@ public class ObstacleController {
             previousTemporaryCol = col;
             isDraggingObstacle = true;
 
-            // Begin low-latency continuous drag updates
-            beginContinuousDragIfSupported();
-
-            gridAdapter.beginBatchUpdates();
-            try {
-                gridAdapter.updateCell(row, col, "?", Color.parseColor("#FF9800"));
-                gridAdapter.applyTempRowColHighlight(row, col);
-            } finally {
-                gridAdapter.endBatchUpdates();
-            }
+            gridAdapter.updateCell(row, col, "?", Color.parseColor("#FF9800"));
+            gridAdapter.applyTempRowColHighlight(row, col);
             updateObstacleCoordinate();
 
             showToast("Obstacle placed - Click another cell to move or Confirm to add");
@@ -338,9 +334,6 @@ public class ObstacleController {
         // Clear the temporary row/column highlight
         gridAdapter.clearTempRowColHighlight();
 
-        // End continuous drag session
-        endContinuousDragIfActive();
-
         // Clear the input fields when confirming obstacle placement
         if (tempObstacleXInput != null) {
             tempObstacleXInput.setText("");
@@ -365,7 +358,6 @@ public class ObstacleController {
     }
 
     public void cancelObstacleAction() {
-        endContinuousDragIfActive();
         clearTemporaryObstacle();
         clearPreviewBorderIfAny();
 
@@ -424,16 +416,11 @@ public class ObstacleController {
     private void clearTemporaryObstacle() {
         if (previousTemporaryRow != -1 && previousTemporaryCol != -1) {
             if (gridAdapter != null) {
-                gridAdapter.beginBatchUpdates();
-                try {
-                    // Only clear border if this was actually a temporary obstacle, not a permanent one
-                    if (gridAdapter.isCellTemporaryObstacle(previousTemporaryRow, previousTemporaryCol)) {
-                        gridAdapter.clearCellBorder(previousTemporaryRow, previousTemporaryCol);
-                    }
-                    gridAdapter.clearTemporaryObstacle(previousTemporaryRow, previousTemporaryCol);
-                } finally {
-                    gridAdapter.endBatchUpdates();
+                // Only clear border if this was actually a temporary obstacle, not a permanent one
+                if (gridAdapter.isCellTemporaryObstacle(previousTemporaryRow, previousTemporaryCol)) {
+                    gridAdapter.clearCellBorder(previousTemporaryRow, previousTemporaryCol);
                 }
+                gridAdapter.clearTemporaryObstacle(previousTemporaryRow, previousTemporaryCol);
             }
             previousTemporaryRow = -1;
             previousTemporaryCol = -1;
@@ -442,7 +429,6 @@ public class ObstacleController {
             gridAdapter.clearTempRowColHighlight();
         }
 
-        endContinuousDragIfActive();
         resetTemporaryObstacleState();
         updateConfirmButtonState();
     }
@@ -472,7 +458,7 @@ public class ObstacleController {
         }
     }
 
-    // Build and send obstacles JSON with mode "0"
+    // Send the cached obstacles JSON (mode "0"), or only what changed in delta mode
     private void sendAllObstacles() {
         // Check if sending is enabled
         if (!isSendObstaclesEnabled) {
@@ -488,59 +474,31 @@ public class ObstacleController {
             showToast("Not connected");
             return;
         }
-        try {
-            JSONArray obstaclesArray = new JSONArray();
-            int size = gridAdapter.getGridSize();
-            for (int row = 0; row < size - 1; row++) { // data rows only
-                for (int col = 1; col < size; col++) { // data cols only
-                    if (gridAdapter.isCellPermanentObstacle(row, col) && !gridAdapter.isCellRobot(row, col)) {
-                        int id = gridAdapter.getObstacleNumber(row, col);
-                        if (id <= 0) continue; // skip if id unresolved
-                        int x = col - 1; // display col
-                        int y = (size - 2) - row; // display row
-                        String dir = gridAdapter.getCellBorderDirection(row, col);
-                        int d = mapDirectionToInt(dir); // -1 if not set
-                        JSONObject obj = new JSONObject();
-                        obj.put("x", x);
-                        obj.put("y", y);
-                        obj.put("id", id);
-                        obj.put("d", d);
-                        obstaclesArray.put(obj);
-                    }
-                }
-            }
-            JSONObject value = new JSONObject();
-            value.put("obstacles", obstaclesArray);
-            value.put("mode", "0"); // always string "0"
-            JSONObject root = new JSONObject();
-            root.put("cat", "obstacles");
-            root.put("value", value);
-
-            String payload = root.toString();
-            bluetoothHelper.sendData(payload);
-
-            if (obstacleListener != null) {
-                String timestamp = obstacleListener.getCurrentTimestamp();
-                String formattedMessage = "[" + timestamp + "] SENT: " + payload + "\n";
-                obstacleListener.appendToReceivedData(formattedMessage);
-                obstacleListener.appendToSentData(formattedMessage);
-            }
+        ObstacleSetSerializer.Payload payload = deltaUploadsEnabled
+                ? obstacleSerializer.prepareDelta()
+                : obstacleSerializer.prepareFull();
+        if (payload == null) {
+            showToast("No obstacle changes to send");
+            return;
+        }
 
-            showToast("Sent obstacles (" + obstaclesArray.length() + ")");
-        } catch (JSONException e) {
-            showToast("Failed to build JSON");
+        // Only full uploads may replace each other in the write queue. There is no app-level
+        // ack, so a payload counts as delivered once the writer has flushed it; a dropped or
+        // failed one leaves its changes pending for the next upload
+        boolean queued = bluetoothHelper.sendData(payload.bytes, payload.delta ? null : "obstacles",
+                written -> {
+                    if (written) mainHandler.post(() -> obstacleSerializer.acknowledge(payload));
+                });
+        if (!queued) {
+            showToast("Failed to send obstacles");
+            return;
         }
-    }
 
-    private int mapDirectionToInt(String dir) {
-        if (dir == null) return 8; // SKIP when not set
-        switch (dir.toUpperCase()) {
-            case "N": return 0;
-            case "E": return 2;
-            case "S": return 4;
-            case "W": return 6;
-            default: return 8; // SKIP for unknown
+        if (obstacleListener != null) {
+            obstacleListener.logSentMessage(payload.text);
         }
+
+        showToast((payload.delta ? "Sent obstacle changes (" : "Sent obstacles (") + payload.obstacleCount + ")");
     }
 
     private void showToast(String message) {
@@ -559,29 +517,22 @@ public class ObstacleController {
 
     public void updateTemporaryPosition(int row, int col) {
         if (isDraggingObstacle && "add".equals(currentObstacleAction)) {
-            // Ensure continuous drag loop is active
-            beginContinuousDragIfSupported();
             // Update temporary obstacle position during drag
             if (row != previousTemporaryRow || col != previousTemporaryCol) {
                 // Clear previous temp cell visuals and border
-                gridAdapter.beginBatchUpdates();
-                try {
-                    // Only clear border if the previous position was actually a temporary obstacle
-                    if (gridAdapter.isCellTemporaryObstacle(previousTemporaryRow, previousTemporaryCol)) {
-                        gridAdapter.clearCellBorder(previousTemporaryRow, previousTemporaryCol);
-                    }
-                    gridAdapter.updateCell(previousTemporaryRow, previousTemporaryCol, "", Color.parseColor("#E0E0E0"));
-
-                    // Update new temp position
-                    temporaryObstacleRow = row;
-                    temporaryObstacleCol = col;
-                    previousTemporaryRow = row;
-                    previousTemporaryCol = col;
-                    gridAdapter.updateCell(row, col, "?", Color.parseColor("#FF9800"));
-                    gridAdapter.applyTempRowColHighlight(row, col);
-                } finally {
-                    gridAdapter.endBatchUpdates();
+                // Only clear border if the previous position was actually a temporary obstacle
+                if (gridAdapter.isCellTemporaryObstacle(previousTemporaryRow, previousTemporaryCol)) {
+                    gridAdapter.clearCellBorder(previousTemporaryRow, previousTemporaryCol);
                 }
+                gridAdapter.updateCell(previousTemporaryRow, previousTemporaryCol, "", Color.parseColor("#E0E0E0"));
+
+                // Update new temp position
+                temporaryObstacleRow = row;
+                temporaryObstacleCol = col;
+                previousTemporaryRow = row;
+                previousTemporaryCol = col;
+                gridAdapter.updateCell(row, col, "?", Color.parseColor("#FF9800"));
+                gridAdapter.applyTempRowColHighlight(row, col);
                 updateObstacleCoordinate();
 
                 if (obstacleListener != null) {
@@ -593,7 +544,6 @@ public class ObstacleController {
 
     // New public API: remove the temporary obstacle when dragged outside the map
     public void removeTemporaryObstacleFromGrid() {
-        endContinuousDragIfActive();
         // Keep current action (e.g., Add) but clear temp visuals and state
         clearTemporaryObstacle();
         if ("add".equals(currentObstacleAction)) {
@@ -608,7 +558,6 @@ public class ObstacleController {
 
     // Consolidated helper to clear all obstacles and reset related UI/state
     private void clearAllObstaclesAndResetUI() {
-        endContinuousDragIfActive();
         clearTemporaryObstacle();
         clearPreviewBorderIfAny();
         if (selectedObstacleRow != -1 && selectedObstacleCol != -1 && gridAdapter != null) {
@@ -629,19 +578,6 @@ public class ObstacleController {
         if (obstacleListener != null) obstacleListener.updateGridTableHeader();
     }
 
-    // Helpers to manage continuous drag lifecycle
-    private void beginContinuousDragIfSupported() {
-        if (gridAdapter != null && !gridAdapter.isInContinuousDrag()) {
-            gridAdapter.beginContinuousDrag();
-        }
-    }
-
-    private void endContinuousDragIfActive() {
-        if (gridAdapter != null && gridAdapter.isInContinuousDrag()) {
-            gridAdapter.endContinuousDrag();
-        }
-    }
-
     /**
      * Place a temporary obstacle at the specified coordinates from user input
      */
@@ -706,18 +642,13 @@ public class ObstacleController {
             currentObstacleAction = "add";
 
             // Update the grid with direction border if selected
-            gridAdapter.beginBatchUpdates();
-            try {
-                gridAdapter.updateCell(gridRow, gridCol, "?", Color.parseColor("#FF9800"));
-                gridAdapter.applyTempRowColHighlight(gridRow, gridCol);
-
-                // Apply direction border if selected
-                if (!selectedSpinnerDirection.isEmpty()) {
-                    int borderColor = Color.parseColor("#4CAF50");
-                    gridAdapter.highlightCellBorder(gridRow, gridCol, borderColor, selectedSpinnerDirection);
-                }
-            } finally {
-                gridAdapter.endBatchUpdates();
+            gridAdapter.updateCell(gridRow, gridCol, "?", Color.parseColor("#FF9800"));
+            gridAdapter.applyTempRowColHighlight(gridRow, gridCol);
+
+            // Apply direction border if selected
+            if (!selectedSpinnerDirection.isEmpty()) {
+                int borderColor = Color.parseColor("#4CAF50");
+                gridAdapter.highlightCellBorder(gridRow, gridCol, borderColor, selectedSpinnerDirection);
             }
 
             // Update UI state
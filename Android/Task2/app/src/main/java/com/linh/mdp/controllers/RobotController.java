@@ -7,6 +7,7 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.linh.mdp.adapters.GridTableAdapter;
+import com.linh.mdp.adapters.grid.OccupancyBoard;
 import com.linh.mdp.bluetooth.BluetoothHelper;
 
 /**
@@ -94,18 +95,6 @@ public class RobotController {
         }
     }
 
-    // Helpers for continuous drag reuse (shared with obstacle smooth drag)
-    private void beginContinuousDragIfSupported() {
-        if (gridAdapter != null && !gridAdapter.isInContinuousDrag()) {
-            gridAdapter.beginContinuousDrag();
-        }
-    }
-    private void endContinuousDragIfActive() {
-        if (gridAdapter != null && gridAdapter.isInContinuousDrag()) {
-            gridAdapter.endContinuousDrag();
-        }
-    }
-
     public void moveRobotForward() {
         if (gridAdapter != null && gridAdapter.hasRobot()) {
             int dRow = 0, dCol = 0;
@@ -189,7 +178,6 @@ public class RobotController {
     public void setPlacingRobotMode(boolean enabled) {
         isPlacingRobotMode = enabled;
         if (enabled) {
-            beginContinuousDragIfSupported();
             // Clear any temp preview first
             if (gridAdapter != null) gridAdapter.clearTemporaryRobotPreview();
             if (placeRobotButton != null) {
@@ -197,7 +185,6 @@ public class RobotController {
             }
             showToast("Drag on grid to preview the robot, then tap Confirm");
         } else {
-            endContinuousDragIfActive();
             if (gridAdapter != null) gridAdapter.clearTemporaryRobotPreview();
             if (placeRobotButton != null) {
                 placeRobotButton.setText("Place Robot (3x3)");
@@ -219,7 +206,6 @@ public class RobotController {
     // Called continuously during grid touch-drag
     public boolean previewRobotAt(int row, int col) {
         if (!isPlacingRobotMode || gridAdapter == null) return false;
-        beginContinuousDragIfSupported();
         boolean shown = gridAdapter.showTemporaryRobotAtCenter(row, col);
         updateConfirmButtonVisibility();
         if (robotStatusText != null && shown) {
@@ -241,7 +227,6 @@ public class RobotController {
                 robotStatusText.setText("Robot at (" + displayRow + ", " + displayCol + ") placed");
             }
             suppressCancelToastOnce = true; // avoid showing cancel toast when exiting after confirm
-            endContinuousDragIfActive();
             setPlacingRobotMode(false);
             updateRobotButtonsState();
         } else {
@@ -319,7 +304,6 @@ public class RobotController {
 
     public void exitPlacementMode() {
         if (isPlacingRobotMode) {
-            endContinuousDragIfActive();
             setPlacingRobotMode(false);
         }
     }
@@ -406,25 +390,9 @@ public class RobotController {
     private boolean canPlaceRobotAt(int centerRow, int centerCol) {
         if (gridAdapter == null) return false;
 
-        // Check if the 3x3 area around the center is valid and available
-        for (int dRow = -1; dRow <= 1; dRow++) {
-            for (int dCol = -1; dCol <= 1; dCol++) {
-                int checkRow = centerRow + dRow;
-                int checkCol = centerCol + dCol;
-
-                // Check bounds (must be within data area: col 1-20, row 0-19)
-                if (checkRow < 0 || checkRow >= gridAdapter.getGridSize() - 1 ||
-                    checkCol < 1 || checkCol >= gridAdapter.getGridSize()) {
-                    return false;
-                }
-
-                // Check if cell is occupied by obstacle
-                if (gridAdapter.isCellObstacle(checkRow, checkCol)) {
-                    return false;
-                }
-            }
-        }
-        return true;
+        // The 3x3 area around the center must be within the data area and hold no obstacle or robot cell
+        return OccupancyBoard.isValidCenter(centerRow, centerCol)
+                && !gridAdapter.getOccupancy().isFootprintOccupied(centerRow, centerCol);
     }
 
     /**
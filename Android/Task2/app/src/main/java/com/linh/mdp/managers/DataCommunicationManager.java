@@ -1,46 +1,54 @@
 package com.linh.mdp.managers;
 
 import android.content.Context;
+import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import com.linh.mdp.bluetooth.BluetoothHelper;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
+import com.linh.mdp.adapters.MessageLogAdapter;
+import com.linh.mdp.bluetooth.BluetoothHelper;
+import com.linh.mdp.utils.TimestampFormatter;
 
 /**
  * Manager class to handle data communication operations
  */
 public class DataCommunicationManager {
 
+    // Lines kept per log; older lines are evicted
+    private static final int LOG_CAPACITY = 500;
+
     private final Context context;
     private BluetoothHelper bluetoothHelper;
 
     // UI components
     private TextView connectionStatusText;
-    private TextView receivedDataText;
-    private TextView sentDataText;
+    private RecyclerView receivedDataList;
+    private TextView receivedDataEmptyText;
+    private RecyclerView sentDataList;
+    private TextView sentDataEmptyText;
     private TextView messageCountText;
     private EditText messageInput;
     private Button sendButton;
     private Button clearButton;
     private Button quickSend1, quickSend2, quickSend3;
 
-    // Data buffers
-    private final StringBuilder receivedDataBuffer;
-    private final StringBuilder sentDataBuffer;
+    // Bounded message logs; lines carry raw timestamps that are formatted when displayed
+    private final TimestampFormatter timestampFormatter = new TimestampFormatter();
+    private final MessageLogAdapter receivedLogAdapter;
+    private final MessageLogAdapter sentLogAdapter;
     private int messageCount = 0;
 
     private String connectedDeviceName = "Unknown Device";
 
     public DataCommunicationManager(Context context) {
         this.context = context;
-        this.receivedDataBuffer = new StringBuilder();
-        this.sentDataBuffer = new StringBuilder();
+        this.receivedLogAdapter = new MessageLogAdapter(new MessageLog(LOG_CAPACITY), timestampFormatter, 14);
+        this.sentLogAdapter = new MessageLogAdapter(new MessageLog(LOG_CAPACITY), timestampFormatter, 12);
     }
 
     public void initialize(BluetoothHelper bluetoothHelper, String deviceName) {
@@ -48,13 +56,17 @@ public class DataCommunicationManager {
         this.connectedDeviceName = deviceName != null ? deviceName : "Unknown Device";
     }
 
-    public void setUIComponents(TextView connectionStatusText, TextView receivedDataText,
-                               TextView sentDataText, TextView messageCountText, EditText messageInput,
+    public void setUIComponents(TextView connectionStatusText,
+                               RecyclerView receivedDataList, TextView receivedDataEmptyText,
+                               RecyclerView sentDataList, TextView sentDataEmptyText,
+                               TextView messageCountText, EditText messageInput,
                                Button sendButton, Button clearButton, Button quickSend1,
                                Button quickSend2, Button quickSend3) {
         this.connectionStatusText = connectionStatusText;
-        this.receivedDataText = receivedDataText;
-        this.sentDataText = sentDataText;
+        this.receivedDataList = receivedDataList;
+        this.receivedDataEmptyText = receivedDataEmptyText;
+        this.sentDataList = sentDataList;
+        this.sentDataEmptyText = sentDataEmptyText;
         this.messageCountText = messageCountText;
         this.messageInput = messageInput;
         this.sendButton = sendButton;
@@ -63,10 +75,21 @@ public class DataCommunicationManager {
         this.quickSend2 = quickSend2;
         this.quickSend3 = quickSend3;
 
+        setupLogList(receivedDataList, receivedLogAdapter);
+        setupLogList(sentDataList, sentLogAdapter);
         setupInitialStatus();
         setupClickListeners();
     }
 
+    private void setupLogList(RecyclerView list, MessageLogAdapter adapter) {
+        if (list == null) return;
+        list.setLayoutManager(new LinearLayoutManager(context));
+        list.setHasFixedSize(true);
+        // Appends arrive at message rate; skip the per-row insert/remove animations
+        list.setItemAnimator(null);
+        list.setAdapter(adapter);
+    }
+
     private void setupInitialStatus() {
         if (connectionStatusText != null) {
             connectionStatusText.setText("Connected to " + connectedDeviceName);
@@ -105,11 +128,7 @@ public class DataCommunicationManager {
                 bluetoothHelper.sendData(message);
                 messageInput.setText("");
 
-                // Add sent message to display with timestamp
-                String timestamp = getCurrentTimestamp();
-                String formattedMessage = "[" + timestamp + "] SENT: " + message + "\n";
-                appendToReceivedData(formattedMessage);
-                appendToSentData(formattedMessage);
+                logSentMessage(message);
 
                 showToast("Message sent");
             } else {
@@ -124,11 +143,7 @@ public class DataCommunicationManager {
         if (bluetoothHelper != null && bluetoothHelper.isConnected()) {
             bluetoothHelper.sendData(message);
 
-            // Add sent message to display with timestamp
-            String timestamp = getCurrentTimestamp();
-            String formattedMessage = "[" + timestamp + "] SENT: " + message + "\n";
-            appendToReceivedData(formattedMessage);
-            appendToSentData(formattedMessage);
+            logSentMessage(message);
 
             showToast("Sent: " + message);
         } else {
@@ -137,52 +152,66 @@ public class DataCommunicationManager {
     }
 
     public void clearReceivedData() {
-        receivedDataBuffer.setLength(0);
-        if (receivedDataText != null) {
-            receivedDataText.setText("No messages received yet...");
-        }
+        receivedLogAdapter.clear();
+        updateEmptyText(receivedDataEmptyText, receivedLogAdapter);
         messageCount = 0;
         updateMessageCount();
         showToast("Messages cleared");
     }
 
     public void onDataReceived() {
+        onDataReceived(1);
+    }
+
+    public void onDataReceived(int count) {
         // Always increment message count for all received data
-        messageCount++;
+        messageCount += count;
         updateMessageCount();
     }
 
     public void addImportantMessage(String data) {
-        String timestamp = getCurrentTimestamp();
-        String formattedMessage = "[" + timestamp + "] RECEIVED: " + data + "\n";
-        appendToReceivedData(formattedMessage);
-
-        // Auto-scroll to bottom (guard against null layout)
-        if (receivedDataText != null) {
-            receivedDataText.post(() -> {
-                if (receivedDataText.getLayout() != null) {
-                    int scrollY = receivedDataText.getLayout().getLineTop(receivedDataText.getLineCount()) - receivedDataText.getHeight();
-                    if (scrollY > 0) {
-                        receivedDataText.scrollTo(0, scrollY);
-                    }
-                }
-            });
+        appendToReceivedData("RECEIVED: " + data);
+
+        // Auto-scroll to the newest line
+        if (receivedDataList != null) {
+            receivedDataList.scrollToPosition(receivedLogAdapter.getItemCount() - 1);
         }
 
         showToast("Important data received");
     }
 
+    /**
+     * Add a line to the received log; the current time is prepended when it is displayed
+     */
     public void appendToReceivedData(String message) {
-        receivedDataBuffer.append(message);
-        if (receivedDataText != null) {
-            receivedDataText.setText(receivedDataBuffer.toString());
-        }
+        appendToLog(receivedLogAdapter, receivedDataEmptyText, timestampFormatter.now(), message);
     }
 
+    /**
+     * Add a line to the sent log; the current time is prepended when it is displayed
+     */
     public void appendToSentData(String message) {
-        sentDataBuffer.append(message);
-        if (sentDataText != null) {
-            sentDataText.setText(sentDataBuffer.toString());
+        appendToLog(sentLogAdapter, sentDataEmptyText, timestampFormatter.now(), message);
+    }
+
+    /**
+     * Add an outgoing message to both logs with the same timestamp
+     */
+    public void logSentMessage(String message) {
+        long now = timestampFormatter.now();
+        String line = "SENT: " + message;
+        appendToLog(receivedLogAdapter, receivedDataEmptyText, now, line);
+        appendToLog(sentLogAdapter, sentDataEmptyText, now, line);
+    }
+
+    private void appendToLog(MessageLogAdapter adapter, TextView emptyText, long timestampNanos, String message) {
+        adapter.append(timestampNanos, message);
+        updateEmptyText(emptyText, adapter);
+    }
+
+    private void updateEmptyText(TextView emptyText, MessageLogAdapter adapter) {
+        if (emptyText != null) {
+            emptyText.setVisibility(adapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
         }
     }
 
@@ -192,11 +221,6 @@ public class DataCommunicationManager {
         }
     }
 
-    public String getCurrentTimestamp() {
-        SimpleDateFormat sdf = new SimpleDateFormat("HH:mm:ss", Locale.getDefault());
-        return sdf.format(new Date());
-    }
-
     private void showToast(String message) {
         Toast.makeText(context, message, Toast.LENGTH_SHORT).show();
     }
@@ -0,0 +1,73 @@
+package com.linh.mdp.managers;
+
+/**
+ * Fixed-capacity ring buffer of log lines. Once full, each new line evicts the oldest one,
+ * so memory stays bounded for the whole session and every append is O(1).
+ *
+ * Each line keeps its raw monotonic timestamp; formatting is left to whoever displays it.
+ */
+public class MessageLog {
+    private final String[] texts;
+    private final long[] timestamps;
+    private int head = 0; // index of the oldest entry
+    private int size = 0;
+
+    public MessageLog(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        this.texts = new String[capacity];
+        this.timestamps = new long[capacity];
+    }
+
+    /**
+     * Append a line
+     * @param timestampNanos {@link com.linh.mdp.utils.TimestampFormatter#now()} at which the line was logged
+     * @return true if the oldest line was evicted to make room
+     */
+    public boolean add(long timestampNanos, String text) {
+        int slot;
+        boolean evicted;
+        if (size < texts.length) {
+            slot = (head + size) % texts.length;
+            size++;
+            evicted = false;
+        } else {
+            slot = head;
+            head = (head + 1) % texts.length;
+            evicted = true;
+        }
+        texts[slot] = text;
+        timestamps[slot] = timestampNanos;
+        return evicted;
+    }
+
+    /**
+     * @param index 0 is the oldest retained line
+     */
+    public String getText(int index) {
+        return texts[slot(index)];
+    }
+
+    /**
+     * @param index 0 is the oldest retained line
+     */
+    public long getTimestamp(int index) {
+        return timestamps[slot(index)];
+    }
+
+    private int slot(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        return (head + index) % texts.length;
+    }
+
+    public int size() { return size; }
+    public int capacity() { return texts.length; }
+    public boolean isEmpty() { return size == 0; }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            texts[(head + i) % texts.length] = null;
+        }
+        head = 0;
+        size = 0;
+    }
+}
@@ -0,0 +1,214 @@
+package com.linh.mdp.managers;
+
+import com.linh.mdp.adapters.GridTableAdapter;
+import com.linh.mdp.adapters.grid.GridConstants;
+import com.linh.mdp.adapters.grid.GridStore;
+import com.linh.mdp.adapters.grid.ObstacleManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Live, number-ordered obstacle list with a cached upload payload.
+ *
+ * Fed by {@link ObstacleManager.OnObstacleChangeListener}; each obstacle keeps its serialized
+ * JSON fragment, and the full {"cat":"obstacles",...} payload is rebuilt only after a change.
+ * Numbers changed since the last acknowledged upload are tracked so a delta containing only
+ * those obstacles (plus removed ids) can be sent instead. A payload is acknowledged once it is
+ * known to be on the wire; changes made after it was built stay pending.
+ *
+ * Main thread only.
+ */
+public class ObstacleSetSerializer implements ObstacleManager.OnObstacleChangeListener {
+
+    /**
+     * One prepared upload
+     */
+    public static class Payload {
+        public final String text;
+        public final byte[] bytes;
+        public final int obstacleCount;
+        public final boolean delta;
+
+        // Numbers this upload brings up to date, as of change number builtAt in baseline epoch
+        final BitSet settles;
+        final long builtAt;
+        final int epoch;
+
+        Payload(String text, int obstacleCount, boolean delta, BitSet settles, long builtAt, int epoch) {
+            this.text = text;
+            this.bytes = text.getBytes(StandardCharsets.UTF_8);
+            this.obstacleCount = obstacleCount;
+            this.delta = delta;
+            this.settles = settles;
+            this.builtAt = builtAt;
+            this.epoch = epoch;
+        }
+    }
+
+    // Direction codes expected by the RPi
+    private static final int DIRECTION_SKIP = 8;
+
+    // Live obstacles, indexed by obstacle number
+    private final BitSet live = new BitSet();
+    private String[] fragments = new String[64];
+
+    // Change tracking for delta uploads; lastChange[number] is the change count at its last change
+    private final BitSet changedSinceAck = new BitSet();
+    private long[] lastChange = new long[64];
+    private long changeCount = 0;
+    private int baselineEpoch = 0;
+    private boolean baselineAcknowledged = false;
+
+    private Payload fullPayload;
+
+    /**
+     * Rebuild the live list from the grid, e.g. when attaching to an adapter that already has obstacles
+     */
+    public void resync(GridTableAdapter adapter) {
+        for (int number = live.nextSetBit(0); number >= 0; number = live.nextSetBit(number + 1)) {
+            fragments[number] = null;
+        }
+        live.clear();
+        GridStore store = adapter.getStore();
+        for (int position : adapter.getObstaclePositions()) {
+            onObstacleChanged(store.getObstacleNumber(position), position, store.getBorderBits(position));
+        }
+        resetBaseline();
+    }
+
+    @Override
+    public void onObstacleChanged(int number, int position, int borderBits) {
+        if (number >= fragments.length) {
+            fragments = Arrays.copyOf(fragments, Math.max(number + 1, fragments.length * 2));
+            lastChange = Arrays.copyOf(lastChange, fragments.length);
+        }
+        int row = position / GridConstants.GRID_SIZE;
+        int col = position % GridConstants.GRID_SIZE;
+        int x = col - 1; // display col
+        int y = (GridConstants.GRID_SIZE - 2) - row; // display row
+        String fragment = "{\"x\":" + x + ",\"y\":" + y + ",\"id\":" + number
+                + ",\"d\":" + directionCode(borderBits) + "}";
+
+        // Re-reported with the same state (e.g. border cleared on a cell without one)
+        if (live.get(number) && fragment.equals(fragments[number])) return;
+
+        fragments[number] = fragment;
+        live.set(number);
+        markChanged(number);
+    }
+
+    @Override
+    public void onObstacleRemoved(int number) {
+        if (!live.get(number)) return;
+        live.clear(number);
+        fragments[number] = null;
+        markChanged(number);
+    }
+
+    private void markChanged(int number) {
+        changedSinceAck.set(number);
+        lastChange[number] = ++changeCount;
+        fullPayload = null;
+    }
+
+    private static int directionCode(int borderBits) {
+        switch (borderBits) {
+            case GridStore.BORDER_N: return 0;
+            case GridStore.BORDER_E: return 2;
+            case GridStore.BORDER_S: return 4;
+            case GridStore.BORDER_W: return 6;
+            default: return DIRECTION_SKIP; // not set, or not a single side
+        }
+    }
+
+    // ============================================================================
+    // UPLOADS
+    // ============================================================================
+
+    /**
+     * @return the full obstacle set; cached until the next change
+     */
+    public Payload prepareFull() {
+        if (fullPayload == null) {
+            // A full upload also settles removals
+            BitSet settles = (BitSet) changedSinceAck.clone();
+            settles.or(live);
+            fullPayload = build(live, null, false, settles);
+        }
+        return fullPayload;
+    }
+
+    /**
+     * @return only obstacles added, moved or re-oriented since the last acknowledged upload,
+     * plus the ids removed since then; null when nothing changed. Falls back to a full upload
+     * until one has been acknowledged.
+     */
+    public Payload prepareDelta() {
+        if (!baselineAcknowledged) return prepareFull();
+        if (changedSinceAck.isEmpty()) return null;
+
+        BitSet changedLive = (BitSet) changedSinceAck.clone();
+        changedLive.and(live);
+        BitSet removed = (BitSet) changedSinceAck.clone();
+        removed.andNot(live);
+        return build(changedLive, removed, true, (BitSet) changedSinceAck.clone());
+    }
+
+    /**
+     * The payload was written to the RPi; later deltas are relative to it. Payloads prepared
+     * before the last {@link #resetBaseline} are ignored.
+     */
+    public void acknowledge(Payload payload) {
+        if (payload.epoch != baselineEpoch) return;
+        BitSet settles = payload.settles;
+        for (int number = settles.nextSetBit(0); number >= 0; number = settles.nextSetBit(number + 1)) {
+            // Numbers changed after the payload was built still need sending
+            if (lastChange[number] <= payload.builtAt) changedSinceAck.clear(number);
+        }
+        if (!payload.delta) baselineAcknowledged = true;
+    }
+
+    /**
+     * Forget what the RPi has, e.g. after reconnecting; the next delta becomes a full upload
+     */
+    public void resetBaseline() {
+        baselineEpoch++;
+        baselineAcknowledged = false;
+        changedSinceAck.clear();
+        changedSinceAck.or(live);
+        fullPayload = null;
+    }
+
+    public boolean hasPendingChanges() {
+        return !baselineAcknowledged || !changedSinceAck.isEmpty();
+    }
+
+    public int getObstacleCount() {
+        return live.cardinality();
+    }
+
+    private Payload build(BitSet numbers, BitSet removed, boolean delta, BitSet settles) {
+        StringBuilder sb = new StringBuilder(64 + numbers.cardinality() * 32);
+        sb.append("{\"cat\":\"obstacles\",\"value\":{\"obstacles\":[");
+        int count = 0;
+        for (int number = numbers.nextSetBit(0); number >= 0; number = numbers.nextSetBit(number + 1)) {
+            if (count++ > 0) sb.append(',');
+            sb.append(fragments[number]);
+        }
+        sb.append(']');
+        if (delta) {
+            sb.append(",\"removed\":[");
+            boolean first = true;
+            for (int number = removed.nextSetBit(0); number >= 0; number = removed.nextSetBit(number + 1)) {
+                if (!first) sb.append(',');
+                sb.append(number);
+                first = false;
+            }
+            sb.append("],\"delta\":true");
+        }
+        sb.append(",\"mode\":\"0\"}}"); // mode is always string "0"
+        return new Payload(sb.toString(), count, delta, settles, changeCount, baselineEpoch);
+    }
+}
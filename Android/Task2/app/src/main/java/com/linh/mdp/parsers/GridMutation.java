@@ -0,0 +1,59 @@
+package com.linh.mdp.parsers;
+
+/**
+ * Compact, already-parsed result of one inbound message, produced off the UI thread
+ * and applied to the grid on the main thread by {@link MessageParser#apply}
+ */
+public final class GridMutation {
+
+    public enum Type {
+        ROBOT_COMMAND,   // text = "forward" | "reverse" | "turnleft" | "turnright", first = cells to move
+        SET_TARGET,      // first = obstacle number, text = target id
+        ROBOT_POSITION,  // first = x, second = y, text = "N" | "E" | "S" | "W"
+        DISPLAY_MESSAGE, // text = raw message to show in the received log
+        TOAST            // text = toast message
+    }
+
+    public final Type type;
+    public final String text;
+    public final int first;
+    public final int second;
+
+    private GridMutation(Type type, String text, int first, int second) {
+        this.type = type;
+        this.text = text;
+        this.first = first;
+        this.second = second;
+    }
+
+    public static GridMutation robotCommand(String command) {
+        return new GridMutation(Type.ROBOT_COMMAND, command, 1, 0);
+    }
+
+    public static GridMutation robotCommand(String command, int cells) {
+        return new GridMutation(Type.ROBOT_COMMAND, command, cells, 0);
+    }
+
+    public static GridMutation setTarget(int obstacleNumber, String targetId) {
+        return new GridMutation(Type.SET_TARGET, targetId, obstacleNumber, 0);
+    }
+
+    public static GridMutation robotPosition(int x, int y, String direction) {
+        return new GridMutation(Type.ROBOT_POSITION, direction, x, y);
+    }
+
+    public static GridMutation displayMessage(String message) {
+        return new GridMutation(Type.DISPLAY_MESSAGE, message, 0, 0);
+    }
+
+    public static GridMutation toast(String message) {
+        return new GridMutation(Type.TOAST, message, 0, 0);
+    }
+
+    /**
+     * Whether applying this mutation touches grid cells
+     */
+    public boolean affectsGrid() {
+        return type == Type.ROBOT_COMMAND || type == Type.SET_TARGET || type == Type.ROBOT_POSITION;
+    }
+}
@@ -0,0 +1,47 @@
+package com.linh.mdp.parsers;
+
+/**
+ * Typed payload of a {"cat": "image-rec", "value": {"image_id": "A", "obstacle_id": "1"}} message.
+ * Reused across messages by the parsing thread.
+ */
+public class ImageRecMessage {
+    private static final String[] FIELDS = {"image_id", "obstacle_id"};
+    private static final int FIELD_IMAGE_ID = 0;
+    private static final int FIELD_OBSTACLE_ID = 1;
+
+    public String imageId;
+    public int obstacleId;
+    public boolean obstacleIdValid;
+    private boolean hasImageId, hasObstacleId;
+
+    /**
+     * Decode the value object the tokenizer is positioned at
+     * @return false if the value is malformed or a required field is missing;
+     *         a present but non-numeric obstacle_id is reported through {@link #obstacleIdValid}
+     */
+    public boolean decode(JsonTokenizer value) {
+        imageId = null;
+        hasImageId = hasObstacleId = obstacleIdValid = false;
+        if (!value.beginObject()) return false;
+
+        int field;
+        while ((field = value.nextField(FIELDS)) != JsonTokenizer.FIELD_END) {
+            switch (field) {
+                case FIELD_IMAGE_ID:
+                    // The id ends up as the cell label, so this is the one string we keep
+                    imageId = value.peek() == '"' ? value.readString() : String.valueOf(value.readInt());
+                    hasImageId = true;
+                    break;
+                case FIELD_OBSTACLE_ID:
+                    hasObstacleId = true;
+                    obstacleId = value.readIntOr(-1);
+                    obstacleIdValid = obstacleId >= 0;
+                    break;
+                default:
+                    value.skipValue();
+                    break;
+            }
+        }
+        return !value.hasFailed() && hasImageId && hasObstacleId;
+    }
+}
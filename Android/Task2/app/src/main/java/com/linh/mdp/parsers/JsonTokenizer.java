@@ -0,0 +1,360 @@
+package com.linh.mdp.parsers;
+
+/**
+ * Minimal streaming JSON tokenizer used to dispatch inbound messages in a single pass.
+ *
+ * Input is copied into a reused char[] so the hot path (field names, category names and
+ * numbers) is matched in place without allocating; only {@link #readString} creates objects.
+ * Malformed input never throws: the tokenizer records the failure in {@link #hasFailed()}
+ * and every subsequent read returns a neutral value. Not thread-safe; reuse one instance
+ * per parsing thread.
+ */
+public class JsonTokenizer {
+    /** {@link #nextField} result when the field name is not in the given table */
+    public static final int FIELD_UNKNOWN = -1;
+    /** {@link #nextField} result at the closing brace or on malformed input */
+    public static final int FIELD_END = -2;
+
+    private char[] buf = new char[256];
+    private int pos;
+    private int end;
+    private boolean failed;
+    private final StringBuilder scratch = new StringBuilder(32);
+
+    public void reset(CharSequence source) {
+        reset(source, 0, source.length());
+    }
+
+    /**
+     * Copy source[start, end) into the reused buffer and rewind
+     */
+    public void reset(CharSequence source, int start, int end) {
+        int length = end - start;
+        ensureCapacity(length);
+        if (source instanceof String) {
+            ((String) source).getChars(start, end, buf, 0);
+        } else {
+            for (int i = 0; i < length; i++) buf[i] = source.charAt(start + i);
+        }
+        rewind(length);
+    }
+
+    /**
+     * Copy another tokenizer's buffer range into this one, e.g. to decode a value span
+     */
+    public void reset(JsonTokenizer source, int start, int end) {
+        int length = end - start;
+        ensureCapacity(length);
+        System.arraycopy(source.buf, start, buf, 0, length);
+        rewind(length);
+    }
+
+    private void rewind(int length) {
+        this.pos = 0;
+        this.end = length;
+        this.failed = false;
+    }
+
+    private void ensureCapacity(int length) {
+        if (buf.length < length) {
+            buf = new char[Math.max(length, buf.length * 2)];
+        }
+    }
+
+    public boolean hasFailed() { return failed; }
+    public int position() { return pos; }
+
+    /**
+     * @return the next non-whitespace character without consuming it, or -1 at end of input
+     */
+    public int peek() {
+        skipWhitespace();
+        return pos < end ? buf[pos] : -1;
+    }
+
+    /**
+     * Consume the opening brace of an object
+     */
+    public boolean beginObject() {
+        return expect('{');
+    }
+
+    /**
+     * Advance to the next field of the current object and match its name against a table
+     * without allocating.
+     * @return the index of the name in {@code names}, {@link #FIELD_UNKNOWN} for any other
+     *         name (the value still has to be read or skipped), or {@link #FIELD_END}
+     */
+    public int nextField(String[] names) {
+        if (!beforeField()) return FIELD_END;
+        int index = matchString(names, names.length);
+        if (failed || !expect(':')) return FIELD_END;
+        return index;
+    }
+
+    private boolean beforeField() {
+        if (failed) return false;
+        int c = peek();
+        if (c == ',') {
+            pos++;
+            c = peek();
+        }
+        if (c == '}') {
+            pos++;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Consume a string value and match it against the first {@code count} entries of
+     * {@code candidates} without allocating. Strings containing escapes never match.
+     * @return the matching index, or -1 (check {@link #hasFailed()} for malformed input)
+     */
+    public int matchString(String[] candidates, int count) {
+        if (peek() != '"') {
+            fail();
+            return -1;
+        }
+        int start = pos + 1;
+        int close = findStringEnd(start);
+        if (close < 0) {
+            // Escaped or unterminated; skipString() sets the failure flag for the latter
+            skipString();
+            return -1;
+        }
+        pos = close + 1;
+
+        int length = close - start;
+        for (int i = 0; i < count; i++) {
+            String candidate = candidates[i];
+            if (candidate.length() == length && regionMatches(start, candidate)) return i;
+        }
+        return -1;
+    }
+
+    private boolean regionMatches(int start, String candidate) {
+        for (int i = 0; i < candidate.length(); i++) {
+            if (buf[start + i] != candidate.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return index of the closing quote of a string starting at {@code from}, -1 if unterminated
+     *         or if the string contains escapes (those go through {@link #readString})
+     */
+    private int findStringEnd(int from) {
+        for (int i = from; i < end; i++) {
+            char c = buf[i];
+            if (c == '"') return i;
+            if (c == '\\') return -1;
+        }
+        return -1;
+    }
+
+    /**
+     * Read a string value, decoding escapes
+     * @return the string, or null if the next value is not a string
+     */
+    public String readString() {
+        if (!unescapeNext()) return null;
+        return scratch.toString();
+    }
+
+    /**
+     * Decode the next string value (typically a JSON document sent as a string) directly into
+     * {@code target} and rewind it, without creating an intermediate String
+     */
+    public boolean readStringInto(JsonTokenizer target) {
+        if (!unescapeNext()) return false;
+        int length = scratch.length();
+        target.ensureCapacity(length);
+        scratch.getChars(0, length, target.buf, 0);
+        target.rewind(length);
+        return true;
+    }
+
+    private boolean unescapeNext() {
+        if (peek() != '"') return failBoolean();
+        pos++;
+        scratch.setLength(0);
+        while (pos < end) {
+            char c = buf[pos++];
+            if (c == '"') return true;
+            if (c != '\\') {
+                scratch.append(c);
+                continue;
+            }
+            if (pos >= end) break;
+            char e = buf[pos++];
+            switch (e) {
+                case 'n': scratch.append('\n'); break;
+                case 't': scratch.append('\t'); break;
+                case 'r': scratch.append('\r'); break;
+                case 'b': scratch.append('\b'); break;
+                case 'f': scratch.append('\f'); break;
+                case 'u':
+                    int code = readHex4();
+                    if (code < 0) return failBoolean();
+                    scratch.append((char) code);
+                    break;
+                default: scratch.append(e); break; // '"', '\\', '/'
+            }
+        }
+        return failBoolean();
+    }
+
+    /**
+     * Read an integer value. Quoted integers ("12") are accepted as well.
+     * Fractions are truncated towards zero.
+     */
+    public int readInt() {
+        int c = peek();
+        boolean quoted = c == '"';
+        if (quoted) pos++;
+
+        boolean negative = false;
+        if (pos < end && buf[pos] == '-') {
+            negative = true;
+            pos++;
+        }
+        int start = pos;
+        long value = 0;
+        while (pos < end) {
+            char d = buf[pos];
+            if (d < '0' || d > '9') break;
+            value = value * 10 + (d - '0');
+            if (value > Integer.MAX_VALUE) {
+                fail();
+                return 0;
+            }
+            pos++;
+        }
+        if (pos == start) {
+            fail();
+            return 0;
+        }
+        // Skip fraction/exponent
+        while (pos < end && isNumberTail(buf[pos])) pos++;
+        if (quoted && !expect('"')) return 0;
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * Like {@link #readInt} but a string that is not a plain integer ("abc") is skipped and
+     * {@code fallback} returned instead of failing the whole document
+     */
+    public int readIntOr(int fallback) {
+        if (peek() != '"') return readInt();
+        int start = pos + 1;
+        int close = findStringEnd(start);
+        if (close < 0 || close == start || close - start > 9) {
+            skipString();
+            return fallback;
+        }
+        int value = 0;
+        for (int i = start; i < close; i++) {
+            char d = buf[i];
+            if (d < '0' || d > '9') {
+                pos = close + 1;
+                return fallback;
+            }
+            value = value * 10 + (d - '0');
+        }
+        pos = close + 1;
+        return value;
+    }
+
+    /**
+     * Skip over the next value of any type
+     */
+    public boolean skipValue() {
+        int c = peek();
+        switch (c) {
+            case '"':
+                return skipString();
+            case '{':
+            case '[':
+                return skipContainer();
+            case -1:
+                return failBoolean();
+            default:
+                // number, true, false, null
+                int start = pos;
+                while (pos < end) {
+                    char ch = buf[pos];
+                    if (ch == ',' || ch == '}' || ch == ']' || isWhitespace(ch)) break;
+                    pos++;
+                }
+                if (pos == start) return failBoolean();
+                return true;
+        }
+    }
+
+    private boolean skipString() {
+        pos++; // opening quote
+        while (pos < end) {
+            char c = buf[pos++];
+            if (c == '"') return true;
+            if (c == '\\') pos++;
+        }
+        return failBoolean();
+    }
+
+    private boolean skipContainer() {
+        int depth = 0;
+        while (pos < end) {
+            char c = buf[pos];
+            if (c == '"') {
+                if (!skipString()) return false;
+                continue;
+            }
+            pos++;
+            if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                if (--depth == 0) return true;
+            }
+        }
+        return failBoolean();
+    }
+
+    private int readHex4() {
+        if (pos + 4 > end) return -1;
+        int code = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(buf[pos++], 16);
+            if (digit < 0) return -1;
+            code = (code << 4) | digit;
+        }
+        return code;
+    }
+
+    private boolean expect(char expected) {
+        if (peek() != expected) return failBoolean();
+        pos++;
+        return true;
+    }
+
+    private void skipWhitespace() {
+        while (pos < end && isWhitespace(buf[pos])) pos++;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private static boolean isNumberTail(char c) {
+        return (c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-';
+    }
+
+    private void fail() {
+        failed = true;
+    }
+
+    private boolean failBoolean() {
+        failed = true;
+        return false;
+    }
+}
@@ -0,0 +1,37 @@
+package com.linh.mdp.parsers;
+
+/**
+ * Typed payload of a {"cat": "location", "value": {"x": 1, "y": 1, "d": 0}} message.
+ * Reused across messages by the parsing thread; decoding does not allocate.
+ */
+public class LocationMessage {
+    private static final String[] FIELDS = {"x", "y", "d"};
+    private static final int FIELD_X = 0;
+    private static final int FIELD_Y = 1;
+    private static final int FIELD_D = 2;
+
+    public int x;
+    public int y;
+    public int direction;
+    private boolean hasX, hasY, hasDirection;
+
+    /**
+     * Decode the value object the tokenizer is positioned at
+     * @return false if the value is malformed or a required field is missing
+     */
+    public boolean decode(JsonTokenizer value) {
+        hasX = hasY = hasDirection = false;
+        if (!value.beginObject()) return false;
+
+        int field;
+        while ((field = value.nextField(FIELDS)) != JsonTokenizer.FIELD_END) {
+            switch (field) {
+                case FIELD_X: x = value.readInt(); hasX = true; break;
+                case FIELD_Y: y = value.readInt(); hasY = true; break;
+                case FIELD_D: direction = value.readInt(); hasDirection = true; break;
+                default: value.skipValue(); break;
+            }
+        }
+        return !value.hasFailed() && hasX && hasY && hasDirection;
+    }
+}
@@ -0,0 +1,225 @@
+package com.linh.mdp.parsers;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Routes each inbound line to a typed handler in a single pass.
+ *
+ * The first non-whitespace character decides the path: '{' lines are scanned once with a
+ * {@link JsonTokenizer} to find "cat" and the "value" span, then handed to the handler
+ * registered for that category; anything else is looked up in the plain-command table.
+ * Known categories are decoded without exceptions or per-message allocations. Categories
+ * without a typed handler fall back to org.json if a {@link FallbackHandler} is set.
+ * Not thread-safe.
+ */
+public class MessageDispatcher {
+
+    /**
+     * Handles the value of one JSON category
+     */
+    public interface CategoryHandler {
+        /**
+         * @param value tokenizer positioned at the value (nested JSON strings already unwrapped),
+         *              or null if the message has no "value" field
+         */
+        void handle(JsonTokenizer value, List<GridMutation> out);
+    }
+
+    /**
+     * Handles messages whose category has no typed handler
+     */
+    public interface FallbackHandler {
+        /**
+         * @param category the "cat" field, or null if absent
+         * @param message  the whole message parsed with org.json
+         */
+        void handle(String category, JSONObject message, List<GridMutation> out);
+    }
+
+    private static final int MAX_COMMAND_LENGTH = 16;
+    private static final int MAX_DISTANCE = 100_000;
+
+    private static final String[] TOP_LEVEL_FIELDS = {"cat", "value"};
+    private static final int FIELD_CAT = 0;
+    private static final int FIELD_VALUE = 1;
+
+    // Parallel arrays so the category can be matched in place by the tokenizer
+    private String[] categoryNames = new String[4];
+    private CategoryHandler[] categoryHandlers = new CategoryHandler[4];
+    private int categoryCount = 0;
+    private FallbackHandler fallbackHandler;
+
+    private final Map<String, String> commands = new HashMap<>();
+    // Distance commands such as "FW30": prefix, command and distance units per grid cell
+    private String[] distancePrefixes = new String[2];
+    private String[] distanceCommands = new String[2];
+    private int[] distanceUnitsPerCell = new int[2];
+    private int distanceCount = 0;
+    private final JsonTokenizer lineTokenizer = new JsonTokenizer();
+    private final JsonTokenizer valueTokenizer = new JsonTokenizer();
+
+    private long dispatchedCount = 0;
+    private long malformedCount = 0;
+    private long fallbackCount = 0;
+
+    public void registerCategory(String category, CategoryHandler handler) {
+        for (int i = 0; i < categoryCount; i++) {
+            if (categoryNames[i].equals(category)) {
+                categoryHandlers[i] = handler;
+                return;
+            }
+        }
+        if (categoryCount == categoryNames.length) {
+            categoryNames = Arrays.copyOf(categoryNames, categoryCount * 2);
+            categoryHandlers = Arrays.copyOf(categoryHandlers, categoryCount * 2);
+        }
+        categoryNames[categoryCount] = category;
+        categoryHandlers[categoryCount] = handler;
+        categoryCount++;
+    }
+
+    /**
+     * Handle well-formed messages with an unregistered category through org.json
+     */
+    public void setFallbackHandler(FallbackHandler handler) {
+        this.fallbackHandler = handler;
+    }
+
+    /**
+     * Map a plain-text alias (case-insensitive) to a robot command
+     */
+    public void registerCommand(String alias, String command) {
+        commands.put(alias.toLowerCase(Locale.ROOT), command);
+    }
+
+    /**
+     * Map {@code <prefix><distance>} lines (prefix case-insensitive) to a robot command moving
+     * distance / unitsPerCell cells, rounded to the nearest cell
+     */
+    public void registerDistanceCommand(String prefix, String command, int unitsPerCell) {
+        if (distanceCount == distancePrefixes.length) {
+            distancePrefixes = Arrays.copyOf(distancePrefixes, distanceCount * 2);
+            distanceCommands = Arrays.copyOf(distanceCommands, distanceCount * 2);
+            distanceUnitsPerCell = Arrays.copyOf(distanceUnitsPerCell, distanceCount * 2);
+        }
+        distancePrefixes[distanceCount] = prefix;
+        distanceCommands[distanceCount] = command;
+        distanceUnitsPerCell[distanceCount] = unitsPerCell;
+        distanceCount++;
+    }
+
+    public long getDispatchedCount() { return dispatchedCount; }
+    public long getMalformedCount() { return malformedCount; }
+    public long getFallbackCount() { return fallbackCount; }
+
+    /**
+     * Dispatch one trimmed, non-empty line
+     */
+    public void dispatch(String line, List<GridMutation> out) {
+        if (line.charAt(0) == '{') {
+            dispatchJson(line, out);
+        } else {
+            dispatchCommand(line, out);
+        }
+    }
+
+    private void dispatchCommand(String line, List<GridMutation> out) {
+        if (line.length() > MAX_COMMAND_LENGTH) return;
+        String command = commands.get(line.toLowerCase(Locale.ROOT));
+        if (command != null) {
+            dispatchedCount++;
+            out.add(GridMutation.robotCommand(command));
+            return;
+        }
+        dispatchDistanceCommand(line, out);
+    }
+
+    private void dispatchDistanceCommand(String line, List<GridMutation> out) {
+        for (int i = 0; i < distanceCount; i++) {
+            String prefix = distancePrefixes[i];
+            int length = line.length();
+            if (length <= prefix.length() || !line.regionMatches(true, 0, prefix, 0, prefix.length())) continue;
+
+            int distance = 0;
+            for (int j = prefix.length(); j < length; j++) {
+                char ch = line.charAt(j);
+                if (ch < '0' || ch > '9') return;
+                distance = distance * 10 + (ch - '0');
+                if (distance > MAX_DISTANCE) return;
+            }
+            int unitsPerCell = distanceUnitsPerCell[i];
+            int cells = (distance + unitsPerCell / 2) / unitsPerCell;
+            if (cells > 0) {
+                dispatchedCount++;
+                out.add(GridMutation.robotCommand(distanceCommands[i], cells));
+            }
+            return;
+        }
+    }
+
+    private void dispatchJson(String line, List<GridMutation> out) {
+        JsonTokenizer t = lineTokenizer;
+        t.reset(line);
+        t.beginObject();
+
+        int category = -1;
+        boolean hasCategory = false;
+        boolean hasValue = false;
+
+        int field;
+        while ((field = t.nextField(TOP_LEVEL_FIELDS)) != JsonTokenizer.FIELD_END) {
+            if (field == FIELD_CAT && t.peek() == '"') {
+                category = t.matchString(categoryNames, categoryCount);
+                hasCategory = true;
+            } else if (field == FIELD_VALUE) {
+                hasValue = true;
+                if (t.peek() == '"') {
+                    // Value sent as a JSON-encoded string, unescaped straight into the value tokenizer
+                    t.readStringInto(valueTokenizer);
+                } else {
+                    int start = t.position();
+                    t.skipValue();
+                    valueTokenizer.reset(t, start, t.position());
+                }
+            } else {
+                t.skipValue();
+            }
+        }
+
+        if (t.hasFailed()) {
+            malformedCount++;
+            out.add(GridMutation.toast("Invalid JSON format in message"));
+            return;
+        }
+
+        if (category < 0) {
+            if (fallbackHandler != null) dispatchFallback(line, hasCategory, out);
+            return;
+        }
+
+        dispatchedCount++;
+        categoryHandlers[category].handle(hasValue ? valueTokenizer : null, out);
+    }
+
+    /**
+     * Slow path for categories without a typed handler
+     */
+    private void dispatchFallback(String line, boolean hasCategory, List<GridMutation> out) {
+        try {
+            JSONObject message = new JSONObject(line);
+            String category = hasCategory ? message.optString("cat", null) : null;
+            fallbackCount++;
+            fallbackHandler.handle(category, message, out);
+        } catch (JSONException e) {
+            // Already validated by the tokenizer; only trailing garbage can end up here
+            malformedCount++;
+        }
+    }
+}
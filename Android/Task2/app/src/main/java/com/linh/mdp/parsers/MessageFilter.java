@@ -0,0 +1,310 @@
+package com.linh.mdp.parsers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Decides which received lines are shown in the UI.
+ *
+ * A line is displayed if it contains at least one "important" pattern and no "filter-out"
+ * pattern (case-insensitive). Both sets are compiled into one Aho-Corasick automaton, so each
+ * line is checked in a single pass regardless of how many patterns there are. Pattern sets can
+ * be replaced at any time; the automaton is rebuilt and swapped in atomically.
+ */
+public class MessageFilter {
+
+    public static final String[] DEFAULT_FILTER_OUT_PATTERNS = {
+        "sensor:", "coordinate:", "x:", "y:", "z:", "temp:", "humidity:",
+        "pressure:", "voltage:", "current:", "raw data:", "debug:",
+        "trace:", "heartbeat", "ping", "ack", "data:", "value:",
+        "reading:", "measurement:", "sample:", "update:", "sync:",
+        "buffer:", "packet:", "frame:", "bytes:", "signal:", "noise:",
+        "rssi:", "timestamp:", "counter:", "index:", "position:",
+        "angle:", "speed:", "acceleration:", "gyro:", "compass:",
+        "gps:", "wifi:", "bluetooth:", "cellular:", "network:"
+    };
+
+    public static final String[] DEFAULT_IMPORTANT_PATTERNS = {
+        "ready to start", "looking for target", "target found", "target lost",
+        "mission complete", "obstacle detected", "path blocked", "battery low",
+        "error", "warning", "status:", "connected", "disconnected",
+        "initialization", "calibration", "startup", "shutdown",
+        "emergency", "alert", "mission", "task", "complete", "failed",
+        "success", "abort", "stop", "pause", "resume", "scanning",
+        "searching", "found", "lost", "detected", "arrived", "destination"
+    };
+
+    private volatile Automaton automaton;
+
+    public MessageFilter() {
+        setPatterns(DEFAULT_FILTER_OUT_PATTERNS, DEFAULT_IMPORTANT_PATTERNS);
+    }
+
+    /**
+     * Replace both pattern sets. Patterns are matched case-insensitively; empty patterns are
+     * ignored. Match statistics start over for the new sets.
+     */
+    public synchronized void setPatterns(String[] filterOutPatterns, String[] importantPatterns) {
+        automaton = new Automaton(normalize(filterOutPatterns), normalize(importantPatterns));
+    }
+
+    public void setFilterOutPatterns(String[] patterns) {
+        synchronized (this) {
+            setPatterns(patterns, automaton.importantPatterns());
+        }
+    }
+
+    public void setImportantPatterns(String[] patterns) {
+        synchronized (this) {
+            setPatterns(automaton.filterOutPatterns(), patterns);
+        }
+    }
+
+    public String[] getFilterOutPatterns() { return automaton.filterOutPatterns(); }
+    public String[] getImportantPatterns() { return automaton.importantPatterns(); }
+
+    /**
+     * @return true if the line should be shown in the received messages log
+     */
+    public boolean shouldDisplay(CharSequence data) {
+        if (data == null || data.length() == 0) return false;
+        return automaton.scan(data);
+    }
+
+    // ============================================================================
+    // STATISTICS
+    // ============================================================================
+
+    public long getScannedCount() { return automaton.scanned.get(); }
+    public long getDisplayedCount() { return automaton.displayed.get(); }
+
+    /**
+     * @return how many times the pattern occurred in scanned lines, 0 if it is not configured
+     */
+    public long getMatchCount(String pattern) {
+        Automaton a = automaton;
+        String key = pattern.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < a.patterns.length; i++) {
+            if (a.patterns[i].equals(key)) return a.matchCounts.get(i);
+        }
+        return 0;
+    }
+
+    /**
+     * @return occurrence count of every configured pattern, filter-out patterns first
+     */
+    public Map<String, Long> getMatchStats() {
+        Automaton a = automaton;
+        Map<String, Long> stats = new LinkedHashMap<>();
+        for (int i = 0; i < a.patterns.length; i++) {
+            stats.put(a.patterns[i], a.matchCounts.get(i));
+        }
+        return stats;
+    }
+
+    public synchronized void resetStats() {
+        automaton = new Automaton(automaton.filterOutPatterns(), automaton.importantPatterns());
+    }
+
+    private static String[] normalize(String[] patterns) {
+        Set<String> unique = new LinkedHashSet<>();
+        if (patterns != null) {
+            for (String pattern : patterns) {
+                if (pattern != null && !pattern.isEmpty()) unique.add(pattern.toLowerCase(Locale.ROOT));
+            }
+        }
+        return unique.toArray(new String[0]);
+    }
+
+    /**
+     * Immutable compiled automaton plus the statistics for its pattern set.
+     * Pattern ids below {@link #filterOutCount} are filter-out patterns, the rest are important.
+     */
+    private static final class Automaton {
+        private static final int[] NO_OUTPUT = new int[0];
+        private static final char CAPITAL_I_WITH_DOT = '\u0130';
+        private static final char COMBINING_DOT_ABOVE = '\u0307';
+        private static final int FOUND_FILTER_OUT = 1;
+        private static final int FOUND_IMPORTANT = 2;
+
+        final String[] patterns;
+        final int filterOutCount;
+
+        // Alphabet compression: only characters that occur in a pattern get their own class,
+        // everything else maps to class 0
+        private final int[] asciiClass = new int[128];
+        private final Map<Character, Integer> otherClass = new HashMap<>();
+        private final int alphabetSize;
+
+        // delta[state * alphabetSize + class] = next state, failure links already folded in
+        private final int[] delta;
+        // Pattern ids ending at each state, including those inherited through failure links
+        private final int[][] outputs;
+
+        final AtomicLongArray matchCounts;
+        final AtomicLong scanned = new AtomicLong();
+        final AtomicLong displayed = new AtomicLong();
+
+        Automaton(String[] filterOut, String[] important) {
+            patterns = new String[filterOut.length + important.length];
+            System.arraycopy(filterOut, 0, patterns, 0, filterOut.length);
+            System.arraycopy(important, 0, patterns, filterOut.length, important.length);
+            filterOutCount = filterOut.length;
+            matchCounts = new AtomicLongArray(patterns.length);
+
+            int classes = 1;
+            for (String pattern : patterns) {
+                for (int i = 0; i < pattern.length(); i++) {
+                    char c = pattern.charAt(i);
+                    if (c < 128) {
+                        if (asciiClass[c] == 0) asciiClass[c] = classes++;
+                    } else if (!otherClass.containsKey(c)) {
+                        otherClass.put(c, classes++);
+                    }
+                }
+            }
+            alphabetSize = classes;
+
+            // Build the trie
+            List<int[]> rows = new ArrayList<>();
+            List<int[]> outs = new ArrayList<>();
+            rows.add(newRow());
+            outs.add(NO_OUTPUT);
+            for (int id = 0; id < patterns.length; id++) {
+                String pattern = patterns[id];
+                int state = 0;
+                for (int i = 0; i < pattern.length(); i++) {
+                    int cls = classOf(pattern.charAt(i));
+                    int next = rows.get(state)[cls];
+                    if (next < 0) {
+                        next = rows.size();
+                        rows.get(state)[cls] = next;
+                        rows.add(newRow());
+                        outs.add(NO_OUTPUT);
+                    }
+                    state = next;
+                }
+                outs.set(state, append(outs.get(state), id));
+            }
+
+            // Breadth-first pass: failure links, folded into a complete transition table
+            int stateCount = rows.size();
+            int[] fail = new int[stateCount];
+            int[] queue = new int[stateCount];
+            int head = 0, tail = 0;
+            int[] root = rows.get(0);
+            for (int cls = 0; cls < alphabetSize; cls++) {
+                if (root[cls] < 0) {
+                    root[cls] = 0;
+                } else {
+                    fail[root[cls]] = 0;
+                    queue[tail++] = root[cls];
+                }
+            }
+            while (head < tail) {
+                int state = queue[head++];
+                int[] row = rows.get(state);
+                int[] failRow = rows.get(fail[state]);
+                for (int cls = 0; cls < alphabetSize; cls++) {
+                    int child = row[cls];
+                    if (child < 0) {
+                        row[cls] = failRow[cls];
+                    } else {
+                        fail[child] = failRow[cls];
+                        int[] inherited = outs.get(fail[child]);
+                        for (int id : inherited) outs.set(child, append(outs.get(child), id));
+                        queue[tail++] = child;
+                    }
+                }
+            }
+
+            delta = new int[stateCount * alphabetSize];
+            outputs = new int[stateCount][];
+            for (int s = 0; s < stateCount; s++) {
+                System.arraycopy(rows.get(s), 0, delta, s * alphabetSize, alphabetSize);
+                outputs[s] = outs.get(s);
+            }
+        }
+
+        /**
+         * Single case-insensitive pass over the line
+         */
+        boolean scan(CharSequence text) {
+            int found = 0;
+            int state = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == CAPITAL_I_WITH_DOT) {
+                    // String.toLowerCase turns this one into two chars, "i\u0307"
+                    state = delta[state * alphabetSize + classOf('i')];
+                    found |= emit(state);
+                    c = COMBINING_DOT_ABOVE;
+                }
+                state = delta[state * alphabetSize + classOf(c)];
+                found |= emit(state);
+            }
+            scanned.incrementAndGet();
+            boolean display = (found & FOUND_IMPORTANT) != 0 && (found & FOUND_FILTER_OUT) == 0;
+            if (display) displayed.incrementAndGet();
+            return display;
+        }
+
+        /**
+         * Count the patterns ending at this state
+         * @return FOUND_* bits for the kinds of pattern seen
+         */
+        private int emit(int state) {
+            int found = 0;
+            for (int id : outputs[state]) {
+                matchCounts.incrementAndGet(id);
+                found |= id < filterOutCount ? FOUND_FILTER_OUT : FOUND_IMPORTANT;
+            }
+            return found;
+        }
+
+        private int classOf(char c) {
+            if (c < 128) {
+                if (c >= 'A' && c <= 'Z') c += 'a' - 'A';
+                return asciiClass[c];
+            }
+            // Some non-ASCII letters lowercase to ASCII, e.g. the Kelvin sign to 'k'
+            char lower = Character.toLowerCase(c);
+            if (lower < 128) return asciiClass[lower];
+            if (otherClass.isEmpty()) return 0;
+            Integer cls = otherClass.get(lower);
+            return cls != null ? cls : 0;
+        }
+
+        private int[] newRow() {
+            int[] row = new int[alphabetSize];
+            Arrays.fill(row, -1);
+            return row;
+        }
+
+        private static int[] append(int[] ids, int id) {
+            for (int existing : ids) {
+                if (existing == id) return ids;
+            }
+            int[] grown = Arrays.copyOf(ids, ids.length + 1);
+            grown[ids.length] = id;
+            return grown;
+        }
+
+        String[] filterOutPatterns() {
+            return Arrays.copyOfRange(patterns, 0, filterOutCount);
+        }
+
+        String[] importantPatterns() {
+            return Arrays.copyOfRange(patterns, filterOutCount, patterns.length);
+        }
+    }
+}
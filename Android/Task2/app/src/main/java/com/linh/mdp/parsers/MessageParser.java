@@ -4,26 +4,39 @@ import android.util.Log;
 
 import com.linh.mdp.adapters.GridTableAdapter;
 
-import org.json.JSONException;
-import org.json.JSONObject;
+import java.util.List;
 
 /**
- * Parser class to handle different types of incoming Bluetooth messages
+ * Parser class to handle different types of incoming Bluetooth messages.
+ *
+ * Parsing is split in two stages so it can run off the UI thread:
+ * {@link #parse} turns a line into {@link GridMutation}s in a single pass and must only be
+ * called from one thread at a time (it reuses its tokenizer and message objects),
+ * {@link #apply} must run on the main thread and applies them to the grid and UI.
  */
 public class MessageParser {
 
     private static final String TAG = "MessageParser";
+    // Arena cells are 10 cm; distance commands are sent in cm
+    private static final int CM_PER_CELL = 10;
 
     private final GridTableAdapter gridAdapter;
     private final OnMessageParsedListener listener;
 
+    // Parse stage state, reused across messages
+    private final MessageDispatcher dispatcher = new MessageDispatcher();
+    private final LocationMessage locationMessage = new LocationMessage();
+    private final ImageRecMessage imageRecMessage = new ImageRecMessage();
+    private final MessageFilter messageFilter = new MessageFilter();
+
     public interface OnMessageParsedListener {
         void onRobotCommandParsed(String command);
         void onTargetMessageParsed(int obstacleNumber, String targetId);
         void onRobotPositionParsed(int x, int y, String direction);
+        void onMessagesReceived(int count);
+        void onImportantMessage(String message);
 
         void showToast(String message);
-        String getCurrentTimestamp();
         void appendToReceivedData(String message);
         void updateRobotStatusText();
     }
@@ -31,60 +44,205 @@ public class MessageParser {
     public MessageParser(GridTableAdapter gridAdapter, OnMessageParsedListener listener) {
         this.gridAdapter = gridAdapter;
         this.listener = listener;
+        registerHandlers();
     }
 
+    // ============================================================================
+    // PARSE STAGE - pure, runs on a single background thread
+    // ============================================================================
+
     /**
-     * Parse and handle basic robot control commands from incoming data
+     * Parse one message into grid mutations
      */
-    public void parseAndHandleRobotCommands(String data) {
-        if (data == null || gridAdapter == null) return;
+    public void parse(String data, List<GridMutation> out) {
+        if (data == null) return;
 
-        String trimmed = data.trim().toLowerCase();
+        String trimmed = data.trim();
         if (trimmed.isEmpty()) return;
 
+        dispatcher.dispatch(trimmed, out);
+
+        // Only display selective/important messages in the UI
+        if (shouldDisplayMessage(trimmed)) {
+            out.add(GridMutation.displayMessage(trimmed));
+        } else {
+            // Log filtered out messages for debugging
+            Log.d(TAG, "Filtered out message: " + trimmed);
+        }
+    }
+
+    /**
+     * Register the JSON categories and plain-text robot commands this parser understands
+     */
+    private void registerHandlers() {
         // Handle basic robot movement commands
-        switch (trimmed) {
-            case "f":
+        dispatcher.registerCommand("f", "forward");
+        dispatcher.registerCommand("forward", "forward");
+        dispatcher.registerCommand("r", "reverse");
+        dispatcher.registerCommand("reverse", "reverse");
+        dispatcher.registerCommand("tl", "turnleft");
+        dispatcher.registerCommand("turnleft", "turnleft");
+        dispatcher.registerCommand("turn_left", "turnleft");
+        dispatcher.registerCommand("tr", "turnright");
+        dispatcher.registerCommand("turnright", "turnright");
+        dispatcher.registerCommand("turn_right", "turnright");
+        // Straight moves with a distance in cm, e.g. "FW30" or "BW10"
+        dispatcher.registerDistanceCommand("fw", "forward", CM_PER_CELL);
+        dispatcher.registerDistanceCommand("bw", "reverse", CM_PER_CELL);
+
+        dispatcher.registerCategory("image-rec", this::handleImageRec);
+        dispatcher.registerCategory("location", this::handleLocation);
+
+        // Anything else (control, error, ...) is rare; keep the generic org.json path for it
+        dispatcher.setFallbackHandler((category, message, out) ->
+                Log.d(TAG, "No typed handler for category '" + category + "': " + message));
+    }
+
+    /**
+     * Handle TARGET messages: {"cat": "image-rec", "value": "{\"image_id\": \"A\", \"obstacle_id\": \"1\"}"}
+     */
+    private void handleImageRec(JsonTokenizer value, List<GridMutation> out) {
+        if (value == null) {
+            Log.w(TAG, "Missing 'value' object in image-rec JSON message");
+            out.add(GridMutation.toast("Invalid image recognition message: missing value object"));
+            return;
+        }
+        if (!imageRecMessage.decode(value)) {
+            Log.w(TAG, "Missing image_id or obstacle_id in JSON value object");
+            out.add(GridMutation.toast("Invalid image recognition message: missing required fields"));
+            return;
+        }
+        if (!imageRecMessage.obstacleIdValid) {
+            Log.e(TAG, "Invalid obstacle_id number in image-rec message");
+            out.add(GridMutation.toast("Invalid obstacle_id in image recognition message"));
+            return;
+        }
+        out.add(GridMutation.setTarget(imageRecMessage.obstacleId, imageRecMessage.imageId));
+    }
+
+    /**
+     * Handle ROBOT messages: {"cat": "location", "value": "{\"x\": 1, \"y\": 1, \"d\": 0}"}
+     */
+    private void handleLocation(JsonTokenizer value, List<GridMutation> out) {
+        if (value == null) {
+            Log.w(TAG, "Missing 'value' object in location JSON message");
+            out.add(GridMutation.toast("Invalid location message: missing value object"));
+            return;
+        }
+        if (!locationMessage.decode(value)) {
+            Log.w(TAG, "Missing x, y, or d in JSON value object");
+            out.add(GridMutation.toast("Invalid location message: missing required fields"));
+            return;
+        }
+
+        int x = locationMessage.x;
+        int y = locationMessage.y;
+        int direction = locationMessage.direction;
+
+        // Validate coordinates are in valid range (0-19)
+        if (x < 0 || x > 19 || y < 0 || y > 19) {
+            Log.w(TAG, "Invalid coordinates in location message: (" + x + ", " + y + ")");
+            out.add(GridMutation.toast("Invalid robot coordinates: (" + x + ", " + y + ")"));
+            return;
+        }
+
+        // Convert direction number to string
+        String directionStr = convertDirectionToString(direction);
+
+        if (directionStr != null) {
+            out.add(GridMutation.robotPosition(x, y, directionStr));
+        } else {
+            Log.w(TAG, "Invalid direction value in location message: " + direction);
+            out.add(GridMutation.toast("Invalid direction value: " + direction));
+        }
+    }
+
+    /**
+     * Helper method to convert direction number to direction string
+     * @param direction 0=North, 2=East, 4=South, 6=West
+     * @return direction string or null if invalid
+     */
+    private String convertDirectionToString(int direction) {
+        switch (direction) {
+            case 0: return "N";
+            case 2: return "E";
+            case 4: return "S";
+            case 6: return "W";
+            default: return null;
+        }
+    }
+
+    // ============================================================================
+    // APPLY STAGE - main thread only
+    // ============================================================================
+
+    /**
+     * Apply one frame's worth of mutations. Runs as a grid frame task, so the grid renders once
+     * afterwards no matter how many cells the batch touched.
+     * @param messageCount number of received messages the batch was parsed from
+     */
+    public void apply(List<GridMutation> batch, int messageCount) {
+        if (listener != null && messageCount > 0) {
+            listener.onMessagesReceived(messageCount);
+        }
+        if (gridAdapter == null || batch.isEmpty()) return;
+
+        // Only the latest toast of a batch is shown; earlier ones would be hidden immediately anyway
+        String lastToast = null;
+        boolean robotChanged = false;
+
+        for (int i = 0; i < batch.size(); i++) {
+            GridMutation mutation = batch.get(i);
+            switch (mutation.type) {
+                case ROBOT_COMMAND:
+                    applyRobotCommand(mutation.text, mutation.first);
+                    robotChanged = true;
+                    break;
+                case SET_TARGET:
+                    lastToast = applyTarget(mutation.first, mutation.text);
+                    break;
+                case ROBOT_POSITION:
+                    lastToast = applyRobotPosition(mutation.first, mutation.second, mutation.text);
+                    robotChanged = true;
+                    break;
+                case DISPLAY_MESSAGE:
+                    if (listener != null) listener.onImportantMessage(mutation.text);
+                    break;
+                case TOAST:
+                    lastToast = mutation.text;
+                    break;
+            }
+        }
+
+        if (listener != null) {
+            if (robotChanged) listener.updateRobotStatusText();
+            if (lastToast != null) listener.showToast(lastToast);
+        }
+    }
+
+    private void applyRobotCommand(String command, int cells) {
+        switch (command) {
             case "forward":
-                handleForwardCommand();
-                if (listener != null) {
-                    listener.onRobotCommandParsed("forward");
-                }
+                handleForwardCommand(cells);
                 break;
-
-            case "r":
             case "reverse":
-                handleReverseCommand();
-                if (listener != null) {
-                    listener.onRobotCommandParsed("reverse");
-                }
+                handleReverseCommand(cells);
                 break;
-
-            case "tl":
             case "turnleft":
-            case "turn_left":
                 handleTurnLeftCommand();
-                if (listener != null) {
-                    listener.onRobotCommandParsed("turnleft");
-                }
                 break;
-
-            case "tr":
             case "turnright":
-            case "turn_right":
                 handleTurnRightCommand();
-                if (listener != null) {
-                    listener.onRobotCommandParsed("turnright");
-                }
                 break;
-
             default:
-                // Not a basic robot command
-                break;
+                return;
+        }
+        if (listener != null) {
+            listener.onRobotCommandParsed(command);
         }
     }
 
-    private void handleForwardCommand() {
+    private void handleForwardCommand(int cells) {
         if (gridAdapter.hasRobot()) {
             int dRow = 0, dCol = 0;
             switch (gridAdapter.getRobotOrientation()) {
@@ -97,17 +255,14 @@ public class MessageParser {
                 case 3:
                     dCol = -1; break; // West
             }
-            boolean moved = gridAdapter.moveRobot(dRow, dCol);
-            if (listener != null) {
-                listener.updateRobotStatusText();
-            }
-            Log.d(TAG, "Robot forward command received, moved: " + moved);
+            int moved = gridAdapter.moveRobotSteps(dRow, dCol, cells);
+            Log.d(TAG, "Robot forward command received, moved " + moved + "/" + cells + " cells");
         } else {
             Log.w(TAG, "Forward command received but robot not placed");
         }
     }
 
-    private void handleReverseCommand() {
+    private void handleReverseCommand(int cells) {
         if (gridAdapter.hasRobot()) {
             int dRow = 0, dCol = 0;
             switch (gridAdapter.getRobotOrientation()) {
@@ -120,11 +275,8 @@ public class MessageParser {
                 case 3:
                     dCol = 1; break;   // opposite of West
             }
-            boolean moved = gridAdapter.moveRobot(dRow, dCol);
-            if (listener != null) {
-                listener.updateRobotStatusText();
-            }
-            Log.d(TAG, "Robot reverse command received, moved: " + moved);
+            int moved = gridAdapter.moveRobotSteps(dRow, dCol, cells);
+            Log.d(TAG, "Robot reverse command received, moved " + moved + "/" + cells + " cells");
         } else {
             Log.w(TAG, "Reverse command received but robot not placed");
         }
@@ -133,9 +285,6 @@ public class MessageParser {
     private void handleTurnLeftCommand() {
         if (gridAdapter.hasRobot()) {
             gridAdapter.turnRobotLeft();
-            if (listener != null) {
-                listener.updateRobotStatusText();
-            }
             Log.d(TAG, "Robot turn left command received");
         } else {
             Log.w(TAG, "Turn left command received but robot not placed");
@@ -145,9 +294,6 @@ public class MessageParser {
     private void handleTurnRightCommand() {
         if (gridAdapter.hasRobot()) {
             gridAdapter.turnRobotRight();
-            if (listener != null) {
-                listener.updateRobotStatusText();
-            }
             Log.d(TAG, "Robot turn right command received");
         } else {
             Log.w(TAG, "Turn right command received but robot not placed");
@@ -155,215 +301,47 @@ public class MessageParser {
     }
 
     /**
-     * Parse and handle TARGET messages in JSON format: {"cat": "image-rec", "value": "{\"image_id\": \"A\", \"obstacle_id\": \"1\"}"}
+     * @return toast to show for this target assignment
      */
-    public void parseAndHandleTargetMessages(String data) {
-        if (data == null || gridAdapter == null) return;
+    private String applyTarget(int obstacleNumber, String imageId) {
+        // Apply target styling to the obstacle using image_id as the target ID
+        boolean success = gridAdapter.setObstacleAsTarget(obstacleNumber, imageId);
 
-        String trimmed = data.trim();
-        if (trimmed.isEmpty()) return;
+        if (success) {
+            Log.d(TAG, "Target assigned: Obstacle " + obstacleNumber + " -> Image ID: " + imageId);
 
-        // Check if this is a JSON message
-        try {
-            JSONObject jsonObject = new JSONObject(trimmed);
-
-            // Check if this is an image-rec message
-            if (jsonObject.has("cat") && "image-rec".equals(jsonObject.getString("cat"))) {
-
-                // Extract the value - it can be either a JSON object or a JSON string
-                if (jsonObject.has("value")) {
-                    JSONObject valueObject;
-
-                    // Check if value is a string (nested JSON) or already an object
-                    Object valueRaw = jsonObject.get("value");
-                    if (valueRaw instanceof String) {
-                        // Parse the nested JSON string
-                        String valueString = jsonObject.getString("value");
-                        valueObject = new JSONObject(valueString);
-                    } else {
-                        // Value is already a JSON object
-                        valueObject = jsonObject.getJSONObject("value");
-                    }
-
-                    // Extract image_id and obstacle_id
-                    if (valueObject.has("image_id") && valueObject.has("obstacle_id")) {
-                        String imageId = valueObject.getString("image_id");
-                        String obstacleIdStr = valueObject.getString("obstacle_id");
-
-                        // Parse obstacle number
-                        int obstacleNumber = Integer.parseInt(obstacleIdStr);
-
-                        // Apply target styling to the obstacle using image_id as the target ID
-                        boolean success = gridAdapter.setObstacleAsTarget(obstacleNumber, imageId);
-
-                        if (success) {
-                            Log.d(TAG, "Target assigned: Obstacle " + obstacleNumber + " -> Image ID: " + imageId);
-
-                            if (listener != null) {
-                                listener.onTargetMessageParsed(obstacleNumber, imageId);
-                                listener.showToast("Obstacle " + obstacleNumber + " marked as target: " + imageId);
-
-                                // Add to received data display
-                                String timestamp = listener.getCurrentTimestamp();
-                                String formattedMessage = "[" + timestamp + "] IMAGE-REC: Obstacle " + obstacleNumber + " -> " + imageId + "\n";
-                                listener.appendToReceivedData(formattedMessage);
-                            }
-                        } else {
-                            Log.w(TAG, "Failed to assign target: Obstacle " + obstacleNumber + " not found");
-                            if (listener != null) {
-                                listener.showToast("Obstacle " + obstacleNumber + " not found - cannot assign target");
-                            }
-                        }
-                    } else {
-                        Log.w(TAG, "Missing image_id or obstacle_id in JSON value object");
-                        if (listener != null) {
-                            listener.showToast("Invalid image recognition message: missing required fields");
-                        }
-                    }
-                } else {
-                    Log.w(TAG, "Missing 'value' object in image-rec JSON message");
-                    if (listener != null) {
-                        listener.showToast("Invalid image recognition message: missing value object");
-                    }
-                }
-            }
-        } catch (JSONException e) {
-            Log.e(TAG, "Invalid JSON format in message: " + data, e);
-            if (listener != null) {
-                listener.showToast("Invalid JSON format in message");
-            }
-        } catch (NumberFormatException e) {
-            Log.e(TAG, "Invalid obstacle_id number in JSON message: " + data, e);
             if (listener != null) {
-                listener.showToast("Invalid obstacle_id in image recognition message");
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error parsing JSON image recognition message: " + data, e);
-            if (listener != null) {
-                listener.showToast("Error processing image recognition message");
+                listener.onTargetMessageParsed(obstacleNumber, imageId);
+
+                // Add to received data display
+                listener.appendToReceivedData("IMAGE-REC: Obstacle " + obstacleNumber + " -> " + imageId);
             }
+            return "Obstacle " + obstacleNumber + " marked as target: " + imageId;
         }
-
+        Log.w(TAG, "Failed to assign target: Obstacle " + obstacleNumber + " not found");
+        return "Obstacle " + obstacleNumber + " not found - cannot assign target";
     }
 
-
     /**
-     * Parse and handle ROBOT messages in JSON format: {"cat": "location", "value": "{\"x\": 1, \"y\": 1, \"d\": 0}"}
+     * @return toast to show for this position update
      */
-    public void parseAndHandleRobotMessages(String data) {
-        if (data == null || gridAdapter == null) return;
+    private String applyRobotPosition(int x, int y, String directionStr) {
+        // Update robot position and direction
+        boolean success = gridAdapter.updateRobotPosition(x, y, directionStr);
 
-        String trimmed = data.trim();
-        if (trimmed.isEmpty()) return;
+        if (success) {
+            Log.d(TAG, "Robot updated: Position (" + x + ", " + y + ") facing " + directionStr);
 
-        // Check if this is a JSON message
-        try {
-            JSONObject jsonObject = new JSONObject(trimmed);
-
-            // Check if this is a location message
-            if (jsonObject.has("cat") && "location".equals(jsonObject.getString("cat"))) {
-
-                // Extract the value - it can be either a JSON object or a JSON string
-                if (jsonObject.has("value")) {
-                    JSONObject valueObject;
-
-                    // Check if value is a string (nested JSON) or already an object
-                    Object valueRaw = jsonObject.get("value");
-                    if (valueRaw instanceof String) {
-                        // Parse the nested JSON string
-                        String valueString = jsonObject.getString("value");
-                        valueObject = new JSONObject(valueString);
-                    } else {
-                        // Value is already a JSON object
-                        valueObject = jsonObject.getJSONObject("value");
-                    }
-
-                    // Extract x, y, and d (direction)
-                    if (valueObject.has("x") && valueObject.has("y") && valueObject.has("d")) {
-                        int x = valueObject.getInt("x");
-                        int y = valueObject.getInt("y");
-                        int direction = valueObject.getInt("d");
-
-                        // Validate coordinates are in valid range (0-19)
-                        if (x < 0 || x > 19 || y < 0 || y > 19) {
-                            Log.w(TAG, "Invalid coordinates in location message: (" + x + ", " + y + ")");
-                            if (listener != null) {
-                                listener.showToast("Invalid robot coordinates: (" + x + ", " + y + ")");
-                            }
-                            return;
-                        }
-
-                        // Convert direction number to string
-                        String directionStr = convertDirectionToString(direction);
-
-                        if (directionStr != null) {
-                            // Update robot position and direction
-                            boolean success = gridAdapter.updateRobotPosition(x, y, directionStr);
-
-                            if (success) {
-                                Log.d(TAG, "Robot updated: Position (" + x + ", " + y + ") facing " + directionStr);
-
-                                if (listener != null) {
-                                    listener.onRobotPositionParsed(x, y, directionStr);
-                                    listener.showToast("Robot moved to (" + x + ", " + y + ") facing " + directionStr);
-                                    listener.updateRobotStatusText();
-
-                                    // Add to received data display
-                                    String timestamp = listener.getCurrentTimestamp();
-                                    String formattedMessage = "[" + timestamp + "] LOCATION: Position (" + x + ", " + y + ") facing " + directionStr + "\n";
-                                    listener.appendToReceivedData(formattedMessage);
-                                }
-                            } else {
-                                Log.w(TAG, "Failed to update robot position: (" + x + ", " + y + ") facing " + directionStr);
-                                if (listener != null) {
-                                    listener.showToast("Cannot place robot at (" + x + ", " + y + ") - position blocked or invalid");
-                                }
-                            }
-                        } else {
-                            Log.w(TAG, "Invalid direction value in location message: " + direction);
-                            if (listener != null) {
-                                listener.showToast("Invalid direction value: " + direction);
-                            }
-                        }
-                    } else {
-                        Log.w(TAG, "Missing x, y, or d in JSON value object");
-                        if (listener != null) {
-                            listener.showToast("Invalid location message: missing required fields");
-                        }
-                    }
-                } else {
-                    Log.w(TAG, "Missing 'value' object in location JSON message");
-                    if (listener != null) {
-                        listener.showToast("Invalid location message: missing value object");
-                    }
-                }
-            }
-        } catch (JSONException e) {
-            Log.e(TAG, "Invalid JSON format in location message: " + data, e);
-            if (listener != null) {
-                listener.showToast("Invalid JSON format in location message");
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error parsing JSON location message: " + data, e);
             if (listener != null) {
-                listener.showToast("Error processing location message");
-            }
-        }
-    }
+                listener.onRobotPositionParsed(x, y, directionStr);
 
-    /**
-     * Helper method to convert direction number to direction string
-     * @param direction 0=North, 2=East, 4=South, 6=West
-     * @return direction string or null if invalid
-     */
-    private String convertDirectionToString(int direction) {
-        switch (direction) {
-            case 0: return "N";
-            case 2: return "E";
-            case 4: return "S";
-            case 6: return "W";
-            default: return null;
+                // Add to received data display
+                listener.appendToReceivedData("LOCATION: Position (" + x + ", " + y + ") facing " + directionStr);
+            }
+            return "Robot moved to (" + x + ", " + y + ") facing " + directionStr;
         }
+        Log.w(TAG, "Failed to update robot position: (" + x + ", " + y + ") facing " + directionStr);
+        return "Cannot place robot at (" + x + ", " + y + ") - position blocked or invalid";
     }
 
     /**
@@ -371,47 +349,13 @@ public class MessageParser {
      * Only displays important/status messages and filters out routine data
      */
     public boolean shouldDisplayMessage(String data) {
-        if (data == null) return false;
-
-        String lowerData = data.toLowerCase().trim();
-        if (lowerData.isEmpty()) return false;
-
-        // First check if message contains any filter-out patterns - these should NOT be displayed
-        String[] filterOutPatterns = {
-            "sensor:", "coordinate:", "x:", "y:", "z:", "temp:", "humidity:",
-            "pressure:", "voltage:", "current:", "raw data:", "debug:",
-            "trace:", "heartbeat", "ping", "ack", "data:", "value:",
-            "reading:", "measurement:", "sample:", "update:", "sync:",
-            "buffer:", "packet:", "frame:", "bytes:", "signal:", "noise:",
-            "rssi:", "timestamp:", "counter:", "index:", "position:",
-            "angle:", "speed:", "acceleration:", "gyro:", "compass:",
-            "gps:", "wifi:", "bluetooth:", "cellular:", "network:"
-        };
-
-        for (String pattern : filterOutPatterns) {
-            if (lowerData.contains(pattern)) {
-                return false;
-            }
-        }
-
-        // Then check if message contains any important patterns - these SHOULD be displayed
-        String[] importantPatterns = {
-            "ready to start", "looking for target", "target found", "target lost",
-            "mission complete", "obstacle detected", "path blocked", "battery low",
-            "error", "warning", "status:", "connected", "disconnected",
-            "initialization", "calibration", "startup", "shutdown",
-            "emergency", "alert", "mission", "task", "complete", "failed",
-            "success", "abort", "stop", "pause", "resume", "scanning",
-            "searching", "found", "lost", "detected", "arrived", "destination"
-        };
-
-        for (String pattern : importantPatterns) {
-            if (lowerData.contains(pattern)) {
-                return true;
-            }
-        }
+        return messageFilter.shouldDisplay(data);
+    }
 
-        // Default to NOT show messages unless they match important patterns
-        return false;
+    /**
+     * Pattern sets and match statistics behind {@link #shouldDisplayMessage}
+     */
+    public MessageFilter getMessageFilter() {
+        return messageFilter;
     }
 }
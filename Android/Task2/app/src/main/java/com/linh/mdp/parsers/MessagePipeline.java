@@ -0,0 +1,111 @@
+package com.linh.mdp.parsers;
+
+import android.util.Log;
+
+import com.linh.mdp.adapters.grid.GridFrameScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Staged inbound message pipeline:
+ * 1. submit() - called from the Bluetooth reader thread with one complete message
+ * 2. parse    - runs on a single background thread, producing typed {@link GridMutation}s
+ * 3. apply    - everything parsed since the last frame is applied on the main thread in one batch,
+ *               as a task of the grid's frame scheduler so the grid renders once afterwards
+ *
+ * Must be constructed on the main thread.
+ */
+public class MessagePipeline {
+    private static final String TAG = "MessagePipeline";
+
+    private final MessageParser parser;
+    private final ExecutorService parseExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, TAG));
+    private final GridFrameScheduler frameScheduler;
+    private final GridFrameScheduler.FrameTask applyTask = frameTimeNanos -> applyPending();
+
+    // Parse thread only
+    private final List<GridMutation> parsed = new ArrayList<>();
+
+    // Guarded by lock; the two lists are swapped each frame so steady state does not allocate
+    private final Object lock = new Object();
+    private List<GridMutation> pending = new ArrayList<>();
+    private List<GridMutation> applying = new ArrayList<>();
+    private int pendingMessageCount = 0;
+    private boolean frameScheduled = false;
+    private volatile boolean shutDown = false;
+
+    public MessagePipeline(MessageParser parser, GridFrameScheduler frameScheduler) {
+        this.parser = parser;
+        this.frameScheduler = frameScheduler;
+        frameScheduler.addFrameTask(applyTask);
+    }
+
+    /**
+     * Queue one complete message for parsing. Safe to call from any thread.
+     */
+    public void submit(String message) {
+        if (shutDown) return;
+        try {
+            parseExecutor.execute(() -> parseAndStage(message));
+        } catch (RejectedExecutionException e) {
+            // Raced with shutdown(); a late message is dropped, never thrown on the reader thread
+            Log.d(TAG, "Dropped message after shutdown");
+        }
+    }
+
+    private void parseAndStage(String message) {
+        try {
+            parser.parse(message, parsed);
+        } catch (Exception e) {
+            Log.e(TAG, "Error parsing message: " + message, e);
+        }
+
+        synchronized (lock) {
+            pending.addAll(parsed);
+            pendingMessageCount++;
+            if (!frameScheduled && !shutDown) {
+                frameScheduled = true;
+                frameScheduler.requestFrame();
+            }
+        }
+        parsed.clear();
+    }
+
+    private void applyPending() {
+        List<GridMutation> batch;
+        int messageCount;
+        synchronized (lock) {
+            // The frame may have been requested by a local grid change
+            if (!frameScheduled) return;
+            batch = pending;
+            pending = applying;
+            applying = batch;
+            messageCount = pendingMessageCount;
+            pendingMessageCount = 0;
+            frameScheduled = false;
+        }
+        try {
+            parser.apply(batch, messageCount);
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /**
+     * Stop parsing and drop anything not yet applied
+     */
+    public void shutdown() {
+        shutDown = true;
+        parseExecutor.shutdownNow();
+        frameScheduler.removeFrameTask(applyTask);
+        synchronized (lock) {
+            pending.clear();
+            pendingMessageCount = 0;
+            frameScheduled = false;
+        }
+    }
+}
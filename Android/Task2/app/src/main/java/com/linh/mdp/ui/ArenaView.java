@@ -0,0 +1,443 @@
+package com.linh.mdp.ui;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+
+import com.linh.mdp.adapters.GridTableAdapter;
+import com.linh.mdp.adapters.grid.DirtyCellTracker;
+import com.linh.mdp.adapters.grid.GridConstants;
+import com.linh.mdp.adapters.grid.GridStore;
+import com.linh.mdp.adapters.grid.RobotPosePredictor;
+import com.linh.mdp.utils.FrameTimeHistogram;
+
+/**
+ * Draws the whole 21x21 arena (headers, cells, robot footprint, obstacles, target labels and
+ * border bars) from the {@link GridStore} model held by {@link GridTableAdapter}, using
+ * pre-allocated Paints.
+ *
+ * Cells are painted into a backing bitmap; each frame repaints only the positions the managers
+ * marked in the adapter's {@link DirtyCellTracker}, and onDraw just blits the bitmap.
+ */
+public class ArenaView extends View implements GridTableAdapter.OnGridChangedListener {
+
+    public static final int INVALID_POSITION = -1;
+
+    // Border bar thickness in pixels
+    private static final int BORDER_WIDTH_PX = 8;
+    private static final float CELL_SPACING_DP = 1f;
+
+    public interface OnCellClickListener {
+        void onCellClick(int row, int col);
+    }
+
+    private GridTableAdapter adapter;
+    private OnCellClickListener cellClickListener;
+
+    // Pre-allocated drawing state
+    private final Paint cellPaint = new Paint();
+    private final Paint borderPaint = new Paint();
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint targetTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private float textBaselineOffset;
+    private float targetTextBaselineOffset;
+    private final Rect cellBounds = new Rect();
+
+    // Backing store, rebuilt on size change
+    private Bitmap arenaBitmap;
+    private Canvas arenaCanvas;
+    private boolean fullRepaintNeeded = true;
+
+    // Robot drawn as an overlay at the predicted pose instead of in its grid cells
+    private boolean robotSmoothingEnabled = true;
+    private final Paint robotPaint = new Paint();
+
+    // Repaint counters
+    private long frameCount = 0;
+    private long repaintedCellCount = 0;
+    private int lastFrameRepaintedCells = 0;
+    private int maxFrameRepaintedCells = 0;
+    private long fullRepaintCount = 0;
+    private final FrameTimeHistogram drawTimeHistogram = new FrameTimeHistogram();
+
+    // Layout, computed in onSizeChanged
+    private final float cellSpacing;
+    private float cellSize;
+    private float originX;
+    private float originY;
+
+    // Tap detection
+    private final int touchSlop;
+    private float downX, downY;
+    private int downPosition = INVALID_POSITION;
+
+    public ArenaView(Context context) {
+        this(context, null);
+    }
+
+    public ArenaView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public ArenaView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        cellSpacing = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, CELL_SPACING_DP,
+                getResources().getDisplayMetrics());
+        touchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+
+        cellPaint.setStyle(Paint.Style.FILL);
+        robotPaint.setStyle(Paint.Style.FILL);
+        borderPaint.setStyle(Paint.Style.FILL);
+        borderPaint.setAntiAlias(true);
+
+        textPaint.setTextAlign(Paint.Align.CENTER);
+        textPaint.setTextSize(spToPx(GridConstants.NORMAL_TEXT_SIZE));
+        textBaselineOffset = centeredBaselineOffset(textPaint);
+
+        targetTextPaint.setTextAlign(Paint.Align.CENTER);
+        targetTextPaint.setTypeface(Typeface.DEFAULT_BOLD);
+        targetTextPaint.setTextSize(spToPx(GridConstants.TARGET_TEXT_SIZE));
+        targetTextBaselineOffset = centeredBaselineOffset(targetTextPaint);
+    }
+
+    public void setAdapter(GridTableAdapter adapter) {
+        if (this.adapter != null) this.adapter.setOnGridChangedListener(null);
+        this.adapter = adapter;
+        if (adapter != null) adapter.setOnGridChangedListener(this);
+        fullRepaintNeeded = true;
+        invalidate();
+    }
+
+    public GridTableAdapter getAdapter() {
+        return adapter;
+    }
+
+    public void setOnCellClickListener(OnCellClickListener listener) {
+        this.cellClickListener = listener;
+    }
+
+    // ============================================================================
+    // INVALIDATION
+    // ============================================================================
+
+    @Override
+    public void onGridChanged() {
+        // Called from the adapter's frame callback, so this draws in the current frame
+        invalidate();
+    }
+
+    /**
+     * Repaint every cell on the next frame, e.g. after a theme change
+     */
+    public void invalidateAllCells() {
+        fullRepaintNeeded = true;
+        postInvalidateOnAnimation();
+    }
+
+    /**
+     * Draw the robot at its dead-reckoned pose between location reports rather than
+     * jumping cell to cell
+     */
+    public void setRobotSmoothingEnabled(boolean enabled) {
+        if (robotSmoothingEnabled == enabled) return;
+        robotSmoothingEnabled = enabled;
+        invalidateAllCells();
+    }
+
+    public boolean isRobotSmoothingEnabled() { return robotSmoothingEnabled; }
+
+    public long getFrameCount() { return frameCount; }
+    public long getRepaintedCellCount() { return repaintedCellCount; }
+    public int getLastFrameRepaintedCells() { return lastFrameRepaintedCells; }
+    public int getMaxFrameRepaintedCells() { return maxFrameRepaintedCells; }
+    public long getFullRepaintCount() { return fullRepaintCount; }
+
+    /**
+     * Time spent in onDraw, bringing the backing bitmap up to date and blitting it
+     */
+    public FrameTimeHistogram getDrawTimeHistogram() { return drawTimeHistogram; }
+
+    public void resetRepaintStats() {
+        frameCount = 0;
+        repaintedCellCount = 0;
+        lastFrameRepaintedCells = 0;
+        maxFrameRepaintedCells = 0;
+        fullRepaintCount = 0;
+        drawTimeHistogram.reset();
+    }
+
+    // ============================================================================
+    // LAYOUT
+    // ============================================================================
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        // Square cells: height follows from the width, like the old expanded GridView
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int content = width - getPaddingLeft() - getPaddingRight();
+        int height = content + getPaddingTop() + getPaddingBottom();
+        setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        float contentWidth = w - getPaddingLeft() - getPaddingRight();
+        float contentHeight = h - getPaddingTop() - getPaddingBottom();
+        float side = Math.min(contentWidth, contentHeight);
+        int n = GridConstants.GRID_SIZE;
+        cellSize = Math.max(0f, (side - cellSpacing * (n - 1)) / n);
+        float gridSide = cellSize * n + cellSpacing * (n - 1);
+        originX = getPaddingLeft() + (contentWidth - gridSide) / 2f;
+        originY = getPaddingTop() + (contentHeight - gridSide) / 2f;
+
+        if (arenaBitmap != null) {
+            arenaBitmap.recycle();
+            arenaBitmap = null;
+            arenaCanvas = null;
+        }
+        if (w > 0 && h > 0) {
+            arenaBitmap = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+            arenaCanvas = new Canvas(arenaBitmap);
+        }
+        fullRepaintNeeded = true;
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (arenaBitmap != null) {
+            arenaBitmap.recycle();
+            arenaBitmap = null;
+            arenaCanvas = null;
+        }
+    }
+
+    private float cellLeft(int col) {
+        return originX + col * (cellSize + cellSpacing);
+    }
+
+    private float cellTop(int row) {
+        return originY + row * (cellSize + cellSpacing);
+    }
+
+    /**
+     * @return the linear cell position under the point, or {@link #INVALID_POSITION}
+     *         for points outside the grid or in the spacing between cells
+     */
+    public int pointToPosition(float x, float y) {
+        if (cellSize <= 0) return INVALID_POSITION;
+        float pitch = cellSize + cellSpacing;
+        float dx = x - originX;
+        float dy = y - originY;
+        if (dx < 0 || dy < 0) return INVALID_POSITION;
+        int col = (int) (dx / pitch);
+        int row = (int) (dy / pitch);
+        int n = GridConstants.GRID_SIZE;
+        if (col >= n || row >= n) return INVALID_POSITION;
+        if (dx - col * pitch > cellSize || dy - row * pitch > cellSize) return INVALID_POSITION;
+        return row * n + col;
+    }
+
+    // ============================================================================
+    // DRAWING
+    // ============================================================================
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (adapter == null || cellSize <= 0) return;
+        if (arenaBitmap == null) {
+            // Detached and re-attached without a size change
+            arenaBitmap = Bitmap.createBitmap(getWidth(), getHeight(), Bitmap.Config.ARGB_8888);
+            arenaCanvas = new Canvas(arenaBitmap);
+            fullRepaintNeeded = true;
+        }
+
+        long start = System.nanoTime();
+        repaintDirtyCells();
+        canvas.drawBitmap(arenaBitmap, 0, 0, null);
+        if (robotSmoothingEnabled && adapter.hasRobot()) {
+            drawRobotOverlay(canvas, start);
+        }
+        drawTimeHistogram.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Bring the backing bitmap up to date with the model and drain the dirty set
+     */
+    private void repaintDirtyCells() {
+        GridStore store = adapter.getStore();
+        DirtyCellTracker dirty = adapter.getDirtyCells();
+        int repainted = 0;
+
+        if (fullRepaintNeeded) {
+            for (int position = 0; position < GridConstants.TOTAL_CELLS; position++) {
+                paintCell(store, position);
+            }
+            repainted = GridConstants.TOTAL_CELLS;
+            fullRepaintNeeded = false;
+            fullRepaintCount++;
+        } else {
+            for (int position = dirty.nextDirty(0); position >= 0; position = dirty.nextDirty(position + 1)) {
+                paintCell(store, position);
+                repainted++;
+            }
+        }
+        dirty.clear();
+
+        frameCount++;
+        repaintedCellCount += repainted;
+        lastFrameRepaintedCells = repainted;
+        if (repainted > maxFrameRepaintedCells) maxFrameRepaintedCells = repainted;
+    }
+
+    private void paintCell(GridStore store, int position) {
+        int n = GridConstants.GRID_SIZE;
+        int row = position / n;
+        int col = position % n;
+        int flags = store.getFlags(position);
+        float left = cellLeft(col);
+        float top = cellTop(row);
+        float right = left + cellSize;
+        float bottom = top + cellSize;
+
+        // Labels are clipped to their own cell so a repaint never leaves traces in a neighbour
+        cellBounds.set((int) left, (int) top, (int) Math.ceil(right), (int) Math.ceil(bottom));
+        Canvas canvas = arenaCanvas;
+        canvas.save();
+        canvas.clipRect(cellBounds);
+
+        if (robotSmoothingEnabled && (flags & GridStore.ROBOT) != 0) {
+            // The overlay draws the robot; leave its cells as floor
+            cellPaint.setColor(GridConstants.DEFAULT_CELL_COLOR);
+            canvas.drawRect(left, top, right, bottom, cellPaint);
+            canvas.restore();
+            return;
+        }
+
+        cellPaint.setColor(store.getColor(position));
+        canvas.drawRect(left, top, right, bottom, cellPaint);
+
+        if (store.getLabelId(position) != GridStore.LABEL_EMPTY) {
+            drawLabel(canvas, flags, store.getLabel(position), (left + right) / 2f, (top + bottom) / 2f);
+        }
+
+        if (store.hasBorder(position)) {
+            drawBorders(canvas, flags & GridStore.BORDER_MASK, store.getBorderColor(position),
+                    left, top, right, bottom);
+        }
+        canvas.restore();
+    }
+
+    /**
+     * Draw the 3x3 robot footprint centred on the predicted, possibly fractional, cell
+     */
+    private void drawRobotOverlay(Canvas canvas, long nanos) {
+        RobotPosePredictor predictor = adapter.getPosePredictor();
+        if (!predictor.hasPose()) return;
+        float centerRow = predictor.displayRow(nanos);
+        float centerCol = predictor.displayCol(nanos);
+
+        int frontRow = 0, frontCol = 0;
+        switch (predictor.getOrientation()) {
+            case GridConstants.ORIENTATION_NORTH: frontRow = -1; break;
+            case GridConstants.ORIENTATION_EAST: frontCol = 1; break;
+            case GridConstants.ORIENTATION_SOUTH: frontRow = 1; break;
+            case GridConstants.ORIENTATION_WEST: frontCol = -1; break;
+        }
+
+        float pitch = cellSize + cellSpacing;
+        for (int dr = -1; dr <= 1; dr++) {
+            for (int dc = -1; dc <= 1; dc++) {
+                float left = originX + (centerCol + dc) * pitch;
+                float top = originY + (centerRow + dr) * pitch;
+                float right = left + cellSize;
+                float bottom = top + cellSize;
+                boolean front = dr == frontRow && dc == frontCol;
+                robotPaint.setColor(front ? GridConstants.ROBOT_FRONT_COLOR : GridConstants.ROBOT_COLOR);
+                canvas.drawRect(left, top, right, bottom, robotPaint);
+                drawLabel(canvas, GridStore.ROBOT | GridStore.OBSTACLE, "R", (left + right) / 2f, (top + bottom) / 2f);
+            }
+        }
+    }
+
+    private void drawLabel(Canvas canvas, int flags, String label, float centerX, float centerY) {
+        boolean target = (flags & GridStore.TARGET) != 0;
+        Paint paint = target ? targetTextPaint : textPaint;
+        float baselineOffset = target ? targetTextBaselineOffset : textBaselineOffset;
+        boolean plainObstacle = (flags & (GridStore.OBSTACLE | GridStore.ROBOT)) == GridStore.OBSTACLE;
+        paint.setColor(plainObstacle ? Color.WHITE : Color.BLACK);
+        canvas.drawText(label, centerX, centerY + baselineOffset, paint);
+    }
+
+    private void drawBorders(Canvas canvas, int sides, int color, float left, float top, float right, float bottom) {
+        borderPaint.setColor(color);
+        if ((sides & GridStore.BORDER_N) != 0) {
+            canvas.drawRect(left, top, right, top + BORDER_WIDTH_PX, borderPaint);
+        }
+        if ((sides & GridStore.BORDER_S) != 0) {
+            canvas.drawRect(left, bottom - BORDER_WIDTH_PX, right, bottom, borderPaint);
+        }
+        if ((sides & GridStore.BORDER_W) != 0) {
+            canvas.drawRect(left, top, left + BORDER_WIDTH_PX, bottom, borderPaint);
+        }
+        if ((sides & GridStore.BORDER_E) != 0) {
+            canvas.drawRect(right - BORDER_WIDTH_PX, top, right, bottom, borderPaint);
+        }
+    }
+
+    // ============================================================================
+    // TOUCH
+    // ============================================================================
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                downX = event.getX();
+                downY = event.getY();
+                downPosition = pointToPosition(downX, downY);
+                return true;
+
+            case MotionEvent.ACTION_MOVE:
+                if (Math.abs(event.getX() - downX) > touchSlop || Math.abs(event.getY() - downY) > touchSlop) {
+                    downPosition = INVALID_POSITION; // a drag, not a tap
+                }
+                return true;
+
+            case MotionEvent.ACTION_UP:
+                int position = downPosition;
+                downPosition = INVALID_POSITION;
+                performClick();
+                if (position != INVALID_POSITION && cellClickListener != null) {
+                    int n = GridConstants.GRID_SIZE;
+                    cellClickListener.onCellClick(position / n, position % n);
+                }
+                return true;
+
+            case MotionEvent.ACTION_CANCEL:
+                downPosition = INVALID_POSITION;
+                return true;
+        }
+        return super.onTouchEvent(event);
+    }
+
+    private float spToPx(float sp) {
+        return TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, sp, getResources().getDisplayMetrics());
+    }
+
+    private static float centeredBaselineOffset(Paint paint) {
+        Paint.FontMetrics metrics = paint.getFontMetrics();
+        return -(metrics.ascent + metrics.descent) / 2f;
+    }
+}
@@ -1,36 +0,0 @@
-package com.linh.mdp.ui;
-
-import android.content.Context;
-import android.util.AttributeSet;
-import android.view.ViewGroup;
-import android.widget.GridView;
-
-/**
- * A GridView that expands fully to show all its rows (no internal scrolling).
- * Useful for embedding in a ScrollView or NestedScrollView.
- */
-public class ExpandableHeightGridView extends GridView {
-    public ExpandableHeightGridView(Context context) {
-        super(context);
-    }
-
-    public ExpandableHeightGridView(Context context, AttributeSet attrs) {
-        super(context, attrs);
-    }
-
-    public ExpandableHeightGridView(Context context, AttributeSet attrs, int defStyle) {
-        super(context, attrs, defStyle);
-    }
-
-    @Override
-    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        int expandSpec = MeasureSpec.makeMeasureSpec(
-                Integer.MAX_VALUE >> 2, MeasureSpec.AT_MOST);
-        super.onMeasure(widthMeasureSpec, expandSpec);
-        ViewGroup.LayoutParams params = getLayoutParams();
-        if (params != null) {
-            params.height = getMeasuredHeight();
-        }
-    }
-}
-
@@ -16,6 +16,10 @@ public final class BluetoothConstants {
     // Timeouts - Optimized for faster connections
     public static final long CONNECTION_TIMEOUT_MS = 10000; // Reduced from 60s to 10s
     public static final long DISCOVERY_TIMEOUT_MS = 8000;   // Reduced from 12s to 8s
+
+    // Outbound send queue
+    public static final int SEND_QUEUE_CAPACITY = 64;
+    public static final long SEND_BLOCK_TIMEOUT_MS = 500;   // Max wait for queue space under BLOCK policy
     // Intent extras
     public static final String EXTRA_DEVICE_NAME = "DEVICE_NAME";
 
@@ -0,0 +1,87 @@
+package com.linh.mdp.utils;
+
+import java.util.Locale;
+
+/**
+ * Fixed-bucket histogram of per-frame durations.
+ *
+ * Buckets are one millisecond wide; anything at or above {@link #BUCKET_COUNT} - 1 ms lands in
+ * the last bucket. Recording does not allocate. Not thread-safe: record and read from the thread
+ * that owns the frames (main).
+ */
+public class FrameTimeHistogram {
+    public static final int BUCKET_COUNT = 64;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    private final long[] buckets = new long[BUCKET_COUNT];
+    private long count = 0;
+    private long totalNanos = 0;
+    private long maxNanos = 0;
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        long millis = nanos / NANOS_PER_MILLI;
+        buckets[(int) Math.min(millis, BUCKET_COUNT - 1)]++;
+        count++;
+        totalNanos += nanos;
+        if (nanos > maxNanos) maxNanos = nanos;
+    }
+
+    public long getCount() { return count; }
+    public long getMaxNanos() { return maxNanos; }
+
+    public long getMeanNanos() {
+        return count == 0 ? 0 : totalNanos / count;
+    }
+
+    /**
+     * @return samples in the bucket [millis, millis + 1) ms; the last bucket is open-ended
+     */
+    public long getBucket(int millis) {
+        return buckets[millis];
+    }
+
+    /**
+     * @return number of samples that took at least {@code millis} ms, e.g. 16 for missed 60 Hz frames
+     */
+    public long countAtLeast(int millis) {
+        long n = 0;
+        for (int i = Math.max(0, Math.min(millis, BUCKET_COUNT - 1)); i < BUCKET_COUNT; i++) {
+            n += buckets[i];
+        }
+        return n;
+    }
+
+    /**
+     * @param fraction quantile in [0, 1], e.g. 0.95
+     * @return upper bound in ms of the bucket holding that quantile, or 0 when empty
+     */
+    public int percentileMillis(double fraction) {
+        if (count == 0) return 0;
+        long rank = (long) Math.ceil(fraction * count);
+        if (rank < 1) rank = 1;
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets[i];
+            if (seen >= rank) return i + 1;
+        }
+        return BUCKET_COUNT;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) buckets[i] = 0;
+        count = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+    }
+
+    /**
+     * One-line summary for logging
+     */
+    public String summary() {
+        return String.format(Locale.US, "n=%d mean=%.2fms p50<=%dms p95<=%dms p99<=%dms max=%.2fms",
+                count, getMeanNanos() / (double) NANOS_PER_MILLI,
+                percentileMillis(0.50), percentileMillis(0.95), percentileMillis(0.99),
+                maxNanos / (double) NANOS_PER_MILLI);
+    }
+}
@@ -0,0 +1,92 @@
+package com.linh.mdp.utils;
+
+import android.os.SystemClock;
+
+import java.util.TimeZone;
+
+/**
+ * Formats monotonic timestamps as local "HH:mm:ss" without per-call allocation.
+ *
+ * Timestamps are raw {@link SystemClock#elapsedRealtimeNanos()} values so log entries can carry
+ * a plain long and be formatted only when displayed. Unlike {@link System#nanoTime()}, that clock
+ * keeps counting in deep sleep, so times stay in step with the wall clock after the tablet sleeps.
+ * The wall clock is sampled once as an anchor; the rendered text is cached and re-rendered only
+ * when the second changes.
+ */
+public class TimestampFormatter {
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+
+    private final long anchorWallMillis;
+    private final long anchorNanos;
+    private final TimeZone timeZone;
+
+    // Guarded by this
+    private final char[] buffer = new char[8];
+    private long cachedSecond = Long.MIN_VALUE;
+    private String cachedText;
+
+    public TimestampFormatter() {
+        this(System.currentTimeMillis(), SystemClock.elapsedRealtimeNanos(), TimeZone.getDefault());
+    }
+
+    /**
+     * @param anchorWallMillis wall clock time at which the monotonic clock read anchorNanos
+     */
+    TimestampFormatter(long anchorWallMillis, long anchorNanos, TimeZone timeZone) {
+        this.anchorWallMillis = anchorWallMillis;
+        this.anchorNanos = anchorNanos;
+        this.timeZone = timeZone;
+    }
+
+    /**
+     * @return the current monotonic timestamp to store in a log entry
+     */
+    public long now() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    /**
+     * @return the timestamp as "HH:mm:ss"; the same String is returned within one second
+     */
+    public synchronized String format(long nanos) {
+        render(nanos);
+        if (cachedText == null) {
+            cachedText = new String(buffer);
+        }
+        return cachedText;
+    }
+
+    /**
+     * Append the timestamp as "HH:mm:ss" without allocating
+     */
+    public synchronized void formatTo(long nanos, StringBuilder out) {
+        render(nanos);
+        out.append(buffer);
+    }
+
+    /**
+     * Re-render the buffer if the timestamp falls in a different second than the cached one
+     */
+    private void render(long nanos) {
+        long wallMillis = anchorWallMillis + (nanos - anchorNanos) / NANOS_PER_MILLI;
+        long second = Math.floorDiv(wallMillis, MILLIS_PER_SECOND);
+        if (second == cachedSecond) return;
+        cachedSecond = second;
+        cachedText = null;
+
+        long localSecond = Math.floorDiv(wallMillis + timeZone.getOffset(wallMillis), MILLIS_PER_SECOND);
+        int secondOfDay = (int) Math.floorMod(localSecond, SECONDS_PER_DAY);
+        putTwoDigits(0, secondOfDay / 3600);
+        buffer[2] = ':';
+        putTwoDigits(3, (secondOfDay / 60) % 60);
+        buffer[5] = ':';
+        putTwoDigits(6, secondOfDay % 60);
+    }
+
+    private void putTwoDigits(int offset, int value) {
+        buffer[offset] = (char) ('0' + value / 10);
+        buffer[offset + 1] = (char) ('0' + value % 10);
+    }
+}
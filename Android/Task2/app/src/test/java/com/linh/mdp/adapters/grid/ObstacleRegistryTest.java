@@ -0,0 +1,294 @@
+package com.linh.mdp.adapters.grid;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link ObstacleRegistry} on its own, and the number index {@link ObstacleManager} keeps with it
+ * against the full-grid scans it replaced: setObstacleAsTarget's search for the number and
+ * ObstacleController.sendAllObstacles' walk over the data cells.
+ */
+public class ObstacleRegistryTest {
+    private static final int SIZE = GridConstants.GRID_SIZE;
+    private static final int NONE = ObstacleRegistry.NO_POSITION;
+
+    private final GridStore store = new GridStore();
+    private final ObstacleManager manager = new ObstacleManager(new DirtyCellTracker());
+
+    private static int pos(int row, int col) {
+        return row * SIZE + col;
+    }
+
+    // setObstacleAsTarget before the index: first plain obstacle cell carrying the number
+    private int findByScan(int number) {
+        for (int i = 0; i < GridConstants.TOTAL_CELLS; i++) {
+            if (store.getObstacleNumber(i) == number && store.isPlainObstacle(i)) return i;
+        }
+        return NONE;
+    }
+
+    // sendAllObstacles before the index: numbered permanent obstacles on data cells, row by row
+    private int[] obstaclesByScan(boolean targetsOnly) {
+        int[] out = new int[GridConstants.TOTAL_CELLS];
+        int n = 0;
+        for (int row = 0; row < SIZE - 1; row++) {
+            for (int col = 1; col < SIZE; col++) {
+                int p = pos(row, col);
+                if (!store.has(p, GridStore.OBSTACLE) || store.has(p, GridStore.TEMP_OBSTACLE)) continue;
+                if (store.has(p, GridStore.ROBOT) || store.getObstacleNumber(p) <= 0) continue;
+                if (targetsOnly && !store.has(p, GridStore.TARGET)) continue;
+                out[n++] = p;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private void assertIndexMatchesGrid(String context) {
+        // Number to position: every number the grid still shows resolves to its cell, no other does
+        int highest = 0;
+        for (int p = 0; p < GridConstants.TOTAL_CELLS; p++) {
+            highest = Math.max(highest, store.getObstacleNumber(p));
+        }
+        for (int number = 0; number <= highest + 2; number++) {
+            assertEquals(context + ", number " + number, findByScan(number), manager.findObstacle(number, store));
+        }
+
+        // Position to number: the store column agrees with the index for every listed cell
+        for (boolean targetsOnly : new boolean[] {false, true}) {
+            int[] indexed = targetsOnly ? manager.getTargetPositions(store) : manager.getObstaclePositions(store);
+            for (int i = 0; i < indexed.length; i++) {
+                int number = store.getObstacleNumber(indexed[i]);
+                assertEquals(context, indexed[i], manager.findObstacle(number, store));
+                if (i > 0) {
+                    assertTrue(context + ": not in number order", number > store.getObstacleNumber(indexed[i - 1]));
+                }
+            }
+            int[] sorted = indexed.clone();
+            Arrays.sort(sorted);
+            assertArrayEquals(context + (targetsOnly ? " targets" : " obstacles"), obstaclesByScan(targetsOnly), sorted);
+        }
+    }
+
+    // ============================================================================
+    // REGISTRY
+    // ============================================================================
+
+    @Test
+    public void registry_registerAndUnregister() {
+        ObstacleRegistry registry = new ObstacleRegistry();
+        assertEquals(NONE, registry.positionOf(1));
+        assertEquals(0, registry.size());
+
+        registry.register(1, 30);
+        registry.register(2, 31);
+        assertEquals(30, registry.positionOf(1));
+        assertEquals(31, registry.positionOf(2));
+        assertEquals(2, registry.getMaxNumber());
+        assertEquals(2, registry.size());
+
+        // Moving a number keeps the count
+        registry.register(2, 90);
+        assertEquals(90, registry.positionOf(2));
+        assertEquals(2, registry.size());
+
+        // Only dropped while still at the given position
+        registry.unregister(2, 31);
+        assertEquals(90, registry.positionOf(2));
+        registry.unregister(2, 90);
+        assertEquals(NONE, registry.positionOf(2));
+        assertEquals(1, registry.size());
+        registry.unregister(2, 90);
+        assertEquals(1, registry.size());
+
+        // A freed number can be registered again
+        registry.register(2, 45);
+        assertEquals(45, registry.positionOf(2));
+        assertEquals(2, registry.size());
+    }
+
+    @Test
+    public void registry_ignoresInvalidNumbers() {
+        ObstacleRegistry registry = new ObstacleRegistry();
+        registry.register(0, 10);
+        registry.register(-3, 10);
+        assertEquals(0, registry.size());
+        assertEquals(NONE, registry.positionOf(0));
+        assertEquals(NONE, registry.positionOf(-3));
+        registry.unregister(7, 10);
+        registry.unregister(0, 10);
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void registry_growsPastInitialCapacity() {
+        ObstacleRegistry registry = new ObstacleRegistry();
+        registry.register(3, 5);
+        registry.register(63, 6);
+        registry.register(64, 7);
+        registry.register(500, 8);
+        assertEquals(5, registry.positionOf(3));
+        assertEquals(6, registry.positionOf(63));
+        assertEquals(7, registry.positionOf(64));
+        assertEquals(8, registry.positionOf(500));
+        for (int number = 65; number < 500; number++) {
+            assertEquals("number " + number, NONE, registry.positionOf(number));
+        }
+        assertEquals(NONE, registry.positionOf(501));
+        assertEquals(500, registry.getMaxNumber());
+        assertEquals(4, registry.size());
+    }
+
+    @Test
+    public void registry_clearForgetsEverything() {
+        ObstacleRegistry registry = new ObstacleRegistry();
+        for (int number = 1; number <= 100; number++) registry.register(number, number);
+        registry.clear();
+        assertEquals(0, registry.size());
+        assertEquals(0, registry.getMaxNumber());
+        for (int number = 1; number <= 100; number++) assertEquals(NONE, registry.positionOf(number));
+
+        registry.register(1, 44);
+        assertEquals(44, registry.positionOf(1));
+        assertEquals(NONE, registry.positionOf(2));
+        assertEquals(1, registry.size());
+    }
+
+    // ============================================================================
+    // MANAGER INDEX
+    // ============================================================================
+
+    @Test
+    public void renumbering_dropsOldNumber() {
+        manager.setObstacle(5, 5, store);
+        manager.setObstacle(6, 6, store);
+        manager.setObstacle(5, 5, store);
+        assertEquals(3, store.getObstacleNumber(pos(5, 5)));
+        assertEquals(NONE, manager.findObstacle(1, store));
+        assertEquals(pos(5, 5), manager.findObstacle(3, store));
+        assertFalse(manager.setObstacleAsTarget(1, "20", store));
+        assertArrayEquals(new int[] {pos(6, 6), pos(5, 5)}, manager.getObstaclePositions(store));
+        assertIndexMatchesGrid("renumbered");
+    }
+
+    @Test
+    public void removal_dropsNumber() {
+        manager.setObstacle(0, 1, store);
+        manager.setObstacle(19, 20, store);
+        manager.removeObstacle(0, 1, store);
+        assertEquals(NONE, manager.findObstacle(1, store));
+        assertEquals(pos(19, 20), manager.findObstacle(2, store));
+        // Removing an empty cell changes nothing
+        manager.removeObstacle(0, 1, store);
+        manager.removeObstacle(3, 3, store);
+        assertIndexMatchesGrid("removed");
+        assertArrayEquals(new int[] {pos(19, 20)}, manager.getObstaclePositions(store));
+    }
+
+    @Test
+    public void clearAll_numbersRestartAndFreedNumbersAreReused() {
+        manager.setObstacle(1, 1, store);
+        manager.setObstacle(2, 2, store);
+        manager.setObstacleAsTarget(2, "15", store);
+        manager.clearAllObstacles(store);
+        assertIndexMatchesGrid("cleared");
+        assertEquals(0, manager.getObstaclePositions(store).length);
+
+        // Number 1 again, now on another cell
+        manager.setObstacle(8, 8, store);
+        assertEquals(1, store.getObstacleNumber(pos(8, 8)));
+        assertEquals(pos(8, 8), manager.findObstacle(1, store));
+        assertEquals(NONE, manager.findObstacle(2, store));
+        assertEquals(0, manager.getTargetPositions(store).length);
+        assertIndexMatchesGrid("reused");
+    }
+
+    @Test
+    public void staleNumberUnderRobot_doesNotUnregisterItsReuse() {
+        // Obstacle 1 is overwritten by the robot; the cell keeps the old number in the column
+        manager.setObstacle(10, 10, store);
+        store.setFlag(pos(10, 10), GridStore.ROBOT, true);
+        assertEquals(NONE, manager.findObstacle(1, store));
+        assertIndexMatchesGrid("under robot");
+
+        // The robot leaves, the numbers restart and 1 goes to another cell
+        store.setFlag(pos(10, 10), GridStore.ROBOT | GridStore.OBSTACLE, false);
+        manager.clearAllObstacles(store);
+        manager.setObstacle(3, 3, store);
+        assertEquals(1, store.getObstacleNumber(pos(10, 10)));
+
+        // Placing on the old cell must not drop number 1 from its new cell
+        manager.setObstacle(10, 10, store);
+        assertEquals(pos(3, 3), manager.findObstacle(1, store));
+        assertEquals(pos(10, 10), manager.findObstacle(2, store));
+        assertIndexMatchesGrid("re-placed");
+    }
+
+    @Test
+    public void overwrittenCell_reportedThroughOnCellChanged() {
+        manager.setObstacle(4, 4, store);
+        manager.setObstacle(4, 5, store);
+        store.setFlag(pos(4, 4), GridStore.ROBOT, true);
+        manager.onCellChanged(4, 4, store);
+        assertEquals(NONE, manager.findObstacle(1, store));
+        assertArrayEquals(new int[] {pos(4, 5)}, manager.getObstaclePositions(store));
+        assertIndexMatchesGrid("overwritten");
+    }
+
+    @Test
+    public void numbersPastInitialCapacity_stayIndexed() {
+        for (int round = 0; round < 8; round++) {
+            for (int col = 1; col <= 20; col++) manager.setObstacle(round % 4, col, store);
+        }
+        assertEquals(160, store.getObstacleNumber(pos(3, 20)));
+        assertEquals(80, manager.getObstaclePositions(store).length);
+        assertTrue(manager.setObstacleAsTarget(150, "33", store));
+        assertIndexMatchesGrid("renumbered past 64");
+    }
+
+    @Test
+    public void randomEdits_indexMatchesScans() {
+        Random random = new Random(14);
+        for (int step = 0; step < 4000; step++) {
+            int row = random.nextInt(GridConstants.DATA_SIZE);
+            int col = 1 + random.nextInt(GridConstants.DATA_SIZE);
+            int p = pos(row, col);
+            switch (random.nextInt(8)) {
+                case 0:
+                case 1:
+                case 2:
+                    manager.setObstacle(row, col, store);
+                    break;
+                case 3:
+                    manager.removeObstacle(row, col, store);
+                    break;
+                case 4: {
+                    int number = 1 + random.nextInt(Math.max(1, store.getObstacleNumber(p) + 20));
+                    String context = "step " + step + ", target " + number;
+                    int expected = findByScan(number);
+                    assertEquals(context, expected != NONE, manager.setObstacleAsTarget(number, "1" + step % 10, store));
+                    if (expected != NONE) assertTrue(context, store.has(expected, GridStore.TARGET));
+                    break;
+                }
+                case 5:
+                    // Robot passes over the cell, reported or not
+                    store.setFlag(p, GridStore.ROBOT | GridStore.OBSTACLE, true);
+                    if (random.nextBoolean()) manager.onCellChanged(row, col, store);
+                    break;
+                case 6:
+                    if (store.has(p, GridStore.ROBOT)) store.setFlag(p, GridStore.ROBOT | GridStore.OBSTACLE, false);
+                    store.setBorderDirection(p, random.nextBoolean() ? "N" : null);
+                    manager.onCellChanged(row, col, store);
+                    break;
+                default:
+                    if (random.nextInt(60) == 0) manager.clearAllObstacles(store);
+                    break;
+            }
+            if (random.nextInt(4) == 0) assertIndexMatchesGrid("step " + step);
+        }
+        assertIndexMatchesGrid("end");
+    }
+}
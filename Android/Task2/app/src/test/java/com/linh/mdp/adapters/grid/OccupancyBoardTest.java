@@ -0,0 +1,196 @@
+package com.linh.mdp.adapters.grid;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link OccupancyBoard} against the per-cell footprint loops it replaced in RobotManager and
+ * RobotController, with the edges of the arena in focus: centre rows 1 and 18, centre columns 2
+ * and 19, and obstacles next to the header row (row 20) and header column (column 0).
+ */
+public class OccupancyBoardTest {
+    private static final int SIZE = GridConstants.GRID_SIZE;
+
+    private final GridStore store = new GridStore();
+    private final OccupancyBoard board = store.getOccupancy();
+
+    private static int pos(int row, int col) {
+        return row * SIZE + col;
+    }
+
+    private void obstacle(int row, int col) {
+        store.setFlag(pos(row, col), GridStore.OBSTACLE, true);
+    }
+
+    private void robotCell(int row, int col) {
+        store.setFlag(pos(row, col), GridStore.OBSTACLE | GridStore.ROBOT, true);
+    }
+
+    // RobotManager.canPlaceAtCenter before the board: true if the robot can NOT be placed
+    private boolean canNotPlaceOld(int centerRow, int centerCol) {
+        if (centerRow - 1 < 0 || centerRow + 1 > GridConstants.DATA_SIZE - 1) return true;
+        if (centerCol - 1 < 1 || centerCol + 1 > SIZE - 1) return true;
+        for (int r = centerRow - 1; r <= centerRow + 1; r++) {
+            for (int c = centerCol - 1; c <= centerCol + 1; c++) {
+                if (store.isPlainObstacle(pos(r, c))) return true;
+            }
+        }
+        return false;
+    }
+
+    // RobotController.canPlaceRobotAt before the board
+    private boolean canPlaceRobotAtOld(int centerRow, int centerCol) {
+        for (int dRow = -1; dRow <= 1; dRow++) {
+            for (int dCol = -1; dCol <= 1; dCol++) {
+                int checkRow = centerRow + dRow;
+                int checkCol = centerCol + dCol;
+                if (checkRow < 0 || checkRow >= SIZE - 1 || checkCol < 1 || checkCol >= SIZE) return false;
+                if (store.has(pos(checkRow, checkCol), GridStore.OBSTACLE)) return false;
+            }
+        }
+        return true;
+    }
+
+    private void assertMatchesPerCellChecks() {
+        int validCount = 0;
+        for (int row = -2; row <= SIZE + 1; row++) {
+            long columns = 0;
+            for (int col = -2; col <= SIZE + 1; col++) {
+                String at = "(" + row + ", " + col + ")";
+                boolean valid = !canNotPlaceOld(row, col);
+                assertEquals(at, valid, board.isValidRobotCenter(row, col));
+                boolean inside = OccupancyBoard.isValidCenter(row, col);
+                assertEquals(at, canPlaceRobotAtOld(row, col), inside && !board.isFootprintOccupied(row, col));
+                if (inside) {
+                    assertEquals(at, !valid, board.isFootprintBlocked(row, col));
+                }
+                if (valid) {
+                    validCount++;
+                    columns |= 1L << col;
+                }
+            }
+            if (row >= 0 && row < SIZE) {
+                assertEquals("row " + row, columns, board.getValidCenterColumns(row));
+            }
+        }
+        assertEquals(validCount, board.getValidCenterCount());
+    }
+
+    // ============================================================================
+    // ARENA EDGES
+    // ============================================================================
+
+    @Test
+    public void emptyBoard_centresSpanRows1To18AndColumns2To19() {
+        assertMatchesPerCellChecks();
+        assertEquals(18 * 18, board.getValidCenterCount());
+        for (int row = 1; row <= 18; row++) {
+            assertTrue(board.isValidRobotCenter(row, 2));
+            assertTrue(board.isValidRobotCenter(row, 19));
+            assertFalse(board.isValidRobotCenter(row, 1));
+            assertFalse(board.isValidRobotCenter(row, 20));
+        }
+        for (int col = 2; col <= 19; col++) {
+            assertTrue(board.isValidRobotCenter(1, col));
+            assertTrue(board.isValidRobotCenter(18, col));
+            assertFalse(board.isValidRobotCenter(0, col));
+            assertFalse(board.isValidRobotCenter(19, col));
+        }
+    }
+
+    @Test
+    public void obstaclesNextToHeaderRow_blockRow18Centres() {
+        // Row 19 is the last data row, directly above the header row
+        obstacle(19, 1);
+        obstacle(19, 10);
+        obstacle(19, 20);
+        assertMatchesPerCellChecks();
+        assertFalse(board.isValidRobotCenter(18, 2));
+        assertFalse(board.isValidRobotCenter(18, 9));
+        assertFalse(board.isValidRobotCenter(18, 11));
+        assertTrue(board.isValidRobotCenter(18, 12));
+        assertFalse(board.isValidRobotCenter(18, 19));
+        assertTrue(board.isValidRobotCenter(17, 10));
+    }
+
+    @Test
+    public void obstaclesNextToHeaderColumn_blockColumn2Centres() {
+        // Column 1 is the first data column, right of the header column
+        obstacle(0, 1);
+        obstacle(9, 1);
+        obstacle(19, 1);
+        assertMatchesPerCellChecks();
+        assertFalse(board.isValidRobotCenter(1, 2));
+        assertFalse(board.isValidRobotCenter(8, 2));
+        assertFalse(board.isValidRobotCenter(10, 2));
+        assertTrue(board.isValidRobotCenter(11, 2));
+        assertFalse(board.isValidRobotCenter(18, 2));
+        assertTrue(board.isValidRobotCenter(9, 3));
+    }
+
+    @Test
+    public void obstaclesOnFarEdges_blockRow1AndColumn19Centres() {
+        obstacle(0, 5);
+        obstacle(12, 20);
+        assertMatchesPerCellChecks();
+        assertFalse(board.isValidRobotCenter(1, 6));
+        assertTrue(board.isValidRobotCenter(2, 5));
+        assertFalse(board.isValidRobotCenter(11, 19));
+        assertTrue(board.isValidRobotCenter(11, 18));
+    }
+
+    @Test
+    public void headerCells_neverAffectTheBoard() {
+        // Flags written on header cells must not leak into data rows or columns through shifts
+        for (int col = 0; col < SIZE; col++) obstacle(20, col);
+        for (int row = 0; row < SIZE; row++) obstacle(row, 0);
+        assertMatchesPerCellChecks();
+        assertTrue(board.isValidRobotCenter(18, 2));
+        assertTrue(board.isValidRobotCenter(1, 2));
+    }
+
+    // ============================================================================
+    // ROBOT CELLS AND UPDATES
+    // ============================================================================
+
+    @Test
+    public void robotCells_blockPlacementPreviewButNotMoves() {
+        for (int r = 17; r <= 19; r++) {
+            for (int c = 1; c <= 3; c++) robotCell(r, c);
+        }
+        assertMatchesPerCellChecks();
+        assertTrue(board.isValidRobotCenter(18, 2));
+        assertTrue(board.isFootprintOccupied(18, 2));
+        assertFalse(board.isFootprintBlocked(18, 2));
+        assertTrue(board.isOccupied(19, 1));
+        assertFalse(board.isBlocked(19, 1));
+    }
+
+    @Test
+    public void clearingObstacle_refreshesCachedCentres() {
+        obstacle(19, 20);
+        assertFalse(board.isValidRobotCenter(18, 19));
+        store.setFlag(pos(19, 20), GridStore.OBSTACLE, false);
+        assertTrue(board.isValidRobotCenter(18, 19));
+        assertMatchesPerCellChecks();
+    }
+
+    @Test
+    public void randomBoards_matchPerCellChecks() {
+        Random random = new Random(18);
+        for (int round = 0; round < 300; round++) {
+            int flips = 1 + random.nextInt(40);
+            for (int i = 0; i < flips; i++) {
+                // Biased towards the edge rows and columns
+                int row = random.nextBoolean() ? random.nextInt(SIZE) : (random.nextBoolean() ? 0 : 19);
+                int col = random.nextBoolean() ? random.nextInt(SIZE) : (random.nextBoolean() ? 1 : 20);
+                int flag = random.nextInt(4) == 0 ? GridStore.OBSTACLE | GridStore.ROBOT : GridStore.OBSTACLE;
+                store.setFlag(pos(row, col), flag, !store.has(pos(row, col), GridStore.OBSTACLE));
+            }
+            assertMatchesPerCellChecks();
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.linh.mdp.adapters.grid;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Delta moves ({@link RobotManager#moveRobot}, {@link RobotManager#moveRobotSteps}) against a
+ * full clear-and-redraw of the footprint on an identical grid, in all four headings.
+ */
+public class RobotManagerTest {
+    private static final int SIZE = GridConstants.GRID_SIZE;
+    // Row and column step of a forward move per orientation: N, E, S, W
+    private static final int[][] FORWARD = {{-1, 0}, {0, 1}, {1, 0}, {0, -1}};
+
+    /**
+     * One grid with its robot, built the same way for the delta and the redraw side
+     */
+    private static final class Arena {
+        final GridStore store = new GridStore();
+        final DirtyCellTracker dirty = new DirtyCellTracker();
+        final RobotManager robot = new RobotManager(dirty);
+
+        Arena(int[] obstacles, int centerRow, int centerCol, int orientation) {
+            for (int pos : obstacles) {
+                store.setFlag(pos, GridStore.OBSTACLE, true);
+                store.setColor(pos, GridConstants.OBSTACLE_COLOR);
+                store.setLabel(pos, "7");
+            }
+            assertTrue(robot.placeAtCenter(centerRow, centerCol, store));
+            for (int i = 0; i < orientation; i++) robot.turnRight(store);
+            dirty.clear();
+        }
+
+        /**
+         * Clear the robot and draw it again from scratch at the new centre
+         */
+        void redrawAt(int centerRow, int centerCol) {
+            robot.clearRobot(store);
+            assertTrue(robot.placeAtCenter(centerRow, centerCol, store));
+        }
+    }
+
+    private static int pos(int row, int col) {
+        return row * SIZE + col;
+    }
+
+    private static void assertSameGrid(String context, GridStore expected, GridStore actual) {
+        for (int p = 0; p < GridConstants.TOTAL_CELLS; p++) {
+            String at = context + " at (" + p / SIZE + ", " + p % SIZE + ")";
+            assertEquals(at + " flags", expected.getFlags(p), actual.getFlags(p));
+            assertEquals(at + " color", expected.getColor(p), actual.getColor(p));
+            assertEquals(at + " label", expected.getLabel(p), actual.getLabel(p));
+            assertEquals(at + " border", expected.getBorderColor(p), actual.getBorderColor(p));
+        }
+    }
+
+    private static int[] snapshot(GridStore store) {
+        int[] state = new int[GridConstants.TOTAL_CELLS * 3];
+        for (int p = 0; p < GridConstants.TOTAL_CELLS; p++) {
+            state[p * 3] = store.getFlags(p);
+            state[p * 3 + 1] = store.getColor(p);
+            state[p * 3 + 2] = store.getLabelId(p);
+        }
+        return state;
+    }
+
+    /**
+     * Every cell the move changed must be marked dirty and reported by getLastMoveChangedCell
+     */
+    private static void assertChangesTracked(String context, int[] before, Arena arena) {
+        int[] after = snapshot(arena.store);
+        boolean[] reported = new boolean[GridConstants.TOTAL_CELLS];
+        for (int i = 0; i < arena.robot.getLastMoveChangedCount(); i++) {
+            reported[arena.robot.getLastMoveChangedCell(i)] = true;
+        }
+        for (int p = 0; p < GridConstants.TOTAL_CELLS; p++) {
+            boolean changed = before[p * 3] != after[p * 3] || before[p * 3 + 1] != after[p * 3 + 1]
+                    || before[p * 3 + 2] != after[p * 3 + 2];
+            if (changed) {
+                String at = context + " at (" + p / SIZE + ", " + p % SIZE + ")";
+                assertTrue(at + " not dirty", arena.dirty.isDirty(p));
+                assertTrue(at + " not reported", reported[p]);
+            }
+        }
+    }
+
+    // The old per-cell check: true if the robot cannot stand at this centre
+    private static boolean blockedPerCell(GridStore store, int centerRow, int centerCol) {
+        if (centerRow - 1 < 0 || centerRow + 1 > GridConstants.DATA_SIZE - 1) return true;
+        if (centerCol - 1 < 1 || centerCol + 1 > SIZE - 1) return true;
+        for (int r = centerRow - 1; r <= centerRow + 1; r++) {
+            for (int c = centerCol - 1; c <= centerCol + 1; c++) {
+                if (store.isPlainObstacle(pos(r, c))) return true;
+            }
+        }
+        return false;
+    }
+
+    // ============================================================================
+    // SINGLE STEPS
+    // ============================================================================
+
+    @Test
+    public void oneStep_allHeadings_matchRedraw() {
+        int[] obstacles = {pos(5, 5), pos(14, 16)};
+        for (int orientation = 0; orientation < 4; orientation++) {
+            for (int[] delta : FORWARD) {
+                Arena moved = new Arena(obstacles, 10, 10, orientation);
+                Arena redrawn = new Arena(obstacles, 10, 10, orientation);
+                int[] before = snapshot(moved.store);
+
+                assertTrue(moved.robot.moveRobot(delta[0], delta[1], moved.store));
+                redrawn.redrawAt(10 + delta[0], 10 + delta[1]);
+
+                String context = "heading " + orientation + " delta " + Arrays.toString(delta);
+                assertSameGrid(context, redrawn.store, moved.store);
+                assertChangesTracked(context, before, moved);
+                assertEquals(10 + delta[0], moved.robot.getCenterRow());
+                assertEquals(10 + delta[1], moved.robot.getCenterCol());
+                // Three cells leave, three enter, plus at most the old and new front cells
+                assertTrue(context, moved.robot.getLastMoveChangedCount() <= 8);
+            }
+        }
+    }
+
+    @Test
+    public void oneStep_intoObstacleOrWall_isRefused() {
+        for (int orientation = 0; orientation < 4; orientation++) {
+            int[] delta = FORWARD[orientation];
+            // Obstacle right in front of the leading edge
+            int obstacle = pos(10 + 2 * delta[0], 10 + 2 * delta[1]);
+            Arena arena = new Arena(new int[] {obstacle}, 10, 10, orientation);
+            int[] before = snapshot(arena.store);
+            assertFalse(arena.robot.moveRobot(delta[0], delta[1], arena.store));
+            assertArrayEquals(before, snapshot(arena.store));
+            assertTrue(arena.dirty.isEmpty());
+        }
+
+        // Against the edges: centre row 1 / 18, centre column 2 / 19
+        int[][] edges = {{1, 10}, {10, 19}, {18, 10}, {10, 2}};
+        for (int orientation = 0; orientation < 4; orientation++) {
+            int[] delta = FORWARD[orientation];
+            Arena arena = new Arena(new int[0], edges[orientation][0], edges[orientation][1], orientation);
+            assertFalse(arena.robot.moveRobot(delta[0], delta[1], arena.store));
+        }
+    }
+
+    @Test
+    public void backwardSteps_matchRedraw() {
+        // Reversing: the front cell is on the trailing edge and leaves the footprint
+        for (int orientation = 0; orientation < 4; orientation++) {
+            int[] delta = FORWARD[(orientation + 2) % 4];
+            Arena moved = new Arena(new int[0], 9, 9, orientation);
+            Arena redrawn = new Arena(new int[0], 9, 9, orientation);
+            int[] before = snapshot(moved.store);
+            assertTrue(moved.robot.moveRobot(delta[0], delta[1], moved.store));
+            redrawn.redrawAt(9 + delta[0], 9 + delta[1]);
+            assertSameGrid("reverse, heading " + orientation, redrawn.store, moved.store);
+            assertChangesTracked("reverse, heading " + orientation, before, moved);
+        }
+    }
+
+    // ============================================================================
+    // MULTI-STEP MOVES
+    // ============================================================================
+
+    @Test
+    public void multiStep_allHeadings_matchRedraw() {
+        for (int orientation = 0; orientation < 4; orientation++) {
+            int[] delta = FORWARD[orientation];
+            for (int steps = 2; steps <= 7; steps++) {
+                Arena moved = new Arena(new int[0], 10, 10, orientation);
+                Arena redrawn = new Arena(new int[0], 10, 10, orientation);
+                int[] before = snapshot(moved.store);
+
+                assertEquals(steps, moved.robot.moveRobotSteps(delta[0], delta[1], steps, moved.store));
+                redrawn.redrawAt(10 + steps * delta[0], 10 + steps * delta[1]);
+
+                String context = "heading " + orientation + " x" + steps;
+                assertSameGrid(context, redrawn.store, moved.store);
+                assertChangesTracked(context, before, moved);
+            }
+        }
+    }
+
+    @Test
+    public void multiStep_stopsInFrontOfObstacle() {
+        for (int orientation = 0; orientation < 4; orientation++) {
+            int[] delta = FORWARD[orientation];
+            // Obstacle five cells ahead of the centre: the leading edge can advance three cells
+            int obstacle = pos(10 + 5 * delta[0], 10 + 5 * delta[1]);
+            Arena moved = new Arena(new int[] {obstacle}, 10, 10, orientation);
+            Arena redrawn = new Arena(new int[] {obstacle}, 10, 10, orientation);
+
+            assertEquals(3, moved.robot.moveRobotSteps(delta[0], delta[1], 30, moved.store));
+            redrawn.redrawAt(10 + 3 * delta[0], 10 + 3 * delta[1]);
+            assertSameGrid("heading " + orientation, redrawn.store, moved.store);
+        }
+    }
+
+    @Test
+    public void multiStep_stopsAtWall() {
+        Arena north = new Arena(new int[0], 10, 10, GridConstants.ORIENTATION_NORTH);
+        assertEquals(9, north.robot.moveRobotSteps(-1, 0, 30, north.store));
+        assertEquals(1, north.robot.getCenterRow());
+
+        Arena east = new Arena(new int[0], 10, 10, GridConstants.ORIENTATION_EAST);
+        assertEquals(9, east.robot.moveRobotSteps(0, 1, 30, east.store));
+        assertEquals(19, east.robot.getCenterCol());
+
+        Arena south = new Arena(new int[0], 10, 10, GridConstants.ORIENTATION_SOUTH);
+        assertEquals(8, south.robot.moveRobotSteps(1, 0, 30, south.store));
+        assertEquals(18, south.robot.getCenterRow());
+
+        Arena west = new Arena(new int[0], 10, 10, GridConstants.ORIENTATION_WEST);
+        assertEquals(8, west.robot.moveRobotSteps(0, -1, 30, west.store));
+        assertEquals(2, west.robot.getCenterCol());
+    }
+
+    @Test
+    public void multiStep_matchesRepeatedSingleSteps() {
+        for (int orientation = 0; orientation < 4; orientation++) {
+            int[] delta = FORWARD[orientation];
+            Arena jumped = new Arena(new int[0], 10, 10, orientation);
+            Arena stepped = new Arena(new int[0], 10, 10, orientation);
+            jumped.robot.moveRobotSteps(delta[0], delta[1], 4, jumped.store);
+            for (int i = 0; i < 4; i++) stepped.robot.moveRobot(delta[0], delta[1], stepped.store);
+            assertSameGrid("heading " + orientation, stepped.store, jumped.store);
+        }
+    }
+
+    @Test
+    public void randomMoves_matchRedraw() {
+        Random random = new Random(17);
+        for (int round = 0; round < 400; round++) {
+            int[] obstacles = new int[random.nextInt(25)];
+            for (int i = 0; i < obstacles.length; i++) {
+                obstacles[i] = pos(random.nextInt(GridConstants.DATA_SIZE), 1 + random.nextInt(GridConstants.DATA_SIZE));
+            }
+            int startRow = 1 + random.nextInt(18);
+            int startCol = 2 + random.nextInt(18);
+            GridStore probe = new GridStore();
+            for (int p : obstacles) probe.setFlag(p, GridStore.OBSTACLE, true);
+            if (blockedPerCell(probe, startRow, startCol)) continue;
+
+            int orientation = random.nextInt(4);
+            int[] delta = FORWARD[random.nextInt(4)];
+            int steps = 1 + random.nextInt(12);
+
+            // Expected end pose, stepping with the per-cell check
+            int row = startRow, col = startCol, expectedSteps = 0;
+            while (expectedSteps < steps && !blockedPerCell(probe, row + delta[0], col + delta[1])) {
+                row += delta[0];
+                col += delta[1];
+                expectedSteps++;
+            }
+
+            Arena moved = new Arena(obstacles, startRow, startCol, orientation);
+            Arena redrawn = new Arena(obstacles, startRow, startCol, orientation);
+            int[] before = snapshot(moved.store);
+            String context = "round " + round;
+            assertEquals(context, expectedSteps, moved.robot.moveRobotSteps(delta[0], delta[1], steps, moved.store));
+            if (expectedSteps > 0) {
+                redrawn.redrawAt(row, col);
+                assertChangesTracked(context, before, moved);
+            }
+            assertSameGrid(context, redrawn.store, moved.store);
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package com.linh.mdp.bluetooth;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link BluetoothWriter} over a fake stream that can hold the writer thread inside a write,
+ * so the queue can be filled to capacity deterministically.
+ */
+public class BluetoothWriterTest {
+    private static final long TIMEOUT_MS = 5_000;
+
+    /**
+     * Records every write and flush; with a gate set, a write waits until the gate opens
+     */
+    private static final class FakeStream extends OutputStream {
+        private final List<String> writes = new ArrayList<>();
+        private int flushes = 0;
+        final CountDownLatch writing = new CountDownLatch(1);
+        volatile CountDownLatch gate;
+        volatile boolean failWrites = false;
+        volatile boolean failFlushes = false;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            writing.countDown();
+            CountDownLatch g = gate;
+            if (g != null) {
+                try {
+                    assertTrue("write gate never opened", g.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            if (failWrites) throw new IOException("write failed");
+            synchronized (this) {
+                writes.add(new String(b, off, len, StandardCharsets.UTF_8));
+            }
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            if (failFlushes) throw new IOException("flush failed");
+            flushes++;
+        }
+
+        synchronized String written() {
+            StringBuilder out = new StringBuilder();
+            for (String write : writes) out.append(write);
+            return out.toString();
+        }
+
+        synchronized int writeCount() { return writes.size(); }
+        synchronized int flushCount() { return flushes; }
+    }
+
+    private BluetoothWriter writer;
+    private final FakeStream stream = new FakeStream();
+    private final Map<String, Boolean> completions = new ConcurrentHashMap<>();
+
+    @After
+    public void tearDown() {
+        if (writer != null) writer.shutdown();
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private boolean send(String text, String key) {
+        return writer.enqueue(bytes(text), key, written -> completions.put(text, written));
+    }
+
+    /**
+     * Send m0 and hold the writer thread inside its write, leaving the queue empty
+     */
+    private CountDownLatch stallOnFirstMessage() throws InterruptedException {
+        CountDownLatch gate = new CountDownLatch(1);
+        stream.gate = gate;
+        assertTrue(send("m0;", null));
+        assertTrue(stream.writing.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        return gate;
+    }
+
+    private void start(int capacity, BluetoothWriter.OverflowPolicy policy, long blockTimeoutMs) {
+        writer = new BluetoothWriter(capacity, policy, blockTimeoutMs);
+        writer.attach(stream);
+    }
+
+    // ============================================================================
+    // ORDERING
+    // ============================================================================
+
+    @Test
+    public void messages_writtenInEnqueueOrder() {
+        start(16, BluetoothWriter.OverflowPolicy.BLOCK, TIMEOUT_MS);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            String message = "m" + i + ";";
+            assertTrue(send(message, i % 3 == 0 ? "key" : null));
+            expected.append(message);
+        }
+        assertTrue(writer.awaitDrained(TIMEOUT_MS));
+        assertEquals(expected.toString(), stream.written());
+        assertEquals(500, writer.getSentCount());
+        assertEquals(0, writer.getDroppedCount());
+        assertEquals(0, writer.getPendingCount());
+        assertEquals(500, completions.size());
+        assertFalse(completions.containsValue(false));
+    }
+
+    @Test
+    public void sameKey_withRoomInQueue_isNotCoalesced() throws InterruptedException {
+        start(4, BluetoothWriter.OverflowPolicy.COALESCE, TIMEOUT_MS);
+        CountDownLatch gate = stallOnFirstMessage();
+        assertTrue(send("a1;", "obstacles"));
+        assertTrue(send("a2;", "obstacles"));
+        gate.countDown();
+        assertTrue(writer.awaitDrained(TIMEOUT_MS));
+        assertEquals("m0;a1;a2;", stream.written());
+        assertEquals(0, writer.getCoalescedCount());
+    }
+
+    // ============================================================================
+    // OVERFLOW POLICIES
+    // ============================================================================
+
+    @Test
+    public void block_dropsNewMessageAfterTimeout() throws InterruptedException {
+        start(2, BluetoothWriter.OverflowPolicy.BLOCK, 150);
+        CountDownLatch gate = stallOnFirstMessage();
+        assertTrue(send("m1;", null));
+        assertTrue(send("m2;", null));
+
+        long start = System.nanoTime();
+        assertFalse(send("m3;", null));
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("waited " + waitedMs + "ms", waitedMs >= 140);
+        assertEquals(1, writer.getDroppedCount());
+        // Refused messages are not reported to their listener
+        assertNull(completions.get("m3;"));
+
+        gate.countDown();
+        assertTrue(writer.awaitDrained(TIMEOUT_MS));
+        assertEquals("m0;m1;m2;", stream.written());
+    }
+
+    @Test
+    public void block_waitsForSpace() throws InterruptedException {
+        start(2, BluetoothWriter.OverflowPolicy.BLOCK, TIMEOUT_MS);
+        CountDownLatch gate = stallOnFirstMessage();
+        assertTrue(send("m1;", null));
+        assertTrue(send("m2;", null));
+
+        Thread opener = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignored) {
+                // open the gate anyway
+            }
+            gate.countDown();
+        });
+        opener.start();
+        assertTrue(send("m3;", null));
+        opener.join();
+
+        assertTrue(writer.awaitDrained(TIMEOUT_MS));
+        assertEquals("m0;m1;m2;m3;", stream.written());
+        assertEquals(0, writer.getDroppedCount());
+    }
+
+    @Test
+    public void dropOldest_makesRoomForNewMessage() throws InterruptedException {
+        start(2, BluetoothWriter.OverflowPolicy.DROP_OLDEST, TIMEOUT_MS);
+        CountDownLatch gate = stallOnFirstMessage();
+        assertTrue(send("m1;", null));
+        assertTrue(send("m2;", "key"));
+        assertTrue(send("m3;", "key"));
+        assertTrue(send("m4;", null));
+        assertEquals(2, writer.getPendingCount());
+        assertEquals(2, writer.getDroppedCount());
+        assertEquals(Boolean.FALSE, completions.get("m1;"));
+        assertEquals(Boolean.FALSE, completions.get("m2;"));
+
+        gate.countDown();
+        assertTrue(writer.awaitDrained(TIMEOUT_MS));
+        assertEquals("m0;m3;m4;", stream.written());
+        assertEquals(0, writer.getCoalescedCount());
+        assertEquals(Boolean.TRUE, completions.get("m4;"));
+    }
+
+    @Test
+    public void coalesce_replacesPendingMessageWithSameKeyInPlace() throws InterruptedException {
+        start(3, BluetoothWriter.OverflowPolicy.COALESCE, TIMEOUT_MS);
+        CountDownLatch gate = stallOnFirstMessage();
+        assertTrue(send("obstacles-1;", "obstacles"));
+        assertTrue(send("m1;", null));
+        assertTrue(send("robot-1;", "robot"));
+
+        assertTrue(send("obstacles-2;", "obstacles"));
+        assertTrue(send("robot-2;", "robot"));
+        assertTrue(send("obstacles-3;", "obstacles"));
+        assertEquals(3, writer.getPendingCount());
+        assertEquals(3, writer.getCoalescedCount());
+        assertEquals(0, writer.getDroppedCount());
+        assertEquals(Boolean.FALSE, completions.get("obstacles-1;"));
+        assertEquals(Boolean.FALSE, completions.get("obstacles-2;"));
+        assertEquals(Boolean.FALSE, completions.get("robot-1;"));
+
+        gate.countDown();
+        assertTrue(writer.awaitDrained(TIMEOUT_MS));
+        // Each replacement keeps the queue position of the message it replaced
+        assertEquals("m0;obstacles-3;m1;robot-2;", stream.written());
+        assertEquals(Boolean.TRUE, completions.get("obstacles-3;"));
+        assertEquals(Boolean.TRUE, completions.get("robot-2;"));
+    }
+
+    @Test
+    public void coalesce_withoutMatchingKey_dropsOldest() throws InterruptedException {
+        start(2, BluetoothWriter.OverflowPolicy.COALESCE, TIMEOUT_MS);
+        CountDownLatch gate = stallOnFirstMessage();
+        assertTrue(send("m1;", null));
+        assertTrue(send("m2;", "a"));
+        assertTrue(send("m3;", "b"));
+        assertTrue(send("m4;", null));
+        assertEquals(2, writer.getDroppedCount());
+        assertEquals(0, writer.getCoalescedCount());
+
+        gate.countDown();
+        assertTrue(writer.awaitDrained(TIMEOUT_MS));
+        assertEquals("m0;m3;m4;", stream.written());
+    }
+
+    // ============================================================================
+    // DRAINING AND DETACH
+    // ============================================================================
+
+    @Test
+    public void awaitDrained_timesOutOnStalledStream() throws InterruptedException {
+        start(8, BluetoothWriter.OverflowPolicy.BLOCK, 150);
+        CountDownLatch gate = stallOnFirstMessage();
+        assertTrue(send("m1;", null));
+
+        long start = System.nanoTime();
+        assertFalse(writer.awaitDrained(150));
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("waited " + waitedMs + "ms", waitedMs >= 140);
+        assertFalse(writer.flush());
+
+        gate.countDown();
+        assertTrue(writer.awaitDrained(TIMEOUT_MS));
+        assertEquals("m0;m1;", stream.written());
+        assertTrue(writer.flush());
+    }
+
+    @Test
+    public void detach_dropsQueuedMessages() throws InterruptedException {
+        start(8, BluetoothWriter.OverflowPolicy.BLOCK, TIMEOUT_MS);
+        CountDownLatch gate = stallOnFirstMessage();
+        assertTrue(send("m1;", null));
+        assertTrue(send("m2;", "key"));
+        assertTrue(send("m3;", null));
+
+        writer.detach();
+        assertFalse(writer.isAttached());
+        assertEquals(0, writer.getPendingCount());
+        assertEquals(3, writer.getDroppedCount());
+        assertEquals(Boolean.FALSE, completions.get("m1;"));
+        assertEquals(Boolean.FALSE, completions.get("m2;"));
+        assertEquals(Boolean.FALSE, completions.get("m3;"));
+        assertFalse(send("m4;", null));
+
+        // The message already inside the write still finishes on the old stream
+        gate.countDown();
+        assertTrue(writer.awaitDrained(TIMEOUT_MS));
+        assertEquals("m0;", stream.written());
+        assertEquals(1, writer.getSentCount());
+        assertEquals(Boolean.TRUE, completions.get("m0;"));
+        assertNull(completions.get("m4;"));
+    }
+
+    @Test
+    public void reattach_resumesOnNewStream() throws InterruptedException {
+        start(8, BluetoothWriter.OverflowPolicy.BLOCK, TIMEOUT_MS);
+        assertTrue(send("m0;", null));
+        assertTrue(writer.awaitDrained(TIMEOUT_MS));
+        writer.detach();
+
+        FakeStream next = new FakeStream();
+        writer.attach(next);
+        assertTrue(send("m1;", null));
+        assertTrue(writer.awaitDrained(TIMEOUT_MS));
+        assertEquals("m0;", stream.written());
+        assertEquals("m1;", next.written());
+    }
+
+    @Test
+    public void failedWrite_reportedAsNotWritten() {
+        start(8, BluetoothWriter.OverflowPolicy.BLOCK, TIMEOUT_MS);
+        stream.failWrites = true;
+        assertTrue(send("m0;", null));
+        assertTrue(writer.awaitDrained(TIMEOUT_MS));
+        assertEquals(Boolean.FALSE, completions.get("m0;"));
+        assertEquals(0, writer.getSentCount());
+        assertEquals(1, writer.getDroppedCount());
+    }
+
+    // ============================================================================
+    // BATCHING AND STATS
+    // ============================================================================
+
+    @Test
+    public void batchWindow_isClamped() {
+        writer = new BluetoothWriter(8, BluetoothWriter.OverflowPolicy.BLOCK, TIMEOUT_MS);
+        assertEquals(0, writer.getBatchWindowMs());
+        writer.setBatchWindowMs(20);
+        assertEquals(20, writer.getBatchWindowMs());
+        writer.setBatchWindowMs(1_000);
+        assertEquals(BluetoothWriter.MAX_BATCH_WINDOW_MS, writer.getBatchWindowMs());
+        writer.setBatchWindowMs(-5);
+        assertEquals(0, writer.getBatchWindowMs());
+    }
+
+    @Test
+    public void withoutWindow_oneWritePerMessageAndOneFlushPerBatch() throws InterruptedException {
+        start(8, BluetoothWriter.OverflowPolicy.BLOCK, TIMEOUT_MS);
+        CountDownLatch gate = stallOnFirstMessage();
+        for (int i = 1; i <= 4; i++) assertTrue(send("m" + i + ";", null));
+        gate.countDown();
+        assertTrue(writer.awaitDrained(TIMEOUT_MS));
+
+        assertEquals("m0;m1;m2;m3;m4;", stream.written());
+        assertEquals(5, stream.writeCount());
+        assertEquals(2, stream.flushCount());
+        assertEquals(5, writer.getSentCount());
+        assertEquals(5, writer.getWriteCallCount());
+        assertEquals(2, writer.getFlushCount());
+        assertEquals(0, writer.getSavedWriteCount());
+        assertEquals(3, writer.getSavedFlushCount());
+    }
+
+    @Test
+    public void withinWindow_oneWriteAndOneFlush() throws InterruptedException {
+        start(8, BluetoothWriter.OverflowPolicy.BLOCK, TIMEOUT_MS);
+        CountDownLatch gate = stallOnFirstMessage();
+        writer.setBatchWindowMs(BluetoothWriter.MAX_BATCH_WINDOW_MS);
+        for (int i = 1; i <= 5; i++) assertTrue(send("m" + i + ";", null));
+        gate.countDown();
+        assertTrue(writer.awaitDrained(TIMEOUT_MS));
+
+        // m0 alone, then m1..m5 merged
+        assertEquals("m0;m1;m2;m3;m4;m5;", stream.written());
+        assertEquals(2, stream.writeCount());
+        assertEquals(2, stream.flushCount());
+        assertEquals(6, writer.getSentCount());
+        assertEquals(2, writer.getWriteCallCount());
+        assertEquals(2, writer.getFlushCount());
+        assertEquals(4, writer.getSavedWriteCount());
+        assertEquals(4, writer.getSavedFlushCount());
+
+        // Enqueued after the window has closed: a write of its own
+        assertTrue(send("m6;", null));
+        assertTrue(writer.awaitDrained(TIMEOUT_MS));
+        assertEquals(3, stream.writeCount());
+        assertEquals(3, stream.flushCount());
+        assertEquals(4, writer.getSavedWriteCount());
+        assertEquals(4, writer.getSavedFlushCount());
+    }
+
+    @Test
+    public void failedFlush_dropsWholeBatch() throws InterruptedException {
+        start(8, BluetoothWriter.OverflowPolicy.BLOCK, TIMEOUT_MS);
+        CountDownLatch gate = stallOnFirstMessage();
+        assertTrue(send("m1;", null));
+        assertTrue(send("m2;", null));
+        stream.failFlushes = true;
+        gate.countDown();
+        assertTrue(writer.awaitDrained(TIMEOUT_MS));
+
+        // Every payload reached the stream, none was confirmed by a flush
+        assertEquals("m0;m1;m2;", stream.written());
+        assertEquals(0, writer.getSentCount());
+        assertEquals(3, writer.getDroppedCount());
+        assertEquals(0, writer.getWriteCallCount());
+        assertEquals(0, writer.getFlushCount());
+        assertEquals(0, writer.getSavedWriteCount());
+        assertEquals(0, writer.getSavedFlushCount());
+        assertEquals(Boolean.FALSE, completions.get("m1;"));
+        assertEquals(Boolean.FALSE, completions.get("m2;"));
+    }
+
+    @Test
+    public void failedFlush_dropsMergedBatch() throws InterruptedException {
+        start(8, BluetoothWriter.OverflowPolicy.BLOCK, TIMEOUT_MS);
+        CountDownLatch gate = stallOnFirstMessage();
+        writer.setBatchWindowMs(BluetoothWriter.MAX_BATCH_WINDOW_MS);
+        assertTrue(send("m1;", null));
+        assertTrue(send("m2;", null));
+        stream.failFlushes = true;
+        gate.countDown();
+        assertTrue(writer.awaitDrained(TIMEOUT_MS));
+
+        assertEquals(0, writer.getSentCount());
+        assertEquals(3, writer.getDroppedCount());
+        assertEquals(0, writer.getSavedWriteCount());
+        assertEquals(0, writer.getSavedFlushCount());
+        assertFalse(completions.containsValue(true));
+    }
+}
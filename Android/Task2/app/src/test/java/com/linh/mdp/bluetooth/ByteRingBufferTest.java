@@ -0,0 +1,112 @@
+package com.linh.mdp.bluetooth;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link ByteRingBuffer} against a plain queue, with the head walking around the end of the array
+ */
+public class ByteRingBufferTest {
+
+    @Test
+    public void capacity_roundsUpToPowerOfTwo() {
+        assertEquals(32, new ByteRingBuffer(1).capacity());
+        assertEquals(32, new ByteRingBuffer(32).capacity());
+        assertEquals(64, new ByteRingBuffer(33).capacity());
+        assertEquals(8192, new ByteRingBuffer(8192).capacity());
+    }
+
+    @Test
+    public void write_stopsWhenFull() {
+        ByteRingBuffer ring = new ByteRingBuffer(32);
+        assertEquals(32, ring.write(new byte[40], 0, 40));
+        assertEquals(0, ring.remaining());
+        assertEquals(0, ring.write(new byte[1], 0, 1));
+    }
+
+    @Test
+    public void wrapAround_readsBackInOrder() {
+        ByteRingBuffer ring = new ByteRingBuffer(32);
+        byte[] first = new byte[28];
+        ring.write(first, 0, first.length);
+        ring.skip(26);
+
+        // 14 bytes from offset 28: wraps after 4
+        byte[] data = new byte[14];
+        for (int i = 0; i < data.length; i++) data[i] = (byte) (i + 1);
+        assertEquals(14, ring.write(data, 0, data.length));
+        ring.skip(2);
+
+        assertEquals(14, ring.size());
+        assertEquals(1, ring.peek(0));
+        assertEquals(14, ring.peek(13));
+        assertEquals(5, ring.indexOf((byte) 6, 0));
+        assertEquals(-1, ring.indexOf((byte) 6, 6));
+
+        byte[] out = new byte[14];
+        ring.read(out, 0, 14);
+        assertArrayEquals(data, out);
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    public void randomOperations_matchQueue() {
+        Random random = new Random(1);
+        ByteRingBuffer ring = new ByteRingBuffer(64);
+        ArrayDeque<Byte> model = new ArrayDeque<>();
+
+        for (int step = 0; step < 100_000; step++) {
+            switch (random.nextInt(4)) {
+                case 0: {
+                    byte[] data = new byte[random.nextInt(40)];
+                    random.nextBytes(data);
+                    int offset = data.length == 0 ? 0 : random.nextInt(data.length);
+                    int written = ring.write(data, offset, data.length - offset);
+                    assertEquals(Math.min(data.length - offset, 64 - model.size()), written);
+                    for (int i = 0; i < written; i++) model.add(data[offset + i]);
+                    break;
+                }
+                case 1: {
+                    int n = random.nextInt(30);
+                    ring.skip(n);
+                    for (int i = 0; i < n && !model.isEmpty(); i++) model.poll();
+                    break;
+                }
+                case 2: {
+                    int n = random.nextInt(model.size() + 1);
+                    byte[] out = new byte[n + 3];
+                    ring.copyTo(0, out, 3, n);
+                    Byte[] expected = model.toArray(new Byte[0]);
+                    for (int i = 0; i < n; i++) assertEquals((byte) expected[i], out[3 + i]);
+                    break;
+                }
+                default: {
+                    if (model.isEmpty()) break;
+                    Byte[] expected = model.toArray(new Byte[0]);
+                    byte target = expected[random.nextInt(expected.length)];
+                    int from = random.nextInt(expected.length);
+                    int index = -1;
+                    for (int i = from; i < expected.length; i++) {
+                        if (expected[i] == target) { index = i; break; }
+                    }
+                    assertEquals(index, ring.indexOf(target, from));
+                    break;
+                }
+            }
+            assertEquals(model.size(), ring.size());
+        }
+    }
+
+    @Test
+    public void clear_empties() {
+        ByteRingBuffer ring = new ByteRingBuffer(32);
+        ring.write(new byte[5], 0, 5);
+        ring.clear();
+        assertTrue(ring.isEmpty());
+        assertEquals(32, ring.remaining());
+    }
+}
@@ -0,0 +1,258 @@
+package com.linh.mdp.bluetooth;
+
+import android.content.SharedPreferences;
+
+import com.linh.mdp.utils.BluetoothConstants;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Attempt ordering, timeout derivation and the persisted per-device preference, against an
+ * in-memory {@link SharedPreferences}.
+ */
+public class ConnectionPlannerTest {
+    private static final String DEVICE = "AA:BB:CC:DD:EE:FF";
+    private static final String OTHER_DEVICE = "11:22:33:44:55:66";
+    private static final long DEFAULT_TIMEOUT_MS = 4000;
+    private static final long MIN_TIMEOUT_MS = 1500;
+
+    private final FakeSharedPreferences preferences = new FakeSharedPreferences();
+    private final ConnectionPlanner planner = new ConnectionPlanner(preferences);
+
+    private static List<String> keys(List<ConnectionPlanner.Step> plan) {
+        List<String> keys = new ArrayList<>();
+        for (ConnectionPlanner.Step step : plan) keys.add(step.attempt.key());
+        return keys;
+    }
+
+    private static ConnectionPlanner.Attempt find(List<ConnectionPlanner.Step> plan, String key) {
+        for (ConnectionPlanner.Step step : plan) {
+            if (step.attempt.key().equals(key)) return step.attempt;
+        }
+        throw new AssertionError("No attempt " + key);
+    }
+
+    private static long timeoutOf(List<ConnectionPlanner.Step> plan, String key) {
+        for (ConnectionPlanner.Step step : plan) {
+            if (step.attempt.key().equals(key)) return step.timeoutMs;
+        }
+        throw new AssertionError("No attempt " + key);
+    }
+
+    private void record(String key, ConnectionPlanner.Outcome outcome, long elapsedMs) {
+        ConnectionPlanner.Attempt attempt = find(planner.plan(DEVICE), key);
+        planner.record(DEVICE, attempt, outcome, elapsedMs * 1_000_000L);
+    }
+
+    // ============================================================================
+    // ORDERING
+    // ============================================================================
+
+    @Test
+    public void freshPlanner_usesDefaultOrder() {
+        List<ConnectionPlanner.Step> plan = planner.plan(DEVICE);
+        assertEquals(Arrays.asList(
+            "SECURE_UUID", "INSECURE_UUID",
+            "SECURE_CHANNEL:1", "SECURE_CHANNEL:2", "SECURE_CHANNEL:3", "SECURE_CHANNEL:4", "SECURE_CHANNEL:5",
+            "INSECURE_CHANNEL:1", "INSECURE_CHANNEL:2", "INSECURE_CHANNEL:3", "INSECURE_CHANNEL:4",
+            "INSECURE_CHANNEL:5"), keys(plan));
+        for (ConnectionPlanner.Step step : plan) {
+            assertEquals(DEFAULT_TIMEOUT_MS, step.timeoutMs);
+        }
+    }
+
+    @Test
+    public void lastConnectedAttempt_goesFirstWithFullTimeout() {
+        record("INSECURE_CHANNEL:3", ConnectionPlanner.Outcome.CONNECTED, 800);
+        List<ConnectionPlanner.Step> plan = planner.plan(DEVICE);
+
+        assertEquals("INSECURE_CHANNEL:3", plan.get(0).attempt.key());
+        assertEquals(BluetoothConstants.CONNECTION_TIMEOUT_MS, plan.get(0).timeoutMs);
+        // Listed once, not again among the fallbacks
+        assertEquals(12, plan.size());
+        assertEquals(0, keys(plan).lastIndexOf("INSECURE_CHANNEL:3"));
+    }
+
+    @Test
+    public void fallbacks_orderedBySuccessRate() {
+        record("SECURE_UUID", ConnectionPlanner.Outcome.FAILED, 100);
+        record("SECURE_UUID", ConnectionPlanner.Outcome.TIMED_OUT, 4000);
+        record("SECURE_CHANNEL:4", ConnectionPlanner.Outcome.CONNECTED, 900);
+
+        // The other device has no preference, so ordering is purely by success rate
+        List<String> order = keys(planner.plan(OTHER_DEVICE));
+        assertEquals("SECURE_CHANNEL:4", order.get(0));
+        assertEquals("INSECURE_UUID", order.get(1));
+        assertEquals("SECURE_UUID", order.get(order.size() - 1));
+    }
+
+    @Test
+    public void untriedAttempts_sitBetweenGoodAndBad() {
+        record("INSECURE_CHANNEL:5", ConnectionPlanner.Outcome.CONNECTED, 500);
+        record("INSECURE_CHANNEL:5", ConnectionPlanner.Outcome.FAILED, 500);
+        record("SECURE_CHANNEL:1", ConnectionPlanner.Outcome.FAILED, 500);
+
+        List<String> order = keys(planner.plan(OTHER_DEVICE));
+        // 2/4 ties with untried 1/2, so it keeps its default rank; 1/3 drops to the end
+        assertEquals("SECURE_UUID", order.get(0));
+        assertEquals("INSECURE_CHANNEL:5", order.get(10));
+        assertEquals("SECURE_CHANNEL:1", order.get(11));
+    }
+
+    // ============================================================================
+    // TIMEOUTS
+    // ============================================================================
+
+    @Test
+    public void fallbackTimeouts_areClamped() {
+        record("SECURE_UUID", ConnectionPlanner.Outcome.CONNECTED, 100);
+        record("INSECURE_UUID", ConnectionPlanner.Outcome.CONNECTED, 2000);
+        record("SECURE_CHANNEL:1", ConnectionPlanner.Outcome.CONNECTED, 5000);
+
+        List<ConnectionPlanner.Step> plan = planner.plan(OTHER_DEVICE);
+        // Three times the strategy average, within [minimum, connection timeout]
+        assertEquals(MIN_TIMEOUT_MS, timeoutOf(plan, "SECURE_UUID"));
+        assertEquals(6000, timeoutOf(plan, "INSECURE_UUID"));
+        assertEquals(BluetoothConstants.CONNECTION_TIMEOUT_MS, timeoutOf(plan, "SECURE_CHANNEL:1"));
+        // Shared by every channel of the strategy; strategies without a success keep the default
+        assertEquals(BluetoothConstants.CONNECTION_TIMEOUT_MS, timeoutOf(plan, "SECURE_CHANNEL:5"));
+        assertEquals(DEFAULT_TIMEOUT_MS, timeoutOf(plan, "INSECURE_CHANNEL:2"));
+    }
+
+    @Test
+    public void fallbackTimeout_followsAverageConnectTime() {
+        record("INSECURE_UUID", ConnectionPlanner.Outcome.CONNECTED, 1000);
+        record("INSECURE_UUID", ConnectionPlanner.Outcome.CONNECTED, 3000);
+        assertEquals(6000, timeoutOf(planner.plan(OTHER_DEVICE), "INSECURE_UUID"));
+    }
+
+    @Test
+    public void stats_countOutcomesPerStrategy() {
+        record("SECURE_CHANNEL:1", ConnectionPlanner.Outcome.TIMED_OUT, 4000);
+        record("SECURE_CHANNEL:2", ConnectionPlanner.Outcome.FAILED, 50);
+        record("SECURE_CHANNEL:3", ConnectionPlanner.Outcome.CONNECTED, 700);
+
+        ConnectionPlanner.StrategyStats stats = planner.getStats(ConnectionPlanner.Strategy.SECURE_CHANNEL);
+        assertEquals(3, stats.getAttempts());
+        assertEquals(1, stats.getSuccesses());
+        assertEquals(2, stats.getFailures());
+        assertEquals(1, stats.getTimeouts());
+        assertEquals(700, stats.getAverageConnectMs(), 1e-9);
+
+        planner.resetStats();
+        assertEquals(0, planner.getStats(ConnectionPlanner.Strategy.SECURE_CHANNEL).getAttempts());
+        assertEquals(DEFAULT_TIMEOUT_MS, timeoutOf(planner.plan(OTHER_DEVICE), "SECURE_CHANNEL:3"));
+    }
+
+    // ============================================================================
+    // PERSISTENCE
+    // ============================================================================
+
+    @Test
+    public void preferredAttempt_survivesNewPlanner() {
+        record("SECURE_CHANNEL:2", ConnectionPlanner.Outcome.CONNECTED, 1200);
+
+        ConnectionPlanner restarted = new ConnectionPlanner(preferences);
+        assertEquals("SECURE_CHANNEL:2", restarted.getPreferredAttempt(DEVICE).key());
+        List<ConnectionPlanner.Step> plan = restarted.plan(DEVICE);
+        assertEquals("SECURE_CHANNEL:2", plan.get(0).attempt.key());
+        assertEquals(BluetoothConstants.CONNECTION_TIMEOUT_MS, plan.get(0).timeoutMs);
+        assertNull(restarted.getPreferredAttempt(OTHER_DEVICE));
+    }
+
+    @Test
+    public void preference_onlyWrittenWhenItChanges() {
+        record("INSECURE_UUID", ConnectionPlanner.Outcome.CONNECTED, 300);
+        record("INSECURE_UUID", ConnectionPlanner.Outcome.CONNECTED, 300);
+        assertEquals(1, preferences.writes);
+
+        record("SECURE_UUID", ConnectionPlanner.Outcome.CONNECTED, 300);
+        assertEquals(2, preferences.writes);
+        assertEquals("SECURE_UUID", preferences.getString(DEVICE, null));
+    }
+
+    @Test
+    public void forgetDevice_removesPreference() {
+        record("INSECURE_UUID", ConnectionPlanner.Outcome.CONNECTED, 300);
+        planner.forgetDevice(DEVICE);
+        assertNull(planner.getPreferredAttempt(DEVICE));
+        // The success still counts towards ordering, but without the full-timeout first slot
+        List<ConnectionPlanner.Step> plan = planner.plan(DEVICE);
+        assertEquals("INSECURE_UUID", plan.get(0).attempt.key());
+        assertEquals(MIN_TIMEOUT_MS, plan.get(0).timeoutMs);
+        assertEquals("SECURE_UUID", keys(new ConnectionPlanner(preferences).plan(DEVICE)).get(0));
+    }
+
+    @Test
+    public void unknownStoredKey_isIgnored() {
+        preferences.edit().putString(DEVICE, "SECURE_CHANNEL:99").apply();
+        ConnectionPlanner restarted = new ConnectionPlanner(preferences);
+        assertNull(restarted.getPreferredAttempt(DEVICE));
+        assertEquals(12, restarted.plan(DEVICE).size());
+    }
+
+    /**
+     * Map-backed preferences; edits apply on commit/apply like the real implementation
+     */
+    private static final class FakeSharedPreferences implements SharedPreferences {
+        private final Map<String, Object> values = new HashMap<>();
+        int writes = 0;
+
+        @Override public Map<String, ?> getAll() { return new HashMap<>(values); }
+        @Override public String getString(String key, String defValue) { return (String) get(key, defValue); }
+        @SuppressWarnings("unchecked")
+        @Override public Set<String> getStringSet(String key, Set<String> defValues) { return (Set<String>) get(key, defValues); }
+        @Override public int getInt(String key, int defValue) { return (Integer) get(key, defValue); }
+        @Override public long getLong(String key, long defValue) { return (Long) get(key, defValue); }
+        @Override public float getFloat(String key, float defValue) { return (Float) get(key, defValue); }
+        @Override public boolean getBoolean(String key, boolean defValue) { return (Boolean) get(key, defValue); }
+        @Override public boolean contains(String key) { return values.containsKey(key); }
+        @Override public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) { }
+        @Override public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) { }
+
+        private Object get(String key, Object defValue) {
+            return values.containsKey(key) ? values.get(key) : defValue;
+        }
+
+        @Override
+        public Editor edit() {
+            return new Editor() {
+                private final Map<String, Object> puts = new HashMap<>();
+                private final List<String> removals = new ArrayList<>();
+                private boolean clear = false;
+
+                @Override public Editor putString(String key, String value) { puts.put(key, value); return this; }
+                @Override public Editor putStringSet(String key, Set<String> values) { puts.put(key, values); return this; }
+                @Override public Editor putInt(String key, int value) { puts.put(key, value); return this; }
+                @Override public Editor putLong(String key, long value) { puts.put(key, value); return this; }
+                @Override public Editor putFloat(String key, float value) { puts.put(key, value); return this; }
+                @Override public Editor putBoolean(String key, boolean value) { puts.put(key, value); return this; }
+                @Override public Editor remove(String key) { removals.add(key); return this; }
+                @Override public Editor clear() { clear = true; return this; }
+
+                @Override
+                public boolean commit() {
+                    if (clear) values.clear();
+                    for (String key : removals) values.remove(key);
+                    values.putAll(puts);
+                    writes++;
+                    return true;
+                }
+
+                @Override
+                public void apply() {
+                    commit();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.linh.mdp.bluetooth;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Both wire formats through split and merged reads, corrupted frames and overlong lines,
+ * with {@link FrameEncoder} producing the frames.
+ */
+public class FrameDecoderTest {
+    private final List<String> frames = new ArrayList<>();
+    private final FrameDecoder.FrameListener collector =
+        (payload, length) -> frames.add(new String(payload, 0, length, StandardCharsets.UTF_8));
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) out.write(part, 0, part.length);
+        return out.toByteArray();
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void feed(FrameDecoder decoder, byte[] data) {
+        decoder.feed(data, 0, data.length, collector);
+    }
+
+    // Feed in random chunks of 1..maxChunk bytes
+    private void feedChunked(FrameDecoder decoder, byte[] data, Random random, int maxChunk) {
+        int position = 0;
+        while (position < data.length) {
+            int length = Math.min(data.length - position, 1 + random.nextInt(maxChunk));
+            decoder.feed(data, position, length, collector);
+            position += length;
+        }
+    }
+
+    private static List<String> randomMessages(Random random, int count) {
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder message = new StringBuilder("{\"cat\":\"location\",\"n\":" + i + ",\"pad\":\"");
+            int pad = random.nextInt(random.nextInt(10) == 0 ? 3000 : 40);
+            for (int j = 0; j < pad; j++) message.append((char) ('a' + random.nextInt(26)));
+            messages.add(message.append("é\"}").toString());
+        }
+        return messages;
+    }
+
+    // ============================================================================
+    // NEWLINE
+    // ============================================================================
+
+    @Test
+    public void newline_splitAndMergedReads() {
+        for (long seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            List<String> messages = randomMessages(random, 300);
+            FrameEncoder encoder = new FrameEncoder(FrameDecoder.Mode.NEWLINE);
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            for (String message : messages) {
+                byte[] frame = encoder.encode(message);
+                stream.write(frame, 0, frame.length);
+            }
+
+            FrameDecoder decoder = new FrameDecoder(FrameDecoder.Mode.NEWLINE);
+            frames.clear();
+            // Reads both much smaller and much larger than a message
+            feedChunked(decoder, stream.toByteArray(), random, seed % 2 == 0 ? 7 : 8000);
+            assertEquals(messages, frames);
+            assertEquals(messages.size(), decoder.getFramesDecoded());
+            assertEquals(0, decoder.getFramesDropped());
+        }
+    }
+
+    @Test
+    public void newline_stripsCarriageReturnAndSkipsEmptyLines() {
+        FrameDecoder decoder = new FrameDecoder(FrameDecoder.Mode.NEWLINE);
+        feed(decoder, bytes("a\r\n\n\r\nb\n"));
+        assertEquals(Arrays.asList("a", "b"), frames);
+    }
+
+    @Test
+    public void newline_overlongLineIsDiscardedUpToDelimiter() {
+        FrameDecoder decoder = new FrameDecoder(FrameDecoder.Mode.NEWLINE);
+        byte[] chunk = new byte[1000];
+        Arrays.fill(chunk, (byte) 'x');
+        feed(decoder, bytes("before\n"));
+        for (int i = 0; i < 10; i++) feed(decoder, chunk);
+
+        // The tail of the overlong line must not come out as a message of its own
+        feed(decoder, bytes("tail\nafter\n"));
+        assertEquals(Arrays.asList("before", "after"), frames);
+        assertEquals(1, decoder.getFramesDropped());
+    }
+
+    @Test
+    public void newline_overlongLineInOneRead() {
+        FrameDecoder decoder = new FrameDecoder(FrameDecoder.Mode.NEWLINE);
+        byte[] line = new byte[FrameDecoder.MAX_PAYLOAD_SIZE * 3];
+        Arrays.fill(line, (byte) 'y');
+        feed(decoder, concat(line, bytes("\nok\n")));
+        assertEquals(Arrays.asList("ok"), frames);
+    }
+
+    @Test
+    public void newline_lineAtMaximumLengthIsKept() {
+        FrameDecoder decoder = new FrameDecoder(FrameDecoder.Mode.NEWLINE);
+        byte[] line = new byte[FrameDecoder.MAX_PAYLOAD_SIZE];
+        Arrays.fill(line, (byte) 'z');
+        feed(decoder, concat(line, bytes("\n")));
+        assertEquals(1, frames.size());
+        assertEquals(FrameDecoder.MAX_PAYLOAD_SIZE, frames.get(0).length());
+    }
+
+    @Test
+    public void reset_dropsPartialLineAndDiscardState() {
+        FrameDecoder decoder = new FrameDecoder(FrameDecoder.Mode.NEWLINE);
+        byte[] line = new byte[FrameDecoder.MAX_PAYLOAD_SIZE + 100];
+        Arrays.fill(line, (byte) 'x');
+        feed(decoder, line);
+        decoder.reset();
+        feed(decoder, bytes("fresh\n"));
+        assertEquals(Arrays.asList("fresh"), frames);
+    }
+
+    // ============================================================================
+    // LENGTH_PREFIXED
+    // ============================================================================
+
+    @Test
+    public void lengthPrefixed_splitAndMergedReads() {
+        for (long seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            List<String> messages = randomMessages(random, 300);
+            FrameEncoder encoder = new FrameEncoder(FrameDecoder.Mode.LENGTH_PREFIXED);
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            for (String message : messages) {
+                byte[] frame = encoder.encode(message);
+                stream.write(frame, 0, frame.length);
+            }
+
+            FrameDecoder decoder = new FrameDecoder(FrameDecoder.Mode.LENGTH_PREFIXED);
+            frames.clear();
+            feedChunked(decoder, stream.toByteArray(), random, seed % 2 == 0 ? 5 : 9000);
+            assertEquals(messages, frames);
+            assertEquals(0, decoder.getFramesDropped());
+        }
+    }
+
+    @Test
+    public void lengthPrefixed_payloadMayContainNewlinesAndMagic() {
+        FrameEncoder encoder = new FrameEncoder(FrameDecoder.Mode.LENGTH_PREFIXED);
+        byte[] payload = {'a', '\n', FrameDecoder.FRAME_MAGIC, 0, 'b'};
+        FrameDecoder decoder = new FrameDecoder(FrameDecoder.Mode.LENGTH_PREFIXED);
+        List<byte[]> raw = new ArrayList<>();
+        byte[] frame = encoder.encode(payload, 0, payload.length);
+        decoder.feed(frame, 0, frame.length, (data, length) -> raw.add(Arrays.copyOf(data, length)));
+        assertEquals(1, raw.size());
+        assertArrayEquals(payload, raw.get(0));
+    }
+
+    @Test
+    public void lengthPrefixed_crcMismatchResyncsOnNextFrame() {
+        FrameEncoder encoder = new FrameEncoder(FrameDecoder.Mode.LENGTH_PREFIXED);
+        byte[] corrupt = encoder.encode("corrupt");
+        corrupt[FrameDecoder.HEADER_SIZE + 2] ^= 0x01;
+        FrameDecoder decoder = new FrameDecoder(FrameDecoder.Mode.LENGTH_PREFIXED);
+
+        feed(decoder, concat(encoder.encode("first"), corrupt, encoder.encode("second")));
+        assertEquals(Arrays.asList("first", "second"), frames);
+        assertTrue(decoder.getFramesDropped() > 0);
+    }
+
+    @Test
+    public void lengthPrefixed_badLengthResyncs() {
+        FrameEncoder encoder = new FrameEncoder(FrameDecoder.Mode.LENGTH_PREFIXED);
+        // Magic followed by a length over the maximum
+        byte[] bogus = {FrameDecoder.FRAME_MAGIC, (byte) 0xFF, (byte) 0xFF, 1, 2, 3};
+        FrameDecoder decoder = new FrameDecoder(FrameDecoder.Mode.LENGTH_PREFIXED);
+
+        feed(decoder, concat(bogus, encoder.encode("good")));
+        assertEquals(Arrays.asList("good"), frames);
+        assertTrue(decoder.getFramesDropped() > 0);
+    }
+
+    @Test
+    public void lengthPrefixed_garbageBetweenFramesIsSkipped() {
+        FrameEncoder encoder = new FrameEncoder(FrameDecoder.Mode.LENGTH_PREFIXED);
+        FrameDecoder decoder = new FrameDecoder(FrameDecoder.Mode.LENGTH_PREFIXED);
+        feed(decoder, concat(bytes("noise"), encoder.encode("one"), bytes("\n\n"), encoder.encode("two")));
+        assertEquals(Arrays.asList("one", "two"), frames);
+    }
+
+    @Test
+    public void lengthPrefixed_emptyPayload() {
+        FrameEncoder encoder = new FrameEncoder(FrameDecoder.Mode.LENGTH_PREFIXED);
+        FrameDecoder decoder = new FrameDecoder(FrameDecoder.Mode.LENGTH_PREFIXED);
+        feed(decoder, concat(encoder.encode(""), encoder.encode("x")));
+        assertEquals(Arrays.asList("", "x"), frames);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void encoder_rejectsOversizedFrame() {
+        new FrameEncoder(FrameDecoder.Mode.LENGTH_PREFIXED).encode(new byte[FrameDecoder.MAX_PAYLOAD_SIZE + 1], 0,
+            FrameDecoder.MAX_PAYLOAD_SIZE + 1);
+    }
+
+    @Test
+    public void encoder_newlineTerminatesOnce() {
+        FrameEncoder encoder = new FrameEncoder(FrameDecoder.Mode.NEWLINE);
+        assertArrayEquals(bytes("a\n"), encoder.encode("a"));
+        assertArrayEquals(bytes("a\n"), encoder.encode("a\n"));
+    }
+
+    @Test
+    public void crc16_matchesCcittFalseCheckValue() {
+        assertEquals(0x29B1, FrameDecoder.crc16(bytes("123456789"), 0, 9));
+    }
+}
@@ -0,0 +1,123 @@
+package com.linh.mdp.managers;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link MessageLog} against a plain bounded queue, with the head walking around the end of
+ * the ring several times
+ */
+public class MessageLogTest {
+
+    private static void assertSameLines(String context, ArrayDeque<Long> expected, MessageLog log) {
+        assertEquals(context, expected.size(), log.size());
+        Iterator<Long> it = expected.iterator();
+        for (int i = 0; i < log.size(); i++) {
+            long id = it.next();
+            assertEquals(context + " index " + i, "line " + id, log.getText(i));
+            assertEquals(context + " index " + i, id * 1000, log.getTimestamp(i));
+        }
+    }
+
+    @Test
+    public void belowCapacity_keepsEveryLineInOrder() {
+        MessageLog log = new MessageLog(4);
+        assertTrue(log.isEmpty());
+        assertFalse(log.add(10, "a"));
+        assertFalse(log.add(20, "b"));
+        assertEquals(2, log.size());
+        assertEquals(4, log.capacity());
+        assertEquals("a", log.getText(0));
+        assertEquals(20, log.getTimestamp(1));
+    }
+
+    @Test
+    public void full_evictsOldestAndWrapsAround() {
+        MessageLog log = new MessageLog(3);
+        ArrayDeque<Long> expected = new ArrayDeque<>();
+        for (long id = 0; id < 11; id++) {
+            boolean evicted = log.add(id * 1000, "line " + id);
+            assertEquals("line " + id, expected.size() == 3, evicted);
+            if (expected.size() == 3) expected.removeFirst();
+            expected.addLast(id);
+            assertSameLines("after line " + id, expected, log);
+        }
+        assertEquals("line 8", log.getText(0));
+        assertEquals("line 10", log.getText(2));
+    }
+
+    @Test
+    public void capacityOne_keepsLatest() {
+        MessageLog log = new MessageLog(1);
+        assertFalse(log.add(1, "first"));
+        assertTrue(log.add(2, "second"));
+        assertEquals(1, log.size());
+        assertEquals("second", log.getText(0));
+        assertEquals(2, log.getTimestamp(0));
+    }
+
+    @Test
+    public void outOfRangeIndex_throws() {
+        MessageLog log = new MessageLog(3);
+        for (long id = 0; id < 5; id++) log.add(id, "line " + id);
+        try {
+            log.getText(3);
+            fail("index past size");
+        } catch (IndexOutOfBoundsException expected) {
+            // expected
+        }
+        try {
+            log.getTimestamp(-1);
+            fail("negative index");
+        } catch (IndexOutOfBoundsException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void clear_thenRefillFromAnyHead() {
+        MessageLog log = new MessageLog(4);
+        for (long id = 0; id < 6; id++) log.add(id * 1000, "line " + id);
+        log.clear();
+        assertTrue(log.isEmpty());
+
+        ArrayDeque<Long> expected = new ArrayDeque<>();
+        for (long id = 100; id < 106; id++) {
+            log.add(id * 1000, "line " + id);
+            if (expected.size() == 4) expected.removeFirst();
+            expected.addLast(id);
+        }
+        assertSameLines("refilled", expected, log);
+    }
+
+    @Test
+    public void randomAppendsAndClears_matchBoundedQueue() {
+        Random random = new Random(9);
+        for (int capacity = 1; capacity <= 9; capacity++) {
+            MessageLog log = new MessageLog(capacity);
+            ArrayDeque<Long> expected = new ArrayDeque<>();
+            for (long id = 0; id < 2_000; id++) {
+                if (random.nextInt(150) == 0) {
+                    log.clear();
+                    expected.clear();
+                }
+                boolean full = expected.size() == capacity;
+                assertEquals(full, log.add(id * 1000, "line " + id));
+                if (full) expected.removeFirst();
+                expected.addLast(id);
+                if (random.nextInt(10) == 0) assertSameLines("capacity " + capacity + ", line " + id, expected, log);
+            }
+            assertSameLines("capacity " + capacity, expected, log);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroCapacity_isRejected() {
+        new MessageLog(0);
+    }
+}
@@ -0,0 +1,443 @@
+package com.linh.mdp.managers;
+
+import com.linh.mdp.adapters.grid.DirtyCellTracker;
+import com.linh.mdp.adapters.grid.GridConstants;
+import com.linh.mdp.adapters.grid.GridStore;
+import com.linh.mdp.adapters.grid.ObstacleManager;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * The cached payloads of {@link ObstacleSetSerializer} against a fresh serialization of the grid,
+ * built the way ObstacleController.sendAllObstacles did before the serializer, and the delta
+ * uploads replayed on a copy of what the RPi holds.
+ */
+public class ObstacleSetSerializerTest {
+    private static final int SIZE = GridConstants.GRID_SIZE;
+
+    private final GridStore store = new GridStore();
+    private final ObstacleManager manager = new ObstacleManager(new DirtyCellTracker());
+    private final ObstacleSetSerializer serializer = new ObstacleSetSerializer();
+
+    // Obstacles the RPi holds, by id, as the JSON fragment it received
+    private final Map<Integer, JSONObject> received = new TreeMap<>();
+
+    public ObstacleSetSerializerTest() {
+        manager.setOnObstacleChangeListener(serializer);
+    }
+
+    private static int pos(int row, int col) {
+        return row * SIZE + col;
+    }
+
+    // ObstacleController.mapDirectionToInt before the serializer
+    private static int mapDirectionToInt(String direction) {
+        if (direction == null) return 8;
+        switch (direction) {
+            case "N": return 0;
+            case "E": return 2;
+            case "S": return 4;
+            case "W": return 6;
+            default: return 8;
+        }
+    }
+
+    // ObstacleController.sendAllObstacles before the serializer
+    private JSONObject freshSerialization() throws JSONException {
+        JSONArray obstacles = new JSONArray();
+        for (int position : manager.getObstaclePositions(store)) {
+            int row = position / SIZE;
+            int col = position % SIZE;
+            JSONObject obstacle = new JSONObject();
+            obstacle.put("x", col - 1);
+            obstacle.put("y", (SIZE - 2) - row);
+            obstacle.put("id", store.getObstacleNumber(position));
+            obstacle.put("d", mapDirectionToInt(store.getBorderDirection(position)));
+            obstacles.put(obstacle);
+        }
+        JSONObject value = new JSONObject();
+        value.put("obstacles", obstacles);
+        value.put("mode", "0");
+        JSONObject message = new JSONObject();
+        message.put("cat", "obstacles");
+        message.put("value", value);
+        return message;
+    }
+
+    private void assertFullMatchesGrid(String context) throws JSONException {
+        ObstacleSetSerializer.Payload payload = serializer.prepareFull();
+        JSONObject expected = freshSerialization();
+        JSONObject actual = new JSONObject(payload.text);
+        assertTrue(context + ": " + payload.text + " vs " + expected, expected.similar(actual));
+        assertFalse(context, payload.delta);
+        assertEquals(context, manager.getObstaclePositions(store).length, payload.obstacleCount);
+        assertEquals(context, serializer.getObstacleCount(), payload.obstacleCount);
+        assertArrayEquals(context, payload.text.getBytes(StandardCharsets.UTF_8), payload.bytes);
+        // Nothing changed since: the cached payload comes back
+        assertSame(context, payload, serializer.prepareFull());
+    }
+
+    // What the RPi does with an upload: a full one replaces its set, a delta patches it
+    private void deliver(ObstacleSetSerializer.Payload payload) throws JSONException {
+        JSONObject value = new JSONObject(payload.text).getJSONObject("value");
+        assertEquals("0", value.getString("mode"));
+        assertEquals(payload.delta, value.optBoolean("delta", false));
+        if (!payload.delta) received.clear();
+        JSONArray obstacles = value.getJSONArray("obstacles");
+        assertEquals(payload.obstacleCount, obstacles.length());
+        for (int i = 0; i < obstacles.length(); i++) {
+            JSONObject obstacle = obstacles.getJSONObject(i);
+            received.put(obstacle.getInt("id"), obstacle);
+        }
+        JSONArray removed = value.optJSONArray("removed");
+        for (int i = 0; removed != null && i < removed.length(); i++) {
+            assertFalse("id " + removed.getInt(i) + " both sent and removed", hasId(obstacles, removed.getInt(i)));
+            received.remove(removed.getInt(i));
+        }
+    }
+
+    private static boolean hasId(JSONArray obstacles, int id) throws JSONException {
+        for (int i = 0; i < obstacles.length(); i++) {
+            if (obstacles.getJSONObject(i).getInt("id") == id) return true;
+        }
+        return false;
+    }
+
+    private void assertReceivedMatchesGrid(String context) throws JSONException {
+        JSONArray expected = freshSerialization().getJSONObject("value").getJSONArray("obstacles");
+        assertEquals(context, expected.length(), received.size());
+        for (int i = 0; i < expected.length(); i++) {
+            JSONObject obstacle = expected.getJSONObject(i);
+            JSONObject held = received.get(obstacle.getInt("id"));
+            assertNotNull(context + ": missing id " + obstacle.getInt("id"), held);
+            assertTrue(context + ": " + held + " vs " + obstacle, obstacle.similar(held));
+        }
+    }
+
+    private void setBorder(int row, int col, String direction) {
+        store.setBorderDirection(pos(row, col), direction);
+        manager.onCellChanged(row, col, store);
+    }
+
+    private void moveObstacle(int fromRow, int fromCol, int toRow, int toCol) {
+        manager.removeObstacle(fromRow, fromCol, store);
+        manager.setObstacle(toRow, toCol, store);
+    }
+
+    // ============================================================================
+    // FULL PAYLOAD
+    // ============================================================================
+
+    @Test
+    public void emptyGrid_matchesFreshSerialization() throws JSONException {
+        assertFullMatchesGrid("empty");
+        assertEquals(0, serializer.prepareFull().obstacleCount);
+    }
+
+    @Test
+    public void fullPayload_afterEachEdit_matchesFreshSerialization() throws JSONException {
+        manager.setObstacle(0, 1, store);
+        assertFullMatchesGrid("add corner");
+        manager.setObstacle(19, 20, store);
+        manager.setObstacle(7, 12, store);
+        assertFullMatchesGrid("add three");
+
+        moveObstacle(7, 12, 8, 3);
+        assertFullMatchesGrid("move");
+
+        setBorder(8, 3, "E");
+        assertFullMatchesGrid("face east");
+        setBorder(8, 3, "S");
+        assertFullMatchesGrid("re-target south");
+        setBorder(0, 1, "NW");
+        assertFullMatchesGrid("two sides");
+        setBorder(0, 1, null);
+        assertFullMatchesGrid("border cleared");
+
+        // Re-placing a cell renumbers it
+        manager.setObstacle(19, 20, store);
+        assertFullMatchesGrid("re-placed");
+
+        manager.removeObstacle(0, 1, store);
+        assertFullMatchesGrid("remove");
+
+        manager.clearAllObstacles(store);
+        assertFullMatchesGrid("clear all");
+        manager.setObstacle(4, 4, store);
+        assertFullMatchesGrid("add after clear");
+        assertEquals(1, store.getObstacleNumber(pos(4, 4)));
+    }
+
+    @Test
+    public void cachedPayload_keptUntilAnUploadChanges() throws JSONException {
+        manager.setObstacle(3, 3, store);
+        setBorder(3, 3, "W");
+        ObstacleSetSerializer.Payload cached = serializer.prepareFull();
+
+        // Same border reported again, a target id, a removal of an empty cell: same upload
+        setBorder(3, 3, "W");
+        manager.setObstacleAsTarget(store.getObstacleNumber(pos(3, 3)), "11", store);
+        manager.removeObstacle(5, 5, store);
+        assertSame(cached, serializer.prepareFull());
+        assertFullMatchesGrid("target");
+
+        setBorder(3, 3, "N");
+        assertNotSame(cached, serializer.prepareFull());
+        assertFullMatchesGrid("new face");
+    }
+
+    @Test
+    public void overwrittenCell_dropsOutOfPayload() throws JSONException {
+        manager.setObstacle(10, 10, store);
+        manager.setObstacle(10, 11, store);
+        store.setFlag(pos(10, 10), GridStore.ROBOT, true);
+        manager.onCellChanged(10, 10, store);
+        assertFullMatchesGrid("robot over obstacle");
+        assertEquals(1, serializer.getObstacleCount());
+    }
+
+    @Test
+    public void numbersPastInitialCapacity_matchFreshSerialization() throws JSONException {
+        // Re-placing the same cells drives the numbers well past 64
+        for (int round = 0; round < 6; round++) {
+            for (int col = 1; col <= 20; col++) manager.setObstacle(round % 3, col, store);
+        }
+        assertTrue(store.getObstacleNumber(pos(2, 20)) > 100);
+        assertFullMatchesGrid("renumbered");
+    }
+
+    // ============================================================================
+    // DELTAS
+    // ============================================================================
+
+    @Test
+    public void deltaAfterAcknowledge_isEmpty() throws JSONException {
+        manager.setObstacle(2, 2, store);
+        manager.setObstacle(6, 9, store);
+
+        // Nothing acknowledged yet: the first delta is a full upload
+        ObstacleSetSerializer.Payload first = serializer.prepareDelta();
+        assertNotNull(first);
+        assertFalse(first.delta);
+        assertTrue(serializer.hasPendingChanges());
+        serializer.acknowledge(first);
+
+        assertFalse(serializer.hasPendingChanges());
+        assertNull(serializer.prepareDelta());
+
+        // An edit that ends where it started is still reported, then settles again
+        setBorder(2, 2, "N");
+        setBorder(2, 2, null);
+        ObstacleSetSerializer.Payload delta = serializer.prepareDelta();
+        assertNotNull(delta);
+        serializer.acknowledge(delta);
+        assertNull(serializer.prepareDelta());
+        assertFalse(serializer.hasPendingChanges());
+
+        // A full upload acknowledged on its own also leaves nothing to send
+        manager.setObstacle(12, 12, store);
+        serializer.acknowledge(serializer.prepareFull());
+        assertNull(serializer.prepareDelta());
+    }
+
+    @Test
+    public void delta_carriesOnlyChangedAndRemoved() throws JSONException {
+        manager.setObstacle(1, 1, store);  // 1
+        manager.setObstacle(1, 5, store);  // 2
+        manager.setObstacle(1, 9, store);  // 3
+        ObstacleSetSerializer.Payload full = serializer.prepareFull();
+        deliver(full);
+        serializer.acknowledge(full);
+
+        setBorder(1, 5, "S");
+        manager.removeObstacle(1, 9, store);
+        manager.setObstacle(9, 9, store);  // 4
+
+        ObstacleSetSerializer.Payload delta = serializer.prepareDelta();
+        assertTrue(delta.delta);
+        assertEquals(2, delta.obstacleCount);
+        JSONObject value = new JSONObject(delta.text).getJSONObject("value");
+        assertEquals(2, value.getJSONArray("obstacles").getJSONObject(0).getInt("id"));
+        assertEquals(4, value.getJSONArray("obstacles").getJSONObject(1).getInt("id"));
+        assertEquals(1, value.getJSONArray("removed").length());
+        assertEquals(3, value.getJSONArray("removed").getInt(0));
+
+        deliver(delta);
+        serializer.acknowledge(delta);
+        assertReceivedMatchesGrid("after delta");
+        assertNull(serializer.prepareDelta());
+    }
+
+    @Test
+    public void changeWhileInFlight_isSentNextTime() throws JSONException {
+        manager.setObstacle(4, 4, store);
+        serializer.acknowledge(serializer.prepareFull());
+
+        setBorder(4, 4, "E");
+        ObstacleSetSerializer.Payload delta = serializer.prepareDelta();
+        deliver(delta);
+        // Changed again before the writer confirmed the upload above
+        setBorder(4, 4, "W");
+        serializer.acknowledge(delta);
+
+        assertTrue(serializer.hasPendingChanges());
+        ObstacleSetSerializer.Payload next = serializer.prepareDelta();
+        assertNotNull(next);
+        deliver(next);
+        serializer.acknowledge(next);
+        assertReceivedMatchesGrid("after second delta");
+        assertEquals(6, received.get(1).getInt("d"));
+        assertNull(serializer.prepareDelta());
+    }
+
+    @Test
+    public void droppedDelta_isResentByTheNextOne() throws JSONException {
+        manager.setObstacle(4, 4, store);  // 1
+        manager.setObstacle(5, 5, store);  // 2
+        ObstacleSetSerializer.Payload full = serializer.prepareFull();
+        deliver(full);
+        serializer.acknowledge(full);
+
+        // Never written: the writer dropped it, so it is never acknowledged
+        setBorder(4, 4, "E");
+        assertNotNull(serializer.prepareDelta());
+
+        manager.removeObstacle(5, 5, store);
+        ObstacleSetSerializer.Payload next = serializer.prepareDelta();
+        assertEquals(1, next.obstacleCount);
+        assertEquals(2, new JSONObject(next.text).getJSONObject("value").getJSONArray("removed").getInt(0));
+        deliver(next);
+        serializer.acknowledge(next);
+        assertReceivedMatchesGrid("after resend");
+        assertEquals(2, received.get(1).getInt("d"));
+        assertNull(serializer.prepareDelta());
+    }
+
+    @Test
+    public void overlappingUploads_acknowledgedInOrder() throws JSONException {
+        manager.setObstacle(4, 4, store);  // 1
+        ObstacleSetSerializer.Payload full = serializer.prepareFull();
+        setBorder(4, 4, "S");
+        manager.setObstacle(6, 6, store);  // 2
+        // Both queued before the writer confirmed either
+        ObstacleSetSerializer.Payload second = serializer.prepareDelta();
+        assertFalse(second.delta);
+
+        deliver(full);
+        serializer.acknowledge(full);
+        assertTrue(serializer.hasPendingChanges());
+        deliver(second);
+        serializer.acknowledge(second);
+        assertFalse(serializer.hasPendingChanges());
+        assertReceivedMatchesGrid("both written");
+    }
+
+    @Test
+    public void resetBaseline_nextDeltaIsFull() throws JSONException {
+        manager.setObstacle(4, 4, store);
+        serializer.acknowledge(serializer.prepareFull());
+        assertNull(serializer.prepareDelta());
+
+        serializer.resetBaseline();
+        assertTrue(serializer.hasPendingChanges());
+        ObstacleSetSerializer.Payload payload = serializer.prepareDelta();
+        assertFalse(payload.delta);
+        assertEquals(1, payload.obstacleCount);
+        serializer.acknowledge(payload);
+        assertNull(serializer.prepareDelta());
+    }
+
+    @Test
+    public void resetBaseline_ignoresEarlierPayloads() throws JSONException {
+        manager.setObstacle(4, 4, store);
+        ObstacleSetSerializer.Payload beforeReconnect = serializer.prepareFull();
+
+        // The connection dropped with the upload still queued
+        serializer.resetBaseline();
+        serializer.acknowledge(beforeReconnect);
+        assertTrue(serializer.hasPendingChanges());
+        ObstacleSetSerializer.Payload payload = serializer.prepareDelta();
+        assertFalse(payload.delta);
+        assertNotSame(beforeReconnect, payload);
+    }
+
+    @Test
+    public void randomEdits_deltasKeepRpiInSync() throws JSONException {
+        Random random = new Random(15);
+        String[] faces = {null, "N", "E", "S", "W", "NE", "ALL"};
+        // Payloads queued in the writer, oldest first
+        List<ObstacleSetSerializer.Payload> queued = new ArrayList<>();
+        for (int step = 0; step < 3000; step++) {
+            int row = random.nextInt(GridConstants.DATA_SIZE);
+            int col = 1 + random.nextInt(GridConstants.DATA_SIZE);
+            int[] placed = manager.getObstaclePositions(store);
+            switch (random.nextInt(7)) {
+                case 0:
+                case 1:
+                    manager.setObstacle(row, col, store);
+                    break;
+                case 2:
+                    if (placed.length > 0) {
+                        int from = placed[random.nextInt(placed.length)];
+                        if (!store.isPlainObstacle(pos(row, col))) moveObstacle(from / SIZE, from % SIZE, row, col);
+                    }
+                    break;
+                case 3:
+                    if (placed.length > 0) {
+                        int at = placed[random.nextInt(placed.length)];
+                        setBorder(at / SIZE, at % SIZE, faces[random.nextInt(faces.length)]);
+                    }
+                    break;
+                case 4:
+                    if (placed.length > 0) {
+                        int at = placed[random.nextInt(placed.length)];
+                        manager.removeObstacle(at / SIZE, at % SIZE, store);
+                    }
+                    break;
+                case 5:
+                    if (random.nextInt(40) == 0) manager.clearAllObstacles(store);
+                    break;
+                default:
+                    if (random.nextInt(30) == 0) {
+                        // Disconnect: the queue is discarded and the RPi starts over
+                        queued.clear();
+                        received.clear();
+                        serializer.resetBaseline();
+                    }
+                    break;
+            }
+
+            String context = "step " + step;
+            if (random.nextInt(5) == 0) assertFullMatchesGrid(context);
+            if (random.nextInt(2) == 0) {
+                ObstacleSetSerializer.Payload payload = serializer.prepareDelta();
+                if (payload != null) queued.add(payload);
+            }
+            if (random.nextInt(3) == 0) {
+                // The writer drains its queue; an overflow drops the oldest without writing it
+                for (ObstacleSetSerializer.Payload payload : queued) {
+                    if (random.nextInt(6) == 0) continue;
+                    deliver(payload);
+                    serializer.acknowledge(payload);
+                }
+                queued.clear();
+                if (!serializer.hasPendingChanges()) {
+                    assertReceivedMatchesGrid(context);
+                    assertNull(context, serializer.prepareDelta());
+                }
+            }
+        }
+    }
+}
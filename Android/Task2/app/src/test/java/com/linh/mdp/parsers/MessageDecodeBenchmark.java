@@ -0,0 +1,73 @@
+package com.linh.mdp.parsers;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Timing harness for the org.json path versus the tokenizer on the same messages; parity is
+ * checked by {@link MessageDispatcherTest}. Skipped unless run with
+ * {@code ./gradlew testDebugUnitTest -Pbenchmarks --tests '*Benchmark'}.
+ */
+public class MessageDecodeBenchmark {
+    private static final int MESSAGES = 2_000;
+    private static final int ROUNDS = 50;
+
+    private final LocationMessage location = new LocationMessage();
+    private final ImageRecMessage imageRec = new ImageRecMessage();
+    private final List<GridMutation> out = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        assumeTrue("benchmarks are opt-in", Boolean.getBoolean("benchmarks"));
+    }
+
+    @Test
+    public void decode_orgJsonVersusTokenizer() throws Exception {
+        List<String> session = MessageDispatcherTest.randomSession(new Random(60), MESSAGES);
+        MessageDispatcher dispatcher = new MessageDispatcher();
+        long[] sum = new long[1];
+        dispatcher.registerCategory("location", (value, out) -> {
+            if (location.decode(value)) sum[0] += location.x + location.y + location.direction;
+        });
+        dispatcher.registerCategory("image-rec", (value, out) -> {
+            if (imageRec.decode(value)) sum[0] += imageRec.obstacleId;
+        });
+
+        // Warm-up
+        long checksum = 0;
+        for (int round = 0; round < ROUNDS / 5; round++) {
+            for (String line : session) {
+                checksum += MessageDispatcherTest.decodeWithOrgJson(line).length();
+                dispatcher.dispatch(line, out);
+            }
+        }
+
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (String line : session) {
+                checksum += MessageDispatcherTest.decodeWithOrgJson(line).length();
+            }
+        }
+        long orgJsonNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (String line : session) {
+                dispatcher.dispatch(line, out);
+            }
+        }
+        long tokenizerNanos = System.nanoTime() - start;
+
+        long messages = (long) ROUNDS * MESSAGES;
+        assertTrue(checksum > 0 && sum[0] > 0);
+        System.out.printf("JSON decode of %d messages: org.json %.0f ns/msg, tokenizer %.0f ns/msg%n",
+            messages, (double) orgJsonNanos / messages, (double) tokenizerNanos / messages);
+    }
+}
@@ -0,0 +1,213 @@
+package com.linh.mdp.parsers;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Single-pass JSON dispatch and the typed location / image-rec decoders, checked against the
+ * org.json extraction {@link MessageParser} used before {@link JsonTokenizer}.
+ */
+public class MessageDispatcherTest {
+    private final MessageDispatcher dispatcher = new MessageDispatcher();
+    private final LocationMessage location = new LocationMessage();
+    private final ImageRecMessage imageRec = new ImageRecMessage();
+    private final List<GridMutation> out = new ArrayList<>();
+    private final List<String> decoded = new ArrayList<>();
+    private final List<String> fallbacks = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        dispatcher.registerCategory("location", (value, out) ->
+            decoded.add(value == null ? "location: no value" : decodeLocation(value)));
+        dispatcher.registerCategory("image-rec", (value, out) ->
+            decoded.add(value == null ? "image-rec: no value" : decodeImageRec(value)));
+        dispatcher.setFallbackHandler((category, message, out) ->
+            fallbacks.add(category + " " + message.opt("value")));
+    }
+
+    private String decodeLocation(JsonTokenizer value) {
+        if (!location.decode(value)) return "location: invalid";
+        return "location " + location.x + " " + location.y + " " + location.direction;
+    }
+
+    private String decodeImageRec(JsonTokenizer value) {
+        if (!imageRec.decode(value)) return "image-rec: invalid";
+        return "image-rec " + (imageRec.obstacleIdValid ? imageRec.obstacleId : "bad") + " " + imageRec.imageId;
+    }
+
+    private void dispatch(String line) {
+        dispatcher.dispatch(line, out);
+    }
+
+    // ============================================================================
+    // FIELD ORDER, WHITESPACE AND ENCODING
+    // ============================================================================
+
+    @Test
+    public void location_nestedObject() {
+        dispatch("{\"cat\":\"location\",\"value\":{\"x\":3,\"y\":7,\"d\":2}}");
+        assertEquals(Arrays.asList("location 3 7 2"), decoded);
+    }
+
+    @Test
+    public void location_valueAsJsonString() {
+        dispatch("{\"cat\": \"location\", \"value\": \"{\\\"x\\\": 1, \\\"y\\\": 1, \\\"d\\\": 0}\"}");
+        assertEquals(Arrays.asList("location 1 1 0"), decoded);
+    }
+
+    @Test
+    public void keyOrder_doesNotMatter() {
+        dispatch("{\"value\":{\"d\":6,\"y\":12,\"x\":19},\"cat\":\"location\"}");
+        dispatch("{\"value\":\"{\\\"obstacle_id\\\":\\\"4\\\",\\\"image_id\\\":\\\"B\\\"}\",\"cat\":\"image-rec\"}");
+        assertEquals(Arrays.asList("location 19 12 6", "image-rec 4 B"), decoded);
+    }
+
+    @Test
+    public void whitespace_isIgnoredEverywhere() {
+        dispatch("{ \n\t\"cat\" :\r\n \"location\" ,\t\"value\"\n:\n{ \"x\" : 5 ,\"y\":\t6 , \"d\" : 4 } \n}");
+        assertEquals(Arrays.asList("location 5 6 4"), decoded);
+    }
+
+    @Test
+    public void escapes_areDecoded() {
+        dispatch("{\"cat\":\"image-rec\",\"value\":{\"image_id\":\"\\u0041\\\"\\\\\\/\\n\",\"obstacle_id\":\"2\"}}");
+        assertEquals(Arrays.asList("image-rec 2 A\"\\/\n"), decoded);
+    }
+
+    @Test
+    public void escapedCategory_goesThroughFallback() {
+        // Escaped names never match in place; org.json still decodes them
+        dispatch("{\"cat\":\"loc\\u0061tion\",\"value\":1}");
+        assertTrue(decoded.isEmpty());
+        assertEquals(Arrays.asList("location 1"), fallbacks);
+    }
+
+    @Test
+    public void numbers_quotedAndFractional() {
+        dispatch("{\"cat\":\"location\",\"value\":{\"x\":\"3\",\"y\":4.9,\"d\":2e0}}");
+        dispatch("{\"cat\":\"image-rec\",\"value\":{\"image_id\":17,\"obstacle_id\":8}}");
+        assertEquals(Arrays.asList("location 3 4 2", "image-rec 8 17"), decoded);
+    }
+
+    // ============================================================================
+    // MISSING, EXTRA AND MALFORMED FIELDS
+    // ============================================================================
+
+    @Test
+    public void missingFields_areReported() {
+        dispatch("{\"cat\":\"location\",\"value\":{\"x\":1,\"y\":2}}");
+        dispatch("{\"cat\":\"image-rec\",\"value\":{\"image_id\":\"A\"}}");
+        dispatch("{\"cat\":\"location\"}");
+        assertEquals(Arrays.asList("location: invalid", "image-rec: invalid", "location: no value"), decoded);
+    }
+
+    @Test
+    public void extraFields_areSkipped() {
+        dispatch("{\"id\":9,\"cat\":\"location\",\"meta\":{\"a\":[1,{\"b\":\"}]\"}],\"c\":null},"
+            + "\"value\":{\"z\":[],\"x\":2,\"note\":\"{x}\",\"y\":3,\"ok\":true,\"d\":0,\"w\":-1.5e3}}");
+        assertEquals(Arrays.asList("location 2 3 0"), decoded);
+    }
+
+    @Test
+    public void nonNumericObstacleId_isFlagged() {
+        dispatch("{\"cat\":\"image-rec\",\"value\":{\"image_id\":\"A\",\"obstacle_id\":\"abc\"}}");
+        assertEquals(Arrays.asList("image-rec bad A"), decoded);
+    }
+
+    @Test
+    public void malformedJson_producesToast() {
+        dispatch("{\"cat\":\"location\",\"value\":{\"x\":1,");
+        dispatch("{\"cat\":\"location\",\"value\":{\"x\":1,\"y\":2,\"d\":0}");
+        assertEquals(2, dispatcher.getMalformedCount());
+        assertEquals(2, out.size());
+        for (GridMutation mutation : out) {
+            assertEquals(GridMutation.Type.TOAST, mutation.type);
+        }
+        assertTrue(decoded.isEmpty());
+    }
+
+    @Test
+    public void malformedValue_failsInTheDecoder() {
+        // The value span is well-formed at the top level, so only the typed decoder sees the error
+        dispatch("{\"cat\":\"location\",\"value\":{\"x\":,\"y\":2,\"d\":0}}");
+        dispatch("{\"cat\":\"image-rec\",\"value\":\"{\\\"image_id\\\":\\\"A\\\",\"}");
+        assertEquals(Arrays.asList("location: invalid", "image-rec: invalid"), decoded);
+        assertEquals(0, dispatcher.getMalformedCount());
+    }
+
+    // ============================================================================
+    // ORG.JSON FALLBACK
+    // ============================================================================
+
+    @Test
+    public void unknownCategory_usesOrgJsonFallback() {
+        dispatch("{\"cat\":\"status\",\"value\":\"running\"}");
+        dispatch("{\"value\":{\"k\":1}}");
+        assertTrue(decoded.isEmpty());
+        assertEquals(Arrays.asList("status running", "null {\"k\":1}"), fallbacks);
+        assertEquals(2, dispatcher.getFallbackCount());
+        assertEquals(0, dispatcher.getDispatchedCount());
+    }
+
+    @Test
+    public void unknownCategory_withoutFallback_isIgnored() {
+        MessageDispatcher bare = new MessageDispatcher();
+        bare.dispatch("{\"cat\":\"status\",\"value\":\"running\"}", out);
+        assertTrue(out.isEmpty());
+        assertEquals(0, bare.getMalformedCount());
+    }
+
+    // ============================================================================
+    // PARITY AND TIMING AGAINST THE ORG.JSON PATH
+    // ============================================================================
+
+    // The extraction MessageParser did per message before the tokenizer
+    static String decodeWithOrgJson(String line) throws Exception {
+        JSONObject message = new JSONObject(line);
+        String category = message.getString("cat");
+        Object raw = message.get("value");
+        JSONObject value = raw instanceof String ? new JSONObject((String) raw) : message.getJSONObject("value");
+        if ("location".equals(category)) {
+            return "location " + value.getInt("x") + " " + value.getInt("y") + " " + value.getInt("d");
+        }
+        return "image-rec " + Integer.parseInt(value.getString("obstacle_id")) + " " + value.getString("image_id");
+    }
+
+    static List<String> randomSession(Random random, int count) {
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (random.nextInt(5) == 0) {
+                String inner = "{\"image_id\": \"" + (char) ('A' + random.nextInt(26)) + random.nextInt(40)
+                    + "\", \"obstacle_id\": \"" + random.nextInt(8) + "\"}";
+                lines.add("{\"cat\": \"image-rec\", \"value\": " + JSONObject.quote(inner) + "}");
+            } else {
+                String inner = "{\"x\": " + random.nextInt(20) + ", \"y\": " + random.nextInt(20)
+                    + ", \"d\": " + 2 * random.nextInt(4) + "}";
+                lines.add(random.nextBoolean()
+                    ? "{\"cat\": \"location\", \"value\": " + inner + "}"
+                    : "{\"cat\": \"location\", \"value\": " + JSONObject.quote(inner) + "}");
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    public void randomMessages_matchOrgJson() throws Exception {
+        List<String> session = randomSession(new Random(6), 5_000);
+        List<String> expected = new ArrayList<>();
+        for (String line : session) {
+            expected.add(decodeWithOrgJson(line));
+            dispatch(line);
+        }
+        assertEquals(expected, decoded);
+        assertEquals(0, dispatcher.getMalformedCount());
+    }
+}
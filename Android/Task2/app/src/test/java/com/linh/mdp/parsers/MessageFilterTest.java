@@ -0,0 +1,221 @@
+package com.linh.mdp.parsers;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * The Aho-Corasick {@link MessageFilter} against the lowercase + contains loop that
+ * MessageParser.shouldDisplayMessage ran before it, including per-pattern occurrence counts.
+ */
+public class MessageFilterTest {
+    private final MessageFilter filter = new MessageFilter();
+
+    // The check shouldDisplayMessage did per line before MessageFilter
+    private static boolean shouldDisplayOld(String data, String[] filterOut, String[] important) {
+        if (data == null) return false;
+        String lowerData = data.toLowerCase(Locale.ROOT).trim();
+        if (lowerData.isEmpty()) return false;
+        for (String pattern : filterOut) {
+            if (lowerData.contains(pattern.toLowerCase(Locale.ROOT))) return false;
+        }
+        for (String pattern : important) {
+            if (lowerData.contains(pattern.toLowerCase(Locale.ROOT))) return true;
+        }
+        return false;
+    }
+
+    // Overlapping occurrences, as the automaton reports them
+    private static long countOccurrences(String text, String pattern) {
+        long count = 0;
+        String lowerText = text.toLowerCase(Locale.ROOT);
+        String lowerPattern = pattern.toLowerCase(Locale.ROOT);
+        for (int i = lowerText.indexOf(lowerPattern); i >= 0; i = lowerText.indexOf(lowerPattern, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static String randomCase(String text, Random random) {
+        StringBuilder out = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            out.append(random.nextBoolean() ? Character.toUpperCase(c) : c);
+        }
+        return out.toString();
+    }
+
+    private static String randomLine(Random random, String[] vocabulary) {
+        // Includes the Kelvin sign and dotted capital I, which String.toLowerCase maps onto ASCII
+        String[] glue = {" ", ": ", "-", "", "\t", "  ", "é", "状态", "\u212A", "\u0130", "ß", "Σ", "🤖", "\u0307"};
+        StringBuilder line = new StringBuilder();
+        int tokens = random.nextInt(6);
+        for (int i = 0; i < tokens; i++) {
+            String token = vocabulary[random.nextInt(vocabulary.length)];
+            // Cut some tokens so prefixes and suffixes of patterns show up too
+            if (random.nextInt(3) == 0 && token.length() > 1) {
+                int from = random.nextInt(token.length());
+                token = token.substring(from, from + 1 + random.nextInt(token.length() - from));
+            }
+            line.append(randomCase(token, random)).append(glue[random.nextInt(glue.length)]);
+        }
+        return line.toString();
+    }
+
+    private void assertMatchesOld(String[] filterOut, String[] important, long seed, int lines) {
+        String[] vocabulary = new String[filterOut.length + important.length + 3];
+        System.arraycopy(filterOut, 0, vocabulary, 0, filterOut.length);
+        System.arraycopy(important, 0, vocabulary, filterOut.length, important.length);
+        vocabulary[vocabulary.length - 3] = "robot";
+        vocabulary[vocabulary.length - 2] = "ACK";
+        vocabulary[vocabulary.length - 1] = "\u0130nitialization";
+
+        filter.resetStats();
+        Map<String, Long> expectedCounts = new HashMap<>();
+        Random random = new Random(seed);
+        for (int i = 0; i < lines; i++) {
+            String line = randomLine(random, vocabulary);
+            assertEquals("\"" + line + "\"", shouldDisplayOld(line, filterOut, important), filter.shouldDisplay(line));
+            for (String pattern : vocabulary) {
+                if (Arrays.asList(filterOut).contains(pattern) || Arrays.asList(important).contains(pattern)) {
+                    expectedCounts.merge(pattern.toLowerCase(Locale.ROOT), countOccurrences(line, pattern), Long::sum);
+                }
+            }
+        }
+        for (Map.Entry<String, Long> entry : expectedCounts.entrySet()) {
+            assertEquals(entry.getKey(), (long) entry.getValue(), filter.getMatchCount(entry.getKey()));
+        }
+    }
+
+    // ============================================================================
+    // PARITY WITH THE CONTAINS LOOP
+    // ============================================================================
+
+    @Test
+    public void defaultPatterns_matchOldLogic() {
+        assertMatchesOld(MessageFilter.DEFAULT_FILTER_OUT_PATTERNS, MessageFilter.DEFAULT_IMPORTANT_PATTERNS, 7, 100_000);
+    }
+
+    @Test
+    public void fixedLines_matchOldLogic() {
+        String[] lines = {
+            "Ready to start", "MISSION COMPLETE", "mission complete, sensor: 12", "Disconnected",
+            "ping", "Target Found at x: 3", "stopped", "unstoppable", "  ", "", "status:ok",
+            "error AC\u212A", "TAS\u212A done", "\u0130nitialization", "INITIALIZATION", "\u0130\u0307",
+            "状态 error", "Error 🤖", "ÉRROR", "détecté", "founḋ",
+        };
+        for (String line : lines) {
+            assertEquals("\"" + line + "\"",
+                shouldDisplayOld(line, MessageFilter.DEFAULT_FILTER_OUT_PATTERNS, MessageFilter.DEFAULT_IMPORTANT_PATTERNS),
+                filter.shouldDisplay(line));
+        }
+        assertFalse(filter.shouldDisplay(null));
+    }
+
+    @Test
+    public void overlappingPatterns_allCounted() {
+        filter.setPatterns(new String[] {"zz"}, new String[] {"abab", "bab", "ab"});
+        assertTrue(filter.shouldDisplay("xABABABx"));
+        assertEquals(2, filter.getMatchCount("abab"));
+        assertEquals(2, filter.getMatchCount("bab"));
+        assertEquals(3, filter.getMatchCount("ab"));
+        assertMatchesOld(new String[] {"zz"}, new String[] {"abab", "bab", "ab"}, 11, 20_000);
+    }
+
+    @Test
+    public void suffixPatterns_allCounted() {
+        // "connected" ends "disconnected"; "k" ends "back" and "ack"
+        filter.setPatterns(new String[] {"ack"}, new String[] {"disconnected", "connected", "back", "k"});
+        assertTrue(filter.shouldDisplay("Disconnected"));
+        assertEquals(1, filter.getMatchCount("disconnected"));
+        assertEquals(1, filter.getMatchCount("connected"));
+
+        assertFalse(filter.shouldDisplay("back"));
+        assertEquals(1, filter.getMatchCount("back"));
+        assertEquals(1, filter.getMatchCount("ack"));
+        assertEquals(1, filter.getMatchCount("k"));
+        assertMatchesOld(new String[] {"ack"}, new String[] {"disconnected", "connected", "back", "k"}, 13, 20_000);
+    }
+
+    @Test
+    public void nonAsciiPatterns_matchCaseInsensitively() {
+        String[] filterOut = {"ß", "ω"};
+        String[] important = {"ärger", "状态", "échec"};
+        filter.setPatterns(filterOut, important);
+        assertTrue(filter.shouldDisplay("ÄRGER"));
+        assertTrue(filter.shouldDisplay("状态: ok"));
+        assertTrue(filter.shouldDisplay("ÉCHEC"));
+        assertFalse(filter.shouldDisplay("ÄRGER ΩΑ"));
+        assertFalse(filter.shouldDisplay("échec ß"));
+        assertMatchesOld(filterOut, important, 17, 20_000);
+    }
+
+    // ============================================================================
+    // RUNTIME PATTERN SWAP
+    // ============================================================================
+
+    @Test
+    public void patternSwap_restartsCounts() {
+        filter.setPatterns(new String[] {"noise"}, new String[] {"alpha", "beta"});
+        filter.shouldDisplay("alpha alpha beta");
+        filter.shouldDisplay("alpha noise");
+        assertEquals(3, filter.getMatchCount("alpha"));
+        assertEquals(1, filter.getMatchCount("beta"));
+        assertEquals(1, filter.getMatchCount("noise"));
+        assertEquals(2, filter.getScannedCount());
+        assertEquals(1, filter.getDisplayedCount());
+
+        filter.setImportantPatterns(new String[] {"gamma", "ALPHA"});
+        assertEquals(0, filter.getMatchCount("alpha"));
+        assertEquals(0, filter.getMatchCount("beta"));
+        assertEquals(0, filter.getScannedCount());
+        assertArrayEquals(new String[] {"noise"}, filter.getFilterOutPatterns());
+        assertArrayEquals(new String[] {"gamma", "alpha"}, filter.getImportantPatterns());
+
+        assertFalse(filter.shouldDisplay("beta"));
+        assertTrue(filter.shouldDisplay("Gamma Alpha"));
+        assertFalse(filter.shouldDisplay("gamma noise"));
+
+        Map<String, Long> expected = new LinkedHashMap<>();
+        expected.put("noise", 1L);
+        expected.put("gamma", 2L);
+        expected.put("alpha", 1L);
+        assertEquals(expected, filter.getMatchStats());
+        assertEquals(0, filter.getMatchCount("beta"));
+    }
+
+    @Test
+    public void patternSwap_matchesOldLogicForNewSets() {
+        String[] filterOut = {"debug", "trace:"};
+        String[] important = {"go", "goal", "al"};
+        filter.setPatterns(new String[] {"x"}, new String[] {"y"});
+        filter.setFilterOutPatterns(filterOut);
+        filter.setImportantPatterns(important);
+        assertMatchesOld(filterOut, important, 19, 20_000);
+    }
+
+    @Test
+    public void emptyAndDuplicatePatterns_areIgnored() {
+        filter.setPatterns(new String[] {"", null, "off", "OFF"}, new String[] {"on", "", "On"});
+        assertArrayEquals(new String[] {"off"}, filter.getFilterOutPatterns());
+        assertArrayEquals(new String[] {"on"}, filter.getImportantPatterns());
+        assertTrue(filter.shouldDisplay("on"));
+        assertFalse(filter.shouldDisplay("on off"));
+    }
+
+    @Test
+    public void resetStats_keepsPatterns() {
+        filter.shouldDisplay("error");
+        filter.resetStats();
+        assertEquals(0, filter.getMatchCount("error"));
+        assertEquals(0, filter.getScannedCount());
+        assertArrayEquals(MessageFilter.DEFAULT_IMPORTANT_PATTERNS, filter.getImportantPatterns());
+    }
+}
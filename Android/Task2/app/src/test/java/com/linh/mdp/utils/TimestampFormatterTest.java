@@ -0,0 +1,116 @@
+package com.linh.mdp.utils;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link TimestampFormatter} against SimpleDateFormat, and its "re-render only when the second
+ * changes" cache. Anchored explicitly, so the tests do not depend on the device clocks.
+ */
+public class TimestampFormatterTest {
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    // 2026-10-18 13:45:07.250 UTC
+    private static final long ANCHOR_WALL_MILLIS = 1_792_331_107_250L;
+    private static final long ANCHOR_NANOS = 5_000_000_000_000L;
+
+    private final TimestampFormatter formatter = new TimestampFormatter(ANCHOR_WALL_MILLIS, ANCHOR_NANOS, UTC);
+
+    private static long at(long millisAfterAnchor) {
+        return ANCHOR_NANOS + millisAfterAnchor * NANOS_PER_MILLI;
+    }
+
+    private static String reference(long wallMillis, TimeZone timeZone) {
+        SimpleDateFormat format = new SimpleDateFormat("HH:mm:ss");
+        format.setTimeZone(timeZone);
+        return format.format(new Date(wallMillis));
+    }
+
+    // ============================================================================
+    // FORMATTING
+    // ============================================================================
+
+    @Test
+    public void anchor_formatsAsWallClock() {
+        assertEquals("13:45:07", formatter.format(ANCHOR_NANOS));
+        assertEquals("13:45:06", formatter.format(at(-251)));
+        assertEquals("13:46:07", formatter.format(at(60_000)));
+    }
+
+    @Test
+    public void midnight_wrapsToZero() {
+        long toMidnight = 10 * 3600_000L + 14 * 60_000L + 52_750L;
+        assertEquals("23:59:59", formatter.format(at(toMidnight - 1)));
+        assertEquals("00:00:00", formatter.format(at(toMidnight)));
+    }
+
+    @Test
+    public void timeZoneOffset_isApplied() {
+        TimestampFormatter singapore = new TimestampFormatter(ANCHOR_WALL_MILLIS, ANCHOR_NANOS,
+                TimeZone.getTimeZone("Asia/Singapore"));
+        assertEquals("21:45:07", singapore.format(ANCHOR_NANOS));
+    }
+
+    @Test
+    public void randomTimestamps_matchSimpleDateFormat() {
+        Random random = new Random(9);
+        TimeZone[] zones = {UTC, TimeZone.getTimeZone("Asia/Singapore"), TimeZone.getTimeZone("America/St_Johns")};
+        for (TimeZone zone : zones) {
+            TimestampFormatter zoned = new TimestampFormatter(ANCHOR_WALL_MILLIS, ANCHOR_NANOS, zone);
+            for (int i = 0; i < 5_000; i++) {
+                // Up to a year either side of the anchor, at nanosecond resolution
+                long offsetNanos = (long) ((random.nextDouble() * 2 - 1) * 365 * 86_400e9);
+                long wallMillis = ANCHOR_WALL_MILLIS + offsetNanos / NANOS_PER_MILLI;
+                assertEquals(zone.getID() + " +" + offsetNanos + "ns",
+                        reference(wallMillis, zone), zoned.format(ANCHOR_NANOS + offsetNanos));
+            }
+        }
+    }
+
+    // ============================================================================
+    // CACHE
+    // ============================================================================
+
+    @Test
+    public void sameSecond_returnsCachedString() {
+        String first = formatter.format(ANCHOR_NANOS);
+        // 13:45:07.250 up to 13:45:07.999
+        assertSame(first, formatter.format(at(1)));
+        assertSame(first, formatter.format(at(749)));
+        assertSame(first, formatter.format(at(749) + 999_999));
+
+        String next = formatter.format(at(750));
+        assertNotSame(first, next);
+        assertEquals("13:45:08", next);
+        assertSame(next, formatter.format(at(1_749)));
+    }
+
+    @Test
+    public void earlierSecond_isRenderedAgain() {
+        assertEquals("13:45:08", formatter.format(at(750)));
+        // Rows are bound in any order when scrolling back
+        assertEquals("13:45:07", formatter.format(at(0)));
+        assertEquals("13:45:08", formatter.format(at(800)));
+    }
+
+    @Test
+    public void formatTo_appendsAndSharesTheCache() {
+        String cached = formatter.format(ANCHOR_NANOS);
+        StringBuilder out = new StringBuilder("[");
+        formatter.formatTo(at(500), out);
+        out.append("] ");
+        formatter.formatTo(at(750), out);
+        assertEquals("[13:45:07] 13:45:08", out.toString());
+
+        // formatTo moved the cache to the next second; coming back renders a fresh String
+        String again = formatter.format(ANCHOR_NANOS);
+        assertEquals(cached, again);
+        assertSame(again, formatter.format(at(100)));
+    }
+}
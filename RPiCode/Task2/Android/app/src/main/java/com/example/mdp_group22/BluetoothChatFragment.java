@@ -1,9 +1,6 @@
 package com.example.mdp_group22;
 
-import android.content.BroadcastReceiver;
 import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.text.method.ScrollingMovementMethod;
@@ -16,8 +13,8 @@ import android.widget.ImageButton;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
 import com.example.mdp_group22.MainActivity;
 import com.example.mdp_group22.R;
@@ -36,6 +33,10 @@ public class BluetoothChatFragment extends Fragment {
 
     private final MainActivity mainActivity;
 
+    // the chat log shows every message; far behind, the oldest are dropped
+    private static final int MESSAGE_QUEUE_CAPACITY = 1024;
+    private EventBus.Subscription messageSubscription;
+
     public BluetoothChatFragment(MainActivity main) {
         this.mainActivity = main;
     }
@@ -43,8 +44,18 @@ public class BluetoothChatFragment extends Fragment {
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        LocalBroadcastManager.getInstance(this.requireContext())
-                .registerReceiver(this.mReceiver, new IntentFilter("incomingMessage"));
+        this.messageSubscription = BluetoothConnectionService.incomingMessages.subscribe(
+                ContextCompat.getMainExecutor(this.requireContext()), MESSAGE_QUEUE_CAPACITY,
+                this.mReceiver);
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (this.messageSubscription != null) {
+            this.messageSubscription.unsubscribe();
+            this.messageSubscription = null;
+        }
     }
 
     @Override
@@ -83,17 +94,12 @@ public class BluetoothChatFragment extends Fragment {
         return this.receivedMsgText;
     }
 
-    private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            String text = intent.getStringExtra("receivedMessage");
-            if (text != null) {
-                receivedMsgText.append(text + "\n");
-            } else {
-                Log.d(TAG, "Received intent without 'receivedMessage' extra or it is null");
-            }
+    private final EventBus.Subscriber<String> mReceiver = text -> {
+        if (this.receivedMsgText != null) {
+            this.receivedMsgText.append(text + "\n");
+        } else {
+            Log.d(TAG, "Received message before the chat view was created: " + text);
         }
-
     };
 
     private void debugMessage(String debugContext) {
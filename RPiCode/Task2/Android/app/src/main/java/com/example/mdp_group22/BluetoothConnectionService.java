@@ -21,7 +21,6 @@ import com.example.mdp_group22.R;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.charset.Charset;
 import java.util.UUID;
 
 public class BluetoothConnectionService {
@@ -39,7 +38,11 @@ public class BluetoothConnectionService {
     ProgressDialog mProgressDialog;
     Intent connectionStatus;
     public static boolean BluetoothConnectionStatus=false;
-    private static ConnectedThread mConnectedThread;
+    // every line received from the connected device
+    public static final EventBus<String> incomingMessages = new EventBus<>("incomingMessage");
+    private static volatile ConnectedThread mConnectedThread;
+    // most writes are short commands, so this is plenty of slack for a stalled link
+    private static final int SEND_QUEUE_CAPACITY = 64;
 
     public BluetoothConnectionService(Context context) {
         this.mBluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
@@ -170,6 +173,7 @@ public class BluetoothConnectionService {
         private final BluetoothSocket mSocket;
         private final InputStream inStream;
         private final OutputStream outStream;
+        private final OutboundChannel outbound;
         private boolean stopThread = false;
 
         @SuppressLint("MissingPermission")
@@ -202,34 +206,26 @@ public class BluetoothConnectionService {
 
             inStream = tmpIn;
             outStream = tmpOut;
+            outbound = new OutboundChannel("BluetoothWriter", outStream, SEND_QUEUE_CAPACITY);
         }
 
         public void run(){
             byte[] buffer = new byte[1024];
             int bytes;
-            StringBuilder messageBuffer = new StringBuilder();
+            // keeps any incomplete message until the rest of it arrives
+            LineAssembler lineAssembler = new LineAssembler();
+            LineAssembler.LineListener broadcaster = message -> {
+                Log.d(TAG, "InputStream: " + message);
+                incomingMessages.publish(message);
+            };
 
             while (true){
                 try {
                     bytes = inStream.read(buffer);
-                    String incomingmessage = new String(buffer, 0, bytes);
-                    Log.d(TAG, "InputStream: "+ incomingmessage);
-
-                    messageBuffer.append(incomingmessage);
-
-                    int delimiterIndex = messageBuffer.indexOf("\n");
-                    if (delimiterIndex != -1) {
-                        String[] messages = messageBuffer.toString().split("\n");
-                        for (String message : messages) {
-                            Intent incomingMessageIntent = new Intent("incomingMessage");
-                            incomingMessageIntent.putExtra("receivedMessage", message);
-
-                            LocalBroadcastManager.getInstance(mContext).sendBroadcast(incomingMessageIntent);
-                        }
-
-                        // Reset the message buffer
-                        messageBuffer = new StringBuilder();
+                    if (bytes < 0) {
+                        throw new IOException("End of stream");
                     }
+                    lineAssembler.feed(buffer, 0, bytes, broadcaster);
                 } catch (IOException e) {
                     Log.e(TAG, "Error reading input stream. "+e.getMessage());
 
@@ -241,26 +237,22 @@ public class BluetoothConnectionService {
                     connectionStatus.putExtra("Device", mDevice);
                     LocalBroadcastManager.getInstance(mContext).sendBroadcast(connectionStatus);
                     BluetoothConnectionStatus = false;
+                    outbound.close();
 
                     break;
                 }
             }
         }
 
-        public void write(byte[] bytes){
-            String text = new String(bytes, Charset.defaultCharset());
-            Log.d(TAG, "write: Writing to output stream: "+text);
-            try {
-                outStream.write(bytes);
-            } catch (IOException e) {
-                Log.e(TAG, "Error writing to output stream. "+e.getMessage());
-            }
+        public boolean write(byte[] bytes, OutboundChannel.Callback callback){
+            return outbound.send(bytes, callback);
         }
 
         public void cancel(){
             Log.d(TAG, "cancel: Closing Client Socket");
             try{
                 this.stopThread = true;
+                outbound.close();
                 mSocket.close();
             } catch(IOException e){
                 Log.e(TAG, "cancel: Failed to close ConnectThread mSocket " + e.getMessage());
@@ -280,10 +272,24 @@ public class BluetoothConnectionService {
         mConnectedThread.start();
     }
 
-    public static void write(byte[] out){
-        ConnectedThread tmp;
+    /*
+    Queue bytes for the connected device and return without waiting for the write.
+    Returns false if they could not be queued (not connected, or the send queue is full).
+     */
+    public static boolean write(byte[] out){
+        return write(out, null);
+    }
 
-        Log.d(TAG, "write: Write is called." );
-        mConnectedThread.write(out);
+    // As write(byte[]); callback is told on the writer thread once the bytes are written or fail
+    public static boolean write(byte[] out, OutboundChannel.Callback callback){
+        ConnectedThread connectedThread = mConnectedThread;
+        if (connectedThread == null) {
+            Log.w(TAG, "write: Not connected.");
+            if (callback != null) {
+                callback.onComplete(out, new IOException("Not connected"));
+            }
+            return false;
+        }
+        return connectedThread.write(out, callback);
     }
 }
@@ -0,0 +1,204 @@
+package com.example.mdp_group22;
+
+import android.util.Log;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/*
+Lightweight in-process replacement for LocalBroadcastManager fan-out.
+Each subscriber has its own executor and a bounded mailbox. A burst of events costs one
+executor hop per subscriber (the mailbox is drained in one go), not one per event.
+When a mailbox is full the oldest event is dropped. Events can also be conflated: a
+newer event with the same key as one still waiting is merged into it, e.g. so a slow UI
+only sees the latest robot pose.
+publish() may be called from any thread.
+ */
+public class EventBus<E> {
+    public interface Subscriber<E> {
+        void onEvent(E event);
+    }
+
+    public interface Conflater<E> {
+        // Events with equal non-null keys may be merged while waiting; null never conflates
+        Object keyOf(E event);
+
+        // Combine a waiting event with a newer one of the same key; null queues both
+        E merge(E waiting, E newer);
+    }
+
+    private static final String TAG = "EventBus";
+
+    private final String name;
+    private final CopyOnWriteArrayList<Mailbox<E>> mailboxes = new CopyOnWriteArrayList<>();
+
+    public EventBus(String name) {
+        this.name = name;
+    }
+
+    public Subscription subscribe(Executor executor, int capacity, Subscriber<E> subscriber) {
+        return this.subscribe(executor, capacity, null, subscriber);
+    }
+
+    public Subscription subscribe(Executor executor, int capacity, Conflater<E> conflater,
+                                  Subscriber<E> subscriber) {
+        Mailbox<E> mailbox = new Mailbox<>(this, executor, capacity, conflater, subscriber);
+        this.mailboxes.add(mailbox);
+        return mailbox;
+    }
+
+    public void publish(E event) {
+        for (Mailbox<E> mailbox : this.mailboxes) {
+            mailbox.offer(event);
+        }
+    }
+
+    public interface Subscription {
+        // Stop delivery; events still waiting are discarded
+        void unsubscribe();
+
+        long getDeliveredCount();
+
+        long getDroppedCount();
+
+        long getConflatedCount();
+    }
+
+    private static final class Mailbox<E> implements Subscription, Runnable {
+        private final EventBus<E> bus;
+        private final Executor executor;
+        private final Conflater<E> conflater;
+        private final Subscriber<E> subscriber;
+
+        // Ring buffer of waiting events, with their conflation keys
+        private final Object[] events;
+        private final Object[] keys;
+        private int head = 0;
+        private int size = 0;
+        private boolean scheduled = false;
+        private volatile boolean active = true;
+
+        private long deliveredCount = 0;
+        private long droppedCount = 0;
+        private long conflatedCount = 0;
+
+        Mailbox(EventBus<E> bus, Executor executor, int capacity, Conflater<E> conflater,
+                Subscriber<E> subscriber) {
+            this.bus = bus;
+            this.executor = executor;
+            this.conflater = conflater;
+            this.subscriber = subscriber;
+            this.events = new Object[capacity];
+            this.keys = new Object[capacity];
+        }
+
+        void offer(E event) {
+            Object key = this.conflater != null ? this.conflater.keyOf(event) : null;
+            boolean schedule;
+            synchronized (this) {
+                if (!this.active) {
+                    return;
+                }
+                if (key == null || !this.conflate(key, event)) {
+                    if (this.size == this.events.length) {
+                        this.removeFirst();
+                        this.droppedCount++;
+                    }
+                    int tail = (this.head + this.size) % this.events.length;
+                    this.events[tail] = event;
+                    this.keys[tail] = key;
+                    this.size++;
+                }
+                schedule = !this.scheduled;
+                this.scheduled = true;
+            }
+            if (schedule) {
+                this.executor.execute(this);
+            }
+        }
+
+        // Merge into the newest waiting event with this key, if any
+        @SuppressWarnings("unchecked")
+        private boolean conflate(Object key, E event) {
+            for (int i = this.size - 1; i >= 0; i--) {
+                int slot = (this.head + i) % this.events.length;
+                if (key.equals(this.keys[slot])) {
+                    E merged = this.conflater.merge((E) this.events[slot], event);
+                    if (merged == null) {
+                        return false;
+                    }
+                    this.events[slot] = merged;
+                    this.conflatedCount++;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        private E removeFirst() {
+            E event = (E) this.events[this.head];
+            this.events[this.head] = null;
+            this.keys[this.head] = null;
+            this.head = (this.head + 1) % this.events.length;
+            this.size--;
+            return event;
+        }
+
+        @Override
+        public void run() {
+            // Deliver what was waiting when the drain started, then yield the executor
+            int budget;
+            synchronized (this) {
+                budget = this.size;
+            }
+            while (true) {
+                E event;
+                synchronized (this) {
+                    if (this.size == 0 || !this.active) {
+                        this.scheduled = false;
+                        return;
+                    }
+                    if (budget-- == 0) {
+                        break;
+                    }
+                    event = this.removeFirst();
+                    this.deliveredCount++;
+                }
+                try {
+                    this.subscriber.onEvent(event);
+                } catch (RuntimeException e) {
+                    Log.e(TAG, this.bus.name + ": subscriber failed on " + event, e);
+                }
+            }
+            // More arrived meanwhile; still scheduled
+            this.executor.execute(this);
+        }
+
+        @Override
+        public void unsubscribe() {
+            this.bus.mailboxes.remove(this);
+            synchronized (this) {
+                this.active = false;
+                while (this.size > 0) {
+                    this.removeFirst();
+                }
+            }
+        }
+
+        @Override
+        public synchronized long getDeliveredCount() {
+            return this.deliveredCount;
+        }
+
+        @Override
+        public synchronized long getDroppedCount() {
+            return this.droppedCount;
+        }
+
+        @Override
+        public synchronized long getConflatedCount() {
+            return this.conflatedCount;
+        }
+    }
+}
@@ -14,6 +14,7 @@ import android.graphics.Paint;
 import android.graphics.Point;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.util.SparseArray;
 import android.view.DragEvent;
 import android.view.MotionEvent;
 import android.view.View;
@@ -111,11 +112,34 @@ public class GridMap extends View {
     private final Paint exploredColor = new Paint();
     private final Paint arrowColor = new Paint();
     private final Paint fastestPathColor = new Paint();
+    private final Paint gridNumberPaint = new Paint();
+    private final Paint obstacleTextPaint = new Paint();
+    /*
+    render cache: onDraw only blits these layers and draws the robot
+        1. staticLayer: grid lines and axis numbers, rebuilt when the view size changes
+        2. mapLayer: cells, obstacle ids / image ids and bearings, rebuilt when any of them changes
+     */
+    private Bitmap staticLayer;
+    private Bitmap mapLayer;
+    private boolean staticLayerDirty = true;
+    private boolean mapLayerDirty = true;
+    // robot bitmaps, decoded and scaled once per drawable
+    private final SparseArray<Bitmap> robotBitmaps = new SparseArray<>();
     private String robotDirection = "None";
     public static double robotBearing = 90;
     private int[] startCoord;
     private int[] curCoord;
     private ArrayList<int[]> obstacleCoord = new ArrayList<>();
+    /*
+    indexes over obstacleCoord, kept in sync by addObstacleCoord / removeObstacle / resetMap
+        1. obstacleCount: number of obstacles on each cell, indexed [x][y], for move validation
+        2. obstaclesById: obstacles sharing each id (ids may repeat, e.g. OB0 when placed by touch)
+        3. bearingInitials: first letter of each cell's bearing, indexed [x][y], for getAllObstacles
+     */
+    private final int[][] obstacleCount = new int[COL + 2][ROW + 2];
+    private final SparseArray<ArrayList<int[]>> obstaclesById = new SparseArray<>();
+    private final char[][] bearingInitials = new char[COL + 2][ROW + 2];
+    private String obstacleMessage;     // cached getAllObstacles result, null after a change
     private boolean canDrawRobot = false;
     private boolean startCoordStatus = false;
     private boolean setObstacleStatus = false;
@@ -155,6 +179,10 @@ public class GridMap extends View {
         this.exploredColor.setColor(getResources().getColor(R.color.exploredColor2));
         this.arrowColor.setColor(Color.BLACK);
         this.fastestPathColor.setColor(Color.MAGENTA);
+        this.gridNumberPaint.setTextSize(17);
+        this.gridNumberPaint.setColor(Color.BLACK);
+        this.obstacleTextPaint.setColor(Color.WHITE);
+        this.obstacleTextPaint.setTextAlign(Paint.Align.CENTER);
         this.startCoord = new int[]{-1, -1};
         this.curCoord = new int[]{-1, -1};
 
@@ -193,17 +221,57 @@ public class GridMap extends View {
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
+        if (getWidth() == 0 || getHeight() == 0) {
+            return;
+        }
         if (!mapDrawn) {
             this.createCell();
             mapDrawn = true;
         }
 
-        this.drawIndividualCell(canvas);
-        this.drawGridLines(canvas);
-        this.drawGridNumber(canvas);
+        // cells never overlap the grid lines, so the map layer can go on top of the static one
+        if (this.staticLayerDirty)
+            this.renderStaticLayer();
+        if (this.mapLayerDirty)
+            this.renderMapLayer();
+        canvas.drawBitmap(this.staticLayer, 0, 0, null);
+        canvas.drawBitmap(this.mapLayer, 0, 0, null);
         if (this.getCanDrawRobot())
             this.drawRobot(canvas, curCoord);
-        this.drawObstacles(canvas);
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        this.staticLayerDirty = true;
+        this.mapLayerDirty = true;
+    }
+
+    private void renderStaticLayer() {
+        this.staticLayer = this.obtainLayer(this.staticLayer);
+        Canvas layerCanvas = new Canvas(this.staticLayer);
+        this.drawGridLines(layerCanvas);
+        this.drawGridNumber(layerCanvas);
+        this.staticLayerDirty = false;
+    }
+
+    private void renderMapLayer() {
+        this.mapLayer = this.obtainLayer(this.mapLayer);
+        Canvas layerCanvas = new Canvas(this.mapLayer);
+        this.drawIndividualCell(layerCanvas);
+        this.drawObstacles(layerCanvas);
+        this.mapLayerDirty = false;
+    }
+
+    // reuse the layer bitmap (cleared) while the view size is unchanged
+    private Bitmap obtainLayer(Bitmap layer) {
+        if (layer != null && layer.getWidth() == getWidth() && layer.getHeight() == getHeight()) {
+            layer.eraseColor(Color.TRANSPARENT);
+            return layer;
+        }
+        if (layer != null)
+            layer.recycle();
+        return Bitmap.createBitmap(getWidth(), getHeight(), Bitmap.Config.ARGB_8888);
     }
 
     private void createCell() {
@@ -220,6 +288,8 @@ public class GridMap extends View {
                         unexploredColor,
                         "unexplored"
                 );
+        this.staticLayerDirty = true;
+        this.mapLayerDirty = true;
     }
 
     private void drawIndividualCell(Canvas canvas) {
@@ -256,9 +326,7 @@ public class GridMap extends View {
     }
 
     private void drawGridNumber(Canvas canvas) {
-        Paint textPaint = new Paint();
-        textPaint.setTextSize(17);
-        textPaint.setColor(Color.BLACK);
+        Paint textPaint = this.gridNumberPaint;
 
         for (int x = 1; x <= COL; x++) {
             if (x >= 10)
@@ -303,15 +371,24 @@ public class GridMap extends View {
         this.canDrawRobot = canDrawRobot;
     }
 
+    private Bitmap getRobotBitmap(int drawableId) {
+        Bitmap bitmap = this.robotBitmaps.get(drawableId);
+        if (bitmap == null) {
+            Bitmap decoded = BitmapFactory.decodeResource(getResources(), drawableId);
+            bitmap = Bitmap.createScaledBitmap(decoded, 51, 51, true);
+            if (bitmap != decoded)
+                decoded.recycle();
+            this.robotBitmaps.put(drawableId, bitmap);
+        }
+        return bitmap;
+    }
+
     private void drawRobot(Canvas canvas, int[] curCoord) {
         float xCoord, yCoord;
-        BitmapFactory.Options op = new BitmapFactory.Options();
-        Bitmap bm, mapscalable;
         int robotX = curCoord[0];
         int robotY = curCoord[1];
 
         if (! (robotX == -1 && robotY == -1)) {
-            op.inMutable = true;
             switch (this.getRobotDirection()) {
                 case "up":
                     if (robotY < 2 || robotY > 20 || robotX < 1 || robotX > 19) {
@@ -324,9 +401,7 @@ public class GridMap extends View {
                     } else {
                         xCoord = cells[robotX][20 - robotY].startX;
                         yCoord = cells[robotX][20 - robotY].startY;
-                        bm = BitmapFactory.decodeResource(getResources(),R.drawable.car_face_up, op);
-                        mapscalable = Bitmap.createScaledBitmap(bm, 51,51, true);
-                        canvas.drawBitmap(mapscalable, xCoord, yCoord, null);
+                        canvas.drawBitmap(this.getRobotBitmap(R.drawable.car_face_up), xCoord, yCoord, null);
                     }
                     break;
 
@@ -341,9 +416,7 @@ public class GridMap extends View {
                     } else {
                         xCoord = cells[robotX - 1][20 - (robotY + 1)].startX;
                         yCoord = cells[robotX - 1][20 - (robotY + 1)].startY;
-                        bm = BitmapFactory.decodeResource(getResources(),R.drawable.car_face_down, op);
-                        mapscalable = Bitmap.createScaledBitmap(bm, 51,51, true);
-                        canvas.drawBitmap(mapscalable, xCoord, yCoord, null);
+                        canvas.drawBitmap(this.getRobotBitmap(R.drawable.car_face_down), xCoord, yCoord, null);
 
                     }
                     break;
@@ -358,9 +431,7 @@ public class GridMap extends View {
                     } else {
                         xCoord = cells[robotX - 1][20 - robotY].startX;
                         yCoord = cells[robotX - 1][20 - robotY].startY;
-                        bm = BitmapFactory.decodeResource(getResources(),R.drawable.car_face_right, op);
-                        mapscalable = Bitmap.createScaledBitmap(bm, 51,51, true);
-                        canvas.drawBitmap(mapscalable, xCoord, yCoord, null);
+                        canvas.drawBitmap(this.getRobotBitmap(R.drawable.car_face_right), xCoord, yCoord, null);
                     }
                     break;
 
@@ -375,9 +446,7 @@ public class GridMap extends View {
                     } else {
                         xCoord = cells[robotX][20 - (robotY - 1)].startX;
                         yCoord = cells[robotX][20 - (robotY + 1)].startY;
-                        bm = BitmapFactory.decodeResource(getResources(),R.drawable.car_face_left, op);
-                        mapscalable = Bitmap.createScaledBitmap(bm, 51,51, true);
-                        canvas.drawBitmap(mapscalable, xCoord, yCoord, null);
+                        canvas.drawBitmap(this.getRobotBitmap(R.drawable.car_face_left), xCoord, yCoord, null);
                     }
                     break;
 
@@ -393,14 +462,17 @@ public class GridMap extends View {
     }
 
     private void drawObstacles(Canvas canvas) {
-        Paint textPaint = new Paint();
-        textPaint.setColor(Color.WHITE);
-        textPaint.setTextAlign(Paint.Align.CENTER);
+        Paint textPaint = this.obstacleTextPaint;
 
         for (int i = 0; i < 20; i++) {
             for (int j = 0; j < 20; j++) {
                 String displayedText;
-                if (! IMAGE_LIST[19 - i][j].equals("")) {
+                // nothing to draw on an empty cell
+                if (IMAGE_LIST[19 - i][j].isEmpty() && OBSTACLE_LIST[19 - i][j].isEmpty()
+                        && IMAGE_BEARING[19 - i][j].isEmpty()) {
+                    continue;
+                }
+                if (! IMAGE_LIST[19 - i][j].isEmpty()) {
                     displayedText = IMAGE_LIST[19 - i][j];
                     textPaint.setTextSize(17);
                     canvas.drawText(
@@ -769,10 +841,45 @@ public class GridMap extends View {
         int parsedID = Integer.parseInt(obstacleID.substring(2));
         int[] obstacleCoord = new int[]{col, row, parsedID};
         this.obstacleCoord.add(obstacleCoord);
+        this.indexObstacle(obstacleCoord);
         this.setObstacleID(obstacleID, col, row);
         this.updateCells("obstacle", col, row);
     }
 
+    private void indexObstacle(int[] obstacle) {
+        this.obstacleCount[obstacle[0]][obstacle[1]]++;
+        ArrayList<int[]> sameID = this.obstaclesById.get(obstacle[2]);
+        if (sameID == null) {
+            sameID = new ArrayList<>(1);
+            this.obstaclesById.put(obstacle[2], sameID);
+        }
+        sameID.add(obstacle);
+        this.obstacleMessage = null;
+    }
+
+    private void unindexObstacle(int[] obstacle) {
+        this.obstacleCount[obstacle[0]][obstacle[1]]--;
+        ArrayList<int[]> sameID = this.obstaclesById.get(obstacle[2]);
+        if (sameID != null) {
+            sameID.remove(obstacle);
+            if (sameID.isEmpty())
+                this.obstaclesById.remove(obstacle[2]);
+        }
+        this.obstacleMessage = null;
+    }
+
+    private void clearObstacleIndex() {
+        for (int[] column : this.obstacleCount)
+            Arrays.fill(column, 0);
+        this.obstaclesById.clear();
+        this.obstacleMessage = null;
+    }
+
+    private boolean hasObstacleAt(int x, int y) {
+        return x >= 0 && x < this.obstacleCount.length && y >= 0 && y < this.obstacleCount[x].length
+                && this.obstacleCount[x][y] > 0;
+    }
+
     public ArrayList<int[]> getObstacleCoord() {
         return this.obstacleCoord;
     }
@@ -828,17 +935,17 @@ public class GridMap extends View {
     }
 
     public void removeObstacle(String obstacleID, int x, int y) {
-        int obstacleX, obstacleY;
-        for (int i = 0; i < this.getObstacleCoord().size(); i ++) {
-            int[] currentObstacle = this.getObstacleCoord().get(i);
-            int[] targetObstacle = new int[]{x, y, Integer.parseInt(obstacleID.substring(2))};
-            if (Arrays.equals(currentObstacle, targetObstacle)) {
-                obstacleX = currentObstacle[0];
-                obstacleY = currentObstacle[1];
-                this.setObstacleID("", obstacleX, obstacleY);
-                this.setImageBearing("", obstacleX, obstacleY);
-                this.updateCells("unexplored", obstacleX, obstacleY);
+        ArrayList<int[]> sameID = this.obstaclesById.get(Integer.parseInt(obstacleID.substring(2)));
+        if (sameID == null) {
+            return;
+        }
+        for (int[] currentObstacle : sameID) {
+            if (currentObstacle[0] == x && currentObstacle[1] == y) {
+                this.setObstacleID("", x, y);
+                this.setImageBearing("", x, y);
+                this.updateCells("unexplored", x, y);
                 this.getObstacleCoord().remove(currentObstacle);
+                this.unindexObstacle(currentObstacle);
                 return;
             }
         }
@@ -875,6 +982,7 @@ public class GridMap extends View {
         this.setCanDrawRobot(false);
         GridMap.robotBearing = 90;
         this.obstacleCoord = new ArrayList<>();
+        this.clearObstacleIndex();
         mapDrawn = !hardReset;
 
         for (int i = 1; i <= 20; i++) {
@@ -1012,47 +1120,33 @@ public class GridMap extends View {
         this.setCurCoord(nextCoord[0], nextCoord[1], robotDirection);
     }
     public boolean validMove(int[] robotCoord, String direction) {
-        ArrayList<int[]> obstacleCoords = this.getObstacleCoord();
-        // examine for each obstacle on the map
-        for (int[] currentObstacle : obstacleCoords) {
-            int obstacleX = currentObstacle[0];
-            int obstacleY = currentObstacle[1];
-
-            /*
-            manual way to check if robot is sitting on the obstacle
-            since robot coordinate is based on the cell occupied by its top left wheel,
-            depending on the direction, the cells to be examined are different
-             */
-            switch (direction) {
-                case "up":
-                    if (robotCoord[1] - 1 <= obstacleY && obstacleY <= robotCoord[1]
-                            && robotCoord[0] <= obstacleX && obstacleX <= robotCoord[0] + 1) {
-                        return false;
-                    }
-                    break;
-                case "down":
-                    if (robotCoord[1] <= obstacleY && obstacleY <= robotCoord[1] + 1
-                            && robotCoord[0] - 1 <= obstacleX && obstacleX <= robotCoord[0]) {
-                        return false;
-                    }
-                    break;
-                case "left":
-                    if (robotCoord[0] <= obstacleX && obstacleX <= robotCoord[0] + 1
-                            && robotCoord[1] <= obstacleY && obstacleY <= robotCoord[1] + 1) {
-                        return false;
-                    }
-                    break;
-                case "right":
-                    if (robotCoord[0] - 1 <= obstacleX && obstacleX <= robotCoord[0]
-                            && robotCoord[1] - 1 <= obstacleY && obstacleY <= robotCoord[1]) {
-                        return false;
-                    }
-                    break;
-                default:
-                    throw new IllegalArgumentException("Invalid direction: " + direction);
-            }
+        /*
+        robot coordinate is based on the cell occupied by its top left wheel,
+        depending on the direction, the 2x2 cells to be examined are different
+         */
+        int left, bottom;
+        switch (direction) {
+            case "up":
+                left = robotCoord[0];
+                bottom = robotCoord[1] - 1;
+                break;
+            case "down":
+                left = robotCoord[0] - 1;
+                bottom = robotCoord[1];
+                break;
+            case "left":
+                left = robotCoord[0];
+                bottom = robotCoord[1];
+                break;
+            case "right":
+                left = robotCoord[0] - 1;
+                bottom = robotCoord[1] - 1;
+                break;
+            default:
+                throw new IllegalArgumentException("Invalid direction: " + direction);
         }
-        return true;
+        return !(this.hasObstacleAt(left, bottom) || this.hasObstacleAt(left + 1, bottom)
+                || this.hasObstacleAt(left, bottom + 1) || this.hasObstacleAt(left + 1, bottom + 1));
     }
 
     private static class MyDragShadowBuilder extends DragShadowBuilder {
@@ -1096,50 +1190,64 @@ public class GridMap extends View {
     }
 
     public String getAllObstacles() {
-        StringBuilder message = new StringBuilder();
-        for (int i = 0; i < this.getObstacleCoord().size(); i ++) {
-            int[] currentObstacle = this.getObstacleCoord().get(i);
-            String imageBearing = IMAGE_BEARING[currentObstacle[1] - 1][currentObstacle[0] - 1];
-
-            message.append(currentObstacle[0]).append(",").append(currentObstacle[1])
-                    .append(",").append(imageBearing.charAt(0)).append(",")
-                    .append(currentObstacle[2]).append("|");
+        if (this.obstacleMessage != null) {
+            return this.obstacleMessage;
         }
-        return message.toString();
+        StringBuilder message = new StringBuilder(this.obstacleCoord.size() * 12);
+        for (int[] currentObstacle : this.obstacleCoord) {
+            char bearing = this.bearingInitials[currentObstacle[0]][currentObstacle[1]];
+            message.append(currentObstacle[0]).append(",").append(currentObstacle[1]).append(",");
+            if (bearing != 0)
+                message.append(bearing);
+            message.append(",").append(currentObstacle[2]).append("|");
+        }
+        this.obstacleMessage = message.toString();
+        return this.obstacleMessage;
     }
     public void updateImageID(String obstacleID, String imageID) {
-        int x = -1;     // x-cordinate (also the column)
-        int y = -1;     // y-cordinate (also the row)
-        for (int i = 0; i < this.getObstacleCoord().size(); i ++) {
-            /*
-            currentObstacle is a int[3] array
-            currentObstacle[0] is the x-coord of the obstacle
-            currentObstacle[1] is the y-coord of the obstacle
-            currentObstacle[2] is the obstacle ID (with "OB" stripped) of the obstacle
-             */
-            int[] currentObstacle = this.getObstacleCoord().get(i);
-            if (Integer.parseInt(obstacleID) == currentObstacle[2]) {
-                x = currentObstacle[0];
-                y = currentObstacle[1];
-                this.setImageID(imageID, x, y);
+        this.updateImageID(Integer.parseInt(obstacleID), imageID);
+    }
+
+    public void updateImageID(int obstacleID, String imageID) {
+        /*
+        obstacles with this id, each a int[3] array
+        currentObstacle[0] is the x-coord of the obstacle
+        currentObstacle[1] is the y-coord of the obstacle
+        currentObstacle[2] is the obstacle ID (with "OB" stripped) of the obstacle
+         */
+        ArrayList<int[]> sameID = this.obstaclesById.get(obstacleID);
+        if (sameID != null) {
+            for (int[] currentObstacle : sameID) {
+                this.setImageID(imageID, currentObstacle[0], currentObstacle[1]);
             }
         }
         this.invalidate();
     }
     public void setImageID(String imageID, int x, int y) {
         IMAGE_LIST[y - 1][x - 1] = imageID;
+        this.mapLayerDirty = true;
     }
 
     public void setObstacleID(String obstacleID, int x, int y) {
         OBSTACLE_LIST[y - 1][x - 1] = obstacleID;
+        this.mapLayerDirty = true;
     }
 
     public void setImageBearing(String imageBearing, int x, int y) {
         IMAGE_BEARING[y - 1][x - 1] = imageBearing;
+        this.bearingInitials[x][y] = imageBearing.isEmpty() ? 0 : imageBearing.charAt(0);
+        this.obstacleMessage = null;
+        this.mapLayerDirty = true;
     }
 
     public void updateCells(String type, int x, int y) {
-        cells[x][ROW - y].setType(type);
+        Cell cell = cells[x][ROW - y];
+        // re-exploring an explored cell is the common case while the robot moves
+        if (type.equals(cell.getType())) {
+            return;
+        }
+        cell.setType(type);
+        this.mapLayerDirty = true;
     }
     public String getObstacleID(int x, int y) {
         return OBSTACLE_LIST[y - 1][x - 1];
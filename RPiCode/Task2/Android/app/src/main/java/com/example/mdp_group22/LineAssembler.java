@@ -0,0 +1,123 @@
+package com.example.mdp_group22;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+Splits a byte stream into '\n'-terminated UTF-8 lines.
+Only the newly read bytes are scanned for the delimiter; an incomplete line is carried over
+to the next read instead of being dropped. Lines are decoded straight from the read buffer
+(or the carry-over buffer) into a reused CharBuffer, so the only String made is the line itself.
+'\n' never occurs inside a multi-byte UTF-8 sequence, so characters split across reads are safe.
+Used by a single reader thread.
+ */
+public class LineAssembler {
+    public interface LineListener {
+        void onLine(String line);
+    }
+
+    // A line longer than this is discarded up to its next delimiter
+    private static final int MAX_LINE_BYTES = 64 * 1024;
+
+    private byte[] pending = new byte[1024];
+    private int pendingLength = 0;
+    private boolean discarding = false;
+
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private CharBuffer chars = CharBuffer.allocate(1024);
+    private ByteBuffer wrapped;
+
+    private long lineCount = 0;
+    private long discardedLineCount = 0;
+
+    /*
+    Feed length bytes of data starting at offset; listener gets every line completed by them,
+    without the delimiter. Empty lines are skipped.
+     */
+    public void feed(byte[] data, int offset, int length, LineListener listener) {
+        int end = offset + length;
+        int lineStart = offset;
+        for (int i = offset; i < end; i++) {
+            if (data[i] != '\n') {
+                continue;
+            }
+            if (this.discarding) {
+                this.discarding = false;
+            } else if (this.pendingLength == 0) {
+                this.emit(data, lineStart, i - lineStart, listener);
+            } else {
+                this.carry(data, lineStart, i - lineStart);
+                if (!this.discarding) {
+                    this.emit(this.pending, 0, this.pendingLength, listener);
+                }
+                this.discarding = false;
+                this.pendingLength = 0;
+            }
+            lineStart = i + 1;
+        }
+        if (lineStart < end && !this.discarding) {
+            this.carry(data, lineStart, end - lineStart);
+        }
+    }
+
+    // Append to the incomplete line, giving up on it if it grows too long
+    private void carry(byte[] data, int offset, int length) {
+        int needed = this.pendingLength + length;
+        if (needed > MAX_LINE_BYTES) {
+            this.pendingLength = 0;
+            this.discarding = true;
+            this.discardedLineCount++;
+            return;
+        }
+        if (needed > this.pending.length) {
+            this.pending = Arrays.copyOf(this.pending, Math.max(needed, this.pending.length * 2));
+        }
+        System.arraycopy(data, offset, this.pending, this.pendingLength, length);
+        this.pendingLength = needed;
+    }
+
+    private void emit(byte[] data, int offset, int length, LineListener listener) {
+        if (length == 0) {
+            return;
+        }
+        // UTF-8 never decodes to more chars than bytes
+        if (this.chars.capacity() < length) {
+            this.chars = CharBuffer.allocate(Math.max(length, this.chars.capacity() * 2));
+        }
+        if (this.wrapped == null || this.wrapped.array() != data) {
+            this.wrapped = ByteBuffer.wrap(data);
+        }
+        this.wrapped.limit(offset + length).position(offset);
+        this.chars.clear();
+        this.decoder.reset();
+        this.decoder.decode(this.wrapped, this.chars, true);
+        this.decoder.flush(this.chars);
+        this.chars.flip();
+        this.lineCount++;
+        listener.onLine(this.chars.toString());
+    }
+
+    // Drop any incomplete line, e.g. when the connection is lost
+    public void reset() {
+        this.pendingLength = 0;
+        this.discarding = false;
+    }
+
+    public int getPendingLength() {
+        return this.pendingLength;
+    }
+
+    public long getLineCount() {
+        return this.lineCount;
+    }
+
+    public long getDiscardedLineCount() {
+        return this.discardedLineCount;
+    }
+}
@@ -19,6 +19,7 @@ import android.widget.ToggleButton;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
 import androidx.fragment.app.FragmentPagerAdapter;
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 import androidx.viewpager.widget.ViewPager;
@@ -53,6 +54,9 @@ public class MainActivity extends AppCompatActivity {
     private BluetoothChatFragment btFragment;
     private MapTabFragment mapTabFragment;
     private ControlFragment controlFragment;
+    // incoming messages; when the UI falls behind, waiting UPDATEs are merged into the latest pose
+    private static final int MESSAGE_QUEUE_CAPACITY = 256;
+    private EventBus.Subscription messageSubscription;
 
 
     /**
@@ -96,9 +100,9 @@ public class MainActivity extends AppCompatActivity {
         TabLayout tabs = findViewById(R.id.tabs);
         tabs.setupWithViewPager(viewPager);
 
-        LocalBroadcastManager
-                .getInstance(this)
-                .registerReceiver(messageReceiver, new IntentFilter("incomingMessage"));
+        this.messageSubscription = BluetoothConnectionService.incomingMessages.subscribe(
+                ContextCompat.getMainExecutor(this), MESSAGE_QUEUE_CAPACITY,
+                poseConflater, messageReceiver);
 
         // Set up sharedPreferences
         this.context = getApplicationContext();
@@ -245,40 +249,81 @@ public class MainActivity extends AppCompatActivity {
         }
     };
 
-    BroadcastReceiver messageReceiver = new BroadcastReceiver() {
+    /*
+    UPDATE bearings are turns relative to the current heading, and GridMap.moveRobot reverts
+    the turn of a rejected move and paints the trail from the previous cell, so poses cannot
+    be summed into one. Waiting poses are batched instead: one delivery carries them
+    newline-separated and messageReceiver applies each in order. RPi messages are single
+    lines, so the separator cannot occur inside one.
+     */
+    private static final int MAX_BATCHED_POSES = 32;
+
+    private final EventBus.Conflater<String> poseConflater = new EventBus.Conflater<String>() {
         @Override
-        public void onReceive(Context context, Intent intent) {
-            String message = intent.getStringExtra("receivedMessage");
+        public Object keyOf(String message) {
+            return MessageDecoder.typeOf(message) == MessageDecoder.TYPE_POSE ? "UPDATE" : null;
+        }
+
+        @Override
+        public String merge(String waiting, String newer) {
+            int poses = 1;
+            for (int i = waiting.indexOf('\n'); i >= 0; i = waiting.indexOf('\n', i + 1)) {
+                poses++;
+            }
+            // a full batch is delivered as it is and the newer pose starts the next one
+            return poses < MAX_BATCHED_POSES ? waiting + '\n' + newer : null;
+        }
+    };
+
+    // Only used on the main thread, by messageReceiver
+    private final MessageDecoder messageDecoder = new MessageDecoder();
+
+    private final MessageDecoder.Handler messageHandler = new MessageDecoder.Handler() {
+        @Override
+        public void onImageUpdate(MessageDecoder.ImageUpdate update) {
+            gridMap.updateImageID(update.obstacleId, update.imageId);
+        }
+
+        @Override
+        public void onPoseUpdate(MessageDecoder.PoseUpdate update) {
+            gridMap.moveRobot(new int[]{update.x, update.y}, update.bearing);
+        }
+
+        @Override
+        public void onEnded() {
+            ToggleButton imgRecBtn = findViewById(R.id.exploreToggleBtn2);
+            ToggleButton fastestCarBtn = findViewById(R.id.fastestToggleBtn2);
+
+            if (imgRecBtn.isChecked()) {
+                imgRecTimerFlag = true;
+                imgRecBtn.setChecked(false);
+                robotStatusText.setText(R.string.image_rec_end);
+                ControlFragment.timerHandler.removeCallbacks(controlFragment.imgRecTimer);
+            } else if (fastestCarBtn.isChecked()) {
+                imgRecTimerFlag = true;
+                fastestCarBtn.setChecked(false);
+                robotStatusText.setText(R.string.fastest_car_end);
+                ControlFragment.timerHandler.removeCallbacks(controlFragment.fastestCarTimer);
+            }
+        }
+    };
+
+    EventBus.Subscriber<String> messageReceiver = new EventBus.Subscriber<String>() {
+        @Override
+        public void onEvent(String message) {
+            // a batch from poseConflater holds several messages, applied in arrival order
+            int start = 0;
+            for (int end = message.indexOf('\n'); end >= 0; end = message.indexOf('\n', start)) {
+                this.decode(message.substring(start, end));
+                start = end + 1;
+            }
+            this.decode(start == 0 ? message : message.substring(start));
+        }
+
+        private void decode(String message) {
             System.out.println("debug" + message);
-            if (message.contains("IMG")) {
-                String[] cmd = message.split("-");
-                gridMap.updateImageID(cmd[1], cmd[2]);
-            } else if (message.contains("UPDATE")) {
-                String[] cmd = message.split("-");
-                int xPos = (int) Float.parseFloat(cmd[1]);
-                int yPos = (int) Float.parseFloat(cmd[2]);
-                double bearing;
-                if (cmd[3].contains("N")) {
-                    bearing = (double) -1 * Float.parseFloat(cmd[3].substring(1));
-                } else {
-                    bearing = Float.parseFloat(cmd[3]);
-                }
-                gridMap.moveRobot(new int[]{xPos, yPos}, bearing);
-            } else if (message.equals("ENDED")) {
-                ToggleButton imgRecBtn = findViewById(R.id.exploreToggleBtn2);
-                ToggleButton fastestCarBtn = findViewById(R.id.fastestToggleBtn2);
-
-                if (imgRecBtn.isChecked()) {
-                    imgRecTimerFlag = true;
-                    imgRecBtn.setChecked(false);
-                    robotStatusText.setText(R.string.image_rec_end);
-                    ControlFragment.timerHandler.removeCallbacks(controlFragment.imgRecTimer);
-                } else if (fastestCarBtn.isChecked()) {
-                    imgRecTimerFlag = true;
-                    fastestCarBtn.setChecked(false);
-                    robotStatusText.setText(R.string.fastest_car_end);
-                    ControlFragment.timerHandler.removeCallbacks(controlFragment.fastestCarTimer);
-                }
+            if (!messageDecoder.decode(message, messageHandler)) {
+                Log.w(TAG, "Ignoring malformed message (" + messageDecoder.getError() + "): " + message);
             }
         }
     };
@@ -297,8 +342,11 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        if (this.messageSubscription != null) {
+            this.messageSubscription.unsubscribe();
+            this.messageSubscription = null;
+        }
         try {
-            LocalBroadcastManager.getInstance(this).unregisterReceiver(messageReceiver);
             LocalBroadcastManager.getInstance(this).unregisterReceiver(mBroadcastReceiver5);
         } catch (IllegalArgumentException e) {
             e.printStackTrace();
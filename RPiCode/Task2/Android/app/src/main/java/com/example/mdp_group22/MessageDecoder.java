@@ -0,0 +1,320 @@
+package com.example.mdp_group22;
+
+/*
+Table-driven decoder for the text commands received from the RPi:
+    IMG-<obstacle id>-<image id>        image recognised on an obstacle
+    UPDATE-<x>-<y>-<bearing>            robot pose; bearing "N<deg>" means -<deg>
+    ENDED                               run finished
+Fields are '-' separated and the command keyword may appear anywhere in the first field.
+The message is scanned once to find the field boundaries, numbers are parsed in place
+(no split, regex or substrings) and ranges are checked here, so handlers get typed,
+validated values.
+Not thread-safe; use one instance per thread.
+ */
+public class MessageDecoder {
+    public interface Handler {
+        void onImageUpdate(ImageUpdate update);
+
+        void onPoseUpdate(PoseUpdate update);
+
+        void onEnded();
+    }
+
+    public static final class ImageUpdate {
+        public final int obstacleId;
+        public final String imageId;
+
+        ImageUpdate(int obstacleId, String imageId) {
+            this.obstacleId = obstacleId;
+            this.imageId = imageId;
+        }
+    }
+
+    public static final class PoseUpdate {
+        public final int x;
+        public final int y;
+        public final float bearing;     // turn relative to the current heading, in degrees
+
+        PoseUpdate(int x, int y, float bearing) {
+            this.x = x;
+            this.y = y;
+            this.bearing = bearing;
+        }
+
+        // Encode back into the wire format
+        public String toMessage() {
+            String bearingText = this.bearing < 0 ? "N" + (-this.bearing) : String.valueOf(this.bearing);
+            return "UPDATE-" + this.x + "-" + this.y + "-" + bearingText;
+        }
+    }
+
+    public static final int TYPE_NONE = 0;
+    public static final int TYPE_IMAGE = 1;
+    public static final int TYPE_POSE = 2;
+    public static final int TYPE_ENDED = 3;
+
+    private static final class Command {
+        final String keyword;
+        final int type;
+        final int minFields;
+        final boolean exact;    // the whole message must equal the keyword
+
+        Command(String keyword, int type, int minFields, boolean exact) {
+            this.keyword = keyword;
+            this.type = type;
+            this.minFields = minFields;
+            this.exact = exact;
+        }
+    }
+
+    // Checked in order; the first match wins
+    private static final Command[] COMMANDS = {
+            new Command("IMG", TYPE_IMAGE, 3, false),
+            new Command("UPDATE", TYPE_POSE, 4, false),
+            new Command("ENDED", TYPE_ENDED, 1, true),
+    };
+
+    // Arena bounds for a pose, and the largest turn accepted in one update
+    private static final int MAX_COORD = 20;
+    private static final float MAX_BEARING = 360;
+    private static final int MAX_FIELDS = 8;
+
+    private final int[] fieldStart = new int[MAX_FIELDS];
+    private final int[] fieldEnd = new int[MAX_FIELDS];
+    private int fieldCount;
+    private String message;
+    private String error;
+
+    private long decodedCount = 0;
+    private long invalidCount = 0;
+    private long ignoredCount = 0;
+
+    // Command type of a message without decoding it; safe from any thread
+    public static int typeOf(String message) {
+        Command command = match(message, firstFieldEnd(message));
+        return command != null ? command.type : TYPE_NONE;
+    }
+
+    private static int firstFieldEnd(String message) {
+        int dash = message.indexOf('-');
+        return dash < 0 ? message.length() : dash;
+    }
+
+    private static Command match(String message, int firstFieldEnd) {
+        for (Command command : COMMANDS) {
+            if (command.exact) {
+                if (message.equals(command.keyword)) {
+                    return command;
+                }
+            } else if (indexOf(message, command.keyword, firstFieldEnd) >= 0) {
+                return command;
+            }
+        }
+        return null;
+    }
+
+    private static int indexOf(String message, String keyword, int end) {
+        int last = end - keyword.length();
+        for (int i = 0; i <= last; i++) {
+            if (message.regionMatches(i, keyword, 0, keyword.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /*
+    Decode one message and pass the result to handler.
+    Returns false if it is a known command with bad fields (see getError()); messages
+    that are not commands are ignored and return true.
+     */
+    public boolean decode(String message, Handler handler) {
+        this.message = message;
+        this.error = null;
+        this.split();
+
+        Command command = match(message, this.fieldEnd[0]);
+        if (command == null) {
+            this.ignoredCount++;
+            return true;
+        }
+        if (this.fieldCount < command.minFields) {
+            return this.invalid("expected " + command.minFields + " fields");
+        }
+
+        switch (command.type) {
+            case TYPE_IMAGE:
+                ImageUpdate image = this.decodeImage();
+                if (image == null) {
+                    return false;
+                }
+                this.decodedCount++;
+                handler.onImageUpdate(image);
+                return true;
+            case TYPE_POSE:
+                PoseUpdate pose = this.decodePose();
+                if (pose == null) {
+                    return false;
+                }
+                this.decodedCount++;
+                handler.onPoseUpdate(pose);
+                return true;
+            case TYPE_ENDED:
+                this.decodedCount++;
+                handler.onEnded();
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    // Decode a pose message, or null if it is not a valid one
+    public PoseUpdate decodePose(String message) {
+        this.message = message;
+        this.error = null;
+        this.split();
+        Command command = match(message, this.fieldEnd[0]);
+        if (command == null || command.type != TYPE_POSE || this.fieldCount < command.minFields) {
+            return null;
+        }
+        return this.decodePose();
+    }
+
+    private ImageUpdate decodeImage() {
+        int obstacleId = this.parseInt(1);
+        if (obstacleId < 0) {
+            this.invalid("bad obstacle id");
+            return null;
+        }
+        if (this.fieldStart[2] == this.fieldEnd[2]) {
+            this.invalid("missing image id");
+            return null;
+        }
+        return new ImageUpdate(obstacleId, this.message.substring(this.fieldStart[2], this.fieldEnd[2]));
+    }
+
+    private PoseUpdate decodePose() {
+        float x = this.parseFloat(1);
+        float y = this.parseFloat(2);
+        float bearing = this.parseFloat(3);
+        // Written so that NaN (unparsable) fails too
+        if (!(x >= 0 && x <= MAX_COORD && y >= 0 && y <= MAX_COORD)) {
+            this.invalid("position out of range");
+            return null;
+        }
+        if (!(Math.abs(bearing) <= MAX_BEARING)) {
+            this.invalid("bearing out of range");
+            return null;
+        }
+        return new PoseUpdate((int) x, (int) y, bearing);
+    }
+
+    // Record the '-' separated field bounds, trimmed of surrounding whitespace
+    private void split() {
+        String message = this.message;
+        int length = message.length();
+        int start = 0;
+        this.fieldCount = 0;
+        for (int i = 0; i <= length && this.fieldCount < MAX_FIELDS; i++) {
+            if (i == length || message.charAt(i) == '-') {
+                int s = start;
+                int e = i;
+                while (s < e && message.charAt(s) <= ' ') s++;
+                while (e > s && message.charAt(e - 1) <= ' ') e--;
+                this.fieldStart[this.fieldCount] = s;
+                this.fieldEnd[this.fieldCount] = e;
+                this.fieldCount++;
+                start = i + 1;
+            }
+        }
+    }
+
+    // Non-negative decimal integer, or -1
+    private int parseInt(int field) {
+        int start = this.fieldStart[field];
+        int end = this.fieldEnd[field];
+        if (start == end || end - start > 9) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char ch = this.message.charAt(i);
+            if (ch < '0' || ch > '9') {
+                return -1;
+            }
+            value = value * 10 + (ch - '0');
+        }
+        return value;
+    }
+
+    // Plain decimal with an optional "N" (negative) prefix, or NaN
+    private float parseFloat(int field) {
+        int start = this.fieldStart[field];
+        int end = this.fieldEnd[field];
+        boolean negative = start < end && this.message.charAt(start) == 'N';
+        if (negative) {
+            start++;
+        }
+        long mantissa = 0;
+        int scale = 0;
+        boolean digits = false;
+        boolean point = false;
+        for (int i = start; i < end; i++) {
+            char ch = this.message.charAt(i);
+            if (ch >= '0' && ch <= '9') {
+                if (mantissa < 100_000_000_000_000L) {
+                    mantissa = mantissa * 10 + (ch - '0');
+                    if (point) scale++;
+                } else if (!point) {
+                    // Far beyond any valid range
+                    return Float.NaN;
+                }
+                digits = true;
+            } else if (ch == '.' && !point) {
+                point = true;
+            } else {
+                // Anything unusual (exponents, ...) goes through the JDK parser
+                return this.parseFloatSlow(field, negative);
+            }
+        }
+        if (!digits) {
+            return Float.NaN;
+        }
+        double value = mantissa;
+        for (int i = 0; i < scale; i++) value /= 10;
+        return (float) (negative ? -value : value);
+    }
+
+    private float parseFloatSlow(int field, boolean negative) {
+        int start = this.fieldStart[field] + (negative ? 1 : 0);
+        try {
+            float value = Float.parseFloat(this.message.substring(start, this.fieldEnd[field]));
+            return negative ? -value : value;
+        } catch (NumberFormatException e) {
+            return Float.NaN;
+        }
+    }
+
+    private boolean invalid(String reason) {
+        this.error = reason;
+        this.invalidCount++;
+        return false;
+    }
+
+    // Why the last decode() returned false
+    public String getError() {
+        return this.error;
+    }
+
+    public long getDecodedCount() {
+        return this.decodedCount;
+    }
+
+    public long getInvalidCount() {
+        return this.invalidCount;
+    }
+
+    public long getIgnoredCount() {
+        return this.ignoredCount;
+    }
+}
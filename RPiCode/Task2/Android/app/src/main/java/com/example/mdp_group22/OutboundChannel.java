@@ -0,0 +1,161 @@
+package com.example.mdp_group22;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+
+/*
+Asynchronous writer for an output stream.
+send() only queues the payload, so a stalled link never blocks the caller (usually the UI
+thread); a single writer thread writes the payloads in order. The queue is bounded: when it
+is full, or once the channel is closed, send() fails at once instead of waiting.
+Callbacks run on the writer thread, or on the caller's thread when send() fails at once.
+Payloads are only logged when debug logging is enabled for the tag, e.g.
+    adb shell setprop log.tag.OutboundChannel DEBUG
+ */
+public class OutboundChannel {
+    public interface Callback {
+        // error is null when the payload was written
+        void onComplete(byte[] data, IOException error);
+    }
+
+    private static final String TAG = "OutboundChannel";
+
+    private static final class Pending {
+        final byte[] data;
+        final Callback callback;
+
+        Pending(byte[] data, Callback callback) {
+            this.data = data;
+            this.callback = callback;
+        }
+    }
+
+    private final String name;
+    private final OutputStream out;
+    private final int capacity;
+    private final ArrayDeque<Pending> queue;
+    private boolean closed = false;
+
+    private long sentCount = 0;
+    private long failedCount = 0;
+    private long rejectedCount = 0;
+
+    public OutboundChannel(String name, OutputStream out, int capacity) {
+        this.name = name;
+        this.out = out;
+        this.capacity = capacity;
+        this.queue = new ArrayDeque<>(capacity);
+        Thread writer = new Thread(this::writeLoop, name);
+        writer.start();
+    }
+
+    // Queue data for writing; returns false (after calling back) if it was rejected
+    public boolean send(byte[] data, Callback callback) {
+        IOException error;
+        synchronized (this) {
+            if (this.closed) {
+                error = new IOException(this.name + " is closed");
+            } else if (this.queue.size() == this.capacity) {
+                error = new IOException(this.name + " send queue is full");
+            } else {
+                this.queue.add(new Pending(data, callback));
+                this.notify();
+                return true;
+            }
+            this.rejectedCount++;
+        }
+        Log.w(TAG, error.getMessage());
+        complete(data, callback, error);
+        return false;
+    }
+
+    /*
+    Stop the writer. Payloads still queued fail with an IOException; a write already in
+    progress is only unblocked by closing the stream, which the owner of the socket does.
+     */
+    public synchronized void close() {
+        this.closed = true;
+        this.notify();
+    }
+
+    private void writeLoop() {
+        while (true) {
+            Pending pending;
+            synchronized (this) {
+                while (this.queue.isEmpty() && !this.closed) {
+                    try {
+                        this.wait();
+                    } catch (InterruptedException e) {
+                        this.closed = true;
+                    }
+                }
+                if (this.closed) {
+                    break;
+                }
+                pending = this.queue.poll();
+            }
+
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, this.name + ": writing " + new String(pending.data, StandardCharsets.UTF_8));
+            }
+            IOException error = null;
+            try {
+                this.out.write(pending.data);
+                this.out.flush();
+            } catch (IOException e) {
+                Log.e(TAG, this.name + ": error writing to output stream. " + e.getMessage());
+                error = e;
+            }
+            synchronized (this) {
+                if (error == null) {
+                    this.sentCount++;
+                } else {
+                    this.failedCount++;
+                }
+            }
+            complete(pending.data, pending.callback, error);
+        }
+
+        // Closed: fail whatever is still waiting
+        Pending[] remaining;
+        synchronized (this) {
+            remaining = this.queue.toArray(new Pending[0]);
+            this.queue.clear();
+            this.failedCount += remaining.length;
+        }
+        for (Pending pending : remaining) {
+            complete(pending.data, pending.callback, new IOException(this.name + " is closed"));
+        }
+    }
+
+    private static void complete(byte[] data, Callback callback, IOException error) {
+        if (callback == null) {
+            return;
+        }
+        try {
+            callback.onComplete(data, error);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "send callback failed", e);
+        }
+    }
+
+    public synchronized int getQueuedCount() {
+        return this.queue.size();
+    }
+
+    public synchronized long getSentCount() {
+        return this.sentCount;
+    }
+
+    public synchronized long getFailedCount() {
+        return this.failedCount;
+    }
+
+    public synchronized long getRejectedCount() {
+        return this.rejectedCount;
+    }
+}
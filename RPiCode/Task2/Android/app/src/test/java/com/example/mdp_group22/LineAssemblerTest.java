@@ -0,0 +1,161 @@
+package com.example.mdp_group22;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/*
+Feeds LineAssembler the way ConnectedThread does: arbitrary read boundaries, including ones
+that split a line, a delimiter or a multi-byte character.
+ */
+public class LineAssemblerTest {
+    private static final int MAX_LINE_BYTES = 64 * 1024;
+
+    private final LineAssembler assembler = new LineAssembler();
+    private final List<String> lines = new ArrayList<>();
+    private final LineAssembler.LineListener collector = lines::add;
+
+    private void feed(byte[] data) {
+        this.assembler.feed(data, 0, data.length, this.collector);
+    }
+
+    private void feed(String text) {
+        this.feed(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Feed data in random chunks of 1..maxChunk bytes, through an offset into a larger buffer
+    private void feedChunked(byte[] data, Random random, int maxChunk) {
+        byte[] readBuffer = new byte[maxChunk + 16];
+        int position = 0;
+        while (position < data.length) {
+            int length = Math.min(data.length - position, 1 + random.nextInt(maxChunk));
+            int offset = random.nextInt(16);
+            System.arraycopy(data, position, readBuffer, offset, length);
+            this.assembler.feed(readBuffer, offset, length, this.collector);
+            position += length;
+        }
+    }
+
+    private static String randomMessage(Random random) {
+        String[] samples = {"IMG-3-12", "UPDATE-5.0-7.0-N90.0", "ENDED", "状态", "Ünïcödé", "🤖 robot", "é"};
+        StringBuilder message = new StringBuilder();
+        int parts = 1 + random.nextInt(4);
+        for (int i = 0; i < parts; i++) {
+            message.append(samples[random.nextInt(samples.length)]);
+        }
+        return message.toString();
+    }
+
+    @Test
+    public void randomChunking_reproducesEveryLine() {
+        Random random = new Random(21);
+        for (int round = 0; round < 50; round++) {
+            List<String> expected = new ArrayList<>();
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            for (int i = 0; i < 2000; i++) {
+                String message = randomMessage(random);
+                expected.add(message);
+                byte[] bytes = (message + "\n").getBytes(StandardCharsets.UTF_8);
+                stream.write(bytes, 0, bytes.length);
+            }
+
+            this.lines.clear();
+            this.feedChunked(stream.toByteArray(), random, 1024);
+
+            assertEquals(expected, this.lines);
+            assertEquals(0, this.assembler.getPendingLength());
+        }
+    }
+
+    @Test
+    public void singleByteReads_splitMultiByteCharacters() {
+        byte[] data = "状态🤖\nÜ\n".getBytes(StandardCharsets.UTF_8);
+        for (byte b : data) {
+            this.feed(new byte[]{b});
+        }
+        assertEquals(Arrays.asList("状态🤖", "Ü"), this.lines);
+    }
+
+    @Test
+    public void lineSpanningManyReads_isDeliveredOnce() {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            line.append((char) ('a' + i % 26));
+        }
+        byte[] data = (line + "\nnext\n").getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < data.length; i += 7) {
+            this.assembler.feed(data, i, Math.min(7, data.length - i), this.collector);
+            if (this.lines.isEmpty() && i + 7 < line.length()) {
+                assertEquals(i + 7, this.assembler.getPendingLength());
+            }
+        }
+        assertEquals(Arrays.asList(line.toString(), "next"), this.lines);
+    }
+
+    @Test
+    public void incompleteLine_waitsForDelimiter() {
+        this.feed("UPDATE-1-");
+        assertTrue(this.lines.isEmpty());
+        assertEquals(9, this.assembler.getPendingLength());
+
+        this.feed("2-0\nIMG");
+        assertEquals(Arrays.asList("UPDATE-1-2-0"), this.lines);
+        assertEquals(3, this.assembler.getPendingLength());
+    }
+
+    @Test
+    public void emptyLines_areSkipped() {
+        this.feed("\n\nA\n\n\nB\n\n");
+        assertEquals(Arrays.asList("A", "B"), this.lines);
+        assertEquals(2, this.assembler.getLineCount());
+    }
+
+    @Test
+    public void overlongLine_isDiscardedUntilNextDelimiter() {
+        byte[] chunk = new byte[4096];
+        Arrays.fill(chunk, (byte) 'x');
+        this.feed("before\n");
+        // Past the limit in pieces, never with a delimiter
+        for (int written = 0; written <= MAX_LINE_BYTES + chunk.length; written += chunk.length) {
+            this.feed(chunk);
+        }
+        assertEquals(1, this.assembler.getDiscardedLineCount());
+        assertEquals(0, this.assembler.getPendingLength());
+
+        // The tail of the overlong line must not surface as a message of its own
+        this.feed("tail of the long line\nafter\n");
+        assertEquals(Arrays.asList("before", "after"), this.lines);
+    }
+
+    @Test
+    public void overlongLineInOneRead_isDiscarded() {
+        byte[] data = new byte[MAX_LINE_BYTES + 10];
+        Arrays.fill(data, (byte) 'y');
+        this.feed("start");
+        this.feed(data);
+        this.feed("\nok\n");
+        assertEquals(Arrays.asList("ok"), this.lines);
+        assertEquals(1, this.assembler.getDiscardedLineCount());
+    }
+
+    @Test
+    public void reset_dropsIncompleteLine() {
+        this.feed("partial");
+        this.assembler.reset();
+        this.feed("whole\n");
+        assertEquals(Arrays.asList("whole"), this.lines);
+    }
+
+    @Test
+    public void malformedUtf8_isReplaced() {
+        this.feed(new byte[]{'a', (byte) 0xC3, 'b', '\n'});
+        assertEquals(Arrays.asList("a�b"), this.lines);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.mdp_group22;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/*
+Timed old-vs-new replay of the recorded session; parity is checked by MessageDecoderTest.
+Skipped unless run with ./gradlew testDebugUnitTest -Pbenchmarks --tests '*Benchmark'.
+ */
+public class MessageDecoderBenchmark {
+    private static final int WARMUP_REPLAYS = 200;
+    private static final int REPLAYS = 2000;
+
+    private final MessageDecoder decoder = new MessageDecoder();
+    private List<String> session;
+
+    @Before
+    public void loadSession() throws IOException {
+        assumeTrue("benchmarks are opt-in", Boolean.getBoolean("benchmarks"));
+        this.session = MessageDecoderTest.readSession();
+    }
+
+    @Test
+    public void replay_oldVersusNew() {
+        List<String> sink = new ArrayList<>();
+        MessageDecoder.Handler counter = new MessageDecoder.Handler() {
+            @Override
+            public void onImageUpdate(MessageDecoder.ImageUpdate update) {
+                sink.add(null);
+            }
+
+            @Override
+            public void onPoseUpdate(MessageDecoder.PoseUpdate update) {
+                sink.add(null);
+            }
+
+            @Override
+            public void onEnded() {
+                sink.add(null);
+            }
+        };
+
+        for (int i = 0; i < WARMUP_REPLAYS; i++) {
+            this.replayOld(sink);
+            this.replayNew(counter);
+            sink.clear();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < REPLAYS; i++) {
+            this.replayOld(sink);
+        }
+        long oldNanos = System.nanoTime() - start;
+        int oldCount = sink.size();
+        sink.clear();
+
+        start = System.nanoTime();
+        for (int i = 0; i < REPLAYS; i++) {
+            this.replayNew(counter);
+        }
+        long newNanos = System.nanoTime() - start;
+
+        assertEquals(oldCount, sink.size());
+        long messages = (long) REPLAYS * this.session.size();
+        System.out.printf("MessageDecoder replay of %d messages: old %.1f ns/msg, new %.1f ns/msg%n",
+                messages, (double) oldNanos / messages, (double) newNanos / messages);
+    }
+
+    private void replayOld(List<String> sink) {
+        for (String message : this.session) {
+            if (message.contains("IMG")) {
+                String[] cmd = message.split("-");
+                Integer.parseInt(cmd[1]);
+                sink.add(cmd[2]);
+            } else if (message.contains("UPDATE")) {
+                String[] cmd = message.split("-");
+                int xPos = (int) Float.parseFloat(cmd[1]);
+                int yPos = (int) Float.parseFloat(cmd[2]);
+                double bearing = cmd[3].contains("N")
+                        ? (double) -1 * Float.parseFloat(cmd[3].substring(1))
+                        : Float.parseFloat(cmd[3]);
+                sink.add(xPos + yPos + bearing > -1e9 ? null : "");
+            } else if (message.equals("ENDED")) {
+                sink.add(null);
+            }
+        }
+    }
+
+    private void replayNew(MessageDecoder.Handler handler) {
+        for (String message : this.session) {
+            this.decoder.decode(message, handler);
+        }
+    }
+}
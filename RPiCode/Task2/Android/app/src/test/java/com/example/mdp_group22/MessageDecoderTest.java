@@ -0,0 +1,191 @@
+package com.example.mdp_group22;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/*
+Replays a recorded RPi session (src/test/resources/robot_session.txt) through the old
+MainActivity.messageReceiver parsing and through MessageDecoder, and checks they agree.
+Results are compared as "IMG <id> <image>", "POSE <x> <y> <bearing>" and "ENDED".
+ */
+public class MessageDecoderTest {
+    private final MessageDecoder decoder = new MessageDecoder();
+    private final List<String> results = new ArrayList<>();
+    private final MessageDecoder.Handler recorder = new MessageDecoder.Handler() {
+        @Override
+        public void onImageUpdate(MessageDecoder.ImageUpdate update) {
+            results.add("IMG " + update.obstacleId + " " + update.imageId);
+        }
+
+        @Override
+        public void onPoseUpdate(MessageDecoder.PoseUpdate update) {
+            results.add("POSE " + update.x + " " + update.y + " " + (double) update.bearing);
+        }
+
+        @Override
+        public void onEnded() {
+            results.add("ENDED");
+        }
+    };
+
+    private List<String> session;
+
+    @Before
+    public void loadSession() throws IOException {
+        this.session = readSession();
+    }
+
+    static List<String> readSession() throws IOException {
+        List<String> session = new ArrayList<>();
+        InputStream stream = MessageDecoderTest.class.getClassLoader().getResourceAsStream("robot_session.txt");
+        assertNotNull("robot_session.txt missing from test resources", stream);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    session.add(line);
+                }
+            }
+        }
+        return session;
+    }
+
+    // The parsing MainActivity.messageReceiver did before MessageDecoder
+    private static void decodeOld(String message, List<String> out) {
+        if (message.contains("IMG")) {
+            String[] cmd = message.split("-");
+            out.add("IMG " + Integer.parseInt(cmd[1]) + " " + cmd[2]);
+        } else if (message.contains("UPDATE")) {
+            String[] cmd = message.split("-");
+            int xPos = (int) Float.parseFloat(cmd[1]);
+            int yPos = (int) Float.parseFloat(cmd[2]);
+            double bearing;
+            if (cmd[3].contains("N")) {
+                bearing = (double) -1 * Float.parseFloat(cmd[3].substring(1));
+            } else {
+                bearing = Float.parseFloat(cmd[3]);
+            }
+            out.add("POSE " + xPos + " " + yPos + " " + bearing);
+        } else if (message.equals("ENDED")) {
+            out.add("ENDED");
+        }
+    }
+
+    private void decodeNew(String message) {
+        assertTrue(message + ": " + this.decoder.getError(), this.decoder.decode(message, this.recorder));
+    }
+
+    @Test
+    public void recordedSession_matchesOldParsing() {
+        List<String> expected = new ArrayList<>();
+        for (String message : this.session) {
+            decodeOld(message, expected);
+            this.decodeNew(message);
+        }
+        assertEquals(expected, this.results);
+        assertEquals(0, this.decoder.getInvalidCount());
+        assertTrue(this.results.contains("ENDED"));
+    }
+
+    @Test
+    public void numberForms_matchOldParsing() {
+        String[] messages = {
+                "UPDATE-0-0-0", "UPDATE-20-20-360", "UPDATE-19.99-0.5-N359.9", "UPDATE-3.-4.25-.5",
+                "UPDATE-1e1-2E0-1.5e2", "UPDATE-007-08-N000.125", "IMG-0-0", "IMG-12-ABC",
+        };
+        List<String> expected = new ArrayList<>();
+        for (String message : messages) {
+            decodeOld(message, expected);
+            this.decodeNew(message);
+        }
+        assertEquals(expected, this.results);
+    }
+
+    @Test
+    public void surroundingWhitespace_isTrimmed() {
+        this.decodeNew("IMG-3-12\r");
+        this.decodeNew("UPDATE- 4 -5-N90 ");
+        assertEquals("IMG 3 12", this.results.get(0));
+        assertEquals("POSE 4 5 -90.0", this.results.get(1));
+    }
+
+    @Test
+    public void outOfRangeValues_areRejected() {
+        String[] messages = {
+                "UPDATE-21-5-0", "UPDATE-5-20.5-0", "UPDATE-N1-5-0", "UPDATE-5-5-361", "UPDATE-5-5-N360.5",
+                "UPDATE-NaN-5-0", "UPDATE-5-5-NaN", "UPDATE-5-5-N", "UPDATE-5-5-Infinity", "UPDATE-x-5-0",
+                "UPDATE-5-5", "IMG-x-12", "IMG-3-", "IMG-3", "IMG--12",
+        };
+        for (String message : messages) {
+            assertFalse(message, this.decoder.decode(message, this.recorder));
+            assertNotNull(message, this.decoder.getError());
+        }
+        assertTrue(this.results.isEmpty());
+        assertEquals(messages.length, this.decoder.getInvalidCount());
+    }
+
+    @Test
+    public void boundaryValues_areAccepted() {
+        this.decodeNew("UPDATE-0-20-N360");
+        this.decodeNew("UPDATE-20-0-360");
+        assertEquals("POSE 0 20 -360.0", this.results.get(0));
+        assertEquals("POSE 20 0 360.0", this.results.get(1));
+    }
+
+    @Test
+    public void otherMessages_areIgnored() {
+        this.decodeNew("ACK");
+        this.decodeNew("STATUS-ready");
+        this.decodeNew("ENDED-soon");
+        assertTrue(this.results.isEmpty());
+        assertEquals(3, this.decoder.getIgnoredCount());
+    }
+
+    @Test
+    public void typeOf_classifiesWithoutDecoding() {
+        assertEquals(MessageDecoder.TYPE_IMAGE, MessageDecoder.typeOf("IMG-1-2"));
+        assertEquals(MessageDecoder.TYPE_POSE, MessageDecoder.typeOf("UPDATE-1-2-3"));
+        assertEquals(MessageDecoder.TYPE_ENDED, MessageDecoder.typeOf("ENDED"));
+        assertEquals(MessageDecoder.TYPE_NONE, MessageDecoder.typeOf("ACK"));
+        // IMG takes precedence, as it did in the old receiver
+        assertEquals(MessageDecoder.TYPE_IMAGE, MessageDecoder.typeOf("IMGUPDATE-1-2"));
+    }
+
+    @Test
+    public void poseToMessage_roundTrips() {
+        for (String message : this.session) {
+            MessageDecoder.PoseUpdate pose = this.decoder.decodePose(message);
+            if (pose == null) {
+                continue;
+            }
+            MessageDecoder.PoseUpdate again = this.decoder.decodePose(pose.toMessage());
+            assertNotNull(pose.toMessage(), again);
+            assertEquals(pose.x, again.x);
+            assertEquals(pose.y, again.y);
+            assertEquals(pose.bearing, again.bearing, 0f);
+        }
+
+        // Negative turns are written with the N prefix
+        MessageDecoder.PoseUpdate left = new MessageDecoder.PoseUpdate(3, 4, -90f);
+        assertEquals("UPDATE-3-4-N90.0", left.toMessage());
+        MessageDecoder.PoseUpdate decoded = this.decoder.decodePose(left.toMessage());
+        assertEquals(-90f, decoded.bearing, 0f);
+    }
+
+    @Test
+    public void decodePose_rejectsOtherCommands() {
+        assertNull(this.decoder.decodePose("IMG-1-2"));
+        assertNull(this.decoder.decodePose("ENDED"));
+        assertNull(this.decoder.decodePose("UPDATE-99-1-0"));
+    }
+}